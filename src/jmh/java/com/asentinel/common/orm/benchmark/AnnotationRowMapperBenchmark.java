@@ -0,0 +1,52 @@
+package com.asentinel.common.orm.benchmark;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import org.h2.tools.SimpleResultSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.asentinel.common.orm.mappers.AnnotationRowMapper;
+
+/**
+ * Measures {@link AnnotationRowMapper#mapRow(java.sql.ResultSet, int)} for a single row.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AnnotationRowMapperBenchmark {
+
+	@Param({"shallow", "wide"})
+	String shape;
+
+	private AnnotationRowMapper<?> mapper;
+	private SimpleResultSet rs;
+
+	@Setup
+	public void setup() throws SQLException {
+		BenchmarkDatabase db = new BenchmarkDatabase();
+		Class<?> entityClass = BenchmarkDatabase.getEntityClass(shape);
+		String table = shape.equals("wide") ? "bm_wide" : "bm_customer";
+		mapper = new AnnotationRowMapper<>(entityClass);
+		rs = db.copyResults("select * from " + table + " where id = ?", 1);
+		rs.next();
+	}
+
+	@Benchmark
+	public Object mapRow() throws SQLException {
+		return mapper.mapRow(rs, 0);
+	}
+}
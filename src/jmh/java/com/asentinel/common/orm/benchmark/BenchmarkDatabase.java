@@ -0,0 +1,167 @@
+package com.asentinel.common.orm.benchmark;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.h2.tools.SimpleResultSet;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import com.asentinel.common.jdbc.SqlQueryTemplate;
+import com.asentinel.common.jdbc.flavors.h2.H2JdbcFlavor;
+import com.asentinel.common.orm.benchmark.BenchmarkEntities.Customer;
+import com.asentinel.common.orm.benchmark.BenchmarkEntities.Order;
+import com.asentinel.common.orm.benchmark.BenchmarkEntities.WideRow;
+import com.asentinel.common.orm.ed.tree.DefaultEntityDescriptorTreeRepository;
+import com.asentinel.common.orm.jql.CompiledSql;
+import com.asentinel.common.orm.jql.DefaultSqlBuilderFactory;
+import com.asentinel.common.orm.jql.SqlBuilderFactory;
+import com.asentinel.common.orm.query.DefaultSqlFactory;
+
+/**
+ * In memory H2 database populated with the data for the {@link BenchmarkEntities}.
+ */
+public final class BenchmarkDatabase {
+
+	public static final int CUSTOMERS = 1000;
+	public static final int WIDE_ROWS = 1000;
+	public static final int ORDERS = 100;
+	public static final int LINES_PER_ORDER = 10;
+	public static final int PRODUCTS = 50;
+	public static final int CATEGORIES = 5;
+
+	private static final AtomicInteger counter = new AtomicInteger();
+
+	private final DriverManagerDataSource dataSource;
+	private final JdbcTemplate jdbcTemplate;
+	private final SqlBuilderFactory sqlBuilderFactory;
+
+	public BenchmarkDatabase() {
+		dataSource = new DriverManagerDataSource("jdbc:h2:mem:benchmark" + counter.incrementAndGet() + ";DB_CLOSE_DELAY=-1");
+		jdbcTemplate = new JdbcTemplate(dataSource);
+		sqlBuilderFactory = new DefaultSqlBuilderFactory(
+				new DefaultEntityDescriptorTreeRepository(),
+				new DefaultSqlFactory(new H2JdbcFlavor()),
+				new SqlQueryTemplate(new H2JdbcFlavor(), dataSource));
+		createSchema();
+	}
+
+	private void createSchema() {
+		jdbcTemplate.execute("create table bm_customer(id int primary key, name varchar(50), code varchar(20), credit decimal(12, 2))");
+		for (int i = 1; i <= CUSTOMERS; i++) {
+			jdbcTemplate.update("insert into bm_customer values (?, ?, ?, ?)", i, "customer " + i, "C" + i, i * 10);
+		}
+
+		jdbcTemplate.execute("create table bm_category(id int primary key, name varchar(50))");
+		jdbcTemplate.execute("create table bm_product(id int primary key, name varchar(50), category_id int)");
+		jdbcTemplate.execute("create table bm_order(id int primary key, number varchar(20))");
+		jdbcTemplate.execute("create table bm_line(id int primary key, order_id int, product_id int, quantity int, amount decimal(12, 2))");
+		for (int i = 1; i <= CATEGORIES; i++) {
+			jdbcTemplate.update("insert into bm_category values (?, ?)", i, "category " + i);
+		}
+		for (int i = 1; i <= PRODUCTS; i++) {
+			jdbcTemplate.update("insert into bm_product values (?, ?, ?)", i, "product " + i, i % CATEGORIES + 1);
+		}
+		int lineId = 1;
+		for (int i = 1; i <= ORDERS; i++) {
+			jdbcTemplate.update("insert into bm_order values (?, ?)", i, "O" + i);
+			for (int j = 0; j < LINES_PER_ORDER; j++) {
+				jdbcTemplate.update("insert into bm_line values (?, ?, ?, ?, ?)", lineId++, i, (i + j) % PRODUCTS + 1, j + 1, j * 3);
+			}
+		}
+
+		StringBuilder columns = new StringBuilder("id int primary key");
+		StringBuilder values = new StringBuilder("?");
+		for (int i = 1; i <= 8; i++) {
+			columns.append(", s").append(i).append(" varchar(50)");
+		}
+		for (int i = 1; i <= 7; i++) {
+			columns.append(", i").append(i).append(" int");
+		}
+		for (int i = 1; i <= 4; i++) {
+			columns.append(", l").append(i).append(" bigint");
+		}
+		for (int i = 1; i <= 4; i++) {
+			columns.append(", d").append(i).append(" decimal(12, 2)");
+		}
+		for (int i = 1; i <= 3; i++) {
+			columns.append(", b").append(i).append(" boolean");
+		}
+		for (int i = 1; i <= 3; i++) {
+			columns.append(", t").append(i).append(" timestamp");
+		}
+		jdbcTemplate.execute("create table bm_wide(" + columns + ")");
+		for (int i = 1; i < 30; i++) {
+			values.append(", ?");
+		}
+		for (int i = 1; i <= WIDE_ROWS; i++) {
+			jdbcTemplate.update("insert into bm_wide values (" + values + ")",
+					i, "s1", "s2", "s3", "s4", "s5", "s6", "s7", "s8",
+					1, 2, 3, 4, 5, 6, 7,
+					1L, 2L, 3L, 4L,
+					1.5, 2.5, 3.5, 4.5,
+					true, false, true,
+					new java.sql.Timestamp(0), new java.sql.Timestamp(1000), new java.sql.Timestamp(2000));
+		}
+	}
+
+	public JdbcTemplate getJdbcTemplate() {
+		return jdbcTemplate;
+	}
+
+	public SqlBuilderFactory getSqlBuilderFactory() {
+		return sqlBuilderFactory;
+	}
+
+	/**
+	 * @return the root entity class for the specified shape.
+	 */
+	public static Class<?> getEntityClass(String shape) {
+		switch (shape) {
+		case "shallow":
+			return Customer.class;
+		case "deep":
+			return Order.class;
+		case "wide":
+			return WideRow.class;
+		default:
+			throw new IllegalArgumentException("Unknown shape " + shape);
+		}
+	}
+
+	/**
+	 * Executes the specified query and copies the results in an in memory
+	 * {@code ResultSet} that can be iterated multiple times using {@code beforeFirst()}.
+	 */
+	public SimpleResultSet copyResults(CompiledSql compiledSql) {
+		return copyResults(compiledSql.getSqlString(), compiledSql.getParameters());
+	}
+
+	/**
+	 * @see #copyResults(CompiledSql)
+	 */
+	public SimpleResultSet copyResults(String sql, Object ... params) {
+		return jdbcTemplate.query(sql, (ResultSetExtractor<SimpleResultSet>) BenchmarkDatabase::copy, params);
+	}
+
+	private static SimpleResultSet copy(ResultSet rs) throws SQLException {
+		SimpleResultSet copy = new SimpleResultSet();
+		copy.setAutoClose(false);
+		ResultSetMetaData md = rs.getMetaData();
+		int n = md.getColumnCount();
+		for (int i = 1; i <= n; i++) {
+			copy.addColumn(md.getColumnLabel(i), md.getColumnType(i), md.getPrecision(i), md.getScale(i));
+		}
+		while (rs.next()) {
+			Object[] row = new Object[n];
+			for (int i = 1; i <= n; i++) {
+				row[i - 1] = rs.getObject(i);
+			}
+			copy.addRow(row);
+		}
+		return copy;
+	}
+}
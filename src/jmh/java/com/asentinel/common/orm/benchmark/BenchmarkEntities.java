@@ -0,0 +1,128 @@
+package com.asentinel.common.orm.benchmark;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.List;
+
+import com.asentinel.common.orm.RelationType;
+import com.asentinel.common.orm.mappers.Child;
+import com.asentinel.common.orm.mappers.Column;
+import com.asentinel.common.orm.mappers.PkColumn;
+import com.asentinel.common.orm.mappers.Table;
+
+/**
+ * The entities used by the benchmarks. There are 3 shapes:
+ * <li>shallow - {@link Customer}, a single table with a few columns;
+ * <li>wide - {@link WideRow}, a single table with 30 columns;
+ * <li>deep - {@link Order}, an order with a collection of lines, each line
+ * 		references a product that references a category.
+ */
+public final class BenchmarkEntities {
+
+	private BenchmarkEntities() {}
+
+	@Table("bm_customer")
+	public static class Customer {
+
+		@PkColumn("id")
+		int id;
+
+		@Column("name")
+		String name;
+
+		@Column("code")
+		String code;
+
+		@Column("credit")
+		BigDecimal credit;
+	}
+
+	@Table("bm_category")
+	public static class Category {
+
+		@PkColumn("id")
+		int id;
+
+		@Column("name")
+		String name;
+	}
+
+	@Table("bm_product")
+	public static class Product {
+
+		@PkColumn("id")
+		int id;
+
+		@Column("name")
+		String name;
+
+		@Child(fkName = "category_id")
+		Category category;
+	}
+
+	@Table("bm_line")
+	public static class Line {
+
+		@PkColumn("id")
+		int id;
+
+		@Column("quantity")
+		int quantity;
+
+		@Column("amount")
+		BigDecimal amount;
+
+		@Child(fkName = "product_id")
+		Product product;
+	}
+
+	@Table("bm_order")
+	public static class Order {
+
+		@PkColumn("id")
+		int id;
+
+		@Column("number")
+		String number;
+
+		@Child(parentRelationType = RelationType.MANY_TO_ONE, fkName = "order_id")
+		List<Line> lines;
+	}
+
+	@Table("bm_wide")
+	public static class WideRow {
+
+		@PkColumn("id")
+		int id;
+
+		@Column("s1") String s1;
+		@Column("s2") String s2;
+		@Column("s3") String s3;
+		@Column("s4") String s4;
+		@Column("s5") String s5;
+		@Column("s6") String s6;
+		@Column("s7") String s7;
+		@Column("s8") String s8;
+		@Column("i1") int i1;
+		@Column("i2") int i2;
+		@Column("i3") int i3;
+		@Column("i4") int i4;
+		@Column("i5") int i5;
+		@Column("i6") int i6;
+		@Column("i7") int i7;
+		@Column("l1") long l1;
+		@Column("l2") long l2;
+		@Column("l3") long l3;
+		@Column("l4") long l4;
+		@Column("d1") BigDecimal d1;
+		@Column("d2") BigDecimal d2;
+		@Column("d3") BigDecimal d3;
+		@Column("d4") BigDecimal d4;
+		@Column("b1") boolean b1;
+		@Column("b2") boolean b2;
+		@Column("b3") boolean b3;
+		@Column("t1") Date t1;
+		@Column("t2") Date t2;
+		@Column("t3") Date t3;
+	}
+}
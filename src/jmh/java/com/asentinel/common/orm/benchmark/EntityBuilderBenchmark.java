@@ -0,0 +1,63 @@
+package com.asentinel.common.orm.benchmark;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.h2.tools.SimpleResultSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.asentinel.common.collections.tree.Node;
+import com.asentinel.common.orm.EntityBuilder;
+import com.asentinel.common.orm.EntityDescriptor;
+import com.asentinel.common.orm.jql.CompiledSql;
+
+/**
+ * Measures {@link EntityBuilder#processRow(java.sql.ResultSet)} for a whole result set. The 
+ * rows are read from an in memory {@code ResultSet}, so the database is not involved.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntityBuilderBenchmark {
+
+	@Param({"shallow", "deep", "wide"})
+	String shape;
+
+	private Node<EntityDescriptor> root;
+	private SimpleResultSet rs;
+
+	@Setup
+	public void setup() {
+		BenchmarkDatabase db = new BenchmarkDatabase();
+		CompiledSql compiledSql = db.getSqlBuilderFactory()
+				.newSqlBuilder(BenchmarkDatabase.getEntityClass(shape))
+				.select()
+				.compile();
+		root = compiledSql.getRootNode();
+		rs = db.copyResults(compiledSql);
+	}
+
+	@Benchmark
+	public List<?> processResultSet() throws SQLException {
+		rs.beforeFirst();
+		EntityBuilder<?> eb = new EntityBuilder<>(root);
+		while (rs.next()) {
+			eb.processRow(rs);
+		}
+		return eb.getEntityList();
+	}
+}
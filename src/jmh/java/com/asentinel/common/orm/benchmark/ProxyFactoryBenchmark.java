@@ -0,0 +1,43 @@
+package com.asentinel.common.orm.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.asentinel.common.orm.benchmark.BenchmarkEntities.Customer;
+import com.asentinel.common.orm.proxy.entity.ProxyFactory;
+
+/**
+ * Measures the creation of entity proxies with {@link ProxyFactory#newProxy(Class, Function)}. The
+ * proxy class is generated in the setup, so only the instantiation is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProxyFactoryBenchmark {
+
+	private final Function<Object, Customer> loader = id -> new Customer();
+
+	@Setup
+	public void setup() {
+		ProxyFactory.getInstance().newProxy(Customer.class, loader);
+	}
+
+	@Benchmark
+	public Customer newProxy() {
+		return ProxyFactory.getInstance().newProxy(Customer.class, loader);
+	}
+}
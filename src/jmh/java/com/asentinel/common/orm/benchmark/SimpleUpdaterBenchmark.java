@@ -0,0 +1,79 @@
+package com.asentinel.common.orm.benchmark;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+
+import com.asentinel.common.jdbc.SqlQueryTemplate;
+import com.asentinel.common.jdbc.flavors.h2.H2JdbcFlavor;
+import com.asentinel.common.orm.benchmark.BenchmarkEntities.Customer;
+import com.asentinel.common.orm.benchmark.BenchmarkEntities.WideRow;
+import com.asentinel.common.orm.persist.SimpleUpdater;
+import com.asentinel.common.orm.persist.UpdateType;
+
+/**
+ * Measures the statement and arguments building in {@link SimpleUpdater}. The statements
+ * are not sent to a database, the {@code JdbcTemplate} only reports 1 updated row.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SimpleUpdaterBenchmark {
+
+	@Param({"shallow", "wide"})
+	String shape;
+
+	private SimpleUpdater updater;
+	private Object entity;
+
+	@Setup
+	public void setup() {
+		JdbcTemplate jdbcTemplate = new JdbcTemplate() {
+			@Override
+			public int update(PreparedStatementCreator psc) {
+				return 1;
+			}
+		};
+		updater = new SimpleUpdater(new H2JdbcFlavor(), new SqlQueryTemplate(new H2JdbcFlavor(), jdbcTemplate));
+		if (shape.equals("wide")) {
+			WideRow row = new WideRow();
+			row.id = 1;
+			row.s1 = "s1";
+			row.d1 = BigDecimal.ONE;
+			row.t1 = new java.util.Date();
+			entity = row;
+		} else {
+			Customer customer = new Customer();
+			customer.id = 1;
+			customer.name = "customer";
+			customer.credit = BigDecimal.TEN;
+			entity = customer;
+		}
+	}
+
+	@Benchmark
+	public int update() {
+		return updater.update(entity, UpdateType.UPDATE);
+	}
+
+	@Benchmark
+	public int insert() {
+		return updater.update(entity, UpdateType.INSERT);
+	}
+}
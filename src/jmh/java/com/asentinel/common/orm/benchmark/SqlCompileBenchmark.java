@@ -0,0 +1,59 @@
+package com.asentinel.common.orm.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.asentinel.common.orm.jql.CompiledSql;
+import com.asentinel.common.orm.jql.SqlBuilderFactory;
+
+/**
+ * Measures the creation and compilation of {@code SqlBuilder} queries, this includes
+ * building the entity descriptor tree and generating the SQL in the {@code DefaultSqlFactory}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SqlCompileBenchmark {
+
+	@Param({"shallow", "deep", "wide"})
+	String shape;
+
+	private SqlBuilderFactory sqlBuilderFactory;
+	private Class<?> entityClass;
+
+	@Setup
+	public void setup() {
+		sqlBuilderFactory = new BenchmarkDatabase().getSqlBuilderFactory();
+		entityClass = BenchmarkDatabase.getEntityClass(shape);
+	}
+
+	@Benchmark
+	public CompiledSql compile() {
+		return sqlBuilderFactory.newSqlBuilder(entityClass)
+				.select().where().id().eq(1)
+				.compile();
+	}
+
+	@Benchmark
+	public CompiledSql pagedCompile() {
+		return sqlBuilderFactory.newSqlBuilder(entityClass)
+				.pagedSelect(0, 20)
+				.pagedWhere().id().gt(1)
+				.pagedOrderBy().id()
+				.pagedCompile();
+	}
+}
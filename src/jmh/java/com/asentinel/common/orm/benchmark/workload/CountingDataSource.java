@@ -0,0 +1,58 @@
+package com.asentinel.common.orm.benchmark.workload;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+/**
+ * {@code DataSource} decorator that counts the statements created on its connections. A 
+ * batch is counted as a single statement.
+ */
+public class CountingDataSource extends DelegatingDataSource {
+
+	private final AtomicLong statements = new AtomicLong();
+
+	public CountingDataSource(DataSource targetDataSource) {
+		super(targetDataSource);
+	}
+
+	public long getStatementCount() {
+		return statements.get();
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		return countingConnection(super.getConnection());
+	}
+
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		return countingConnection(super.getConnection(username, password));
+	}
+
+	private Connection countingConnection(Connection target) {
+		return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {Connection.class},
+				(proxy, method, args) -> {
+					switch (method.getName()) {
+					case "prepareStatement":
+					case "prepareCall":
+					case "createStatement":
+						statements.incrementAndGet();
+						break;
+					default:
+						break;
+					}
+					try {
+						return method.invoke(target, args);
+					} catch (InvocationTargetException e) {
+						throw e.getTargetException();
+					}
+				});
+	}
+}
@@ -0,0 +1,169 @@
+package com.asentinel.common.orm.benchmark.workload;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Runs the mixed read/write {@link Workload} against the {@link WorkloadDatabase} and reports for each
+ * operation the throughput, the p99 latency, the bytes allocated per operation and the statements
+ * executed per operation. The results are written in JSON format and are compared with the budgets
+ * from a properties file. If any budget is exceeded the process exits with a non zero code, so that the
+ * build fails.
+ * <br><br>
+ * The budgets file contains for each operation the following keys, all of them optional:
+ * <li>{@code <operation>.queriesPerOp} - the maximum number of statements per operation, this is checked exactly;
+ * <li>{@code <operation>.allocatedBytesPerOp} - the maximum number of bytes allocated per operation;
+ * <li>{@code <operation>.p99Micros} - the maximum p99 latency in microseconds;
+ * <li>{@code <operation>.minOpsPerSec} - the minimum throughput.
+ * <br>
+ * The {@code tolerance} key is the fraction by which the allocations, the latency and the throughput
+ * may be worse than the budget before failing.
+ * <br><br>
+ * System properties: {@code throughput.budgets} - the budgets file, {@code throughput.result} - the 
+ * JSON results file, {@code throughput.warmup} and {@code throughput.iterations} - the number of warmup 
+ * and measured executions of each operation.
+ */
+public final class ThroughputSuite {
+
+	private ThroughputSuite() {}
+
+	public static void main(String[] args) throws IOException {
+		int warmup = Integer.getInteger("throughput.warmup", 2000);
+		int iterations = Integer.getInteger("throughput.iterations", 5000);
+		Path budgetsPath = Paths.get(System.getProperty("throughput.budgets", "src/jmh/resources/throughput-budgets.properties"));
+		Path resultPath = Paths.get(System.getProperty("throughput.result", "target/throughput-result.json"));
+
+		WorkloadDatabase db = new WorkloadDatabase();
+		Workload workload = new Workload(db.getOrm());
+		List<Result> results = new ArrayList<>();
+		for (Map.Entry<String, Runnable> e: workload.getOperations().entrySet()) {
+			Result result = measure(e.getKey(), e.getValue(), db.getDataSource(), warmup, iterations);
+			System.out.println(result);
+			results.add(result);
+		}
+		writeJson(results, resultPath);
+		System.out.println("Results written to " + resultPath.toAbsolutePath());
+
+		if (Files.exists(budgetsPath)) {
+			List<String> violations = checkBudgets(results, loadBudgets(budgetsPath));
+			if (!violations.isEmpty()) {
+				violations.forEach(v -> System.err.println("BUDGET EXCEEDED: " + v));
+				System.exit(1);
+			}
+			System.out.println("All the budgets in " + budgetsPath + " are met.");
+		} else {
+			System.out.println("No budgets file found at " + budgetsPath + ".");
+		}
+	}
+
+	private static Result measure(String name, Runnable operation, CountingDataSource dataSource, int warmup, int iterations) {
+		for (int i = 0; i < warmup; i++) {
+			operation.run();
+		}
+		com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long threadId = Thread.currentThread().getId();
+		long[] latencies = new long[iterations];
+		long statements0 = dataSource.getStatementCount();
+		long allocated0 = threadBean.getThreadAllocatedBytes(threadId);
+		long t0 = System.nanoTime();
+		for (int i = 0; i < iterations; i++) {
+			long start = System.nanoTime();
+			operation.run();
+			latencies[i] = System.nanoTime() - start;
+		}
+		long t1 = System.nanoTime();
+		long allocated1 = threadBean.getThreadAllocatedBytes(threadId);
+		long statements1 = dataSource.getStatementCount();
+		Arrays.sort(latencies);
+		return new Result(name, 
+				iterations * 1_000_000_000.0 / (t1 - t0),
+				latencies[(int) Math.ceil(iterations * 0.99) - 1] / 1000.0,
+				(double) (allocated1 - allocated0) / iterations,
+				(double) (statements1 - statements0) / iterations);
+	}
+
+	private static Properties loadBudgets(Path path) throws IOException {
+		Properties budgets = new Properties();
+		try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+			budgets.load(reader);
+		}
+		return budgets;
+	}
+
+	static List<String> checkBudgets(List<Result> results, Properties budgets) {
+		double tolerance = Double.parseDouble(budgets.getProperty("tolerance", "0"));
+		List<String> violations = new ArrayList<>();
+		for (Result r: results) {
+			String queries = budgets.getProperty(r.name + ".queriesPerOp");
+			if (queries != null && r.queriesPerOp > Double.parseDouble(queries)) {
+				violations.add(r.name + ": " + r.queriesPerOp + " queries/op, the budget is " + queries);
+			}
+			String allocated = budgets.getProperty(r.name + ".allocatedBytesPerOp");
+			if (allocated != null && r.allocatedBytesPerOp > Double.parseDouble(allocated) * (1 + tolerance)) {
+				violations.add(r.name + ": " + Math.round(r.allocatedBytesPerOp) + " bytes/op, the budget is " + allocated);
+			}
+			String p99 = budgets.getProperty(r.name + ".p99Micros");
+			if (p99 != null && r.p99Micros > Double.parseDouble(p99) * (1 + tolerance)) {
+				violations.add(r.name + ": p99 " + Math.round(r.p99Micros) + " us, the budget is " + p99);
+			}
+			String minOps = budgets.getProperty(r.name + ".minOpsPerSec");
+			if (minOps != null && r.opsPerSec < Double.parseDouble(minOps) * (1 - tolerance)) {
+				violations.add(r.name + ": " + Math.round(r.opsPerSec) + " ops/s, the budget is " + minOps);
+			}
+		}
+		return violations;
+	}
+
+	private static void writeJson(List<Result> results, Path path) throws IOException {
+		if (path.getParent() != null) {
+			Files.createDirectories(path.getParent());
+		}
+		try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+			writer.write("[\n");
+			for (int i = 0; i < results.size(); i++) {
+				Result r = results.get(i);
+				writer.write(String.format(Locale.ROOT, 
+						"  {\"operation\": \"%s\", \"opsPerSec\": %.1f, \"p99Micros\": %.1f, "
+						+ "\"allocatedBytesPerOp\": %.0f, \"queriesPerOp\": %.2f}%s\n",
+						r.name, r.opsPerSec, r.p99Micros, r.allocatedBytesPerOp, r.queriesPerOp,
+						i < results.size() - 1 ? "," : ""));
+			}
+			writer.write("]\n");
+		}
+	}
+
+
+	static final class Result {
+		final String name;
+		final double opsPerSec;
+		final double p99Micros;
+		final double allocatedBytesPerOp;
+		final double queriesPerOp;
+
+		Result(String name, double opsPerSec, double p99Micros, double allocatedBytesPerOp, double queriesPerOp) {
+			this.name = name;
+			this.opsPerSec = opsPerSec;
+			this.p99Micros = p99Micros;
+			this.allocatedBytesPerOp = allocatedBytesPerOp;
+			this.queriesPerOp = queriesPerOp;
+		}
+
+		@Override
+		public String toString() {
+			return String.format(Locale.ROOT, "%-22s %10.1f ops/s %10.1f us p99 %12.0f bytes/op %6.2f queries/op",
+					name, opsPerSec, p99Micros, allocatedBytesPerOp, queriesPerOp);
+		}
+	}
+}
@@ -0,0 +1,141 @@
+package com.asentinel.common.orm.benchmark.workload;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import com.asentinel.common.jdbc.TypedObjectFactorySupport;
+import com.asentinel.common.orm.AutoEagerLoader;
+import com.asentinel.common.orm.OrmOperations;
+import com.asentinel.common.orm.benchmark.workload.WorkloadEntities.Account;
+import com.asentinel.common.orm.benchmark.workload.WorkloadEntities.Bill;
+import com.asentinel.common.orm.benchmark.workload.WorkloadEntities.Charge;
+import com.asentinel.common.orm.jql.Page;
+import com.asentinel.common.orm.mappers.dynamic.DefaultDynamicColumn;
+import com.asentinel.common.orm.mappers.dynamic.DynamicColumnsEntityNodeCallback;
+import com.asentinel.common.orm.persist.UpdateSettings;
+import com.asentinel.common.orm.persist.UpdateType;
+
+/**
+ * The operations of the throughput workload. Each operation goes through {@link OrmOperations}
+ * and uses a seeded {@code Random}, so the sequence of operations is the same for every run.
+ */
+public class Workload {
+
+	private static final int PAGE_SIZE = 20;
+	private static final int BATCH_SIZE = 10;
+
+	private final OrmOperations orm;
+	private final Random random = new Random(42);
+
+	private final TypedObjectFactorySupport<Bill> billFactory = new TypedObjectFactorySupport<>(Bill.class) {
+
+		@Override
+		public Bill newObject() {
+			return new Bill();
+		}
+	};
+
+	public Workload(OrmOperations orm) {
+		this.orm = orm;
+	}
+
+	/**
+	 * @return the operations by name, in execution order.
+	 */
+	public Map<String, Runnable> getOperations() {
+		Map<String, Runnable> operations = new LinkedHashMap<>();
+		operations.put("pagedSelect", this::pagedSelect);
+		operations.put("graphLoad", this::graphLoad);
+		operations.put("lazyLoad", this::lazyLoad);
+		operations.put("dynamicColumnsSelect", this::dynamicColumnsSelect);
+		operations.put("dynamicColumnsUpdate", this::dynamicColumnsUpdate);
+		operations.put("batchSave", this::batchSave);
+		return operations;
+	}
+
+	private int randomBillId() {
+		return random.nextInt(WorkloadDatabase.BILLS) + 1;
+	}
+
+	void pagedSelect() {
+		int begin = random.nextInt(WorkloadDatabase.BILLS / 2);
+		Page<Bill> page = orm.newSqlBuilder(Bill.class)
+				.pagedSelect(begin, begin + PAGE_SIZE)
+				.pagedWhere().column("total").gt(100)
+				.pagedOrderBy().column("number")
+				.execForPage();
+		check(page.getItems().size() == PAGE_SIZE, "pagedSelect");
+	}
+
+	void graphLoad() {
+		Bill bill = orm.newSqlBuilder(Bill.class)
+				.select(AutoEagerLoader.forPath(Bill.class, Account.class))
+				.where().id().eq(randomBillId())
+				.execForEntity();
+		check(bill.charges.size() == WorkloadDatabase.CHARGES_PER_BILL
+				&& bill.account.getServiceTypes().size() == 2, "graphLoad");
+	}
+
+	void lazyLoad() {
+		Bill bill = orm.getEntity(Bill.class, randomBillId());
+		check(bill.account.getName() != null, "lazyLoad");
+	}
+
+	void dynamicColumnsSelect() {
+		int accountId = random.nextInt(WorkloadDatabase.ACCOUNTS) + 1;
+		List<Bill> bills = orm.newSqlBuilder(Bill.class)
+				.select(new DynamicColumnsEntityNodeCallback<DefaultDynamicColumn, Bill>(billFactory, WorkloadEntities.DYNAMIC_COLUMNS))
+				.where().column("account_id").eq(accountId)
+				.exec();
+		check(bills.size() == WorkloadDatabase.BILLS_PER_ACCOUNT 
+				&& bills.get(0).getValue(WorkloadEntities.CUSTOM_TEXT) != null, "dynamicColumnsSelect");
+	}
+
+	void dynamicColumnsUpdate() {
+		Bill bill = orm.getEntity(Bill.class, randomBillId());
+		bill.setValue(WorkloadEntities.CUSTOM_TEXT, "custom " + bill.id);
+		bill.setValue(WorkloadEntities.CUSTOM_AMOUNT, BigDecimal.valueOf(bill.id % 100));
+		orm.update(bill, new UpdateSettings<>(UpdateType.UPDATE, WorkloadEntities.DYNAMIC_COLUMNS));
+	}
+
+	/**
+	 * Saves a batch of new charges and a batch of existing charges, then deletes the new ones
+	 * so that the data does not grow.
+	 */
+	void batchSave() {
+		int billId = randomBillId();
+		List<Charge> charges = new ArrayList<>(2 * BATCH_SIZE);
+		for (int i = 0; i < BATCH_SIZE; i++) {
+			Charge charge = new Charge();
+			charge.billId = billId;
+			charge.description = "new charge " + i;
+			charge.amount = BigDecimal.valueOf(i);
+			charges.add(charge);
+		}
+		int firstExisting = random.nextInt(WorkloadDatabase.BILLS * WorkloadDatabase.CHARGES_PER_BILL - BATCH_SIZE) + 1;
+		for (int id = firstExisting; id < firstExisting + BATCH_SIZE; id++) {
+			Charge charge = new Charge();
+			charge.id = id;
+			charge.billId = (id - 1) / WorkloadDatabase.CHARGES_PER_BILL + 1;
+			charge.description = "charge " + (id - 1) % WorkloadDatabase.CHARGES_PER_BILL;
+			charge.amount = BigDecimal.valueOf((id - 1) % WorkloadDatabase.CHARGES_PER_BILL * 10);
+			charges.add(charge);
+		}
+		orm.update(charges);
+		Object[] newIds = new Object[BATCH_SIZE];
+		for (int i = 0; i < BATCH_SIZE; i++) {
+			newIds[i] = charges.get(i).id;
+		}
+		check(orm.delete(Charge.class, newIds) == BATCH_SIZE, "batchSave");
+	}
+
+	private static void check(boolean condition, String operation) {
+		if (!condition) {
+			throw new IllegalStateException("Unexpected results for the " + operation + " operation.");
+		}
+	}
+}
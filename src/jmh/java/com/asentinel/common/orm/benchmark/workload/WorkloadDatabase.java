@@ -0,0 +1,81 @@
+package com.asentinel.common.orm.benchmark.workload;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import com.asentinel.common.jdbc.SqlQueryTemplate;
+import com.asentinel.common.jdbc.flavors.h2.H2JdbcFlavor;
+import com.asentinel.common.orm.OrmOperations;
+import com.asentinel.common.orm.OrmTemplate;
+import com.asentinel.common.orm.ed.tree.DefaultEntityDescriptorTreeRepository;
+import com.asentinel.common.orm.jql.DefaultSqlBuilderFactory;
+import com.asentinel.common.orm.persist.SimpleUpdater;
+import com.asentinel.common.orm.query.DefaultSqlFactory;
+
+/**
+ * In memory H2 database with the schema and the generated data of the throughput workload.
+ */
+public class WorkloadDatabase {
+
+	public static final int SERVICE_TYPES = 5;
+	public static final int ACCOUNTS = 200;
+	public static final int BILLS_PER_ACCOUNT = 10;
+	public static final int CHARGES_PER_BILL = 5;
+	public static final int BILLS = ACCOUNTS * BILLS_PER_ACCOUNT;
+
+	private final CountingDataSource dataSource;
+	private final OrmOperations orm;
+
+	public WorkloadDatabase() {
+		dataSource = new CountingDataSource(new DriverManagerDataSource("jdbc:h2:mem:workload;DB_CLOSE_DELAY=-1"));
+		H2JdbcFlavor jdbcFlavor = new H2JdbcFlavor();
+		SqlQueryTemplate sqlQuery = new SqlQueryTemplate(jdbcFlavor, dataSource);
+		DefaultEntityDescriptorTreeRepository treeRepository = new DefaultEntityDescriptorTreeRepository(jdbcFlavor);
+		DefaultSqlBuilderFactory sqlBuilderFactory = new DefaultSqlBuilderFactory(
+				treeRepository, new DefaultSqlFactory(jdbcFlavor), sqlQuery);
+		treeRepository.setSqlBuilderFactory(sqlBuilderFactory);
+		orm = new OrmTemplate(sqlBuilderFactory, new SimpleUpdater(jdbcFlavor, sqlQuery));
+		createSchema(new JdbcTemplate(dataSource));
+	}
+
+	private static void createSchema(JdbcTemplate jdbcTemplate) {
+		jdbcTemplate.execute("drop all objects");
+		jdbcTemplate.execute("create table wl_service_type(id int primary key, name varchar(50))");
+		jdbcTemplate.execute("create table wl_account(id int primary key, name varchar(50), status varchar(10))");
+		jdbcTemplate.execute("create table wl_account_service_type(account_id int, service_type_id int)");
+		jdbcTemplate.execute("create table wl_bill(id int primary key, account_id int, number varchar(20), "
+				+ "bill_date timestamp, total decimal(12, 2), custom_text varchar(50), custom_amount decimal(12, 2))");
+		jdbcTemplate.execute("create table wl_charge(id int generated by default as identity primary key, "
+				+ "bill_id int, description varchar(50), amount decimal(12, 2))");
+		jdbcTemplate.execute("create index wl_charge_bill on wl_charge(bill_id)");
+		jdbcTemplate.execute("create index wl_mtm_account on wl_account_service_type(account_id)");
+
+		for (int i = 1; i <= SERVICE_TYPES; i++) {
+			jdbcTemplate.update("insert into wl_service_type values (?, ?)", i, "service type " + i);
+		}
+		int billId = 1;
+		for (int i = 1; i <= ACCOUNTS; i++) {
+			jdbcTemplate.update("insert into wl_account values (?, ?, ?)", i, "account " + i, i % 3 == 0 ? "closed" : "open");
+			jdbcTemplate.update("insert into wl_account_service_type values (?, ?), (?, ?)",
+					i, i % SERVICE_TYPES + 1, i, (i + 1) % SERVICE_TYPES + 1);
+			for (int j = 0; j < BILLS_PER_ACCOUNT; j++) {
+				jdbcTemplate.update("insert into wl_bill values (?, ?, ?, ?, ?, ?, ?)",
+						billId, i, "B" + billId, new java.sql.Timestamp(j * 86_400_000L), billId % 1000,
+						"custom " + billId, billId % 100);
+				for (int k = 0; k < CHARGES_PER_BILL; k++) {
+					jdbcTemplate.update("insert into wl_charge(bill_id, description, amount) values (?, ?, ?)",
+							billId, "charge " + k, k * 10);
+				}
+				billId++;
+			}
+		}
+	}
+
+	public CountingDataSource getDataSource() {
+		return dataSource;
+	}
+
+	public OrmOperations getOrm() {
+		return orm;
+	}
+}
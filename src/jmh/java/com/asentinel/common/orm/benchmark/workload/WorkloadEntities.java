@@ -0,0 +1,118 @@
+package com.asentinel.common.orm.benchmark.workload;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.asentinel.common.orm.FetchType;
+import com.asentinel.common.orm.RelationType;
+import com.asentinel.common.orm.mappers.Child;
+import com.asentinel.common.orm.mappers.Column;
+import com.asentinel.common.orm.mappers.PkColumn;
+import com.asentinel.common.orm.mappers.Table;
+import com.asentinel.common.orm.mappers.dynamic.DefaultDynamicColumn;
+import com.asentinel.common.orm.mappers.dynamic.DynamicColumnsEntity;
+
+/**
+ * The entities of the throughput workload: accounts with many to many service types,
+ * bills with dynamic columns, a lazily loaded account and a collection of charges.
+ */
+public final class WorkloadEntities {
+
+	public static final DefaultDynamicColumn CUSTOM_TEXT = new DefaultDynamicColumn("custom_text", String.class);
+	public static final DefaultDynamicColumn CUSTOM_AMOUNT = new DefaultDynamicColumn("custom_amount", BigDecimal.class);
+	public static final List<DefaultDynamicColumn> DYNAMIC_COLUMNS = List.of(CUSTOM_TEXT, CUSTOM_AMOUNT);
+
+	private WorkloadEntities() {}
+
+	@Table("wl_service_type")
+	public static class ServiceType {
+
+		@PkColumn("id")
+		int id;
+
+		@Column("name")
+		String name;
+	}
+
+	@Table("wl_account")
+	public static class Account {
+
+		@PkColumn("id")
+		int id;
+
+		@Column("name")
+		String name;
+
+		@Column("status")
+		String status;
+
+		@Child(parentRelationType = RelationType.MANY_TO_MANY, manyToManyTable = "wl_account_service_type",
+				manyToManyLeftFkName = "account_id", manyToManyRightFkName = "service_type_id")
+		List<ServiceType> serviceTypes;
+
+		public int getId() {
+			return id;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public List<ServiceType> getServiceTypes() {
+			return serviceTypes;
+		}
+	}
+
+	@Table("wl_charge")
+	public static class Charge {
+
+		@PkColumn("id")
+		int id;
+
+		@Column("bill_id")
+		int billId;
+
+		@Column("description")
+		String description;
+
+		@Column("amount")
+		BigDecimal amount;
+	}
+
+	@Table("wl_bill")
+	public static class Bill implements DynamicColumnsEntity<DefaultDynamicColumn> {
+
+		@PkColumn("id")
+		int id;
+
+		@Column("number")
+		String number;
+
+		@Column("bill_date")
+		Date billDate;
+
+		@Column("total")
+		BigDecimal total;
+
+		@Child(fkName = "account_id", fetchType = FetchType.LAZY)
+		Account account;
+
+		@Child(parentRelationType = RelationType.MANY_TO_ONE, fkName = "bill_id")
+		List<Charge> charges;
+
+		private final Map<DefaultDynamicColumn, Object> values = new HashMap<>();
+
+		@Override
+		public void setValue(DefaultDynamicColumn column, Object value) {
+			values.put(column, value);
+		}
+
+		@Override
+		public Object getValue(DefaultDynamicColumn column) {
+			return values.get(column);
+		}
+	}
+}
@@ -38,6 +38,7 @@ import org.springframework.core.convert.TypeDescriptor;
 import org.springframework.jdbc.core.RowMapper;
 
 import com.asentinel.common.orm.proxy.InputStreamProxy;
+import com.asentinel.common.util.Assert;
 
 /**
  * Class that handles conversion of the JDBC types to java types. This is
@@ -67,6 +68,16 @@ public abstract class ConversionSupport extends LobHandlerSupport {
 	public void setConversionService(ConversionService conversionService) {
 		this.conversionService = conversionService;
 	}
+	
+	/**
+	 * Copies the {@code SqlQuery}, the {@code LobHandler} and the {@code ConversionService}
+	 * of the {@code source} instance to this instance. Intended for copy constructors.
+	 */
+	protected final void copyConversionSupport(ConversionSupport source) {
+		Assert.assertNotNull(source, "source");
+		copyLobHandlerSupport(source);
+		this.conversionService = source.conversionService;
+	}
 
 	protected final Object getValueInternal(Object parentObject, TypeDescriptor targetDescriptor, ResultSet rs, ColumnMetadata columnMetadata) throws SQLException {
 		try {
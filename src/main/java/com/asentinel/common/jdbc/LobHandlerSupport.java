@@ -70,6 +70,23 @@ abstract class LobHandlerSupport {
 	public final synchronized void setLobHandler(LobHandler lobHandler) {
 		this.lobHandler = lobHandler;
 	}
+	
+	/**
+	 * Copies the {@code SqlQuery} and the {@code LobHandler} of the {@code source} instance
+	 * to this instance. The {@code LobHandler} is not lazy initialized if not set.
+	 */
+	final void copyLobHandlerSupport(LobHandlerSupport source) {
+		SqlQuery queryEx;
+		LobHandler lobHandler;
+		synchronized (source) {
+			queryEx = source.queryEx;
+			lobHandler = source.lobHandler;
+		}
+		synchronized (this) {
+			this.queryEx = queryEx;
+			this.lobHandler = lobHandler;
+		}
+	}
 
 }
  
\ No newline at end of file
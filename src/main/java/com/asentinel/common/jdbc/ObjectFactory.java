@@ -12,11 +12,8 @@ package com.asentinel.common.jdbc;
  */
 public interface ObjectFactory<T> {
 	
-	// TODO: add support for building objects without a no-args contructor
-	// we need this in order to create immutable (all fields final) objects
-	// from the ORM
-	// An idea would be to extend this interface and have a varargs method newObject(Object ... parameters)
-	// that would call the contructor with the right arguments
+	// Objects without a no-args constructor (immutable entities) are created by
+	// com.asentinel.common.orm.mappers.EntityConstructor#newObject(Object...)
 	
 	T newObject() throws IllegalStateException;
 }
@@ -0,0 +1,233 @@
+package com.asentinel.common.jdbc;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.asentinel.common.util.Assert;
+
+/**
+ * {@link SqlQuery} implementation that sends the read queries to a read replica and everything
+ * else to the primary database. A query is executed on the replica only if:
+ * <li>there is no actual transaction active on the current thread, the transactional reads
+ * 		stay on the primary so they see the data written in the transaction and they are consistent
+ * 		with it.
+ * <li>the current session did not write to the primary in the last {@link #getReadYourWritesWindow()}
+ * 		milliseconds, so the session reads its own writes even if the replica is lagging.
+ * <br><br>
+ * The {@code update} methods are executed on the primary and they mark the current session
+ * as a writer. {@link #getJdbcOperations()} returns the primary {@code JdbcOperations} without marking the session,
+ * the callers that write through it must call {@link #markWrite()}, like the 
+ * {@link com.asentinel.common.orm.persist.SimpleUpdater} does for its batch writes.
+ * <br><br>
+ * The session is identified by the session resolver, see {@link #setSessionResolver(Supplier)}. By default
+ * the session is the current thread.
+ * <br><br>
+ * This class should be configured using the set methods and after that it should not be changed.
+ *
+ * @see com.asentinel.common.orm.config.OrmConfig#REPLICA_DATA_SOURCE_BEAN_NAME
+ */
+public class ReplicaRoutingSqlQuery implements SqlQuery {
+	private final static Logger log = LoggerFactory.getLogger(ReplicaRoutingSqlQuery.class);
+
+	/**
+	 * The default read your writes window in milliseconds.
+	 */
+	public final static long DEFAULT_READ_YOUR_WRITES_WINDOW = 5000;
+
+	final static int MAX_TRACKED_SESSIONS = 10_000;
+
+	private final static Supplier<Object> THREAD_SESSION_RESOLVER = () -> Thread.currentThread().getId();
+
+	private final SqlQuery primary;
+	private final SqlQuery replica;
+
+	private long readYourWritesWindowNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_READ_YOUR_WRITES_WINDOW);
+	private Supplier<?> sessionResolver = THREAD_SESSION_RESOLVER;
+
+	// session -> System.nanoTime() of the last write
+	private final ConcurrentMap<Object, Long> lastWrites = new ConcurrentHashMap<>();
+
+	public ReplicaRoutingSqlQuery(SqlQuery primary, SqlQuery replica) {
+		Assert.assertNotNull(primary, "primary");
+		Assert.assertNotNull(replica, "replica");
+		this.primary = primary;
+		this.replica = replica;
+	}
+
+	public SqlQuery getPrimary() {
+		return primary;
+	}
+
+	public SqlQuery getReplica() {
+		return replica;
+	}
+
+	/**
+	 * @return the read your writes window in milliseconds.
+	 */
+	public long getReadYourWritesWindow() {
+		return TimeUnit.NANOSECONDS.toMillis(readYourWritesWindowNanos);
+	}
+
+	/**
+	 * Sets the period after a write during which the reads of the session that wrote
+	 * are executed on the primary. It should be greater than the usual replication lag, the default
+	 * is {@link #DEFAULT_READ_YOUR_WRITES_WINDOW}.
+	 *
+	 * @param millis the window in milliseconds, {@code 0} disables the read your writes guarantee.
+	 */
+	public void setReadYourWritesWindow(long millis) {
+		Assert.assertTrue(millis >= 0, "The read your writes window can not be negative.");
+		this.readYourWritesWindowNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+	}
+
+	public Supplier<?> getSessionResolver() {
+		return sessionResolver;
+	}
+
+	/**
+	 * Sets the function that identifies the current session, for example the HTTP session id
+	 * of the current request. If the resolver returns {@code null} the current thread is used.
+	 */
+	public void setSessionResolver(Supplier<?> sessionResolver) {
+		Assert.assertNotNull(sessionResolver, "sessionResolver");
+		this.sessionResolver = sessionResolver;
+	}
+
+	private Object getSession() {
+		Object session = sessionResolver.get();
+		return session != null ? session : THREAD_SESSION_RESOLVER.get();
+	}
+
+	/**
+	 * Marks the current session as a writer, its reads are executed on the primary
+	 * for the read your writes window. The writes performed through this object are
+	 * tracked automatically, this method should be called for writes performed by other means.
+	 */
+	public void markWrite() {
+		if (readYourWritesWindowNanos == 0) {
+			return;
+		}
+		long now = System.nanoTime();
+		if (lastWrites.size() >= MAX_TRACKED_SESSIONS) {
+			lastWrites.values().removeIf(last -> now - last >= readYourWritesWindowNanos);
+		}
+		lastWrites.put(getSession(), now);
+	}
+
+	/**
+	 * @return the target for a read query.
+	 */
+	SqlQuery getReadTarget() {
+		if (TransactionSynchronizationManager.isActualTransactionActive()) {
+			if (log.isTraceEnabled()) {
+				log.trace("getReadTarget - Transaction active, reading from the primary.");
+			}
+			return primary;
+		}
+		if (readYourWritesWindowNanos > 0) {
+			Object session = getSession();
+			Long last = lastWrites.get(session);
+			if (last != null) {
+				if (System.nanoTime() - last < readYourWritesWindowNanos) {
+					if (log.isTraceEnabled()) {
+						log.trace("getReadTarget - Recent write for session " + session + ", reading from the primary.");
+					}
+					return primary;
+				}
+				lastWrites.remove(session, last);
+			}
+		}
+		return replica;
+	}
+
+	@Override
+	public <T> List<T> query(String sql, RowMapper<T> mapper, Object... inParams) throws DataAccessException {
+		return getReadTarget().query(sql, mapper, inParams);
+	}
+
+	@Override
+	public void query(String sql, RowCallbackHandler handler, Object... inParams) throws DataAccessException {
+		getReadTarget().query(sql, handler, inParams);
+	}
+
+	@Override
+	public void queryMultiple(String[] sqls, RowCallbackHandler[] handlers, Object[][] inParams) throws DataAccessException {
+		getReadTarget().queryMultiple(sqls, handlers, inParams);
+	}
+
+	@Override
+	public <T> List<T> query(String sql, Class<T> clasz, Object... inParams) throws DataAccessException {
+		return getReadTarget().query(sql, clasz, inParams);
+	}
+
+	@Override
+	public <T> T queryForObject(String sql, RowMapper<T> mapper, Object... inParams) throws DataAccessException {
+		return getReadTarget().queryForObject(sql, mapper, inParams);
+	}
+
+	@Override
+	public <T> T queryForObject(String sql, Class<T> clasz, Object... inParams) throws DataAccessException {
+		return getReadTarget().queryForObject(sql, clasz, inParams);
+	}
+
+	@Override
+	public int queryForInt(String sql, Object... inParams) throws DataAccessException {
+		return getReadTarget().queryForInt(sql, inParams);
+	}
+
+	@Override
+	public long queryForLong(String sql, Object... inParams) throws DataAccessException {
+		return getReadTarget().queryForLong(sql, inParams);
+	}
+
+	@Override
+	public String queryForString(String sql, Object... inParams) throws DataAccessException {
+		return getReadTarget().queryForString(sql, inParams);
+	}
+
+	@Override
+	public Map<String, Object> queryForMap(String sql, Object... inParams) throws DataAccessException {
+		return getReadTarget().queryForMap(sql, inParams);
+	}
+
+	@Override
+	public int update(String sql, Object... inParams) throws DataAccessException {
+		markWrite();
+		return primary.update(sql, inParams);
+	}
+
+	@Override
+	public int update(String sql, String[] keyColumnNames, KeyHolder keyHolder, Object... inParamsUpdate) throws DataAccessException {
+		markWrite();
+		return primary.update(sql, keyColumnNames, keyHolder, inParamsUpdate);
+	}
+
+	/**
+	 * @return the primary {@code JdbcOperations}. The current session is not marked as a writer, 
+	 * 			see {@link #markWrite()}.
+	 */
+	@Override
+	public JdbcOperations getJdbcOperations() {
+		return primary.getJdbcOperations();
+	}
+
+	@Override
+	public String toString() {
+		return "ReplicaRoutingSqlQuery [primary=" + primary + ", replica=" + replica
+				+ ", readYourWritesWindow=" + getReadYourWritesWindow() + "]";
+	}
+}
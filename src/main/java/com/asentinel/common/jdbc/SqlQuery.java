@@ -13,6 +13,8 @@ import org.springframework.jdbc.core.SqlParameterValue;
 import org.springframework.jdbc.core.SqlTypeValue;
 import org.springframework.jdbc.support.KeyHolder;
 
+import com.asentinel.common.util.Assert;
+
 /**
  * Central interface that defines the methods for executing sql queries. Implementations
  * normally delegate to the Spring JDBC interface {@link JdbcOperations},
@@ -59,6 +61,29 @@ public interface SqlQuery {
 	 */
 	void query(String sql, RowCallbackHandler handler, Object ... inParams) throws DataAccessException;
 	
+	/**
+	 * Executes multiple SELECT sql queries, the rows of each query are processed by the corresponding
+	 * {@link RowCallbackHandler}. Implementations may send all the queries to the database in a single
+	 * round trip if the database supports multiple result sets for a statement. This default implementation
+	 * executes the queries one after the other using {@link #query(String, RowCallbackHandler, Object...)}.
+	 * 
+	 * @param sqls the queries to be executed.
+	 * @param handlers the {@link RowCallbackHandler}s, one for each query.
+	 * @param inParams the input parameters, one array for each query.
+	 * 
+	 * @see com.asentinel.common.jdbc.flavors.JdbcFlavor#isMultipleResultSetsSupported()
+	 */
+	default void queryMultiple(String[] sqls, RowCallbackHandler[] handlers, Object[][] inParams) throws DataAccessException {
+		Assert.assertNotNull(sqls, "sqls");
+		Assert.assertNotNull(handlers, "handlers");
+		Assert.assertNotNull(inParams, "inParams");
+		Assert.assertTrue(sqls.length == handlers.length && sqls.length == inParams.length, 
+				"The sqls, handlers and inParams arrays must have the same length.");
+		for (int i = 0; i < sqls.length; i++) {
+			query(sqls[i], handlers[i], inParams[i]);
+		}
+	}
+	
 	/**
 	 * Executes a SELECT query in the same conditions as {@link #query(String, RowMapper, Object...)}
 	 * but has a Class parameter instead of {@link RowMapper}. Implementations will normally
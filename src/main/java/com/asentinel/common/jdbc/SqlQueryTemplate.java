@@ -3,7 +3,10 @@ package com.asentinel.common.jdbc;
 import static com.asentinel.common.util.Assert.assertNotNull;
 
 import java.math.BigDecimal;
+import java.sql.ResultSet;
 import java.time.temporal.Temporal;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
@@ -14,14 +17,18 @@ import org.slf4j.LoggerFactory;
 import org.springframework.dao.DataAccessException;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
 import org.springframework.jdbc.core.JdbcOperations;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCallback;
 import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.support.KeyHolder;
 
 import com.asentinel.common.jdbc.flavors.JdbcFlavor;
 import com.asentinel.common.jdbc.flavors.JdbcFlavorConfig;
+import com.asentinel.common.orm.jfr.QueryEvent;
+import com.asentinel.common.orm.metrics.OrmMetricsRegistry;
 import com.asentinel.common.util.Assert;
 import com.asentinel.common.util.Utils;
 
@@ -159,13 +166,20 @@ public class SqlQueryTemplate implements SqlQuery {
 				log.trace("query - mapper: {}", rsProcessor);
 			} else if (rsProcessor instanceof RowCallbackHandler) {
 				log.trace("query - handler: {}", rsProcessor);
+			} else if (rsProcessor instanceof RowCallbackHandler[]) {
+				log.trace("query - handlers: {}", Arrays.toString((RowCallbackHandler[]) rsProcessor));
 			} else {
 				log.trace("query - Unknown resultset processor: {}", rsProcessor);
 			}
 		}
 	}
 	
-	private void logAfter(int size, long t0, long t1) {
+	private void logAfter(QueryEvent event, String sql, int paramCount, int size, long t0, long t1) {
+		OrmMetricsRegistry.get().onQueryExecuted(sql, t1 - t0, size);
+		if (event.shouldCommit()) {
+			event.set(sql, paramCount, size);
+			event.commit();
+		}
 		if (log.isTraceEnabled()) {
 			int fetchSize = -1;
 			if (this.jdbcOperations instanceof JdbcTemplate) {
@@ -188,10 +202,12 @@ public class SqlQueryTemplate implements SqlQuery {
 		Assert.assertNotNull(mapper, "mapper");
 		inParams = preprocessInParams(inParams);
 		logBefore(sql, mapper, inParams);
+		QueryEvent event = new QueryEvent();
+		event.begin();
 		long t0 = System.nanoTime();
 		List<T> list = jdbcOperations.query(sql, mapper, inParams);
 		long t1 = System.nanoTime();
-		logAfter(list.size(), t0, t1);
+		logAfter(event, sql, inParams.length, list.size(), t0, t1);
 		return list;
 	}
 	
@@ -201,11 +217,75 @@ public class SqlQueryTemplate implements SqlQuery {
 		Assert.assertNotNull(handler, "handler");
 		inParams = preprocessInParams(inParams);
 		logBefore(sql, handler, inParams);
+		QueryEvent event = new QueryEvent();
+		event.begin();
 		long t0 = System.nanoTime();
 		RowCallbackHandlerDecorator handlerDecorator = new RowCallbackHandlerDecorator(handler);
 		jdbcOperations.query(sql, handlerDecorator, inParams);
 		long t1 = System.nanoTime();
-		logAfter(handlerDecorator.size(), t0, t1);
+		logAfter(event, sql, inParams.length, handlerDecorator.size(), t0, t1);
+	}
+	
+	/**
+	 * If the {@link JdbcFlavor} supports multiple result sets (see {@link JdbcFlavor#isMultipleResultSetsSupported()}),
+	 * the queries are joined in a single statement and executed in a single round trip to the database. Otherwise
+	 * the queries are executed one after the other.
+	 */
+	@Override
+	public void queryMultiple(String[] sqls, RowCallbackHandler[] handlers, Object[][] inParams) throws DataAccessException {
+		if (sqls == null || sqls.length < 2 || !jdbcFlavor.isMultipleResultSetsSupported()) {
+			SqlQuery.super.queryMultiple(sqls, handlers, inParams);
+			return;
+		}
+		Assert.assertNotNull(handlers, "handlers");
+		Assert.assertNotNull(inParams, "inParams");
+		Assert.assertTrue(sqls.length == handlers.length && sqls.length == inParams.length, 
+				"The sqls, handlers and inParams arrays must have the same length.");
+		StringBuilder sb = new StringBuilder();
+		List<Object> params = new ArrayList<>();
+		for (int i = 0; i < sqls.length; i++) {
+			Assert.assertNotNull(sqls[i], "sql");
+			Assert.assertNotNull(handlers[i], "handler");
+			if (i > 0) {
+				sb.append(";\n");
+			}
+			sb.append(sqls[i]);
+			params.addAll(Arrays.asList(preprocessInParams(inParams[i])));
+		}
+		String sql = sb.toString();
+		Object[] allParams = params.toArray();
+		logBefore(sql, handlers, allParams);
+		QueryEvent event = new QueryEvent();
+		event.begin();
+		long t0 = System.nanoTime();
+		PreparedStatementCallback<Integer> callback = ps -> {
+			boolean resultSet = ps.execute();
+			int index = 0;
+			int size = 0;
+			while (resultSet || ps.getUpdateCount() != -1) {
+				if (resultSet) {
+					if (index >= handlers.length) {
+						throw new InvalidDataAccessApiUsageException("More result sets than queries were returned.");
+					}
+					RowCallbackHandlerDecorator handlerDecorator = new RowCallbackHandlerDecorator(handlers[index++]);
+					try (ResultSet rs = ps.getResultSet()) {
+						while (rs.next()) {
+							handlerDecorator.processRow(rs);
+						}
+					}
+					size += handlerDecorator.size();
+				}
+				resultSet = ps.getMoreResults();
+			}
+			if (index != handlers.length) {
+				throw new InvalidDataAccessApiUsageException("Expected " + handlers.length 
+						+ " result sets, but " + index + " were returned.");
+			}
+			return size;
+		};
+		Integer size = jdbcOperations.execute(new CustomPreparedStatementCreator(jdbcFlavor, sql, allParams), callback);
+		long t1 = System.nanoTime();
+		logAfter(event, sql, allParams.length, size == null ? 0 : size, t0, t1);
 	}
 	
 	@Override
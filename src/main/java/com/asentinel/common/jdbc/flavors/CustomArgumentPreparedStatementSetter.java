@@ -40,6 +40,13 @@ public class CustomArgumentPreparedStatementSetter implements PreparedStatementS
 		this.args = args;
 	}
 
+	/**
+	 * @return the statement arguments.
+	 */
+	public Object[] getArgs() {
+		return args;
+	}
+
 	@Override
 	public void setValues(PreparedStatement ps) throws SQLException {
 		lobCreator = jdbcFlavor.getPreparedStatementParametersSetter().setParameters(ps, lobCreator, args);
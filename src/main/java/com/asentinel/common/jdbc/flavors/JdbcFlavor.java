@@ -55,4 +55,14 @@ public interface JdbcFlavor {
 	default String[] preprocessKeyColumnNames(String ... keyColumnNames) {
 		return keyColumnNames;
 	}
+	
+	/**
+	 * @return {@code true} if multiple {@code SELECT} statements separated by {@code ;} can be executed
+	 * 			as a single prepared statement returning a result set for each statement, {@code false} otherwise.
+	 * 
+	 * @see com.asentinel.common.jdbc.SqlQuery#queryMultiple(String[], org.springframework.jdbc.core.RowCallbackHandler[], Object[][])
+	 */
+	default boolean isMultipleResultSetsSupported() {
+		return false;
+	}
 }
@@ -49,6 +49,16 @@ public interface SqlTemplates {
 	
 	String getSqlForInArray();
 	
+	/**
+	 * @param elementType the java type of the array elements.
+	 * @return the SQL type name of an array with elements of the specified type that can be used with the
+	 * 			{@link #getSqlForInArray()} SQL, or {@code null} if such an array is not supported. The default
+	 * 			implementation returns {@code null}.
+	 */
+	default String getSqlArrayTypeName(Class<?> elementType) {
+		return null;
+	}
+	
 	String getSqlForCaseSensitiveColumn(String tableAlias, String separator, String column);
 	
 	String getSqlForCaseInsensitiveColumn(String tableAlias, String separator, String column);
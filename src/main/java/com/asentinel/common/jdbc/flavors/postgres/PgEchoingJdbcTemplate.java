@@ -1,9 +1,21 @@
 package com.asentinel.common.jdbc.flavors.postgres;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.SQLWarning;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 import javax.sql.DataSource;
 
@@ -12,14 +24,21 @@ import org.postgresql.util.PSQLWarning;
 import org.postgresql.util.ServerErrorMessage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.SQLWarningException;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterDisposer;
 import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.ResultSetExtractor;
 import org.springframework.jdbc.support.SQLErrorCodeSQLExceptionTranslator;
 import org.springframework.jdbc.support.SQLExceptionTranslator;
 
 import com.asentinel.common.jdbc.flavors.CustomArgumentPreparedStatementSetter;
 import com.asentinel.common.jdbc.flavors.JdbcFlavor;
+import com.asentinel.common.orm.jfr.QueryEvent;
+import com.asentinel.common.orm.metrics.OrmMetricsRegistry;
+import com.asentinel.common.orm.metrics.SlowQuery;
+import com.asentinel.common.util.Assert;
 
 /**
  * Extension of the {@link JdbcTemplate} class that echoes the messages raised
@@ -31,9 +50,17 @@ import com.asentinel.common.jdbc.flavors.JdbcFlavor;
  * {@link PostgresJdbcFlavor} is used.
  * <li>sets the {@code SQLExceptionTranslator} to a default
  * {@link PgBetterSQLExceptionTranslator}.
+ * <li>capturing the queries slower than a threshold together with their bind values
+ * and their {@code EXPLAIN (FORMAT JSON)} plan, see {@link #setSlowQueryThreshold(long)}.
+ * The captures are logged using the {@code DB-SLOW} logger and passed to the
+ * {@link com.asentinel.common.orm.metrics.OrmMetrics#onSlowQuery(SlowQuery)} SPI. Only the queries
+ * executed through the {@code query} methods taking a SQL string are timed, the statements executed through the
+ * {@code execute} and {@code update} methods are not, for example the joined statements of 
+ * {@link com.asentinel.common.jdbc.SqlQuery#queryMultiple(String[], org.springframework.jdbc.core.RowCallbackHandler[], Object[][])}.
  * 
  * @see #LOGGER_ECHO
  * @see #LOGGER_PID
+ * @see #LOGGER_SLOW
  * 
  * @author Razvan Popian
  */
@@ -52,8 +79,35 @@ public class PgEchoingJdbcTemplate extends JdbcTemplate {
 	private final static Logger logPid = LoggerFactory.getLogger(LOGGER_PID);
 	
 	
+	/**
+	 * The name of the logger used for the slow queries.
+	 */
+	public final static String LOGGER_SLOW = "DB-SLOW";
+	private final static Logger logSlow = LoggerFactory.getLogger(LOGGER_SLOW);
+	
+	/**
+	 * Bind value redactor that hides all the values, this is the default.
+	 */
+	public final static Function<Object, String> REDACT_ALL = value -> "?";
+
+	/**
+	 * Bind value redactor that renders only the type of the values.
+	 */
+	public final static Function<Object, String> REDACT_VALUES = value -> value == null ? "null" : value.getClass().getSimpleName();
+
+	/**
+	 * Bind value redactor that renders the values as they are.
+	 */
+	public final static Function<Object, String> NO_REDACTION = String::valueOf;
+	
 	final static String LOG_MESSAGE_TEMPLATE = "%s: %s";
 	
+	final static String EXPLAIN_PREFIX = "EXPLAIN (FORMAT JSON) ";
+	
+	final static int MAX_TRACKED_FINGERPRINTS = 1024;
+	
+	final static int MAX_PENDING_CAPTURES = 64;
+	
 	final static String NO_MESSAGE = "Unknown error.";
 	
 	/*
@@ -62,8 +116,27 @@ public class PgEchoingJdbcTemplate extends JdbcTemplate {
 	 */
 	private final static SQLExceptionTranslator NOT_INITIALIZED = (task, sql, ex) -> null;
 	
+	private static volatile Executor defaultSlowQueryExecutor;
+	
 	private JdbcFlavor jdbcFlavor = new PostgresJdbcFlavor();
 	
+	private long slowQueryThresholdNanos = -1;
+	private long slowQueryCaptureIntervalNanos = TimeUnit.MINUTES.toNanos(1);
+	private boolean slowQueryExplain = true;
+	private Function<Object, String> bindValueRedactor = REDACT_ALL;
+	private Executor slowQueryExecutor;
+	
+	// fingerprint -> System.nanoTime() of the last capture, in access order so the least 
+	// recently seen fingerprint is dropped when the limit is reached
+	private final Map<String, Long> slowQueryCaptures = new LinkedHashMap<String, Long>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+			return size() > MAX_TRACKED_FINGERPRINTS;
+		}
+	};
+	
 	public PgEchoingJdbcTemplate() {
 		setIgnoreWarnings(false);
 		this.setExceptionTranslator(NOT_INITIALIZED);
@@ -90,6 +163,113 @@ public class PgEchoingJdbcTemplate extends JdbcTemplate {
 		this.jdbcFlavor = jdbcFlavor;
 	}	
 	
+	/**
+	 * @return the slow query threshold in milliseconds, negative if the slow queries
+	 * 			are not captured.
+	 */
+	public long getSlowQueryThreshold() {
+		return slowQueryThresholdNanos < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(slowQueryThresholdNanos);
+	}
+
+	/**
+	 * Sets the execution time above which a query is captured, by default the slow queries are
+	 * not captured. The SQL, the bind values rendered by the bind value redactor and the
+	 * plain {@code EXPLAIN (FORMAT JSON)} plan obtained on a separate connection, by the slow query executor 
+	 * (see {@link #setSlowQueryExecutor(Executor)}), are logged as warnings
+	 * using the {@link #LOGGER_SLOW} logger and passed to the registered
+	 * {@link com.asentinel.common.orm.metrics.OrmMetrics}. The captures are rate limited per query
+	 * fingerprint, see {@link #setSlowQueryCaptureInterval(long)}.
+	 * 
+	 * @param millis the threshold in milliseconds, a negative value disables the capture.
+	 */
+	public void setSlowQueryThreshold(long millis) {
+		this.slowQueryThresholdNanos = millis < 0 ? -1 : TimeUnit.MILLISECONDS.toNanos(millis);
+	}
+
+	public long getSlowQueryCaptureInterval() {
+		return TimeUnit.NANOSECONDS.toMillis(slowQueryCaptureIntervalNanos);
+	}
+
+	/**
+	 * Sets the minimum interval between 2 captures of the same query fingerprint,
+	 * the default is 1 minute.
+	 * 
+	 * @param millis the interval in milliseconds.
+	 */
+	public void setSlowQueryCaptureInterval(long millis) {
+		Assert.assertTrue(millis >= 0, "The capture interval can not be negative.");
+		this.slowQueryCaptureIntervalNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+	}
+
+	public boolean isSlowQueryExplain() {
+		return slowQueryExplain;
+	}
+
+	/**
+	 * @param slowQueryExplain whether the plan of the slow queries is captured, the default is {@code true}.
+	 */
+	public void setSlowQueryExplain(boolean slowQueryExplain) {
+		this.slowQueryExplain = slowQueryExplain;
+	}
+
+	public Function<Object, String> getBindValueRedactor() {
+		return bindValueRedactor;
+	}
+
+	/**
+	 * Sets the function that renders the bind values of the slow queries, the
+	 * default is {@link #REDACT_ALL}.
+	 * 
+	 * @see #REDACT_ALL
+	 * @see #REDACT_VALUES
+	 * @see #NO_REDACTION
+	 */
+	public void setBindValueRedactor(Function<Object, String> bindValueRedactor) {
+		Assert.assertNotNull(bindValueRedactor, "bindValueRedactor");
+		this.bindValueRedactor = bindValueRedactor;
+	}
+
+	public Executor getSlowQueryExecutor() {
+		Executor executor = slowQueryExecutor;
+		return executor != null ? executor : getDefaultSlowQueryExecutor();
+	}
+
+	/**
+	 * Sets the executor that captures the slow queries. The capture needs a second connection from the 
+	 * {@code DataSource}, so it should not run in the thread that executed the query, that thread may hold a 
+	 * connection and wait for another one from an exhausted pool. By default a shared executor captures
+	 * one query at a time and drops the captures when {@value #MAX_PENDING_CAPTURES} are pending.
+	 */
+	public void setSlowQueryExecutor(Executor slowQueryExecutor) {
+		Assert.assertNotNull(slowQueryExecutor, "slowQueryExecutor");
+		this.slowQueryExecutor = slowQueryExecutor;
+	}
+	
+	/**
+	 * @return the executor shared by the instances that do not set their own slow
+	 * 			query executor, it is created on the first call.
+	 */
+	private static Executor getDefaultSlowQueryExecutor() {
+		Executor executor = defaultSlowQueryExecutor;
+		if (executor == null) {
+			synchronized (PgEchoingJdbcTemplate.class) {
+				executor = defaultSlowQueryExecutor;
+				if (executor == null) {
+					ThreadPoolExecutor tpe = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+							new ArrayBlockingQueue<>(MAX_PENDING_CAPTURES), r -> {
+								Thread t = new Thread(r, "db-slow-query");
+								t.setDaemon(true);
+								return t;
+							});
+					tpe.allowCoreThreadTimeOut(true);
+					executor = tpe;
+					defaultSlowQueryExecutor = executor;
+				}
+			}
+		}
+		return executor;
+	}
+	
 	// method for helping with testing, do not directly access the log member
 	protected Logger getLogger() {
 		return logEcho;
@@ -144,6 +324,146 @@ public class PgEchoingJdbcTemplate extends JdbcTemplate {
 		}
 	}
 	
+	@Override
+	public <T> T query(String sql, ResultSetExtractor<T> rse) throws DataAccessException {
+		long thresholdNanos = slowQueryThresholdNanos;
+		if (thresholdNanos < 0) {
+			return super.query(sql, rse);
+		}
+		long t0 = System.nanoTime();
+		T result = super.query(sql, rse);
+		long nanos = System.nanoTime() - t0;
+		if (nanos >= thresholdNanos) {
+			onSlowQuery(sql, null, nanos);
+		}
+		return result;
+	}
+
+	@Override
+	public <T> T query(String sql, PreparedStatementSetter pss, ResultSetExtractor<T> rse) throws DataAccessException {
+		long thresholdNanos = slowQueryThresholdNanos;
+		if (thresholdNanos < 0) {
+			return super.query(sql, pss, rse);
+		}
+		long t0 = System.nanoTime();
+		T result = super.query(sql, pss, rse);
+		long nanos = System.nanoTime() - t0;
+		if (nanos >= thresholdNanos) {
+			onSlowQuery(sql, pss, nanos);
+		}
+		return result;
+	}
+	
+	private void onSlowQuery(String sql, PreparedStatementSetter pss, long nanos) {
+		String fingerprint = QueryEvent.fingerprint(sql);
+		if (!shouldCapture(fingerprint)) {
+			if (logSlow.isTraceEnabled()) {
+				logSlow.trace("onSlowQuery - Capture skipped for the query " + fingerprint + ", captured recently.");
+			}
+			return;
+		}
+		// the arguments are copied now, the setter may be reused or cleaned up by the time the capture runs
+		Object[] args;
+		if (pss == null) {
+			args = new Object[0];
+		} else if (pss instanceof CustomArgumentPreparedStatementSetter) {
+			Object[] pssArgs = ((CustomArgumentPreparedStatementSetter) pss).getArgs();
+			args = pssArgs != null ? pssArgs.clone() : new Object[0];
+		} else {
+			// unknown setter, the arguments can not be captured
+			args = null;
+		}
+		Runnable capture = () -> captureSlowQuery(sql, args, fingerprint, nanos);
+		try {
+			getSlowQueryExecutor().execute(capture);
+		} catch (RejectedExecutionException e) {
+			logSlow.warn("onSlowQuery - Capture rejected for the query " + fingerprint + ": " + e.getMessage());
+		}
+	}
+	
+	private boolean shouldCapture(String fingerprint) {
+		long now = System.nanoTime();
+		synchronized (slowQueryCaptures) {
+			Long last = slowQueryCaptures.get(fingerprint);
+			if (last != null && now - last < slowQueryCaptureIntervalNanos) {
+				return false;
+			}
+			slowQueryCaptures.put(fingerprint, now);
+			return true;
+		}
+	}
+	
+	private void captureSlowQuery(String sql, Object[] args, String fingerprint, long nanos) {
+		try {
+			List<String> bindValues = new ArrayList<>();
+			if (args != null) {
+				for (Object arg: args) {
+					bindValues.add(bindValueRedactor.apply(arg));
+				}
+			}
+			String plan = null;
+			if (slowQueryExplain) {
+				if (args != null) {
+					plan = explain(sql, args);
+				} else if (logSlow.isDebugEnabled()) {
+					logSlow.debug("captureSlowQuery - No plan for the query " + fingerprint + ", its arguments are not known.");
+				}
+			}
+			SlowQuery slowQuery = new SlowQuery(sql, fingerprint, nanos, bindValues, plan);
+			logSlow.warn("captureSlowQuery - {}", slowQuery);
+			OrmMetricsRegistry.get().onSlowQuery(slowQuery);
+		} catch (RuntimeException e) {
+			logSlow.error("captureSlowQuery - Failed to capture the slow query " + fingerprint + ".", e);
+		}
+	}
+	
+	/**
+	 * Gets the plan of a query using a connection obtained directly from the {@code DataSource}, so
+	 * the plan is not affected by the state of the current transaction and the transaction is not
+	 * affected if the {@code EXPLAIN} fails. The query is not executed.
+	 * 
+	 * @param sql the query.
+	 * @param args the arguments of the query, copied when the query was executed.
+	 * @return the plan or {@code null} if it could not be obtained.
+	 */
+	protected String explain(String sql, Object[] args) {
+		DataSource dataSource = getDataSource();
+		if (dataSource == null) {
+			return null;
+		}
+		try (Connection connection = dataSource.getConnection();
+				PreparedStatement ps = connection.prepareStatement(getExplainSql(sql))) {
+			PreparedStatementSetter pss = newArgPreparedStatementSetter(args);
+			try {
+				pss.setValues(ps);
+				StringBuilder plan = new StringBuilder();
+				try (ResultSet rs = ps.executeQuery()) {
+					while (rs.next()) {
+						if (plan.length() > 0) {
+							plan.append('\n');
+						}
+						plan.append(rs.getString(1));
+					}
+				}
+				return plan.toString();
+			} finally {
+				if (pss instanceof ParameterDisposer) {
+					((ParameterDisposer) pss).cleanupParameters();
+				}
+			}
+		} catch (SQLException e) {
+			logSlow.warn("explain - Can not get the plan for the query " + sql + ": " + e.getMessage());
+			return null;
+		}
+	}
+	
+	/**
+	 * @return the statement that gets the plan of the {@code sql} query.
+	 */
+	protected String getExplainSql(String sql) {
+		return EXPLAIN_PREFIX + sql;
+	}
+	
 	@Override
 	protected PreparedStatementSetter newArgPreparedStatementSetter(Object[] args) {
 		if (jdbcFlavor == null) {
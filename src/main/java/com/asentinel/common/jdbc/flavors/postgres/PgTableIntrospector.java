@@ -25,12 +25,28 @@ public class PgTableIntrospector implements TableIntrospector {
 			" AND table_name = ?";
 
 	private final SqlQuery queryEx;
-	private final ConcurrentCache<String, Set<String>> columnsCache = new ConcurrentCache<>(); 
+	private final ConcurrentCache<String, Set<String>> columnsCache; 
 	
 
+	/**
+	 * Constructor that creates an unbounded columns cache, the columns of a table are
+	 * introspected only once.
+	 */
 	public PgTableIntrospector(SqlQuery queryEx) {
+		this(queryEx, new ConcurrentCache<>());
+	}
+
+	/**
+	 * Constructor that allows a custom columns cache, for example a cache with a maximum size
+	 * or an expiration time so that the schema changes are eventually picked up.
+	 * 
+	 * @see ConcurrentCache#ConcurrentCache(int, java.time.Duration)
+	 */
+	public PgTableIntrospector(SqlQuery queryEx, ConcurrentCache<String, Set<String>> columnsCache) {
 		Assert.assertNotNull(queryEx, "queryEx");
+		Assert.assertNotNull(columnsCache, "columnsCache");
 		this.queryEx = queryEx;
+		this.columnsCache = columnsCache;
 	}
 
 	@Override
@@ -39,5 +55,21 @@ public class PgTableIntrospector implements TableIntrospector {
 			() -> new HashSet<>(queryEx.query(SELECT_META, ReusableRowMappers.ROW_MAPPER_STRING, table.toLowerCase()))
 		);
 	}
+	
+	/**
+	 * Removes the cached columns of the specified table, they will be introspected again on
+	 * the next call.
+	 */
+	public void invalidate(String table) {
+		columnsCache.remove(table.toLowerCase());
+	}
+	
+	/**
+	 * @return the statistics of the columns cache. The default unbounded cache does not
+	 * 			record statistics, so its counters are {@code 0}.
+	 */
+	public ConcurrentCache.Stats getCacheStats() {
+		return columnsCache.getStats();
+	}
 
 }
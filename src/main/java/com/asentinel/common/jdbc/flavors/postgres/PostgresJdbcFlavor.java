@@ -70,6 +70,15 @@ public class PostgresJdbcFlavor implements JdbcFlavor {
 		return true;
 	}
 	
+	/**
+	 * The Postgres driver splits a statement containing multiple queries and sends them
+	 * to the server in a single round trip.
+	 */
+	@Override
+	public boolean isMultipleResultSetsSupported() {
+		return true;
+	}
+	
 	/**
 	 * Postgres needs lower case keys.
 	 */
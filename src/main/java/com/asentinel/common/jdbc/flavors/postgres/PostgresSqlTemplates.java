@@ -1,5 +1,7 @@
 package com.asentinel.common.jdbc.flavors.postgres;
 
+import java.util.UUID;
+
 import org.springframework.util.StringUtils;
 
 import com.asentinel.common.jdbc.flavors.SqlTemplates;
@@ -133,6 +135,19 @@ public class PostgresSqlTemplates implements SqlTemplates {
 		return SQL_IN_ARRAY_SELECT;
 	}
 	
+	@Override
+	public String getSqlArrayTypeName(Class<?> elementType) {
+		if (elementType == Long.class || elementType == Integer.class 
+				|| elementType == Short.class || elementType == Byte.class) {
+			return "int8";
+		} else if (elementType == String.class) {
+			return "varchar";
+		} else if (elementType == UUID.class) {
+			return "uuid";
+		}
+		return null;
+	}
+	
 	@Override
 	public String getSqlForCaseSensitiveColumn(String tableAlias, String separator, String column) {
 		return new StringBuilder(tableAlias.length() + separator.length() + column.length())	
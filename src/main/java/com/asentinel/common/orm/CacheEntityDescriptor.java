@@ -6,9 +6,12 @@ import java.sql.SQLException;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.function.Supplier;
 
 import org.springframework.jdbc.core.RowMapper;
 
+import com.asentinel.common.orm.cache.ReferenceDataIndex;
+import com.asentinel.common.orm.cache.ReferenceDataRegistry;
 import com.asentinel.common.orm.mappers.ColumnRowMapper;
 import com.asentinel.common.orm.mappers.IntRowMapper;
 import com.asentinel.common.orm.mappers.LongRowMapper;
@@ -23,6 +26,9 @@ import static com.asentinel.common.orm.EntityUtils.*;
  * provided on construction instead of the <code>ResultSet</code>. This descriptor will only
  * read the id of the entity from the <code>ResultSet</code> and use that to extract the actual
  * object from its internal cache.<br>
+ * Alternatively the entities can be provided by a {@link ReferenceDataIndex} supplier, usually a
+ * {@link ReferenceDataRegistry.ReferenceData} handle, in which case the current index is used for
+ * each row and no internal copy is made (see {@link #forReferenceData(Class, String, Supplier)}).<br>
  * 
  * This object is reusable, assuming that the entity id {@code RowMapper} provided on construction
  * is reusable. Instances of this class should be used as effectively immutable objects.
@@ -33,6 +39,7 @@ import static com.asentinel.common.orm.EntityUtils.*;
  * @see #forLongPk(Class, RowMapper, String)
  * @see #forStringPk(Class, RowMapper, String)
  * @see #forColumnPk(Class, RowMapper, String)
+ * @see #forReferenceData(Class, String, Supplier)
  * 
  * @author Razvan Popian
  */
@@ -76,6 +83,27 @@ public class CacheEntityDescriptor extends EntityDescriptor {
 		) {
 		super(clasz, entityIdRowMapper, new CacheEntityRowMapper(entityIdRowMapper, entities), name, targetMember);
 	}
+
+	/**
+	 * Constructor.
+	 * @param clasz the class of the entity that will be built for this descriptor.
+	 * @param entityIdRowMapper the mapper for the primary key.
+	 * @param name the name of this entity descriptor
+	 * @param index supplier for the index of the entities, called for each row.
+	 * @param targetMember the member of the parent entity that will be used to add/set the
+	 * 			entity resulted from this entity descriptor.
+	 * 
+	 * @see ReferenceDataRegistry
+	 */
+	public CacheEntityDescriptor(
+			Class<?> clasz, 
+			RowMapper<?> entityIdRowMapper,
+			Object name,
+			Supplier<? extends ReferenceDataIndex<?>> index,
+			Member targetMember
+		) {
+		super(clasz, entityIdRowMapper, new IndexEntityRowMapper(entityIdRowMapper, index), name, targetMember);
+	}
 	
 	
 	@Override
@@ -143,6 +171,26 @@ public class CacheEntityDescriptor extends EntityDescriptor {
 	}
 	
 	
+	/**
+	 * Creates a descriptor that takes the entities from the index provided by the {@code index} supplier,
+	 * usually a {@link ReferenceDataRegistry.ReferenceData} handle.
+	 * 
+	 * @see ReferenceDataRegistry
+	 */
+	public static CacheEntityDescriptor forReferenceData(Class<?> clazz, String pkColumnName, 
+			Supplier<? extends ReferenceDataIndex<?>> index) {
+		return new CacheEntityDescriptor(clazz, new ColumnRowMapper(pkColumnName), pkColumnName, index, null);
+	}
+
+	/**
+	 * @see #forReferenceData(Class, String, Supplier)
+	 */
+	public static CacheEntityDescriptor forReferenceData(Class<?> clazz, String pkColumnName, 
+			Supplier<? extends ReferenceDataIndex<?>> index, Member targetMember) {
+		return new CacheEntityDescriptor(clazz, new ColumnRowMapper(pkColumnName), pkColumnName, index, targetMember);
+	}
+	
+	
 	// helper inner classes
 	
 	private static class CacheEntityRowMapper implements RowMapper<Object> {
@@ -166,4 +214,23 @@ public class CacheEntityDescriptor extends EntityDescriptor {
 		}
 	}
 
+	private static class IndexEntityRowMapper implements RowMapper<Object> {
+		private final RowMapper<?> idRowMapper;
+		private final Supplier<? extends ReferenceDataIndex<?>> index;
+		
+		
+		public IndexEntityRowMapper(RowMapper<?> idRowMapper, Supplier<? extends ReferenceDataIndex<?>> index) {
+			Assert.assertNotNull(idRowMapper, "idRowMapper");
+			Assert.assertNotNull(index, "index");
+			this.idRowMapper = idRowMapper;
+			this.index = index;
+		}
+		
+		@Override
+		public Object mapRow(ResultSet rs, int rowNum) throws SQLException {
+			Object id = idRowMapper.mapRow(rs, rowNum);
+			return index.get().get(id);
+		}
+	}
+
 }
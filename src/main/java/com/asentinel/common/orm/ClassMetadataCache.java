@@ -0,0 +1,27 @@
+package com.asentinel.common.orm;
+
+/**
+ * Interface implemented by the ORM components that cache metadata calculated
+ * for entity classes. The implementations register themselves with the {@link OrmMetadataRegistry}
+ * so that the metadata can be invalidated from a single place.
+ * 
+ * @see OrmMetadataRegistry
+ */
+public interface ClassMetadataCache {
+
+	/**
+	 * Removes the metadata cached for the specified class.
+	 */
+	void invalidate(Class<?> clazz);
+
+	/**
+	 * Removes the metadata cached for all the classes loaded by the specified
+	 * class loader or by any of its descendants.
+	 */
+	void invalidate(ClassLoader classLoader);
+
+	/**
+	 * Removes all the cached metadata.
+	 */
+	void invalidateAll();
+}
@@ -12,6 +12,7 @@ import com.asentinel.common.collections.tree.Node;
 import com.asentinel.common.collections.tree.SimpleNode;
 import com.asentinel.common.orm.ed.tree.EntityDescriptorTreeRepository;
 import com.asentinel.common.orm.jql.SqlBuilderFactory;
+import com.asentinel.common.orm.proxy.LazyLoadSite;
 import com.asentinel.common.orm.proxy.collection.CollectionLazyLoadInterceptor;
 import com.asentinel.common.orm.proxy.entity.ProxyFactory;
 
@@ -43,7 +44,7 @@ public class CollectionProxyEntityDescriptor extends EntityDescriptor {
 			Class<?> clazz, Member targetMember, String fkName) {
 		super(clazz, fkName, targetMember);
 		// we do not initialize the super class row mappers, because we do not need them
-		this.loader = loader;
+		this.loader = LazyLoadSite.wrap(loader, clazz, targetMember);
 	}
 	
 	public Function<Object, Collection<?>> getLoader() {
@@ -31,6 +31,7 @@ import java.util.SortedMap;
 import java.util.SortedSet;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.Function;
 
 import org.slf4j.Logger;
@@ -44,12 +45,18 @@ import org.springframework.util.ReflectionUtils;
 import com.asentinel.common.collections.tree.Node;
 import com.asentinel.common.collections.tree.SimpleNode;
 import com.asentinel.common.collections.tree.TreeUtils;
+import com.asentinel.common.orm.cache.TransactionalIdentityMap;
 import com.asentinel.common.orm.collections.OrmArrayList;
 import com.asentinel.common.orm.collections.OrmCollection;
 import com.asentinel.common.orm.collections.OrmLinkedHashMap;
 import com.asentinel.common.orm.collections.OrmLinkedHashSet;
 import com.asentinel.common.orm.collections.OrmTreeMap;
 import com.asentinel.common.orm.collections.OrmTreeSet;
+import com.asentinel.common.orm.jfr.EntitiesBuiltEvent;
+import com.asentinel.common.orm.mappers.AnnotationRowMapper;
+import com.asentinel.common.orm.mappers.EntityConstructor;
+import com.asentinel.common.orm.metrics.OrmMetrics;
+import com.asentinel.common.orm.metrics.OrmMetricsRegistry;
 import com.asentinel.common.orm.proxy.ProxyFactorySupport;
 import com.asentinel.common.orm.proxy.collection.CollectionProxyFactory;
 import com.asentinel.common.util.Assert;
@@ -78,6 +85,19 @@ import com.asentinel.common.util.Assert;
  * 
  * <BR><BR>
  * 
+ * If a {@link TransactionalIdentityMap} is bound to the current transaction, the entities already 
+ * in the map are reused for the leaf nodes of the tree. The entities created by this class are added
+ * to the map only if the builder is marked as filling the map (see {@link #setFillIdentityMap(boolean)}) and
+ * the entities are complete, meaning that their node is not projected and all their 
+ * {@link com.asentinel.common.orm.mappers.Child} members are populated by complete or lazy loading child nodes,
+ * like in the default tree for their class. The tree alone does not tell if the query restricted the
+ * joined rows (for example with a {@code where} clause on a child table or with pagination), so only the builders
+ * of the unrestricted queries should be marked. The entities of partial nodes (for example leaf nodes
+ * of classes with children) are never added, so that they are not returned by 
+ * {@link OrmOperations#getEntity(Class, Object)} with missing children.
+ * 
+ * <BR><BR>
+ * 
  * This class is not reusable. <BR>
  * 
  * Usage example:<BR>
@@ -113,6 +133,7 @@ import com.asentinel.common.util.Assert;
  * @see EntityDescriptor
  * @see EntityDescriptor#getTargetMember()
  * @see RelationType
+ * @see TransactionalIdentityMap
  * 
  * @see #getEntityList()
  * @see #getEntityMap()
@@ -123,12 +144,19 @@ import com.asentinel.common.util.Assert;
  */
 public class EntityBuilder<T> implements RowCallbackHandler {
 	private static final Logger log = LoggerFactory.getLogger(EntityBuilder.class);
+	
+	/** the minimum number of rows for the amplification warning */
+	static final long AMPLIFICATION_WARNING_MIN_ROWS = 100;
+	
+	private static final List<EntityBuilderListener> listeners = new CopyOnWriteArrayList<>();
+	
+	private static volatile double amplificationWarningThreshold = 10;
 
 	/** the root node. */
 	private final Node<EntityDescriptorAndEntity> nodeDescriptorAndEntity;
 	
 	/** Maps class names to the object cache of that class. */
-	private final Map<String, Map<Object, EntityHolder>> mapClassToCache = new HashMap<>();
+	private final Map<String, Map<Object, EntityHolder>> mapClassToCache;
 	
 	/** the collection of entities that will be returned to the client */
 	private final Map<Object, T> entities = new LinkedHashMap<>();
@@ -136,13 +164,56 @@ public class EntityBuilder<T> implements RowCallbackHandler {
 	// lazily inited if needed
 	private List<OrmTreeSet<?>> ormTreeSets;
 	
+	/** the identity map bound to the current transaction, if any */
+	private final TransactionalIdentityMap identityMap = TransactionalIdentityMap.getCurrent();
+	
+	/** whether the complete entities are added to the {@link #identityMap} */
+	private boolean fillIdentityMap;
+	
+	/** the number of rows processed */
+	private long rowCount;
+	
+	/** the number of rows processed when the statistics were last reported */
+	private long reportedRowCount;
+	
+	/** the JFR event, created only if enabled, committed on the first report and then discarded */
+	private EntitiesBuiltEvent event;
+	
+	/** 
+	 * whether the mapping time is measured, see {@link OrmMetrics#onEntitiesMapped(EntityBuilderStatistics, long)}
+	 * and {@link EntitiesBuiltEvent}
+	 */
+	private final boolean mappingTimed;
+	
+	/** the time spent processing rows, measured only if {@link #mappingTimed} is true */
+	private long mappingNanos;
+	
 	/**
 	 * Constructor for this handler. 
 	 * @param nodeDescriptor the root descriptor node.
 	 */
-	@SuppressWarnings({ "unchecked"})
 	public EntityBuilder(Node<? extends EntityDescriptor> nodeDescriptor) {
+		this(nodeDescriptor, null);
+	}
+
+	/**
+	 * Constructor for a handler that shares the entity caches of another handler, so
+	 * an entity with the same type and id that was already created by {@code cacheSource}
+	 * is reused instead of being created again. This allows merging the results of multiple
+	 * queries in the same object graph. The handlers sharing caches must not be used concurrently.
+	 * 
+	 * @param nodeDescriptor the root descriptor node.
+	 * @param cacheSource the handler whose entity caches are shared, can be {@code null}.
+	 */
+	@SuppressWarnings({ "unchecked"})
+	public EntityBuilder(Node<? extends EntityDescriptor> nodeDescriptor, EntityBuilder<?> cacheSource) {
 		Assert.assertNotNull(nodeDescriptor, "nodeDescriptor");
+		if (EntitiesBuiltEvent.isTypeEnabled()) {
+			event = new EntitiesBuiltEvent();
+			event.begin();
+		}
+		this.mappingTimed = OrmMetricsRegistry.isEnabled() || event != null;
+		this.mapClassToCache = cacheSource != null ? cacheSource.mapClassToCache : new HashMap<>();
 		if (log.isTraceEnabled()) {
 			log.trace("<init> - EntityDescriptor tree:\n" + nodeDescriptor.toStringAsTree());
 		}
@@ -150,11 +221,33 @@ public class EntityBuilder<T> implements RowCallbackHandler {
 			Assert.assertNotNull(node, "node");
 			Assert.assertNotNull(node.getValue(), "node.getValue()");
 			EntityDescriptor ed = node.getValue();
-			mapClassToCache.put(ed.getEntityClass().getName(), new HashMap<>());
-			return new SimpleNode<>(new EntityDescriptorAndEntity(node.getValue()));
+			boolean constructorCreated = isConstructorCreated(ed);
+			if (constructorCreated && !node.isLeaf()) {
+				throw new IllegalArgumentException("The immutable entity " + ed.getEntityClass().getName() 
+						+ " can not have children in the EntityDescriptor tree, its members can not be set after creation.");
+			}
+			mapClassToCache.computeIfAbsent(ed.getEntityClass().getName(), k -> new HashMap<>());
+			return new SimpleNode<>(new EntityDescriptorAndEntity(node.getValue(), constructorCreated));
 		});
 	}
 	
+	/**
+	 * Marks this builder as filling the {@link TransactionalIdentityMap} bound to the current transaction,
+	 * if any, with the complete entities it creates. It should be called only for the queries that do not restrict
+	 * the rows of the joined children and are not paginated, usually the queries that load an entity
+	 * by id using the default tree for its class. Must be called before the first row is processed.
+	 * 
+	 * @param fillIdentityMap {@code true} to add the complete entities to the identity map, the default is {@code false}.
+	 * 
+	 * @see com.asentinel.common.orm.jql.SqlBuilder#fillIdentityMap()
+	 */
+	public void setFillIdentityMap(boolean fillIdentityMap) {
+		this.fillIdentityMap = fillIdentityMap;
+		if (fillIdentityMap && identityMap != null) {
+			nodeDescriptorAndEntity.traverse(node -> node.getValue().complete = isComplete(node));
+		}
+	}
+	
 	/**
 	 * @return the list of root entities created by this handler.
 	 */
@@ -174,6 +267,11 @@ public class EntityBuilder<T> implements RowCallbackHandler {
 			}
 		}
 		
+		if (rowCount > reportedRowCount) {
+			reportedRowCount = rowCount;
+			report();
+		}
+		
 		// return the final entities map
 		return entities;
 	}
@@ -204,6 +302,84 @@ public class EntityBuilder<T> implements RowCallbackHandler {
 	public int count() {
 		return entities.size();
 	}
+	
+	/**
+	 * @return the statistics collected so far by this handler.
+	 */
+	public EntityBuilderStatistics getStatistics() {
+		List<EntityBuilderStatistics.DescriptorStatistics> descriptorStatistics = new ArrayList<>();
+		nodeDescriptorAndEntity.traverse(node -> descriptorStatistics.add(node.getValue().toStatistics()));
+		return new EntityBuilderStatistics(nodeDescriptorAndEntity.getValue().getEntityDescriptor(), 
+				rowCount, entities.size(), descriptorStatistics);
+	}
+	
+	private void report() {
+		double threshold = amplificationWarningThreshold;
+		boolean warn = threshold > 0 && rowCount >= AMPLIFICATION_WARNING_MIN_ROWS && log.isWarnEnabled();
+		boolean metrics = OrmMetricsRegistry.isEnabled();
+		EntitiesBuiltEvent builtEvent = event;
+		event = null;
+		boolean commitEvent = builtEvent != null && builtEvent.shouldCommit();
+		if (listeners.isEmpty() && !warn && !metrics && !commitEvent) {
+			return;
+		}
+		EntityBuilderStatistics statistics = getStatistics();
+		if (metrics) {
+			OrmMetricsRegistry.get().onEntitiesMapped(statistics, mappingNanos);
+		}
+		if (commitEvent) {
+			long created = 0;
+			for (EntityBuilderStatistics.DescriptorStatistics ds: statistics.getDescriptorStatistics()) {
+				created += ds.getEntitiesCreated();
+			}
+			builtEvent.set(statistics.getRootDescriptor().getEntityClass(), rowCount, entities.size(), created, mappingNanos);
+			builtEvent.commit();
+		}
+		if (warn && statistics.getAmplification() >= threshold) {
+			log.warn("report - High row amplification (" + String.format("%.2f", statistics.getAmplification()) 
+					+ ") detected, consider a different fetch strategy for the query. " + statistics);
+		}
+		for (EntityBuilderListener listener: listeners) {
+			try {
+				listener.onCompleted(statistics);
+			} catch (RuntimeException e) {
+				log.error("report - Listener " + listener + " failed.", e);
+			}
+		}
+	}
+	
+	/**
+	 * Registers a listener that is notified by all the {@code EntityBuilder} instances
+	 * when the results are retrieved.
+	 * 
+	 * @see EntityBuilderListener
+	 */
+	public static void addListener(EntityBuilderListener listener) {
+		Assert.assertNotNull(listener, "listener");
+		listeners.add(listener);
+	}
+
+	/**
+	 * Removes a listener registered with {@link #addListener(EntityBuilderListener)}.
+	 */
+	public static void removeListener(EntityBuilderListener listener) {
+		listeners.remove(listener);
+	}
+	
+	/**
+	 * Sets the row amplification (see {@link EntityBuilderStatistics#getAmplification()}) above which
+	 * a warning is logged for the queries returning at least {@value #AMPLIFICATION_WARNING_MIN_ROWS} rows. 
+	 * The default is {@code 10}.
+	 * 
+	 * @param threshold the threshold, a value less than or equal to {@code 0} disables the warning.
+	 */
+	public static void setAmplificationWarningThreshold(double threshold) {
+		amplificationWarningThreshold = threshold;
+	}
+
+	public static double getAmplificationWarningThreshold() {
+		return amplificationWarningThreshold;
+	}
 
 	/** 
 	 * @see RowCallbackHandler#processRow(ResultSet) 
@@ -211,7 +387,9 @@ public class EntityBuilder<T> implements RowCallbackHandler {
 	@SuppressWarnings({"unchecked" })
 	@Override
 	public void processRow(final ResultSet rs) throws SQLException {
+		final long t0 = mappingTimed ? System.nanoTime() : 0;
 		final int rowIndex = rs.getRow();
+		rowCount++;
 		nodeDescriptorAndEntity.traverse(childNode -> {
 			try {
 				Node<EntityDescriptorAndEntity> parentNode = childNode.getParent();
@@ -230,29 +408,44 @@ public class EntityBuilder<T> implements RowCallbackHandler {
 				if (entityId == null) {
 					return;
 				}
+				descriptorAndEntity.rows++;
 				Map<Object, EntityHolder> cache = mapClassToCache.get(descriptor.getEntityClass().getName());
 				EntityHolder entityHolder = cache.get(entityId);
 				Object entity;
 				if (entityHolder == null) {
-					entity = getEntity(descriptor, rs, rowIndex);
-					setEntityId(entity, entityId);
+					entity = getEntityFromIdentityMap(childNode, entityId);
+					if (entity == null) {
+						entity = getEntity(descriptor, rs, rowIndex);
+						if (!descriptorAndEntity.constructorCreated) {
+							setEntityId(entity, entityId);
+						}
+						addEntityToIdentityMap(descriptorAndEntity, entityId, entity);
+						descriptorAndEntity.entitiesCreated++;
+					} else {
+						descriptorAndEntity.identityMapHits++;
+					}
 					entityHolder = new EntityHolder(entity);						
 					cache.put(entityId, entityHolder);
 				} else if (isProxy(entityHolder.getEntity()) 
 							&& !isLoadedProxy(entityHolder.getEntity())
 							&& !(descriptor instanceof ProxyEntityDescriptor)) {
+					descriptorAndEntity.cacheHits++;
 					entity = entityHolder.getEntity();
 					Object entity2 = getEntity(descriptor, rs, rowIndex);
 					if (!isProxy(entity2)) {
 						// since the state of the proxy (entity2) is available in this resultset 
 						// we populate the proxy (entity1) to avoid another DB call further down
 						// the road
-						setEntityId(entity2, entityId);	
+						if (!descriptorAndEntity.constructorCreated) {
+							setEntityId(entity2, entityId);
+						}
 						Field loaderField = ProxyFactorySupport.findLoaderField(entity.getClass()); // getClass is final, does not trigger the load 
 						ReflectionUtils.setField(loaderField, entity, (Function<?, ?>) id -> entity2);
 						EntityUtils.loadProxy(entity);
+						descriptorAndEntity.proxiesUpgraded++;
 					}
 				} else {
+					descriptorAndEntity.cacheHits++;
 					entity = entityHolder.getEntity();
 				}
 				descriptorAndEntity.setEntity(entity);
@@ -274,6 +467,9 @@ public class EntityBuilder<T> implements RowCallbackHandler {
 						+ childNode.getValue().getEntityDescriptor(), e);
 			}
 		});
+		if (mappingTimed) {
+			mappingNanos += System.nanoTime() - t0;
+		}
 	}
 	
 	private void addChild(
@@ -399,32 +595,13 @@ public class EntityBuilder<T> implements RowCallbackHandler {
 			if (isCollectionInitialized((Collection<?>) collection)) {
 				proxyType = collection.getClass();
 			} else {
-				// FIXME: the following logic will work fine if the collection member type is an interface (Collection, Set, List etc),
-				// but if the type is a concrete class this code will fail. For example it will fail for a declaration like this:
-				// private LinkedList<Abc> list.
-				if (SortedSet.class.isAssignableFrom(field.getType())) {
-					// default to a TreeSet
-					proxyType = TreeSet.class;
-				} else if (Set.class.isAssignableFrom(field.getType())) {
-					// default to a LinkedHashSet
-					proxyType = LinkedHashSet.class;
-				} else {
-					proxyType = ArrayList.class;
-				}
+				proxyType = getDefaultCollectionProxyType(field.getType());
 			}
 		} else if (Map.class.isAssignableFrom(field.getType())) {
 			if (isMapInitialized((Map<?, ?>) collection)) {
 				proxyType = collection.getClass();
 			} else {
-				// FIXME: the following logic will work fine if the Map member type is an interface (Map, SortedMap),
-				// but if the type is a concrete class this code may fail.
-				if (SortedMap.class.isAssignableFrom(field.getType())) {
-					// default to TreeMap
-					proxyType = TreeMap.class;
-				} else {
-					// default to LinkedHashMap
-					proxyType = LinkedHashMap.class;
-				}
+				proxyType = getDefaultCollectionProxyType(field.getType());
 			}
 		} else {
 			throw new IllegalStateException("Unsupported target member for entity descriptor " + descriptor + ".");			
@@ -435,6 +612,39 @@ public class EntityBuilder<T> implements RowCallbackHandler {
 		);
 	}
 	
+	/**
+	 * @param memberType the declared type of a {@code Collection} or {@code Map} member.
+	 * @return the class to be proxied for the member if the member is not initialized.
+	 */
+	static Class<?> getDefaultCollectionProxyType(Class<?> memberType) {
+		if (Collection.class.isAssignableFrom(memberType)) {
+			// FIXME: the following logic will work fine if the collection member type is an interface (Collection, Set, List etc),
+			// but if the type is a concrete class this code will fail. For example it will fail for a declaration like this:
+			// private LinkedList<Abc> list.
+			if (SortedSet.class.isAssignableFrom(memberType)) {
+				// default to a TreeSet
+				return TreeSet.class;
+			} else if (Set.class.isAssignableFrom(memberType)) {
+				// default to a LinkedHashSet
+				return LinkedHashSet.class;
+			} else {
+				return ArrayList.class;
+			}
+		} else if (Map.class.isAssignableFrom(memberType)) {
+			// FIXME: the following logic will work fine if the Map member type is an interface (Map, SortedMap),
+			// but if the type is a concrete class this code may fail.
+			if (SortedMap.class.isAssignableFrom(memberType)) {
+				// default to TreeMap
+				return TreeMap.class;
+			} else {
+				// default to LinkedHashMap
+				return LinkedHashMap.class;
+			}
+		} else {
+			throw new IllegalArgumentException("Expected a Collection or Map type, found " + memberType.getName() + ".");
+		}
+	}
+	
 	private static boolean isCollectionInitialized(Collection<?> collection) {
 		return collection != null
 				&& collection != EMPTY_LIST
@@ -451,6 +661,77 @@ public class EntityBuilder<T> implements RowCallbackHandler {
 				&& map != emptySortedMap();
 	}
 	
+	private Object getEntityFromIdentityMap(Node<EntityDescriptorAndEntity> node, Object entityId) {
+		if (identityMap == null || !node.isLeaf()) {
+			// the children of a reused entity would be added twice
+			return null;
+		}
+		EntityDescriptor descriptor = node.getValue().getEntityDescriptor();
+		if (!(descriptor instanceof SimpleEntityDescriptor)
+				&& !(descriptor instanceof ProxyEntityDescriptor)) {
+			return null;
+		}
+		return identityMap.get(descriptor.getEntityClass(), entityId);
+	}
+	
+	private void addEntityToIdentityMap(EntityDescriptorAndEntity descriptorAndEntity, Object entityId, Object entity) {
+		if (identityMap == null
+				|| !fillIdentityMap
+				|| !descriptorAndEntity.complete
+				|| isProxy(entity)) {
+			return;
+		}
+		identityMap.putIfAbsent(descriptorAndEntity.getEntityDescriptor().getEntityClass(), entityId, entity);
+	}
+	
+	/**
+	 * @return {@code true} if the entities created for the node are fully loaded, as they would be
+	 * 			by the default tree for their class: the node is a not projected {@link SimpleEntityDescriptor}
+	 * 			and each {@code Child} member of the entity class is populated by a child node that is either 
+	 * 			lazy loading or itself complete. 
+	 */
+	private static boolean isComplete(Node<EntityDescriptorAndEntity> node) {
+		EntityDescriptor descriptor = node.getValue().getEntityDescriptor();
+		if (!(descriptor instanceof SimpleEntityDescriptor)
+				|| ((SimpleEntityDescriptor) descriptor).getProjection() != null) {
+			return false;
+		}
+		List<TargetChildMember> childMembers = TargetMembersHolder.getInstance()
+				.getTargetMembers(descriptor.getEntityClass()).getChildMembers();
+		for (TargetChildMember childMember: childMembers) {
+			Node<EntityDescriptorAndEntity> childNode = findChildNode(node, (Member) childMember.getAnnotatedElement());
+			if (childNode == null) {
+				return false;
+			}
+			EntityDescriptor childDescriptor = childNode.getValue().getEntityDescriptor();
+			if (!(childDescriptor instanceof ProxyEntityDescriptor)
+					&& !(childDescriptor instanceof CollectionProxyEntityDescriptor)
+					&& !isComplete(childNode)) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private static Node<EntityDescriptorAndEntity> findChildNode(Node<EntityDescriptorAndEntity> node, Member member) {
+		for (Node<EntityDescriptorAndEntity> childNode: node.getChildren()) {
+			if (member.equals(childNode.getValue().getEntityDescriptor().getTargetMember())) {
+				return childNode;
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * @return {@code true} if the entities for the descriptor are immutable, created by calling
+	 * 			a constructor with all the column values including the id.
+	 * @see EntityConstructor
+	 */
+	private static boolean isConstructorCreated(EntityDescriptor descriptor) {
+		return descriptor.getEntityRowMapper() instanceof AnnotationRowMapper
+				&& ((AnnotationRowMapper<?>) descriptor.getEntityRowMapper()).getEntityConstructor() != null;
+	}
+	
 	private static Object getEntity(EntityDescriptor descriptor, ResultSet rs, int rowIndex) throws SQLException {
 		Object entity = descriptor.getEntityRowMapper().mapRow(rs, rowIndex);
 		if (entity == null) {
@@ -554,10 +835,21 @@ public class EntityBuilder<T> implements RowCallbackHandler {
 	
 	private static class EntityDescriptorAndEntity {
 		private final EntityDescriptor entityDescriptor;
+		private final boolean constructorCreated;
+		// whether the entities of this node can be added to the identity map
+		private boolean complete;
 		private Object entity;
 		
-		EntityDescriptorAndEntity(EntityDescriptor entityDescriptor) {
+		// statistics
+		private long rows;
+		private long entitiesCreated;
+		private long identityMapHits;
+		private long cacheHits;
+		private long proxiesUpgraded;
+		
+		EntityDescriptorAndEntity(EntityDescriptor entityDescriptor, boolean constructorCreated) {
 			this.entityDescriptor = entityDescriptor;
+			this.constructorCreated = constructorCreated;
 		}
 
 		public EntityDescriptor getEntityDescriptor() {
@@ -571,6 +863,11 @@ public class EntityBuilder<T> implements RowCallbackHandler {
 		public void setEntity(Object entity) {
 			this.entity = entity;
 		}
+		
+		EntityBuilderStatistics.DescriptorStatistics toStatistics() {
+			return new EntityBuilderStatistics.DescriptorStatistics(entityDescriptor, 
+					rows, entitiesCreated, identityMapHits, cacheHits, proxiesUpgraded);
+		}
 
 		@Override
 		public String toString() {
@@ -0,0 +1,20 @@
+package com.asentinel.common.orm;
+
+/**
+ * Listener notified by the {@link EntityBuilder} instances when the results
+ * are retrieved, see {@link EntityBuilder#getEntityMap()}. Implementations must be thread safe,
+ * they are shared by all the {@code EntityBuilder} instances.
+ *
+ * @see EntityBuilder#addListener(EntityBuilderListener)
+ * @see EntityBuilderStatistics
+ */
+@FunctionalInterface
+public interface EntityBuilderListener {
+
+	/**
+	 * Called when an {@code EntityBuilder} finished processing a result set.
+	 *
+	 * @param statistics the statistics collected by the {@code EntityBuilder}.
+	 */
+	void onCompleted(EntityBuilderStatistics statistics);
+}
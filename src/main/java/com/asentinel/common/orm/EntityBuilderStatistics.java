@@ -0,0 +1,175 @@
+package com.asentinel.common.orm;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Statistics collected by an {@link EntityBuilder} while processing a result set. For each
+ * node of the {@link EntityDescriptor} tree there is a {@link DescriptorStatistics} instance holding the
+ * number of rows that contained an entity for that node, the number of distinct entities created, the number
+ * of rows for which the entity was already known (cache hits) and the number of proxies that were populated
+ * from the result set.
+ * <br><br>
+ * The {@link #getAmplification()} ratio compares the number of rows with the largest number of distinct
+ * entities produced by any descriptor. A query joining a single collection has an amplification close to
+ * {@code 1}, while a query joining multiple collections of the same parent returns the cartesian product of the
+ * collections and has a higher amplification. Such queries should use a different fetch strategy (lazy loading,
+ * separate queries).
+ *
+ * @see EntityBuilder#getStatistics()
+ * @see EntityBuilderListener
+ */
+public final class EntityBuilderStatistics {
+
+	private final EntityDescriptor rootDescriptor;
+	private final long rowCount;
+	private final int rootCount;
+	private final List<DescriptorStatistics> descriptorStatistics;
+
+	EntityBuilderStatistics(EntityDescriptor rootDescriptor, long rowCount, int rootCount,
+			List<DescriptorStatistics> descriptorStatistics) {
+		this.rootDescriptor = rootDescriptor;
+		this.rowCount = rowCount;
+		this.rootCount = rootCount;
+		this.descriptorStatistics = Collections.unmodifiableList(descriptorStatistics);
+	}
+
+	/**
+	 * @return the descriptor at the root of the tree.
+	 */
+	public EntityDescriptor getRootDescriptor() {
+		return rootDescriptor;
+	}
+
+	/**
+	 * @return the number of rows processed.
+	 */
+	public long getRowCount() {
+		return rowCount;
+	}
+
+	/**
+	 * @return the number of root entities produced.
+	 */
+	public int getRootCount() {
+		return rootCount;
+	}
+
+	/**
+	 * @return the statistics for each node in the tree, in traversal order.
+	 */
+	public List<DescriptorStatistics> getDescriptorStatistics() {
+		return descriptorStatistics;
+	}
+
+	/**
+	 * @return the largest number of distinct entities produced by a descriptor.
+	 */
+	public long getMaxDistinctEntities() {
+		long max = 0;
+		for (DescriptorStatistics ds: descriptorStatistics) {
+			max = Math.max(max, ds.getDistinctEntities());
+		}
+		return max;
+	}
+
+	/**
+	 * @return the ratio between the number of rows and the largest number of
+	 * 			distinct entities produced by a descriptor.
+	 */
+	public double getAmplification() {
+		long max = getMaxDistinctEntities();
+		if (max == 0) {
+			return rowCount == 0 ? 0 : rowCount;
+		}
+		return (double) rowCount / max;
+	}
+
+	@Override
+	public String toString() {
+		return "EntityBuilderStatistics [root=" + rootDescriptor.getEntityClass().getName()
+				+ ", rowCount=" + rowCount
+				+ ", rootCount=" + rootCount
+				+ ", amplification=" + String.format("%.2f", getAmplification())
+				+ ", descriptors=" + descriptorStatistics + "]";
+	}
+
+
+	/**
+	 * Statistics for a node of the {@link EntityDescriptor} tree.
+	 */
+	public static final class DescriptorStatistics {
+		private final EntityDescriptor descriptor;
+		private final long rows;
+		private final long entitiesCreated;
+		private final long identityMapHits;
+		private final long cacheHits;
+		private final long proxiesUpgraded;
+
+		DescriptorStatistics(EntityDescriptor descriptor, long rows, long entitiesCreated,
+				long identityMapHits, long cacheHits, long proxiesUpgraded) {
+			this.descriptor = descriptor;
+			this.rows = rows;
+			this.entitiesCreated = entitiesCreated;
+			this.identityMapHits = identityMapHits;
+			this.cacheHits = cacheHits;
+			this.proxiesUpgraded = proxiesUpgraded;
+		}
+
+		public EntityDescriptor getDescriptor() {
+			return descriptor;
+		}
+
+		/**
+		 * @return the number of rows that contained an entity (non {@code null} id) for this descriptor.
+		 */
+		public long getRows() {
+			return rows;
+		}
+
+		/**
+		 * @return the number of entities created from the result set.
+		 */
+		public long getEntitiesCreated() {
+			return entitiesCreated;
+		}
+
+		/**
+		 * @return the number of entities taken from the {@link com.asentinel.common.orm.cache.TransactionalIdentityMap}.
+		 */
+		public long getIdentityMapHits() {
+			return identityMapHits;
+		}
+
+		/**
+		 * @return the number of rows for which the entity was already created by the {@code EntityBuilder}.
+		 */
+		public long getCacheHits() {
+			return cacheHits;
+		}
+
+		/**
+		 * @return the number of not loaded proxies populated from the result set.
+		 */
+		public long getProxiesUpgraded() {
+			return proxiesUpgraded;
+		}
+
+		/**
+		 * @return the number of distinct entities produced for this descriptor.
+		 */
+		public long getDistinctEntities() {
+			return entitiesCreated + identityMapHits;
+		}
+
+		@Override
+		public String toString() {
+			return "DescriptorStatistics [entityClass=" + descriptor.getEntityClass().getName()
+					+ ", rows=" + rows
+					+ ", entitiesCreated=" + entitiesCreated
+					+ ", identityMapHits=" + identityMapHits
+					+ ", cacheHits=" + cacheHits
+					+ ", proxiesUpgraded=" + proxiesUpgraded + "]";
+		}
+	}
+}
@@ -0,0 +1,53 @@
+package com.asentinel.common.orm;
+
+import java.util.function.Function;
+
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.dao.IncorrectResultSizeDataAccessException;
+
+import com.asentinel.common.orm.cache.EntityCache;
+import com.asentinel.common.orm.cache.TransactionalIdentityMap;
+import com.asentinel.common.orm.jql.SqlBuilderFactory;
+import com.asentinel.common.util.Assert;
+
+/**
+ * Loads entities by id for {@link OrmOperations#getEntity(Class, Object)}, {@link OrmOperations#getOptional(Class, Object)}
+ * and the proxy loaders (see {@link ProxyEntityDescriptor#getLoader(SqlBuilderFactory, Class, String)}). The entity
+ * is taken from the {@link TransactionalIdentityMap} bound to the current transaction if possible, otherwise from the
+ * {@link EntityCache} if the type is cacheable, otherwise it is queried using the default tree for its class.
+ */
+final class EntityLoaders {
+
+	private EntityLoaders() {
+		
+	}
+
+	/**
+	 * @return the entity with the specified type and id.
+	 * @throws IncorrectResultSizeDataAccessException if more than one entity is found for the specified id.
+	 * @throws EmptyResultDataAccessException if the entity can not be found.
+	 */
+	static <T> T load(SqlBuilderFactory sqlBuilderFactory, Class<T> type, Object entityId) 
+			throws IncorrectResultSizeDataAccessException, EmptyResultDataAccessException {
+		Assert.assertNotNull(sqlBuilderFactory, "sqlBuilderFactory");
+		Assert.assertNotNull(type, "type");
+		Assert.assertNotNull(entityId, "entityId");
+		TransactionalIdentityMap identityMap = TransactionalIdentityMap.getCurrent();
+		if (identityMap != null) {
+			T entity = identityMap.get(type, entityId);
+			if (entity != null) {
+				return entity;
+			}
+		}
+		// the default tree is not restricted, so the loaded entities can fill the identity map
+		Function<Object, T> loader = id -> sqlBuilderFactory.newSqlBuilder(type)
+				.fillIdentityMap()
+				.select().where().id().eq(id)
+				.execForEntity();
+		EntityCache entityCache = sqlBuilderFactory.getEntityCache();
+		if (entityCache != null && entityCache.isCacheable(type)) {
+			return entityCache.get(type, entityId, loader);
+		}
+		return loader.apply(entityId);
+	}
+}
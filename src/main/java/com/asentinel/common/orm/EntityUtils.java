@@ -89,6 +89,9 @@ public final class EntityUtils {
 		TargetMember targetMember = TargetMembersHolder.getInstance()
 				.getTargetMembers(entity.getClass()).getPkColumnMember();
 		if (targetMember != null) {
+			if (targetMember.getReader() != null) {
+				return targetMember.getReader().apply(entity);
+			}
 			AnnotatedElement member = targetMember.getAnnotatedElement();
 			if (member instanceof Field) {
 				ReflectionUtils.makeAccessible((Field) member);
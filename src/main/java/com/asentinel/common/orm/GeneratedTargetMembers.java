@@ -0,0 +1,61 @@
+package com.asentinel.common.orm;
+
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import com.asentinel.common.orm.apt.TargetMembersProcessor;
+import com.asentinel.common.orm.mappers.Table;
+
+/**
+ * Interface implemented by the classes generated at compile time by the {@link TargetMembersProcessor} for
+ * the classes annotated with {@link Table}. The generated class has the same package as the entity class and its
+ * name is the entity class name followed by {@link #CLASS_NAME_SUFFIX}.
+ * <br>
+ * If a generated class is found, the {@link TargetMembersHolder} creates the {@link TargetMembers} based on
+ * the members described by this interface instead of introspecting the whole class hierarchy and
+ * the getter/setter methods of each annotated member. The generated code also provides direct (non reflective)
+ * accessors for the members that are accessible from the entity package.
+ * <br><br>
+ * This interface should not be implemented by client code.
+ *
+ * @see TargetMembersProcessor
+ * @see TargetMembersHolder
+ * @see TargetMember#getReader()
+ * @see TargetMember#getWriter()
+ */
+public interface GeneratedTargetMembers {
+
+	String CLASS_NAME_SUFFIX = "_TargetMembers";
+
+	/**
+	 * Describes the annotated members of the entity class in the order they
+	 * should be processed: fields first, then methods.
+	 */
+	void describe(Descriptor descriptor);
+
+
+	/**
+	 * Collects the annotated members of an entity class. All the class names are binary
+	 * class names or primitive type names, they are resolved using the class loader of the entity class.
+	 */
+	interface Descriptor {
+
+		Member field(String declaringClassName, String name);
+
+		Member method(String declaringClassName, String name, String parameterTypeName);
+	}
+
+	/**
+	 * Describes an annotated member.
+	 */
+	interface Member {
+
+		Member getter(String declaringClassName, String name);
+
+		Member setter(String declaringClassName, String name, String parameterTypeName);
+
+		Member reader(Function<Object, Object> reader);
+
+		Member writer(BiConsumer<Object, Object> writer);
+	}
+}
@@ -0,0 +1,96 @@
+package com.asentinel.common.orm;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.asentinel.common.orm.ed.tree.DefaultEntityDescriptorTreeRepository;
+import com.asentinel.common.orm.proxy.collection.CollectionProxyFactory;
+import com.asentinel.common.orm.proxy.entity.ProxyFactory;
+import com.asentinel.common.util.Assert;
+import com.asentinel.common.util.ClassValueCache;
+
+/**
+ * Central place for invalidating the metadata the ORM caches for the entity classes:
+ * the {@link TargetMembers} (see {@link TargetMembersHolder}), the proxy classes
+ * (see {@link ProxyFactory} and {@link CollectionProxyFactory}) and the {@code EntityDescriptor}
+ * trees (see {@link DefaultEntityDescriptorTreeRepository}). All these caches are based on {@link ClassValueCache},
+ * so they do not prevent the entity classes from being unloaded. The explicit invalidation is useful
+ * for releasing the metadata as soon as an application class loader is discarded, for example on redeploy.
+ * <br><br>
+ * The caches are registered using weak references, so the registration does not prevent
+ * a cache from being garbage collected.
+ * 
+ * @see ClassMetadataCache
+ */
+public final class OrmMetadataRegistry {
+	private final static Logger log = LoggerFactory.getLogger(OrmMetadataRegistry.class);
+	
+	private static final Set<ClassMetadataCache> caches = Collections.synchronizedSet(
+			Collections.newSetFromMap(new WeakHashMap<>()));
+	
+	private OrmMetadataRegistry() {}
+	
+	/**
+	 * Registers a cache to be invalidated by the static methods of this class.
+	 */
+	public static void register(ClassMetadataCache cache) {
+		Assert.assertNotNull(cache, "cache");
+		caches.add(cache);
+	}
+
+	/**
+	 * Unregisters a cache previously registered with {@link #register(ClassMetadataCache)}.
+	 */
+	public static void unregister(ClassMetadataCache cache) {
+		caches.remove(cache);
+	}
+	
+	/**
+	 * Removes the metadata cached for the specified class from all the registered caches.
+	 */
+	public static void invalidate(Class<?> clazz) {
+		Assert.assertNotNull(clazz, "clazz");
+		for (ClassMetadataCache cache: getCaches()) {
+			cache.invalidate(clazz);
+		}
+		if (log.isDebugEnabled()) {
+			log.debug("invalidate - Metadata invalidated for class " + clazz.getName() + ".");
+		}
+	}
+
+	/**
+	 * Removes the metadata cached for all the classes loaded by the specified class loader
+	 * or by any of its descendants from all the registered caches.
+	 */
+	public static void invalidate(ClassLoader classLoader) {
+		Assert.assertNotNull(classLoader, "classLoader");
+		for (ClassMetadataCache cache: getCaches()) {
+			cache.invalidate(classLoader);
+		}
+		if (log.isDebugEnabled()) {
+			log.debug("invalidate - Metadata invalidated for class loader " + classLoader + ".");
+		}
+	}
+
+	/**
+	 * Removes all the metadata from all the registered caches.
+	 */
+	public static void invalidateAll() {
+		for (ClassMetadataCache cache: getCaches()) {
+			cache.invalidateAll();
+		}
+		log.debug("invalidateAll - All metadata invalidated.");
+	}
+	
+	static List<ClassMetadataCache> getCaches() {
+		synchronized (caches) {
+			return new ArrayList<>(caches);
+		}
+	}
+}
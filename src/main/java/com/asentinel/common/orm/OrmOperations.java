@@ -1,11 +1,20 @@
 package com.asentinel.common.orm;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.dao.IncorrectResultSizeDataAccessException;
 
+import com.asentinel.common.orm.cache.EntityCache;
+import com.asentinel.common.orm.cache.TransactionalIdentityMap;
+import com.asentinel.common.orm.jql.AsyncExecutors;
+import com.asentinel.common.orm.jql.QueryBatch;
+import com.asentinel.common.orm.jql.SqlBuilder;
 import com.asentinel.common.orm.jql.SqlBuilderFactory;
 import com.asentinel.common.orm.persist.Updater;
 import com.asentinel.common.orm.proxy.entity.ProxyFactory;
@@ -75,7 +84,10 @@ public interface OrmOperations extends SqlBuilderFactory, Updater {
 	}
 		
 	/**
-	 * Eagerly loads the entity with the specified class and id.
+	 * Eagerly loads the entity with the specified class and id. If the entity is in the 
+	 * {@link TransactionalIdentityMap} bound to the current transaction it is returned without querying
+	 * the database. Otherwise, if the type is cacheable in the {@link #getEntityCache()} the entity 
+	 * is taken from the cache if possible.
 	 * 
 	 * @param type the target class. 
 	 * @param entityId the id of the target entity.
@@ -86,14 +98,13 @@ public interface OrmOperations extends SqlBuilderFactory, Updater {
 	 * @throws EmptyResultDataAccessException if the entity cannot be found.
 	 * 
 	 * @see #getProxy(Class, Object)
+	 * @see EntityCache
 	 */
 	default <T> T getEntity(Class<T> type, Object entityId) 
 			throws IncorrectResultSizeDataAccessException, EmptyResultDataAccessException {
 		Assert.assertNotNull(type, "type");
 		Assert.assertNotNull(entityId, "entityId");
-		return this.newSqlBuilder(type)
-				.select().where().id().eq(entityId)
-				.execForEntity();
+		return EntityLoaders.load(this, type, entityId);
 	}
 
     /**
@@ -128,7 +139,10 @@ public interface OrmOperations extends SqlBuilderFactory, Updater {
     }
 
 	/**
-	 * Eagerly loads the entity with the specified class and id if found. 
+	 * Eagerly loads the entity with the specified class and id if found. If the entity is in the 
+	 * {@link TransactionalIdentityMap} bound to the current transaction it is returned without querying
+	 * the database. Otherwise, if the type is cacheable in the {@link #getEntityCache()} the entity 
+	 * is taken from the cache if possible.
 	 * 
 	 * @param type the target class.
 	 * @param entityId the id of the target entity.
@@ -137,14 +151,18 @@ public interface OrmOperations extends SqlBuilderFactory, Updater {
 	 * 		   an empty {@link Optional} otherwise.
      *
      * @throws IncorrectResultSizeDataAccessException if more than one entity is found for the specified id.
+     * 
+     * @see EntityCache
 	 */
 	default <T> Optional<T> getOptional(Class<T> type, Object entityId)
             throws IncorrectResultSizeDataAccessException {
 		Assert.assertNotNull(type, "type");
 		Assert.assertNotNull(entityId, "entityId");
-		return this.newSqlBuilder(type)
-				.select().where().id().eq(entityId)
-				.execForOptional();
+		try {
+			return Optional.of(EntityLoaders.load(this, type, entityId));
+		} catch (EmptyResultDataAccessException e) {
+			return Optional.empty();
+		}
 	}
 
     /**
@@ -177,4 +195,64 @@ public interface OrmOperations extends SqlBuilderFactory, Updater {
                 .select(nodeCallbacks).where().id().eq(entityId)
                 .execForOptional();
     }
+
+	/**
+	 * Asynchronous version of {@link #getEntity(Class, Object)}. The entity is loaded on the
+	 * executor returned by {@link #getAsyncExecutor()}, outside of any transaction.
+	 * 
+	 * @return a {@code CompletableFuture} that completes with the entity or exceptionally if the
+	 * 			entity can not be found.
+	 * @throws IllegalStateException if a transaction is active on the current thread.
+	 * 
+	 * @see com.asentinel.common.orm.jql.SqlBuilder#execAsync()
+	 */
+	default <T> CompletableFuture<T> getEntityAsync(Class<T> type, Object entityId) {
+		Assert.assertNotNull(type, "type");
+		Assert.assertNotNull(entityId, "entityId");
+		return AsyncExecutors.supplyAsync(() -> getEntity(type, entityId), getAsyncExecutor());
+	}
+
+	/**
+	 * Asynchronous version of {@link #getOptional(Class, Object)}.
+	 * 
+	 * @see #getEntityAsync(Class, Object)
+	 */
+	default <T> CompletableFuture<Optional<T>> getOptionalAsync(Class<T> type, Object entityId) {
+		Assert.assertNotNull(type, "type");
+		Assert.assertNotNull(entityId, "entityId");
+		return AsyncExecutors.supplyAsync(() -> getOptional(type, entityId), getAsyncExecutor());
+	}
+
+	/**
+	 * @return a new {@link QueryBatch} using the {@link #getSqlQuery()} of this {@code OrmOperations}.
+	 * 
+	 * @see #batchQueries(SqlBuilder...)
+	 */
+	default QueryBatch newQueryBatch() {
+		return new QueryBatch(getSqlQuery());
+	}
+
+	/**
+	 * Executes the queries of the specified builders together, in a single round trip to the database
+	 * if supported, see {@link QueryBatch}.
+	 * 
+	 * @param sqlBuilders the builders, they must be ready for execution.
+	 * @return a list containing the entities resulted from each query, in the order of the builders.
+	 * 
+	 * @see QueryBatch
+	 */
+	default List<List<?>> batchQueries(SqlBuilder<?> ... sqlBuilders) {
+		Assert.assertNotNull(sqlBuilders, "sqlBuilders");
+		QueryBatch batch = newQueryBatch();
+		List<Supplier<? extends List<?>>> suppliers = new ArrayList<>(sqlBuilders.length);
+		for (SqlBuilder<?> sqlBuilder: sqlBuilders) {
+			suppliers.add(batch.add(sqlBuilder));
+		}
+		batch.exec();
+		List<List<?>> results = new ArrayList<>(suppliers.size());
+		for (Supplier<? extends List<?>> supplier: suppliers) {
+			results.add(supplier.get());
+		}
+		return results;
+	}
 }
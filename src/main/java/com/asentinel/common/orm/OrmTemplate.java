@@ -1,8 +1,11 @@
 package com.asentinel.common.orm;
 
 import java.util.Collection;
+import java.util.concurrent.Executor;
 
 import com.asentinel.common.jdbc.SqlQuery;
+import com.asentinel.common.orm.cache.EntityCache;
+import com.asentinel.common.orm.cache.QueryResultCache;
 import com.asentinel.common.orm.ed.tree.EntityDescriptorTreeRepository;
 import com.asentinel.common.orm.jql.SqlBuilder;
 import com.asentinel.common.orm.jql.SqlBuilderFactory;
@@ -83,5 +86,20 @@ public class OrmTemplate implements OrmOperations {
 	public SqlQuery getSqlQuery() {
 		return sqlBuilderFactory.getSqlQuery();
 	}
+	
+	@Override
+	public EntityCache getEntityCache() {
+		return sqlBuilderFactory.getEntityCache();
+	}
+	
+	@Override
+	public QueryResultCache getQueryResultCache() {
+		return sqlBuilderFactory.getQueryResultCache();
+	}
+	
+	@Override
+	public Executor getAsyncExecutor() {
+		return sqlBuilderFactory.getAsyncExecutor();
+	}
 
 }
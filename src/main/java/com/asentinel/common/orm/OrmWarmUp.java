@@ -0,0 +1,206 @@
+package com.asentinel.common.orm;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
+import org.springframework.core.type.filter.AnnotationTypeFilter;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.ClassUtils;
+
+import com.asentinel.common.orm.ed.tree.EntityDescriptorTreeRepository;
+import com.asentinel.common.orm.mappers.Table;
+import com.asentinel.common.orm.proxy.collection.CollectionProxyFactory;
+import com.asentinel.common.orm.proxy.entity.ProxyFactory;
+import com.asentinel.common.util.Assert;
+import com.asentinel.common.util.Utils;
+
+/**
+ * Pre-builds at startup the expensive metadata that the ORM otherwise calculates lazily the
+ * first time an entity class is used. The classes annotated with {@link Table} found in the configured
+ * base packages are scanned and for each of them the following are created in parallel:
+ * <li> the {@link TargetMembers};
+ * <li> the proxy class (see {@link ProxyFactory}), if the class can be proxied;
+ * <li> the collection proxy classes (see {@link CollectionProxyFactory}) for the collection members annotated with {@code @Child};
+ * <li> the default {@code EntityDescriptor} tree, if an {@link EntityDescriptorTreeRepository} is available.
+ * <br><br>
+ * Failures are logged and do not stop the warm-up, the failing class will be processed again lazily on first use.
+ * When used as a Spring bean the warm-up is performed after all the singletons were instantiated. The time
+ * spent is logged at info level.
+ *
+ * @see com.asentinel.common.orm.config.EnableAsentinelOrm#warmUpPackages()
+ */
+public class OrmWarmUp implements SmartInitializingSingleton {
+	private static final Logger log = LoggerFactory.getLogger(OrmWarmUp.class);
+
+	private final EntityDescriptorTreeRepository entityDescriptorTreeRepository;
+	private final String[] basePackages;
+
+	private int parallelism = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * @param entityDescriptorTreeRepository the repository used to pre-build the default trees, can be {@code null}
+	 * 			in which case no tree is built.
+	 * @param basePackages the packages to scan for {@code @Table} classes. If empty, the warm-up does nothing.
+	 */
+	public OrmWarmUp(EntityDescriptorTreeRepository entityDescriptorTreeRepository, String ... basePackages) {
+		this.entityDescriptorTreeRepository = entityDescriptorTreeRepository;
+		this.basePackages = basePackages != null ? basePackages : new String[0];
+	}
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * Sets the number of threads used for the warm-up. Defaults to the number of available processors.
+	 */
+	public void setParallelism(int parallelism) {
+		Assert.assertStrictPositive(parallelism, "parallelism");
+		this.parallelism = parallelism;
+	}
+
+	@Override
+	public void afterSingletonsInstantiated() {
+		warmUp();
+	}
+
+	/**
+	 * Performs the warm-up.
+	 *
+	 * @return the number of classes that were successfully warmed up.
+	 */
+	public int warmUp() {
+		if (basePackages.length == 0) {
+			log.debug("warmUp - No base packages configured, skipping the warm-up.");
+			return 0;
+		}
+		long t0 = System.nanoTime();
+		Set<Class<?>> classes = scan();
+		long t1 = System.nanoTime();
+
+		Stats stats = new Stats();
+		int threads = Math.min(parallelism, Math.max(1, classes.size()));
+		ExecutorService executor = Executors.newFixedThreadPool(threads, newThreadFactory());
+		try {
+			List<Future<?>> futures = new ArrayList<>(classes.size());
+			for (Class<?> clazz: classes) {
+				futures.add(executor.submit(() -> warmUp(clazz, stats)));
+			}
+			for (Future<?> future: futures) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			log.warn("warmUp - Interrupted, the warm-up is incomplete.");
+		} catch (ExecutionException e) {
+			// should not happen, the task catches everything
+			log.warn("warmUp - Unexpected error, the warm-up is incomplete.", e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+		long t2 = System.nanoTime();
+
+		log.info("warmUp - Warmed up {}/{} classes ({} proxy classes, {} collection proxy classes, {} trees) in {} ms "
+				+ "(scan {} ms) using {} threads.",
+				stats.classes.get(), classes.size(), stats.proxies.get(), stats.collectionProxies.get(), stats.trees.get(),
+				Utils.nanosToMillis(t2 - t0), Utils.nanosToMillis(t1 - t0), threads);
+		return stats.classes.get();
+	}
+
+	Set<Class<?>> scan() {
+		ClassPathScanningCandidateComponentProvider scanner = new ClassPathScanningCandidateComponentProvider(false);
+		scanner.addIncludeFilter(new AnnotationTypeFilter(Table.class));
+		ClassLoader classLoader = ClassUtils.getDefaultClassLoader();
+		Set<Class<?>> classes = new LinkedHashSet<>();
+		for (String basePackage: basePackages) {
+			for (BeanDefinition bd: scanner.findCandidateComponents(basePackage)) {
+				try {
+					classes.add(ClassUtils.forName(bd.getBeanClassName(), classLoader));
+				} catch (ClassNotFoundException | LinkageError e) {
+					log.warn("scan - Can not load class " + bd.getBeanClassName() + ".", e);
+				}
+			}
+		}
+		if (log.isDebugEnabled()) {
+			log.debug("scan - Found {} @Table classes in packages {}.", classes.size(), String.join(", ", basePackages));
+		}
+		return classes;
+	}
+
+	private void warmUp(Class<?> clazz, Stats stats) {
+		try {
+			long t0 = System.nanoTime();
+			TargetMembers targetMembers = TargetMembersHolder.getInstance().getTargetMembers(clazz);
+
+			if (isProxiable(clazz, targetMembers)) {
+				ProxyFactory.getInstance().getProxyObjectFactory(clazz);
+				stats.proxies.incrementAndGet();
+			}
+
+			for (TargetChildMember childMember: targetMembers.getChildMembers()) {
+				if (!(childMember.getAnnotatedElement() instanceof Field)) {
+					continue;
+				}
+				Class<?> memberType = ((Field) childMember.getAnnotatedElement()).getType();
+				if (Collection.class.isAssignableFrom(memberType)
+						|| Map.class.isAssignableFrom(memberType)) {
+					CollectionProxyFactory.getInstance().getProxyObjectFactory(
+							EntityBuilder.getDefaultCollectionProxyType(memberType));
+					stats.collectionProxies.incrementAndGet();
+				}
+			}
+
+			if (entityDescriptorTreeRepository != null) {
+				entityDescriptorTreeRepository.getEntityDescriptorTree(clazz);
+				stats.trees.incrementAndGet();
+			}
+			stats.classes.incrementAndGet();
+			if (log.isTraceEnabled()) {
+				log.trace("warmUp - Class {} warmed up in {} ms.", clazz.getName(), Utils.nanosToMillis(System.nanoTime() - t0));
+			}
+		} catch (RuntimeException | LinkageError e) {
+			log.warn("warmUp - Failed to warm up class " + clazz.getName() + ". It will be processed on first use.", e);
+		}
+	}
+
+	private static boolean isProxiable(Class<?> clazz, TargetMembers targetMembers) {
+		if (Modifier.isFinal(clazz.getModifiers()) || Modifier.isAbstract(clazz.getModifiers())) {
+			return false;
+		}
+		return Entity.class.isAssignableFrom(clazz) || targetMembers.getPkColumnMember() != null;
+	}
+
+	private static CustomizableThreadFactory newThreadFactory() {
+		CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("orm-warm-up-");
+		threadFactory.setDaemon(true);
+		return threadFactory;
+	}
+
+	private static class Stats {
+		final AtomicInteger classes = new AtomicInteger();
+		final AtomicInteger proxies = new AtomicInteger();
+		final AtomicInteger collectionProxies = new AtomicInteger();
+		final AtomicInteger trees = new AtomicInteger();
+	}
+
+	@Override
+	public String toString() {
+		return "OrmWarmUp [basePackages=" + String.join(", ", basePackages) + ", parallelism=" + parallelism + "]";
+	}
+}
@@ -0,0 +1,100 @@
+package com.asentinel.common.orm;
+
+import static com.asentinel.common.orm.EntityDescriptorUtils.convertToNodeMatchers;
+import static com.asentinel.common.orm.EntityDescriptorUtils.match;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.asentinel.common.collections.tree.Node;
+import com.asentinel.common.collections.tree.TreeUtils.NodeMatcher;
+import com.asentinel.common.orm.SimpleEntityDescriptor.Builder;
+import com.asentinel.common.util.Assert;
+
+/**
+ * {@code EntityDescriptorNodeCallback} implementation that narrows the columns selected for
+ * a node in an {@code EntityDescriptor} tree. Only the primary key, the foreign keys needed for
+ * lazy loading and the specified columns are selected for the matched node, the other {@code Column}
+ * annotated members are left with their default values. This is useful for wide tables when only a few
+ * columns are needed, for example a list screen:
+ *
+ * <pre>
+ * List&lt;Invoice&gt; invoices = orm.newSqlBuilder(Invoice.class)
+ * 		.select(
+ * 			Projection.forPath(Invoice.class).columns("Number", "Total"),
+ * 			Projection.forPath(Invoice.class, Customer.class).columns("Name")
+ * 		).exec();
+ * </pre>
+ *
+ * Note that the partially loaded entities should not be used for updates as the unselected
+ * members would overwrite the database values with their defaults.
+ * This class is reusable and thread safe once configured.
+ *
+ * @see SimpleEntityDescriptor.Builder#columns(String...)
+ * @see EntityDescriptorNodeMatcher
+ */
+public class Projection implements EntityDescriptorNodeCallback {
+
+	private final NodeMatcher<EntityDescriptor>[] path;
+	private final List<String> columns;
+
+	/**
+	 * @param columns the column names to select.
+	 * @param path the path to the node, a path with a single element matches the root.
+	 */
+	public Projection(List<String> columns, Object ... path) {
+		Assert.assertNotNull(columns, "columns");
+		if (path == null || path.length == 0) {
+			throw new IllegalArgumentException("The path must have at least 1 element.");
+		}
+		this.columns = List.copyOf(columns);
+		this.path = convertToNodeMatchers(path);
+	}
+
+	@Override
+	public boolean customize(Node<EntityDescriptor> node, Builder builder) {
+		if (match(node, builder, path)) {
+			builder.columns(columns);
+		}
+		return true;
+	}
+
+	/**
+	 * @return the column names selected by this projection.
+	 */
+	public List<String> getColumns() {
+		return columns;
+	}
+
+	/**
+	 * Static factory method, the columns are specified using {@link PathBuilder#columns(String...)}.
+	 */
+	public static PathBuilder forPath(Object ... path) {
+		return new PathBuilder(path);
+	}
+
+	@Override
+	public String toString() {
+		return "Projection [path=" + Arrays.toString(path) + ", columns=" + columns + "]";
+	}
+
+
+	/**
+	 * Intermediate step of {@link Projection#forPath(Object...)}.
+	 */
+	public static final class PathBuilder {
+		private final Object[] path;
+
+		private PathBuilder(Object[] path) {
+			this.path = path;
+		}
+
+		/**
+		 * @return a new {@code Projection} selecting the specified columns.
+		 */
+		public Projection columns(String ... columns) {
+			Assert.assertNotNull(columns, "columns");
+			return new Projection(Arrays.asList(columns), path);
+		}
+	}
+}
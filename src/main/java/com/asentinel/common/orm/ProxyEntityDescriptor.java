@@ -10,8 +10,11 @@ import org.springframework.util.StringUtils;
 
 import com.asentinel.common.collections.tree.Node;
 import com.asentinel.common.collections.tree.SimpleNode;
+import com.asentinel.common.orm.cache.TransactionalIdentityMap;
 import com.asentinel.common.orm.ed.tree.EntityDescriptorTreeRepository;
 import com.asentinel.common.orm.jql.SqlBuilderFactory;
+import com.asentinel.common.orm.mappers.EntityConstructor;
+import com.asentinel.common.orm.proxy.LazyLoadSite;
 import com.asentinel.common.orm.proxy.entity.LazyLoadInterceptor;
 import com.asentinel.common.orm.proxy.entity.ProxyFactory;
 import com.asentinel.common.util.Assert;
@@ -39,9 +42,14 @@ public class ProxyEntityDescriptor<T> extends EntityDescriptor {
 			Class<T> clazz, Member targetMember, String fkName) {
 		super(clazz, fkName, targetMember);
 		Assert.assertNotNull(loader, "loader");
+		if (EntityConstructor.forClass(clazz) != null) {
+			throw new IllegalArgumentException("The class " + clazz.getName() + " is an immutable entity created "
+					+ "through its constructor, it can not be lazy loaded.");
+		}
 		
+		Function<Object, T> siteLoader = LazyLoadSite.wrap(loader, clazz, targetMember);
 		RowMapper<?> entityRowMapper 
-			= (rs, rowNum) -> ProxyFactory.getInstance().newProxy(clazz, loader);
+			= (rs, rowNum) -> ProxyFactory.getInstance().newProxy(clazz, siteLoader);
 			
 		RowMapper<?> entityIdRowMapper = SimpleEntityDescriptor.Builder.getEntityIdRowMapper(clazz, fkName);
 		
@@ -49,14 +57,18 @@ public class ProxyEntityDescriptor<T> extends EntityDescriptor {
 	}
 	
 	
+	/**
+	 * Creates a loader function for the proxies of the specified class. If the table is not overridden the loader 
+	 * takes the entity from the {@link TransactionalIdentityMap} bound to the current transaction or, if the
+	 * class is cacheable in the {@link SqlBuilderFactory#getEntityCache()}, from the cache if possible.
+	 */
 	public static <T> Function<Object, T> getLoader(SqlBuilderFactory sqlBuilderFactory, 
 			Class<T> clazz, String tableName) {
 		Function<Object, T> loader;
 		if (!StringUtils.hasText(tableName) 
 				|| tableName.equalsIgnoreCase(SimpleEntityDescriptor.Builder.getTableName(clazz))) {
-			loader = id -> sqlBuilderFactory.newSqlBuilder(clazz)
-					.select().where().id().eq(id)
-					.execForEntity();
+			// the cache is looked up when the proxy is loaded, most proxies are never loaded
+			loader = id -> EntityLoaders.load(sqlBuilderFactory, clazz, id);
 		} else {
 			if (log.isDebugEnabled()) {
 				log.debug("getLoader - The table name is overridden in the @Child annotation for class " + clazz);
@@ -3,15 +3,18 @@ package com.asentinel.common.orm;
 import static com.asentinel.common.jdbc.ConversionSupport.isPreparedForProxyingInputStreams;
 import static java.util.Collections.emptyMap;
 import static java.util.stream.Collectors.toMap;
+import static java.util.stream.Collectors.toUnmodifiableSet;
 
 import java.lang.reflect.Member;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.function.UnaryOperator;
 
 import org.slf4j.Logger;
@@ -91,6 +94,8 @@ public class SimpleEntityDescriptor extends EntityDescriptor implements QueryRea
 	
 	private final Map<String, UnaryOperator<String>> formulas;
 	
+	private final Set<String> projection;
+	
 	
 	/**
 	 * Constructor for this class, it has only the entity 
@@ -109,7 +114,10 @@ public class SimpleEntityDescriptor extends EntityDescriptor implements QueryRea
 	 * Builder constructor.
 	 */
 	protected SimpleEntityDescriptor(Builder builder) {
-		super(builder.clazz, builder.entityIdRowMapper, builder.mapper, builder.name, 
+		// the projection is applied to a copy, the builder mapper may be supplied by the caller
+		super(builder.clazz, builder.entityIdRowMapper, 
+				builder.projection == null ? builder.mapper : builder.mapper.withProjection(builder.projection), 
+				builder.name, 
 				builder.targetMember);
 		
 		this.parentRelationType = builder.parentRelationType;
@@ -128,6 +136,7 @@ public class SimpleEntityDescriptor extends EntityDescriptor implements QueryRea
 		this.forceManyAsOneInPaginatedQueries = builder.forceManyAsOneInPaginatedQueries;
 		
 		this.formulas = builder.formulas;
+		this.projection = builder.projection;
 	}
 	
 	
@@ -253,6 +262,10 @@ public class SimpleEntityDescriptor extends EntityDescriptor implements QueryRea
 			if (colName == null) {
 				continue;
 			}
+			if (projection != null && !projection.contains(colName.toLowerCase())) {
+				// not part of the projection, the member is left unpopulated
+				continue;
+			}
 			if (isPreparedForProxyingInputStreams(member.getMemberClass(), getEntityRowMapper())) {
 				// InputStreams should be created as proxies, so we don't select the column
 				// The above condition has to work together with the ConversionSupport InputStream
@@ -288,6 +301,17 @@ public class SimpleEntityDescriptor extends EntityDescriptor implements QueryRea
 		return columnNames.values();
 	}
 	
+	/**
+	 * @return the lower case names of the {@code Column} annotated members that are selected
+	 * 			and mapped for this descriptor or {@code null} if all the columns are selected.
+	 * 			The primary key and the foreign keys needed for lazy loading are always selected.
+	 * 
+	 * @see Builder#columns(String...)
+	 */
+	public Set<String> getProjection() {
+		return projection;
+	}
+	
 	@Override
 	public UnaryOperator<String> getFormula(String columnName) {
 		if (formulas == null) {
@@ -355,6 +379,7 @@ public class SimpleEntityDescriptor extends EntityDescriptor implements QueryRea
 		protected boolean forceManyAsOneInPaginatedQueries;
 		
 		protected Map<String, UnaryOperator<String>> formulas = emptyMap();		
+		protected Set<String> projection;
 		
 		private SqlQuery queryEx;
 		private LobHandler lobHandler;
@@ -566,6 +591,45 @@ public class SimpleEntityDescriptor extends EntityDescriptor implements QueryRea
 			return this;
 		}
 		
+		/**
+		 * Narrows the columns selected for this descriptor to the specified
+		 * {@code Column} names. The members mapped to other columns are not selected
+		 * and are left with their default values in the created entities. The primary key
+		 * and the foreign keys needed for lazy loading children are always selected. 
+		 * For example:
+		 * 
+		 * <pre>
+		 * SimpleEntityDescriptor.Builder b = ....;
+		 * b.columns("Name", "Status");
+		 * </pre>
+		 * 
+		 * will render a SQL query like {@code select Id, Name, Status from ...} even if
+		 * the entity maps other columns.
+		 * 
+		 * @param columnNames the column names, if {@code null} all the columns are selected.
+		 * @return this builder.
+		 * 
+		 * @see Projection
+		 * @see AnnotationRowMapper#withProjection(Collection)
+		 */
+		public Builder columns(String ... columnNames) {
+			return columns(columnNames == null ? null : Arrays.asList(columnNames));
+		}
+
+		/**
+		 * @see #columns(String...)
+		 */
+		public Builder columns(Collection<String> columnNames) {
+			if (columnNames == null) {
+				this.projection = null;
+				return this;
+			}
+			this.projection = columnNames.stream()
+					.map(String::toLowerCase)
+					.collect(toUnmodifiableSet());
+			return this;
+		}
+		
 		/**
 		 * Sets the {@code SqlQuery} that will be used for proxying
 		 * {@code InputStreams}. If this is {@code null} input streams will be eagerly
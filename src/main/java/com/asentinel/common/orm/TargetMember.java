@@ -4,9 +4,12 @@ import java.lang.annotation.Annotation;
 import java.lang.reflect.AnnotatedElement;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 
 import org.springframework.core.convert.Property;
 import org.springframework.core.convert.TypeDescriptor;
+import org.springframework.util.ReflectionUtils;
 
 import com.asentinel.common.orm.mappers.Column;
 import com.asentinel.common.orm.mappers.PkColumn;
@@ -27,6 +30,10 @@ public class TargetMember {
 	
 	private final TypeDescriptor typeDescriptor;
 	
+	// direct accessors, set only for generated metadata
+	private Function<Object, Object> reader;
+	private BiConsumer<Object, Object> writer;
+	
 	public TargetMember(AnnotatedElement member, Annotation annotation) {
 		this(member, annotation, null, null);
 	}
@@ -100,6 +107,57 @@ public class TargetMember {
 		return setMethod;
 	}
 	
+	/**
+	 * @return a direct (non reflective) accessor that reads the value of this member from an entity: the field
+	 * 			value for annotated fields or the getter result for annotated methods. It is available only if
+	 * 			the {@link GeneratedTargetMembers} was generated for the entity class and the member is accessible
+	 * 			from the entity package, otherwise it is {@code null} and reflection should be used.
+	 */
+	public Function<Object, Object> getReader() {
+		return reader;
+	}
+
+	/**
+	 * @return a direct (non reflective) accessor that writes the value of this member in an entity: it sets the field
+	 * 			for annotated fields or calls the annotated method. Can be {@code null}, see {@link #getReader()}.
+	 */
+	public BiConsumer<Object, Object> getWriter() {
+		return writer;
+	}
+	
+	/**
+	 * Reads the value of this member from the specified entity using the {@link #getReader()} if
+	 * available or reflection otherwise: the field value for annotated fields or the getter result
+	 * for annotated methods.
+	 * 
+	 * @param entity the entity.
+	 * @return the member value.
+	 * @throws IllegalArgumentException if the member is a method without a corresponding getter.
+	 */
+	public Object getValue(Object entity) {
+		if (reader != null) {
+			return reader.apply(entity);
+		}
+		if (member instanceof Field) {
+			ReflectionUtils.makeAccessible((Field) member);
+			return ReflectionUtils.getField((Field) member, entity);
+		} else if (member instanceof Method) {
+			if (getMethod == null) {
+				throw new IllegalArgumentException("No get method available for setter " + member
+						+ ". Please define a corresponding getter method.");
+			}
+			ReflectionUtils.makeAccessible(getMethod);
+			return ReflectionUtils.invokeMethod(getMethod, entity);
+		} else {
+			throw new IllegalStateException("Expected Field or Method. Found " + member.getClass().getName());
+		}
+	}
+	
+	void setAccessors(Function<Object, Object> reader, BiConsumer<Object, Object> writer) {
+		this.reader = reader;
+		this.writer = writer;
+	}
+	
 	public Class<?> getMemberClass() {
 		if (member instanceof Method) {
 			Class<?>[] parameterTypes = ((Method) member).getParameterTypes();
@@ -7,10 +7,18 @@ import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.util.ClassUtils;
 import org.springframework.util.ReflectionUtils;
 
 import com.asentinel.common.orm.mappers.Child;
@@ -18,19 +26,25 @@ import com.asentinel.common.orm.mappers.Column;
 import com.asentinel.common.orm.mappers.PkColumn;
 import com.asentinel.common.orm.mappers.Table;
 import com.asentinel.common.util.Assert;
-import com.asentinel.common.util.ConcurrentCache;
+import com.asentinel.common.util.ClassValueCache;
 
 /**
  * Class that calculates and caches the {@link TargetMembers} for a {@link Class}. This is
  * a singleton, use {@link #getInstance()} to obtain an instance.
+ * <br>
+ * If a {@link GeneratedTargetMembers} implementation was generated at compile time for a class, 
+ * the annotated members and their getter/setter methods are taken from it instead of being discovered by reflection.
  * 
  * @see #getTargetMembers(Class)
  * @see TargetMembers
+ * @see GeneratedTargetMembers
+ * @see OrmMetadataRegistry
  * 
  * @author Razvan Popian
  *
  */
-public final class TargetMembersHolder {
+public final class TargetMembersHolder implements ClassMetadataCache {
+	private final static Logger log = LoggerFactory.getLogger(TargetMembersHolder.class);
 	
 	private static final TargetMembersHolder instance = new TargetMembersHolder();
 	
@@ -38,11 +52,11 @@ public final class TargetMembersHolder {
 		return instance;
 	}
 	
-	private final ConcurrentCache<String, TargetMembers> cache = new ConcurrentCache<String, TargetMembers>();
+	private final ClassValueCache<TargetMembers> cache = new ClassValueCache<>();
 	
 	/** private constructor */
 	private TargetMembersHolder() {
-	
+		OrmMetadataRegistry.register(this);
 	}
 
 	/**
@@ -52,7 +66,7 @@ public final class TargetMembersHolder {
 	 */
 	public TargetMembers getTargetMembers(final Class<?> clazz) {
 		Assert.assertNotNull(clazz, "clazz");
-		return cache.get(clazz.getName(),
+		return cache.get(clazz,
 			new Callable<TargetMembers>() {
 				@Override
 				public TargetMembers call() throws Exception {
@@ -62,92 +76,304 @@ public final class TargetMembersHolder {
 		);
 	}
 	
+	@Override
+	public void invalidate(Class<?> clazz) {
+		cache.remove(clazz);
+	}
+
+	@Override
+	public void invalidate(ClassLoader classLoader) {
+		cache.remove(classLoader);
+	}
+
+	@Override
+	public void invalidateAll() {
+		cache.clear();
+	}
+	
 	
 	private static TargetMembers getTargetMembersInternal(final Class<?> clazz) {
-		final TargetMembers members = new TargetMembers();
-		
-		Table tableAnnotation = AnnotationUtils.findAnnotation(clazz, Table.class);
-		members.setTableAnnotation(tableAnnotation);
+		GeneratedTargetMembers generated = findGeneratedTargetMembers(clazz);
+		if (generated != null) {
+			List<GeneratedMember> generatedMembers;
+			try {
+				generatedMembers = resolve(generated, clazz);
+			} catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+				log.warn("getTargetMembersInternal - The generated members for class " + clazz.getName() 
+						+ " do not match the class, they will be ignored. Is the generated code stale ?", e);
+				generatedMembers = null;
+			}
+			if (generatedMembers != null) {
+				sortMethodMembers(generatedMembers, clazz);
+				TargetMembers members = newTargetMembers(clazz);
+				for (GeneratedMember generatedMember: generatedMembers) {
+					process(generatedMember.member, members, clazz, generatedMember);
+				}
+				return members;
+			}
+		}
 		
-		TableAnnotationInfo firstNonView = findFirstNonViewTableAnnotation(clazz);
-		members.setFirstNonViewTable(firstNonView);
+		final TargetMembers members = newTargetMembers(clazz);
 		
 		// fields - processed before methods, this is important
 		ReflectionUtils.doWithFields(clazz, new ReflectionUtils.FieldCallback() {
 			
 			@Override
 			public void doWith(Field field) {
-				process(field, members, clazz);
+				process(field, members, clazz, null);
 			}
 		});
 		
 		// methods, we do not include overridden methods from super classes
 		Method[] methods = ReflectionUtils.getUniqueDeclaredMethods(clazz);
 		for (Method method: methods) {
-			process(method, members, clazz);
+			process(method, members, clazz, null);
 		}
 		
 		return members;
 	}
 	
+	private static TargetMembers newTargetMembers(Class<?> clazz) {
+		TargetMembers members = new TargetMembers();
+		
+		Table tableAnnotation = AnnotationUtils.findAnnotation(clazz, Table.class);
+		members.setTableAnnotation(tableAnnotation);
+		
+		TableAnnotationInfo firstNonView = findFirstNonViewTableAnnotation(clazz);
+		members.setFirstNonViewTable(firstNonView);
+		return members;
+	}
+	
 	private static final String SET_METHOD_PREFIX = "set";
 	private static final String GET_METHOD_PREFIX = "get";
 	private static final String IS_METHOD_PREFIX = "is";
 	
-	private static void process(AnnotatedElement member, TargetMembers members, Class<?> clazz) {
+	/**
+	 * @param generated the generated getter/setter methods and accessors for the member, if {@code null}
+	 * 			the getter/setter methods are discovered by reflection.
+	 */
+	private static void process(AnnotatedElement member, TargetMembers members, Class<?> clazz, GeneratedMember generated) {
 		// The processing order matters !
 		PkColumn pkColumn = findAnnotation(member, PkColumn.class);
 		if (pkColumn != null) {
 			if (members.getPkColumnMember() != null) {
 				throw new IllegalStateException("Multiple @PkColumn annotations found in class " + clazz.getName() + " .");
 			}
+			TargetMember targetMember;
 			if (member instanceof Method) {
 				// method
-				members.setPkColumnMember(new TargetMember(member, pkColumn, 
-						findGetterMethod(clazz, (Method) member), (Method) member)
-				);
+				targetMember = new TargetMember(member, pkColumn, 
+						generated != null ? generated.getter : findGetterMethod(clazz, (Method) member), (Method) member);
 			} else {
 				// field
-				Method[] methods = findGetterAndSetterMethods(clazz, (Field) member);
-				members.setPkColumnMember(new TargetMember(member, pkColumn, methods[0], methods[1]));				
+				Method[] methods = generated != null ? generated.getGetterAndSetter() : findGetterAndSetterMethods(clazz, (Field) member);
+				targetMember = new TargetMember(member, pkColumn, methods[0], methods[1]);
 			}
+			setAccessors(targetMember, generated);
+			members.setPkColumnMember(targetMember);
 			return;
 		}
 		
 		Column column = findAnnotation(member, Column.class);
 		if (column != null) {
+			TargetMember targetMember;
 			if (member instanceof Method) {
 				// method
 				Method getter = null;
-				try {
-					getter = findGetterMethod(clazz, (Method) member);
-				} catch(Exception e) { }
-				members.addColumnMember(new TargetMember(member, column, getter, (Method) member));
+				if (generated != null) {
+					getter = generated.getter;
+				} else {
+					try {
+						getter = findGetterMethod(clazz, (Method) member);
+					} catch(Exception e) { }
+				}
+				targetMember = new TargetMember(member, column, getter, (Method) member);
 			} else {
 				// field
-				Method[] methods = findGetterAndSetterMethods(clazz, (Field) member);
-				members.addColumnMember(new TargetMember(member, column, methods[0], methods[1]));
+				Method[] methods = generated != null ? generated.getGetterAndSetter() : findGetterAndSetterMethods(clazz, (Field) member);
+				targetMember = new TargetMember(member, column, methods[0], methods[1]);
 			}
+			setAccessors(targetMember, generated);
+			members.addColumnMember(targetMember);
 			return;
 		}
 
 		Child childAnn = findAnnotation(member, Child.class);
 		if (childAnn != null) {
+			TargetChildMember targetMember;
 			if (member instanceof Method) {
 				// method
 				Method getter = null;
-				try {
-					getter = findGetterMethod(clazz, (Method) member);
-				} catch(Exception e) { }
-				members.addChildMember(new TargetChildMember(member, childAnn, getter, (Method) member));
+				if (generated != null) {
+					getter = generated.getter;
+				} else {
+					try {
+						getter = findGetterMethod(clazz, (Method) member);
+					} catch(Exception e) { }
+				}
+				targetMember = new TargetChildMember(member, childAnn, getter, (Method) member);
 			} else {
 				// field
-				members.addChildMember(new TargetChildMember(member, childAnn));
+				targetMember = new TargetChildMember(member, childAnn);
 			}
+			setAccessors(targetMember, generated);
+			members.addChildMember(targetMember);
 			return;
 		}
 	}
 	
+	private static void setAccessors(TargetMember targetMember, GeneratedMember generated) {
+		if (generated != null) {
+			targetMember.setAccessors(generated.reader, generated.writer);
+		}
+	}
+	
+	// Generated members support
+	
+	private static GeneratedTargetMembers findGeneratedTargetMembers(Class<?> clazz) {
+		String generatedClassName = clazz.getName() + GeneratedTargetMembers.CLASS_NAME_SUFFIX;
+		ClassLoader classLoader = clazz.getClassLoader();
+		if (!ClassUtils.isPresent(generatedClassName, classLoader)) {
+			return null;
+		}
+		try {
+			Class<?> generatedClass = ClassUtils.forName(generatedClassName, classLoader);
+			if (!GeneratedTargetMembers.class.isAssignableFrom(generatedClass)) {
+				return null;
+			}
+			if (log.isDebugEnabled()) {
+				log.debug("findGeneratedTargetMembers - Using the generated members " + generatedClassName + ".");
+			}
+			return (GeneratedTargetMembers) ReflectionUtils.accessibleConstructor(generatedClass).newInstance();
+		} catch (ReflectiveOperationException | LinkageError e) {
+			log.warn("findGeneratedTargetMembers - Failed to instantiate " + generatedClassName + ", it will be ignored.", e);
+			return null;
+		}
+	}
+	
+	private static List<GeneratedMember> resolve(GeneratedTargetMembers generated, Class<?> clazz) throws ReflectiveOperationException {
+		List<GeneratedMember> generatedMembers = new ArrayList<>();
+		generated.describe(new GeneratedTargetMembers.Descriptor() {
+			
+			@Override
+			public GeneratedTargetMembers.Member field(String declaringClassName, String name) {
+				GeneratedMember generatedMember = new GeneratedMember(declaringClassName, name, null);
+				generatedMembers.add(generatedMember);
+				return generatedMember;
+			}
+			
+			@Override
+			public GeneratedTargetMembers.Member method(String declaringClassName, String name, String parameterTypeName) {
+				GeneratedMember generatedMember = new GeneratedMember(declaringClassName, name, parameterTypeName);
+				generatedMembers.add(generatedMember);
+				return generatedMember;
+			}
+		});
+		ClassLoader classLoader = clazz.getClassLoader();
+		for (GeneratedMember generatedMember: generatedMembers) {
+			generatedMember.resolve(classLoader);
+		}
+		return generatedMembers;
+	}
+	
+	/**
+	 * The generated members are listed in the declaration order, the fields first and then the methods, starting
+	 * with the entity class and continuing with its superclasses. This is the order used by the reflection path
+	 * for fields, but the order of the methods returned by {@link Class#getDeclaredMethods()} is not specified and
+	 * can not be known at compile time. So the method members are sorted here in the order used by the reflection path, 
+	 * this way the column order (and the SQL generated) does not depend on the presence of the generated code.
+	 */
+	private static void sortMethodMembers(List<GeneratedMember> generatedMembers, Class<?> clazz) {
+		if (generatedMembers.stream().noneMatch(generatedMember -> generatedMember.member instanceof Method)) {
+			return;
+		}
+		Method[] methods = ReflectionUtils.getUniqueDeclaredMethods(clazz);
+		Map<Method, Integer> indexes = new HashMap<>();
+		for (int i = 0; i < methods.length; i++) {
+			indexes.put(methods[i], i);
+		}
+		// stable sort, the fields keep their order and stay in front of the methods
+		generatedMembers.sort(Comparator.comparingInt(generatedMember -> generatedMember.member instanceof Method 
+				? indexes.getOrDefault(generatedMember.member, Integer.MAX_VALUE) : -1));
+	}
+	
+	/**
+	 * Collects a member described by a {@link GeneratedTargetMembers} and resolves
+	 * it to the reflection objects.
+	 */
+	private static final class GeneratedMember implements GeneratedTargetMembers.Member {
+		private final String declaringClassName;
+		private final String name;
+		private final String parameterTypeName;
+		
+		private String getterDeclaringClassName;
+		private String getterName;
+
+		private String setterDeclaringClassName;
+		private String setterName;
+		private String setterParameterTypeName;
+		
+		private Function<Object, Object> reader;
+		private BiConsumer<Object, Object> writer;
+		
+		private AnnotatedElement member;
+		private Method getter;
+		private Method setter;
+		
+		GeneratedMember(String declaringClassName, String name, String parameterTypeName) {
+			this.declaringClassName = declaringClassName;
+			this.name = name;
+			this.parameterTypeName = parameterTypeName;
+		}
+
+		@Override
+		public GeneratedTargetMembers.Member getter(String declaringClassName, String name) {
+			this.getterDeclaringClassName = declaringClassName;
+			this.getterName = name;
+			return this;
+		}
+
+		@Override
+		public GeneratedTargetMembers.Member setter(String declaringClassName, String name, String parameterTypeName) {
+			this.setterDeclaringClassName = declaringClassName;
+			this.setterName = name;
+			this.setterParameterTypeName = parameterTypeName;
+			return this;
+		}
+
+		@Override
+		public GeneratedTargetMembers.Member reader(Function<Object, Object> reader) {
+			this.reader = reader;
+			return this;
+		}
+
+		@Override
+		public GeneratedTargetMembers.Member writer(BiConsumer<Object, Object> writer) {
+			this.writer = writer;
+			return this;
+		}
+		
+		void resolve(ClassLoader classLoader) throws ReflectiveOperationException {
+			Class<?> declaringClass = ClassUtils.forName(declaringClassName, classLoader);
+			if (parameterTypeName == null) {
+				member = declaringClass.getDeclaredField(name);
+			} else {
+				member = declaringClass.getDeclaredMethod(name, ClassUtils.forName(parameterTypeName, classLoader));
+			}
+			if (getterName != null) {
+				getter = ClassUtils.forName(getterDeclaringClassName, classLoader).getDeclaredMethod(getterName);
+			}
+			if (setterName != null) {
+				setter = ClassUtils.forName(setterDeclaringClassName, classLoader)
+						.getDeclaredMethod(setterName, ClassUtils.forName(setterParameterTypeName, classLoader));
+			}
+		}
+		
+		Method[] getGetterAndSetter() {
+			return new Method[] {getter, setter};
+		}
+	}
+	
 	// Utility static methods
 	
 	private static <T extends Annotation> T findAnnotation(AnnotatedElement member, Class<T> annotationType) {
@@ -0,0 +1,607 @@
+package com.asentinel.common.orm.apt;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+
+import com.asentinel.common.orm.GeneratedTargetMembers;
+import com.asentinel.common.orm.TargetMembersHolder;
+import com.asentinel.common.orm.mappers.Child;
+import com.asentinel.common.orm.mappers.Column;
+import com.asentinel.common.orm.mappers.PkColumn;
+import com.asentinel.common.orm.mappers.Table;
+
+/**
+ * Optional annotation processor that generates at compile time a {@link GeneratedTargetMembers} implementation
+ * for each class annotated with {@link Table}. The generated class lists the members annotated with {@link PkColumn},
+ * {@link Column} or {@link Child} together with their getter/setter methods and provides direct accessors for the members
+ * that are accessible from the entity package. The {@link TargetMembersHolder} uses the generated class instead of
+ * introspecting the entity class hierarchy.
+ * <br><br>
+ * The processor is not registered as a service, it has to be enabled explicitly, for example with the
+ * Maven compiler plugin:
+ * <pre>
+ * &lt;annotationProcessors&gt;
+ *     &lt;annotationProcessor&gt;com.asentinel.common.orm.apt.TargetMembersProcessor&lt;/annotationProcessor&gt;
+ * &lt;/annotationProcessors&gt;
+ * </pre>
+ * The processor mirrors the runtime member discovery rules of the {@code TargetMembersHolder}. If it can not
+ * guarantee the same result for a class (for example a class with annotations used as meta annotations, with methods
+ * that require bridge methods or with ambiguous getter/setter methods) it does not generate anything for that class
+ * and the runtime reflection is used as before. A note is emitted in this case.
+ *
+ * @see GeneratedTargetMembers
+ * @see TargetMembersHolder
+ */
+@SupportedAnnotationTypes("com.asentinel.common.orm.mappers.Table")
+public class TargetMembersProcessor extends AbstractProcessor {
+
+	private static final String SET_METHOD_PREFIX = "set";
+	private static final String GET_METHOD_PREFIX = "get";
+	private static final String IS_METHOD_PREFIX = "is";
+
+	private final Set<String> generated = new HashSet<>();
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		for (Element element: roundEnv.getElementsAnnotatedWith(Table.class)) {
+			if (element.getKind() != ElementKind.CLASS) {
+				continue;
+			}
+			TypeElement type = (TypeElement) element;
+			if (type.getNestingKind() != NestingKind.TOP_LEVEL
+					&& type.getNestingKind() != NestingKind.MEMBER) {
+				continue;
+			}
+			String binaryName = processingEnv.getElementUtils().getBinaryName(type).toString();
+			if (!generated.add(binaryName)) {
+				continue;
+			}
+			try {
+				write(type, binaryName, new EntityModel(type).generate());
+			} catch (UnsupportedEntityException e) {
+				processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+						"No target members generated for " + binaryName + ": " + e.getMessage()
+						+ ". Reflection will be used at runtime.", type);
+			} catch (IOException e) {
+				processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+						"Failed to write the target members for " + binaryName + ": " + e.getMessage(), type);
+			}
+		}
+		// @Table is not claimed, other processors may need it
+		return false;
+	}
+
+	private void write(TypeElement type, String binaryName, String body) throws IOException {
+		PackageElement pkg = processingEnv.getElementUtils().getPackageOf(type);
+		String packageName = pkg.isUnnamed() ? "" : pkg.getQualifiedName().toString();
+		String simpleName = (packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1))
+				+ GeneratedTargetMembers.CLASS_NAME_SUFFIX;
+		String qualifiedName = packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+		try (Writer writer = processingEnv.getFiler().createSourceFile(qualifiedName, type).openWriter();
+				PrintWriter out = new PrintWriter(writer)) {
+			if (!packageName.isEmpty()) {
+				out.println("package " + packageName + ";");
+				out.println();
+			}
+			out.println("@javax.annotation.processing.Generated(\"" + TargetMembersProcessor.class.getName() + "\")");
+			out.println("public final class " + simpleName + " implements " + GeneratedTargetMembers.class.getCanonicalName() + " {");
+			out.println();
+			out.println("\t@Override");
+			out.println("\tpublic void describe(" + GeneratedTargetMembers.Descriptor.class.getCanonicalName() + " descriptor) {");
+			out.print(body);
+			out.println("\t}");
+			out.println("}");
+		}
+	}
+
+
+	private enum MemberKind {
+		PK, COLUMN, CHILD
+	}
+
+	private static class UnsupportedEntityException extends Exception {
+		private static final long serialVersionUID = 1L;
+
+		UnsupportedEntityException(String message) {
+			super(message);
+		}
+	}
+
+
+	/**
+	 * Mirrors the {@code TargetMembersHolder} discovery logic for one entity class.
+	 */
+	private class EntityModel {
+		private final Elements elements = processingEnv.getElementUtils();
+		private final Types types = processingEnv.getTypeUtils();
+
+		private final TypeElement entity;
+		private final PackageElement entityPackage;
+		private final boolean entityAccessible;
+
+		// the entity class followed by its superclasses, java.lang.Object excluded
+		private final List<TypeElement> hierarchy = new ArrayList<>();
+		// all the interfaces implemented by the classes in the hierarchy
+		private final Set<TypeElement> interfaces = new LinkedHashSet<>();
+
+		private final StringBuilder body = new StringBuilder();
+		private boolean pkFound = false;
+
+		EntityModel(TypeElement entity) {
+			this.entity = entity;
+			this.entityPackage = elements.getPackageOf(entity);
+			this.entityAccessible = isAccessible(entity);
+			TypeElement type = entity;
+			while (type != null && !type.getQualifiedName().contentEquals(Object.class.getName())) {
+				hierarchy.add(type);
+				collectInterfaces(type);
+				type = asTypeElement(type.getSuperclass());
+			}
+		}
+
+		private void collectInterfaces(TypeElement type) {
+			for (TypeMirror ifc: type.getInterfaces()) {
+				TypeElement ifcElement = asTypeElement(ifc);
+				if (ifcElement != null && interfaces.add(ifcElement)) {
+					collectInterfaces(ifcElement);
+				}
+			}
+		}
+
+		String generate() throws UnsupportedEntityException {
+			checkNoBridgeMethods();
+			checkInterfaces();
+
+			// fields - processed before methods, this is important
+			for (TypeElement type: hierarchy) {
+				for (VariableElement field: ElementFilter.fieldsIn(type.getEnclosedElements())) {
+					MemberKind kind = getKind(field);
+					if (kind != null) {
+						processField(field, kind);
+					}
+				}
+			}
+
+			// methods, we do not include overridden methods from super classes
+			Set<String> signatures = new HashSet<>();
+			for (TypeElement type: hierarchy) {
+				for (ExecutableElement method: ElementFilter.methodsIn(type.getEnclosedElements())) {
+					if (!signatures.add(getSignature(method))) {
+						continue;
+					}
+					MemberKind kind = getMethodKind(method);
+					if (kind != null) {
+						processMethod(method, kind);
+					}
+				}
+			}
+			return body.toString();
+		}
+
+		private void processField(VariableElement field, MemberKind kind) throws UnsupportedEntityException {
+			checkPk(kind);
+			TypeElement declaringType = (TypeElement) field.getEnclosingElement();
+			body.append("\t\tdescriptor.field(\"").append(binaryName(declaringType)).append("\", \"")
+				.append(field.getSimpleName()).append("\")");
+			if (kind != MemberKind.CHILD) {
+				String fieldName = field.getSimpleName().toString();
+				TypeMirror fieldType = types.erasure(field.asType());
+				ExecutableElement getter = selectGetter(fieldName, fieldType);
+				if (getter != null) {
+					appendGetter(getter);
+				}
+				ExecutableElement setter = selectSetter(fieldName, fieldType);
+				if (setter != null) {
+					appendSetter(setter);
+				}
+			}
+			if (!field.getModifiers().contains(Modifier.STATIC)
+					&& entityAccessible
+					&& isTypeAccessible(declaringType)
+					&& isMemberAccessible(field)) {
+				String target = "((" + declaringType.getQualifiedName() + ") e)." + field.getSimpleName();
+				body.append("\n\t\t\t.reader(e -> ").append(target).append(")");
+				String value = getValue(field.asType());
+				if (!field.getModifiers().contains(Modifier.FINAL) && value != null) {
+					body.append("\n\t\t\t.writer((e, v) -> ").append(target).append(" = ").append(value).append(")");
+				}
+			}
+			body.append(";\n");
+		}
+
+		private void processMethod(ExecutableElement method, MemberKind kind) throws UnsupportedEntityException {
+			checkPk(kind);
+			if (method.getParameters().size() != 1) {
+				throw new UnsupportedEntityException("the annotated method " + method + " does not have exactly one parameter");
+			}
+			TypeElement declaringType = (TypeElement) method.getEnclosingElement();
+			TypeMirror parameterType = method.getParameters().get(0).asType();
+			body.append("\t\tdescriptor.method(\"").append(binaryName(declaringType)).append("\", \"")
+				.append(method.getSimpleName()).append("\", \"").append(typeName(parameterType)).append("\")");
+
+			ExecutableElement getter = null;
+			String name = method.getSimpleName().toString();
+			if (name.toLowerCase().startsWith(SET_METHOD_PREFIX)) {
+				getter = selectGetter(name.substring(SET_METHOD_PREFIX.length()), types.erasure(parameterType));
+			}
+			if (getter == null && kind == MemberKind.PK) {
+				// the runtime throws an exception in this case
+				throw new UnsupportedEntityException("no getter method for the @PkColumn method " + method);
+			}
+			if (getter != null) {
+				appendGetter(getter);
+			}
+
+			boolean instanceMethods = entityAccessible && !method.getModifiers().contains(Modifier.STATIC);
+			if (instanceMethods && getter != null
+					&& !getter.getModifiers().contains(Modifier.STATIC)
+					&& isMemberAccessible(getter)) {
+				body.append("\n\t\t\t.reader(e -> ((").append(entity.getQualifiedName()).append(") e).")
+					.append(getter.getSimpleName()).append("())");
+			}
+			String value = getValue(parameterType);
+			if (instanceMethods && isMemberAccessible(method) && value != null) {
+				body.append("\n\t\t\t.writer((e, v) -> ((").append(entity.getQualifiedName()).append(") e).")
+					.append(method.getSimpleName()).append("(").append(value).append("))");
+			}
+			body.append(";\n");
+		}
+
+		private void checkPk(MemberKind kind) throws UnsupportedEntityException {
+			if (kind == MemberKind.PK) {
+				if (pkFound) {
+					// the runtime throws an exception in this case
+					throw new UnsupportedEntityException("multiple @PkColumn annotations");
+				}
+				pkFound = true;
+			}
+		}
+
+		private void appendGetter(ExecutableElement getter) {
+			body.append("\n\t\t\t.getter(\"").append(binaryName((TypeElement) getter.getEnclosingElement())).append("\", \"")
+				.append(getter.getSimpleName()).append("\")");
+		}
+
+		private void appendSetter(ExecutableElement setter) {
+			body.append("\n\t\t\t.setter(\"").append(binaryName((TypeElement) setter.getEnclosingElement())).append("\", \"")
+				.append(setter.getSimpleName()).append("\", \"")
+				.append(typeName(setter.getParameters().get(0).asType())).append("\")");
+		}
+
+		// getter/setter selection, see TargetMembersHolder#findGetterAndSetterMethods
+
+		private ExecutableElement selectGetter(String propertyName, TypeMirror propertyType) throws UnsupportedEntityException {
+			String gName = GET_METHOD_PREFIX + propertyName;
+			String isName = IS_METHOD_PREFIX + propertyName;
+			boolean bool = propertyType.getKind() == TypeKind.BOOLEAN
+					|| types.isSameType(propertyType, elements.getTypeElement(Boolean.class.getName()).asType());
+			List<ExecutableElement> candidates = new ArrayList<>(1);
+			for (TypeElement type: hierarchy) {
+				int count = 0;
+				for (ExecutableElement method: ElementFilter.methodsIn(type.getEnclosedElements())) {
+					if (method.getParameters().isEmpty()
+							&& method.getReturnType().getKind() != TypeKind.VOID
+							&& (gName.equalsIgnoreCase(method.getSimpleName().toString())
+									|| bool && isName.equalsIgnoreCase(method.getSimpleName().toString()))) {
+						candidates.add(method);
+						count++;
+					}
+				}
+				if (count > 1) {
+					throw new UnsupportedEntityException("multiple getter candidates for " + propertyName + " in " + type);
+				}
+			}
+			if (candidates.isEmpty()) {
+				return null;
+			}
+			// the most specific return type wins, the sort is stable so the subclass method
+			// is preferred if the return types are the same
+			Collections.sort(candidates, (m1, m2) -> {
+				TypeMirror r1 = types.erasure(m1.getReturnType());
+				TypeMirror r2 = types.erasure(m2.getReturnType());
+				if (types.isSameType(r1, r2)) {
+					return 0;
+				}
+				if (types.isAssignable(r2, r1)) {
+					return 1;
+				}
+				return -1;
+			});
+			return candidates.get(0);
+		}
+
+		private ExecutableElement selectSetter(String fieldName, TypeMirror fieldType) throws UnsupportedEntityException {
+			String sName = SET_METHOD_PREFIX + fieldName;
+			List<ExecutableElement> candidates = new ArrayList<>(1);
+			for (TypeElement type: hierarchy) {
+				int count = 0;
+				for (ExecutableElement method: ElementFilter.methodsIn(type.getEnclosedElements())) {
+					if (method.getParameters().size() == 1
+							&& method.getReturnType().getKind() == TypeKind.VOID
+							&& sName.equalsIgnoreCase(method.getSimpleName().toString())) {
+						candidates.add(method);
+						count++;
+					}
+				}
+				if (count > 1) {
+					throw new UnsupportedEntityException("multiple setter candidates for " + fieldName + " in " + type);
+				}
+			}
+			if (candidates.isEmpty()) {
+				return null;
+			}
+			for (ExecutableElement candidate: candidates) {
+				if (types.isSameType(types.erasure(candidate.getParameters().get(0).asType()), fieldType)) {
+					return candidate;
+				}
+			}
+			return candidates.get(0);
+		}
+
+		// annotations
+
+		private MemberKind getKind(Element element) throws UnsupportedEntityException {
+			boolean pk = false;
+			boolean column = false;
+			boolean child = false;
+			for (AnnotationMirror am: element.getAnnotationMirrors()) {
+				TypeElement annType = (TypeElement) am.getAnnotationType().asElement();
+				String annName = annType.getQualifiedName().toString();
+				if (PkColumn.class.getName().equals(annName)) {
+					pk = true;
+				} else if (Column.class.getName().equals(annName)) {
+					column = true;
+				} else if (Child.class.getName().equals(annName)) {
+					child = true;
+				} else if (annType.getAnnotation(PkColumn.class) != null
+						|| annType.getAnnotation(Column.class) != null
+						|| annType.getAnnotation(Child.class) != null) {
+					throw new UnsupportedEntityException("meta annotation " + annName + " on " + element);
+				}
+			}
+			// same precedence as at runtime
+			if (pk) {
+				return MemberKind.PK;
+			} else if (column) {
+				return MemberKind.COLUMN;
+			} else if (child) {
+				return MemberKind.CHILD;
+			}
+			return null;
+		}
+
+		/**
+		 * The annotations of a method are inherited from the methods it overrides.
+		 */
+		private MemberKind getMethodKind(ExecutableElement method) throws UnsupportedEntityException {
+			MemberKind kind = getKind(method);
+			if (method.getModifiers().contains(Modifier.STATIC)
+					|| method.getModifiers().contains(Modifier.PRIVATE)) {
+				return kind;
+			}
+			TypeElement declaringType = (TypeElement) method.getEnclosingElement();
+			for (TypeElement type: getSupertypes(declaringType)) {
+				for (ExecutableElement superMethod: ElementFilter.methodsIn(type.getEnclosedElements())) {
+					if (superMethod.getSimpleName().equals(method.getSimpleName())
+							&& elements.overrides(method, superMethod, declaringType)) {
+						kind = min(kind, getKind(superMethod));
+					}
+				}
+			}
+			return kind;
+		}
+
+		private MemberKind min(MemberKind k1, MemberKind k2) {
+			if (k1 == null) {
+				return k2;
+			}
+			if (k2 == null) {
+				return k1;
+			}
+			return k1.ordinal() < k2.ordinal() ? k1 : k2;
+		}
+
+		private List<TypeElement> getSupertypes(TypeElement type) {
+			List<TypeElement> supertypes = new ArrayList<>();
+			int index = hierarchy.indexOf(type);
+			if (index >= 0) {
+				supertypes.addAll(hierarchy.subList(index + 1, hierarchy.size()));
+			}
+			supertypes.addAll(interfaces);
+			return supertypes;
+		}
+
+		// checks for the cases we do not support
+
+		/**
+		 * Bridge methods are visible to the runtime reflection, but not to the annotation
+		 * processor, so we do not generate anything if the compiler is expected to create bridge methods
+		 * for parameters.
+		 */
+		private void checkNoBridgeMethods() throws UnsupportedEntityException {
+			for (TypeElement type: hierarchy) {
+				for (ExecutableElement method: ElementFilter.methodsIn(type.getEnclosedElements())) {
+					if (method.getModifiers().contains(Modifier.STATIC)
+							|| method.getModifiers().contains(Modifier.PRIVATE)) {
+						continue;
+					}
+					for (TypeElement superType: getSupertypes(type)) {
+						for (ExecutableElement superMethod: ElementFilter.methodsIn(superType.getEnclosedElements())) {
+							if (superMethod.getSimpleName().equals(method.getSimpleName())
+									&& superMethod.getParameters().size() == method.getParameters().size()
+									&& elements.overrides(method, superMethod, type)
+									&& !getSignature(method).equals(getSignature(superMethod))) {
+								throw new UnsupportedEntityException("the method " + method + " in " + type
+										+ " requires a bridge method");
+							}
+						}
+					}
+				}
+			}
+		}
+
+		/**
+		 * Default methods declared in interfaces are seen by the runtime reflection as
+		 * declared methods of the implementing classes.
+		 */
+		private void checkInterfaces() throws UnsupportedEntityException {
+			for (TypeElement ifc: interfaces) {
+				for (ExecutableElement method: ElementFilter.methodsIn(ifc.getEnclosedElements())) {
+					if (method.getModifiers().contains(Modifier.DEFAULT)) {
+						throw new UnsupportedEntityException("the interface " + ifc + " declares default methods");
+					}
+				}
+			}
+		}
+
+		// naming and accessibility helpers
+
+		private String getSignature(ExecutableElement method) {
+			StringBuilder sb = new StringBuilder(method.getSimpleName()).append("(");
+			for (VariableElement parameter: method.getParameters()) {
+				sb.append(typeName(parameter.asType())).append(",");
+			}
+			return sb.append(")").toString();
+		}
+
+		private String binaryName(TypeElement type) {
+			return elements.getBinaryName(type).toString();
+		}
+
+		/**
+		 * @return the name of the erased type as expected by the {@code ClassUtils#forName(String, ClassLoader)}
+		 * 			method.
+		 */
+		private String typeName(TypeMirror type) {
+			TypeMirror erasure = types.erasure(type);
+			if (erasure.getKind().isPrimitive()) {
+				return erasure.getKind().name().toLowerCase();
+			} else if (erasure.getKind() == TypeKind.ARRAY) {
+				return typeName(((ArrayType) erasure).getComponentType()) + "[]";
+			} else if (erasure.getKind() == TypeKind.DECLARED) {
+				return binaryName((TypeElement) ((DeclaredType) erasure).asElement());
+			}
+			throw new IllegalArgumentException("Unexpected type " + type);
+		}
+
+		/**
+		 * @return the expression that converts the writer argument {@code v} to a value that can be
+		 * 			assigned to a member of the specified type or {@code null} if the type is not accessible.
+		 * 			A {@code null} argument is converted to the default value for primitive types, like the
+		 * 			reflection does.
+		 */
+		private String getValue(TypeMirror type) {
+			TypeMirror erasure = types.erasure(type);
+			if (erasure.getKind().isPrimitive()) {
+				return "v == null ? " + getDefaultValue(erasure.getKind()) 
+					+ " : (" + types.boxedClass(types.getPrimitiveType(erasure.getKind())).getQualifiedName() + ") v";
+			}
+			TypeMirror component = erasure;
+			while (component.getKind() == TypeKind.ARRAY) {
+				component = ((ArrayType) component).getComponentType();
+			}
+			if (component.getKind() == TypeKind.DECLARED
+					&& !isTypeAccessible((TypeElement) ((DeclaredType) component).asElement())) {
+				return null;
+			}
+			return "(" + erasure + ") v";
+		}
+
+		private String getDefaultValue(TypeKind kind) {
+			switch (kind) {
+				case BOOLEAN:
+					return "false";
+				case CHAR:
+					return "'\\0'";
+				case BYTE:
+					return "(byte) 0";
+				case SHORT:
+					return "(short) 0";
+				case LONG:
+					return "0L";
+				case FLOAT:
+					return "0F";
+				case DOUBLE:
+					return "0D";
+				default:
+					return "0";
+			}
+		}
+
+		private boolean isAccessible(TypeElement type) {
+			Element element = type;
+			while (element instanceof TypeElement) {
+				if (element.getModifiers().contains(Modifier.PRIVATE)) {
+					return false;
+				}
+				element = element.getEnclosingElement();
+			}
+			return true;
+		}
+
+		private boolean isTypeAccessible(TypeElement type) {
+			Element element = type;
+			while (element instanceof TypeElement) {
+				Set<Modifier> modifiers = element.getModifiers();
+				if (modifiers.contains(Modifier.PRIVATE)
+						|| !modifiers.contains(Modifier.PUBLIC) && !elements.getPackageOf(element).equals(entityPackage)) {
+					return false;
+				}
+				element = element.getEnclosingElement();
+			}
+			return true;
+		}
+
+		private boolean isMemberAccessible(Element member) {
+			Set<Modifier> modifiers = member.getModifiers();
+			if (modifiers.contains(Modifier.PRIVATE)) {
+				return false;
+			}
+			if (modifiers.contains(Modifier.PUBLIC)) {
+				return true;
+			}
+			return elements.getPackageOf(member).equals(entityPackage);
+		}
+
+		private TypeElement asTypeElement(TypeMirror type) {
+			if (type.getKind() != TypeKind.DECLARED) {
+				return null;
+			}
+			return (TypeElement) ((DeclaredType) type).asElement();
+		}
+	}
+}
@@ -0,0 +1,57 @@
+package com.asentinel.common.orm.cache;
+
+import java.util.function.Function;
+
+import com.asentinel.common.orm.OrmOperations;
+import com.asentinel.common.orm.ProxyEntityDescriptor;
+import com.asentinel.common.orm.jql.SqlBuilderFactory;
+import com.asentinel.common.orm.persist.SimpleUpdater;
+
+/**
+ * Second level cache for entities, keyed by entity class and id. If configured in the {@link SqlBuilderFactory},
+ * it is consulted by {@link OrmOperations#getEntity(Class, Object)}, {@link OrmOperations#getOptional(Class, Object)}
+ * and by the proxy loaders (see {@link ProxyEntityDescriptor#getLoader(SqlBuilderFactory, Class, String)}). If configured
+ * in the {@link SimpleUpdater}, the entities that are updated, upserted or deleted are evicted from the cache.
+ * <br><br>
+ * The cached entity instances are shared between all the callers, so only the entities that are
+ * treated as read-only (for example reference data) should be cached.
+ * 
+ * @see SimpleEntityCache
+ * @see SqlBuilderFactory#getEntityCache()
+ * @see SimpleUpdater#setEntityCache(EntityCache)
+ */
+public interface EntityCache {
+
+	/**
+	 * @return {@code true} if the entities of the specified type should be cached.
+	 */
+	boolean isCacheable(Class<?> type);
+
+	/**
+	 * Gets the entity with the specified type and id from the cache. If not
+	 * cached the entity is loaded using the {@code loader} and cached.
+	 * 
+	 * @param type the entity type.
+	 * @param id the entity id.
+	 * @param loader function that loads the entity for the id from the database. If it returns {@code null}
+	 * 			(entity not found) or throws an exception nothing is cached.
+	 * @return the entity or {@code null} if the {@code loader} returned {@code null}.
+	 */
+	<T> T get(Class<T> type, Object id, Function<Object, T> loader);
+
+	/**
+	 * Evicts the entity with the specified id. The entity is evicted for the specified type
+	 * and all its super classes.
+	 */
+	void evict(Class<?> type, Object id);
+
+	/**
+	 * Evicts all the entities of the specified type.
+	 */
+	void evict(Class<?> type);
+
+	/**
+	 * Evicts all the entities.
+	 */
+	void clear();
+}
@@ -0,0 +1,377 @@
+package com.asentinel.common.orm.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.springframework.util.ReflectionUtils;
+
+import com.asentinel.common.jdbc.DefaultObjectFactory;
+import com.asentinel.common.jdbc.ObjectFactory;
+import com.asentinel.common.jdbc.TypedObjectFactory;
+import com.asentinel.common.orm.TargetMember;
+import com.asentinel.common.orm.TargetMembers;
+import com.asentinel.common.orm.TargetMembersHolder;
+import com.asentinel.common.orm.mappers.AnnotationRowMapper;
+import com.asentinel.common.orm.mappers.EntityConstructor;
+import com.asentinel.common.util.Assert;
+
+/**
+ * Codec that converts the column values of an entity to a compact binary layout and back. The
+ * encoded members are the {@code PkColumn} and {@code Column} members of the entity class as described
+ * by its {@link TargetMembers}, the same members populated by the {@link AnnotationRowMapper}. The
+ * {@code Child} members can not be encoded, so the classes with {@code Child} members are not supported. The entities are
+ * decoded into new instances created by the {@link ObjectFactory}, so the immutable entities created through an
+ * {@link EntityConstructor} are not supported either.
+ * <br><br>
+ * The layout of an encoded entity is a bitmap marking the {@code null} values followed by the non {@code null}
+ * values in the order of the members. The numbers are written with a fixed size, the strings, the byte arrays and
+ * the big numbers are prefixed by their length.
+ * <br><br>
+ * The supported member types are the primitives and their wrappers, {@code String}, {@code BigDecimal}, {@code BigInteger},
+ * {@code java.util.Date}, {@code java.sql.Date}, {@code java.sql.Time}, {@code java.sql.Timestamp}, {@code LocalDate},
+ * {@code LocalTime}, {@code LocalDateTime}, {@code Instant}, {@code UUID}, {@code byte[]} and the enums (encoded by ordinal,
+ * so the encoded entities must not outlive the enum class). A {@code java.util.Date} member is always decoded as
+ * a {@code java.util.Date} even if its value was a subclass instance.
+ * <br><br>
+ * Instances are immutable and thread safe.
+ *
+ * @see OffHeapEntityStore
+ */
+public final class EntityCodec<T> {
+
+	private static final Map<Class<?>, ValueCodec> CODECS = new HashMap<>();
+
+	static {
+		ValueCodec booleanCodec = codec((out, v) -> out.writeBoolean((Boolean) v), in -> in.get() != 0);
+		CODECS.put(boolean.class, booleanCodec);
+		CODECS.put(Boolean.class, booleanCodec);
+		ValueCodec byteCodec = codec((out, v) -> out.writeByte((Byte) v), in -> in.get());
+		CODECS.put(byte.class, byteCodec);
+		CODECS.put(Byte.class, byteCodec);
+		ValueCodec shortCodec = codec((out, v) -> out.writeShort((Short) v), in -> in.getShort());
+		CODECS.put(short.class, shortCodec);
+		CODECS.put(Short.class, shortCodec);
+		ValueCodec charCodec = codec((out, v) -> out.writeChar((Character) v), in -> in.getChar());
+		CODECS.put(char.class, charCodec);
+		CODECS.put(Character.class, charCodec);
+		ValueCodec intCodec = codec((out, v) -> out.writeInt((Integer) v), in -> in.getInt());
+		CODECS.put(int.class, intCodec);
+		CODECS.put(Integer.class, intCodec);
+		ValueCodec longCodec = codec((out, v) -> out.writeLong((Long) v), in -> in.getLong());
+		CODECS.put(long.class, longCodec);
+		CODECS.put(Long.class, longCodec);
+		ValueCodec floatCodec = codec((out, v) -> out.writeFloat((Float) v), in -> in.getFloat());
+		CODECS.put(float.class, floatCodec);
+		CODECS.put(Float.class, floatCodec);
+		ValueCodec doubleCodec = codec((out, v) -> out.writeDouble((Double) v), in -> in.getDouble());
+		CODECS.put(double.class, doubleCodec);
+		CODECS.put(Double.class, doubleCodec);
+
+		CODECS.put(String.class, codec(
+				(out, v) -> writeBytes(out, ((String) v).getBytes(StandardCharsets.UTF_8)),
+				in -> new String(readBytes(in), StandardCharsets.UTF_8)));
+		CODECS.put(byte[].class, codec((out, v) -> writeBytes(out, (byte[]) v), EntityCodec::readBytes));
+		CODECS.put(BigInteger.class, codec(
+				(out, v) -> writeBytes(out, ((BigInteger) v).toByteArray()),
+				in -> new BigInteger(readBytes(in))));
+		CODECS.put(BigDecimal.class, codec(
+				(out, v) -> {
+					out.writeInt(((BigDecimal) v).scale());
+					writeBytes(out, ((BigDecimal) v).unscaledValue().toByteArray());
+				},
+				in -> {
+					int scale = in.getInt();
+					return new BigDecimal(new BigInteger(readBytes(in)), scale);
+				}));
+		CODECS.put(UUID.class, codec(
+				(out, v) -> {
+					out.writeLong(((UUID) v).getMostSignificantBits());
+					out.writeLong(((UUID) v).getLeastSignificantBits());
+				},
+				in -> new UUID(in.getLong(), in.getLong())));
+
+		CODECS.put(Date.class, codec((out, v) -> out.writeLong(((Date) v).getTime()), in -> new Date(in.getLong())));
+		CODECS.put(java.sql.Date.class, codec(
+				(out, v) -> out.writeLong(((Date) v).getTime()),
+				in -> new java.sql.Date(in.getLong())));
+		CODECS.put(java.sql.Time.class, codec(
+				(out, v) -> out.writeLong(((Date) v).getTime()),
+				in -> new java.sql.Time(in.getLong())));
+		CODECS.put(java.sql.Timestamp.class, codec(
+				(out, v) -> {
+					out.writeLong(((java.sql.Timestamp) v).getTime());
+					out.writeInt(((java.sql.Timestamp) v).getNanos());
+				},
+				in -> {
+					java.sql.Timestamp t = new java.sql.Timestamp(in.getLong());
+					t.setNanos(in.getInt());
+					return t;
+				}));
+		CODECS.put(LocalDate.class, codec(
+				(out, v) -> out.writeLong(((LocalDate) v).toEpochDay()),
+				in -> LocalDate.ofEpochDay(in.getLong())));
+		CODECS.put(LocalTime.class, codec(
+				(out, v) -> out.writeLong(((LocalTime) v).toNanoOfDay()),
+				in -> LocalTime.ofNanoOfDay(in.getLong())));
+		CODECS.put(LocalDateTime.class, codec(
+				(out, v) -> {
+					out.writeLong(((LocalDateTime) v).toEpochSecond(ZoneOffset.UTC));
+					out.writeInt(((LocalDateTime) v).getNano());
+				},
+				in -> LocalDateTime.ofEpochSecond(in.getLong(), in.getInt(), ZoneOffset.UTC)));
+		CODECS.put(Instant.class, codec(
+				(out, v) -> {
+					out.writeLong(((Instant) v).getEpochSecond());
+					out.writeInt(((Instant) v).getNano());
+				},
+				in -> Instant.ofEpochSecond(in.getLong(), in.getInt())));
+	}
+
+	private final Class<T> type;
+	private final ObjectFactory<T> objectFactory;
+	private final TargetMember[] members;
+	private final ValueCodec[] codecs;
+	private final int bitmapSize;
+
+	/**
+	 * Creates a codec for the specified entity class. The class must have
+	 * a no-args constructor.
+	 *
+	 * @throws IllegalArgumentException if a column member has an unsupported type, if the class
+	 * 			has {@code Child} members or if it is an immutable entity.
+	 */
+	public EntityCodec(Class<T> type) {
+		this(new DefaultObjectFactory<>(checkEncodable(type)));
+	}
+
+	/**
+	 * Creates a codec that uses the specified {@link ObjectFactory} to create the
+	 * decoded entities.
+	 *
+	 * @throws IllegalArgumentException if a column member has an unsupported type, if the class
+	 * 			has {@code Child} members or if it is an immutable entity.
+	 */
+	@SuppressWarnings("unchecked")
+	public EntityCodec(ObjectFactory<T> objectFactory) {
+		Assert.assertNotNull(objectFactory, "objectFactory");
+		this.objectFactory = objectFactory;
+		if (objectFactory instanceof TypedObjectFactory) {
+			this.type = ((TypedObjectFactory<T>) objectFactory).getType();
+		} else {
+			this.type = (Class<T>) objectFactory.newObject().getClass();
+		}
+		checkEncodable(type);
+		List<TargetMember> targetMembers = TargetMembersHolder.getInstance().getTargetMembers(type).getAllColumnMembers();
+		this.members = targetMembers.toArray(new TargetMember[0]);
+		this.codecs = new ValueCodec[members.length];
+		for (int i = 0; i < members.length; i++) {
+			codecs[i] = getCodec(members[i]);
+		}
+		this.bitmapSize = (members.length + 7) / 8;
+	}
+
+	private static <T> Class<T> checkEncodable(Class<T> type) {
+		Assert.assertNotNull(type, "type");
+		if (!TargetMembersHolder.getInstance().getTargetMembers(type).getChildMembers().isEmpty()) {
+			throw new IllegalArgumentException("The class " + type.getName() + " has @Child members, "
+					+ "only the entities without children can be encoded.");
+		}
+		if (EntityConstructor.forClass(type) != null) {
+			throw new IllegalArgumentException("The class " + type.getName() + " is an immutable entity created "
+					+ "through its constructor, it can not be decoded.");
+		}
+		return type;
+	}
+
+	private static ValueCodec getCodec(TargetMember member) {
+		Class<?> memberClass = member.getMemberClass();
+		ValueCodec codec = CODECS.get(memberClass);
+		if (codec != null) {
+			return codec;
+		}
+		if (memberClass.isEnum()) {
+			Object[] constants = memberClass.getEnumConstants();
+			return codec((out, v) -> out.writeInt(((Enum<?>) v).ordinal()), in -> constants[in.getInt()]);
+		}
+		throw new IllegalArgumentException("Unsupported type " + memberClass.getName()
+				+ " for member " + member.getAnnotatedElement() + ".");
+	}
+
+	/**
+	 * @return {@code true} if the entities of the specified class can be encoded.
+	 */
+	public static boolean isSupported(Class<?> type) {
+		Assert.assertNotNull(type, "type");
+		TargetMembers targetMembers = TargetMembersHolder.getInstance().getTargetMembers(type);
+		if (!targetMembers.getChildMembers().isEmpty() || EntityConstructor.forClass(type) != null) {
+			return false;
+		}
+		for (TargetMember member: targetMembers.getAllColumnMembers()) {
+			Class<?> memberClass = member.getMemberClass();
+			if (!CODECS.containsKey(memberClass) && !memberClass.isEnum()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return the encoded column values of the specified entity.
+	 */
+	public byte[] encode(T entity) {
+		Assert.assertNotNull(entity, "entity");
+		Object[] values = new Object[members.length];
+		byte[] bitmap = new byte[bitmapSize];
+		for (int i = 0; i < members.length; i++) {
+			values[i] = members[i].getValue(entity);
+			if (values[i] == null) {
+				bitmap[i >>> 3] |= 1 << (i & 7);
+			}
+		}
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(bitmapSize + members.length * 8);
+		DataOutputStream out = new DataOutputStream(bytes);
+		try {
+			out.write(bitmap);
+			for (int i = 0; i < members.length; i++) {
+				if (values[i] != null) {
+					codecs[i].write(out, values[i]);
+				}
+			}
+			out.flush();
+		} catch (IOException e) {
+			// not expected for in memory streams
+			throw new UncheckedIOException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Decodes an entity starting from the current position of the buffer. On return the
+	 * position of the buffer is after the encoded entity.
+	 *
+	 * @return a new entity populated with the decoded values.
+	 */
+	public T decode(ByteBuffer in) {
+		Assert.assertNotNull(in, "in");
+		T entity = objectFactory.newObject();
+		int bitmapStart = in.position();
+		in.position(bitmapStart + bitmapSize);
+		for (int i = 0; i < members.length; i++) {
+			boolean isNull = (in.get(bitmapStart + (i >>> 3)) & (1 << (i & 7))) != 0;
+			Object value = isNull ? null : codecs[i].read(in);
+			if (!isNull || !members[i].getMemberClass().isPrimitive()) {
+				setValue(members[i], entity, value);
+			}
+		}
+		return entity;
+	}
+
+	/**
+	 * @see #decode(ByteBuffer)
+	 */
+	public T decode(byte[] bytes) {
+		Assert.assertNotNull(bytes, "bytes");
+		return decode(ByteBuffer.wrap(bytes));
+	}
+
+	/**
+	 * @return the entity class.
+	 */
+	public Class<T> getType() {
+		return type;
+	}
+
+	/**
+	 * @return the encoded members, in the order in which they are encoded.
+	 */
+	public List<TargetMember> getMembers() {
+		return Collections.unmodifiableList(Arrays.asList(members));
+	}
+
+	private static void setValue(TargetMember targetMember, Object entity, Object value) {
+		if (targetMember.getWriter() != null) {
+			targetMember.getWriter().accept(entity, value);
+			return;
+		}
+		AnnotatedElement member = targetMember.getAnnotatedElement();
+		if (member instanceof Field) {
+			ReflectionUtils.makeAccessible((Field) member);
+			ReflectionUtils.setField((Field) member, entity, value);
+		} else if (member instanceof Method) {
+			ReflectionUtils.makeAccessible((Method) member);
+			ReflectionUtils.invokeMethod((Method) member, entity, value);
+		} else {
+			throw new IllegalStateException("Expected Field or Method. Found " + member.getClass().getName());
+		}
+	}
+
+	private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static byte[] readBytes(ByteBuffer in) {
+		byte[] bytes = new byte[in.getInt()];
+		in.get(bytes);
+		return bytes;
+	}
+
+	@Override
+	public String toString() {
+		return "EntityCodec [type=" + type.getName() + ", members=" + members.length + "]";
+	}
+
+
+	private static ValueCodec codec(ValueWriter writer, ValueReader reader) {
+		return new ValueCodec(writer, reader);
+	}
+
+	@FunctionalInterface
+	private interface ValueWriter {
+		void write(DataOutputStream out, Object value) throws IOException;
+	}
+
+	@FunctionalInterface
+	private interface ValueReader {
+		Object read(ByteBuffer in);
+	}
+
+	private static final class ValueCodec {
+		private final ValueWriter writer;
+		private final ValueReader reader;
+
+		ValueCodec(ValueWriter writer, ValueReader reader) {
+			this.writer = writer;
+			this.reader = reader;
+		}
+
+		void write(DataOutputStream out, Object value) throws IOException {
+			writer.write(out, value);
+		}
+
+		Object read(ByteBuffer in) {
+			return reader.read(in);
+		}
+	}
+}
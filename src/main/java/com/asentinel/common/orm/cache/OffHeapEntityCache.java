@@ -0,0 +1,199 @@
+package com.asentinel.common.orm.cache;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.asentinel.common.orm.EntityUtils;
+import com.asentinel.common.orm.metrics.OrmMetrics;
+import com.asentinel.common.orm.metrics.OrmMetricsRegistry;
+import com.asentinel.common.util.Assert;
+
+/**
+ * {@link EntityCache} implementation that keeps the entities of a fixed set of types outside the java heap,
+ * in an {@link OffHeapEntityStore} for each type. It is intended for caching a large number of entities
+ * without increasing the garbage collection pauses.
+ * <br><br>
+ * Unlike {@link SimpleEntityCache}, each {@link #get(Class, Object, Function)} call returns a new
+ * instance decoded from the stored snapshot, so the callers do not share the entity instances. Only the column
+ * members are cached (see {@link EntityCodec}), so the cacheable types can not have {@code Child} members. When the
+ * store of a type is full the oldest entities of that type are evicted to make room for the new one. The concurrent
+ * misses for the same entity share a single load, like in the {@code ConcurrentCache}. The entities with non integral
+ * ids are not cached.
+ *
+ * @see OffHeapEntityStore
+ * @see EntityCodec
+ */
+public class OffHeapEntityCache implements EntityCache {
+	private static final Logger log = LoggerFactory.getLogger(OffHeapEntityCache.class);
+
+	private final Map<Class<?>, OffHeapEntityStore<?>> stores;
+
+	// the loads in progress for each type, keyed by id
+	private final Map<Class<?>, ConcurrentMap<Long, FutureTask<byte[]>>> loads;
+
+	// incremented before each eviction, a loaded entity is stored only if
+	// no eviction of its type happened while it was loaded
+	private final Map<Class<?>, AtomicLong> generations;
+
+	/**
+	 * @param capacity the capacity in bytes of the store of each type.
+	 * @param cacheableTypes the entity types to cache.
+	 * @throws IllegalArgumentException if a type can not be encoded by the {@link EntityCodec}.
+	 */
+	public OffHeapEntityCache(int capacity, Class<?> ... cacheableTypes) {
+		Assert.assertNotNull(cacheableTypes, "cacheableTypes");
+		Map<Class<?>, OffHeapEntityStore<?>> stores = new HashMap<>();
+		Map<Class<?>, ConcurrentMap<Long, FutureTask<byte[]>>> loads = new HashMap<>();
+		Map<Class<?>, AtomicLong> generations = new HashMap<>();
+		for (Class<?> type: cacheableTypes) {
+			Assert.assertNotNull(type, "type");
+			stores.put(type, new OffHeapEntityStore<>(new EntityCodec<>(type), capacity));
+			loads.put(type, new ConcurrentHashMap<>());
+			generations.put(type, new AtomicLong());
+		}
+		this.stores = stores;
+		this.loads = loads;
+		this.generations = generations;
+	}
+
+	@Override
+	public boolean isCacheable(Class<?> type) {
+		return stores.containsKey(type);
+	}
+
+	@Override
+	public <T> T get(Class<T> type, Object id, Function<Object, T> loader) {
+		Assert.assertNotNull(type, "type");
+		Assert.assertNotNull(id, "id");
+		Assert.assertNotNull(loader, "loader");
+		OffHeapEntityStore<T> store = getStore(type);
+		Long longId = ReferenceDataIndex.toLong(id);
+		if (store == null || longId == null) {
+			return loader.apply(id);
+		}
+		T entity = store.get(longId.longValue());
+		OrmMetricsRegistry.get().onCacheAccess(OrmMetrics.ENTITY_CACHE, entity != null);
+		if (entity != null) {
+			return entity;
+		}
+		return load(store, type, longId, id, loader);
+	}
+
+	/**
+	 * Loads the entity, the threads that miss the same entity at the same time wait for the first
+	 * one to load it. The waiting threads decode their own instances from the encoded entity. The entity
+	 * is not stored if its type was evicted while it was loaded, it may be stale.
+	 */
+	@SuppressWarnings("unchecked")
+	private <T> T load(OffHeapEntityStore<T> store, Class<T> type, Long longId, Object id, Function<Object, T> loader) {
+		ConcurrentMap<Long, FutureTask<byte[]>> typeLoads = loads.get(type);
+		AtomicLong generation = generations.get(type);
+		long loadGeneration = generation.get();
+		Object[] loaded = new Object[1];
+		FutureTask<byte[]> task = new FutureTask<>(() -> {
+			T entity = loader.apply(id);
+			loaded[0] = entity;
+			if (entity == null) {
+				return null;
+			}
+			byte[] bytes = store.getCodec().encode(entity);
+			// the generation is checked under the store lock, so an eviction either 
+			// prevents the put or removes the stored entity after it
+			if (!store.putIf(OffHeapEntityStore.toLongId(EntityUtils.getEntityId(entity)), bytes, true, 
+					() -> generation.get() == loadGeneration)) {
+				if (log.isDebugEnabled()) {
+					log.debug("get - The " + type.getName() + " entity with id " + id 
+							+ " was loaded during an eviction or is larger than the store, it is not cached.");
+				}
+			}
+			return bytes;
+		});
+		FutureTask<byte[]> existing = typeLoads.putIfAbsent(longId, task);
+		if (existing == null) {
+			try {
+				task.run();
+			} finally {
+				typeLoads.remove(longId, task);
+			}
+			existing = task;
+		}
+		byte[] bytes;
+		try {
+			bytes = existing.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			} else {
+				throw new RuntimeException(e.getCause());
+			}
+		}
+		if (existing == task) {
+			return (T) loaded[0];
+		}
+		return bytes != null ? store.getCodec().decode(bytes) : null;
+	}
+
+	@Override
+	public void evict(Class<?> type, Object id) {
+		Assert.assertNotNull(type, "type");
+		Assert.assertNotNull(id, "id");
+		Long longId = ReferenceDataIndex.toLong(id);
+		if (longId == null) {
+			return;
+		}
+		for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+			OffHeapEntityStore<?> store = stores.get(c);
+			if (store != null) {
+				generations.get(c).incrementAndGet();
+				store.remove(longId);
+				if (log.isTraceEnabled()) {
+					log.trace("evict - Evicted entity " + c.getName() + " with id " + id + ".");
+				}
+			}
+		}
+	}
+
+	@Override
+	public void evict(Class<?> type) {
+		Assert.assertNotNull(type, "type");
+		OffHeapEntityStore<?> store = stores.get(type);
+		if (store != null) {
+			generations.get(type).incrementAndGet();
+			store.clear();
+		}
+	}
+
+	@Override
+	public void clear() {
+		for (Map.Entry<Class<?>, OffHeapEntityStore<?>> e: stores.entrySet()) {
+			generations.get(e.getKey()).incrementAndGet();
+			e.getValue().clear();
+		}
+	}
+
+	/**
+	 * @return the store for the specified type or {@code null} if the type
+	 * 			is not cacheable.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> OffHeapEntityStore<T> getStore(Class<T> type) {
+		return (OffHeapEntityStore<T>) stores.get(type);
+	}
+
+	@Override
+	public String toString() {
+		return "OffHeapEntityCache [types=" + stores.keySet() + "]";
+	}
+}
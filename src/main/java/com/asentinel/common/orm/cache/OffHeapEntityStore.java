@@ -0,0 +1,523 @@
+package com.asentinel.common.orm.cache;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BooleanSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.asentinel.common.orm.EntityUtils;
+import com.asentinel.common.util.Assert;
+
+/**
+ * Store for entity snapshots kept outside the java heap, in a direct or memory-mapped {@code ByteBuffer}.
+ * The entities are encoded with an {@link EntityCodec} and appended to the buffer, the only heap structure
+ * is a primitive {@code long} index from the entity id to the position of the record, so the number of stored
+ * entities has almost no effect on the garbage collector. Each {@link #get(long)} call decodes a new entity
+ * instance.
+ * <br><br>
+ * The entities must have integral ids. The records replaced or removed are reclaimed by {@link #compact()}, which is
+ * also called automatically when the buffer is full. If there is still no room for an entity after the compaction
+ * {@link #put(Object)} returns {@code false}, while {@link #putEvicting(Object)} evicts the oldest records
+ * until there is room.
+ * <br><br>
+ * Instances are thread safe, the reads can proceed in parallel.
+ *
+ * @see EntityCodec
+ * @see OffHeapEntityCache
+ */
+public class OffHeapEntityStore<T> {
+	private static final Logger log = LoggerFactory.getLogger(OffHeapEntityStore.class);
+
+	// record layout: id (long), payload length (int), payload
+	private static final int HEADER_SIZE = 12;
+
+	private final EntityCodec<T> codec;
+	private final ByteBuffer buffer;
+	private final LongIndex index = new LongIndex();
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	private int writePosition;
+	private int garbageBytes;
+	private long evictionCount;
+
+	/**
+	 * Creates a store backed by a direct buffer with the specified capacity.
+	 *
+	 * @param codec the codec for the stored entities.
+	 * @param capacity the capacity in bytes.
+	 */
+	public OffHeapEntityStore(EntityCodec<T> codec, int capacity) {
+		this(codec, ByteBuffer.allocateDirect(capacity));
+	}
+
+	/**
+	 * Creates a store backed by the specified buffer, usually a direct or memory-mapped buffer.
+	 * The entire buffer is used, regardless of its position and limit, and it should not
+	 * be used by other code.
+	 *
+	 * @param codec the codec for the stored entities.
+	 * @param buffer the buffer in which the entities are stored.
+	 */
+	public OffHeapEntityStore(EntityCodec<T> codec, ByteBuffer buffer) {
+		Assert.assertNotNull(codec, "codec");
+		Assert.assertNotNull(buffer, "buffer");
+		this.codec = codec;
+		this.buffer = buffer.duplicate().clear();
+	}
+
+	/**
+	 * Creates a store backed by a memory-mapped file. The file is created if it does not exist,
+	 * its previous content is ignored. The mapping is released when the store is garbage collected.
+	 *
+	 * @param codec the codec for the stored entities.
+	 * @param file the file to map.
+	 * @param capacity the capacity in bytes.
+	 * @throws IOException if the file can not be mapped.
+	 */
+	public static <T> OffHeapEntityStore<T> mapped(EntityCodec<T> codec, Path file, int capacity) throws IOException {
+		Assert.assertNotNull(file, "file");
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			return new OffHeapEntityStore<>(codec, channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity));
+		}
+	}
+
+	/**
+	 * Stores a snapshot of the specified entity, replacing the snapshot previously stored for the
+	 * same id. Later changes to the entity are not reflected in the store.
+	 *
+	 * @return {@code true} if the entity was stored, {@code false} if there is no room for it, in which
+	 * 			case the snapshot previously stored for the same id is removed.
+	 * @throws IllegalArgumentException if the entity id is not an integral number.
+	 */
+	public boolean put(T entity) {
+		Assert.assertNotNull(entity, "entity");
+		return put(toLongId(EntityUtils.getEntityId(entity)), codec.encode(entity), false);
+	}
+
+	/**
+	 * Stores a snapshot of the specified entity like {@link #put(Object)}, but if there is no room
+	 * for it after the compaction the oldest stored records are evicted, just enough of them
+	 * to make room for the new record.
+	 *
+	 * @return {@code true} if the entity was stored, {@code false} if the entity is larger than
+	 * 			the capacity of the store.
+	 * @throws IllegalArgumentException if the entity id is not an integral number.
+	 */
+	public boolean putEvicting(T entity) {
+		Assert.assertNotNull(entity, "entity");
+		return put(toLongId(EntityUtils.getEntityId(entity)), codec.encode(entity), true);
+	}
+
+	/**
+	 * Stores an entity already encoded with the codec of this store if the condition, checked
+	 * while holding the write lock, is met.
+	 * 
+	 * @return {@code true} if the entity was stored.
+	 */
+	boolean putIf(long id, byte[] bytes, boolean evict, BooleanSupplier condition) {
+		lock.writeLock().lock();
+		try {
+			return condition.getAsBoolean() && put(id, bytes, evict);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Stores an entity already encoded with the codec of this store.
+	 */
+	boolean put(long id, byte[] bytes, boolean evict) {
+		int recordSize = HEADER_SIZE + bytes.length;
+		lock.writeLock().lock();
+		try {
+			long old = index.get(id);
+			if (recordSize > buffer.capacity() - writePosition) {
+				remove(id, old);
+				old = -1;
+				if (garbageBytes > 0) {
+					compact0();
+				}
+				if (recordSize > buffer.capacity() - writePosition
+						&& (!evict || recordSize > buffer.capacity() || !evictOldest(recordSize - (buffer.capacity() - writePosition)))) {
+					if (log.isDebugEnabled()) {
+						log.debug("put - No room for the " + codec.getType().getName() + " entity with id " + id
+								+ ", size " + recordSize + " bytes.");
+					}
+					return false;
+				}
+			}
+			if (old >= 0) {
+				garbageBytes += HEADER_SIZE + length(old);
+			}
+			buffer.putLong(writePosition, id);
+			buffer.putInt(writePosition + 8, bytes.length);
+			ByteBuffer out = buffer.duplicate();
+			out.position(writePosition + HEADER_SIZE);
+			out.put(bytes);
+			index.put(id, pack(writePosition + HEADER_SIZE, bytes.length));
+			writePosition += recordSize;
+			return true;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * @return a new instance of the entity with the specified id, or {@code null} if not stored.
+	 */
+	public T get(long id) {
+		lock.readLock().lock();
+		try {
+			long location = index.get(id);
+			if (location < 0) {
+				return null;
+			}
+			ByteBuffer in = buffer.duplicate();
+			in.limit(offset(location) + length(location));
+			in.position(offset(location));
+			return codec.decode(in);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @see #get(long)
+	 */
+	public T get(Object id) {
+		Long longId = id != null ? ReferenceDataIndex.toLong(id) : null;
+		return longId != null ? get(longId.longValue()) : null;
+	}
+
+	/**
+	 * @return {@code true} if an entity with the specified id is stored.
+	 */
+	public boolean contains(long id) {
+		lock.readLock().lock();
+		try {
+			return index.get(id) >= 0;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Removes the entity with the specified id.
+	 *
+	 * @return {@code true} if the entity was stored.
+	 */
+	public boolean remove(long id) {
+		lock.writeLock().lock();
+		try {
+			return remove(id, index.get(id));
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private boolean remove(long id, long location) {
+		if (location < 0) {
+			return false;
+		}
+		index.remove(id);
+		garbageBytes += HEADER_SIZE + length(location);
+		return true;
+	}
+
+	/**
+	 * Evicts the oldest records, in the order in which they were written, until at least
+	 * {@code bytes} bytes are freed and compacts the buffer. Expects a compacted buffer.
+	 *
+	 * @return {@code true} if enough bytes were freed.
+	 */
+	private boolean evictOldest(int bytes) {
+		int freed = 0;
+		int evicted = 0;
+		int readPosition = 0;
+		while (freed < bytes && readPosition < writePosition) {
+			long id = buffer.getLong(readPosition);
+			int recordSize = HEADER_SIZE + buffer.getInt(readPosition + 8);
+			if (remove(id, index.get(id))) {
+				freed += recordSize;
+				evicted++;
+			}
+			readPosition += recordSize;
+		}
+		evictionCount += evicted;
+		if (log.isDebugEnabled()) {
+			log.debug("evictOldest - Evicted " + evicted + " " + codec.getType().getName() + " entities, "
+					+ freed + " bytes.");
+		}
+		compact0();
+		return freed >= bytes;
+	}
+
+	/**
+	 * Removes all the entities.
+	 */
+	public void clear() {
+		lock.writeLock().lock();
+		try {
+			index.clear();
+			writePosition = 0;
+			garbageBytes = 0;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Moves the live records to the beginning of the buffer reclaiming the space
+	 * used by the replaced or removed records.
+	 */
+	public void compact() {
+		lock.writeLock().lock();
+		try {
+			compact0();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private void compact0() {
+		long t0 = System.nanoTime();
+		int reclaimed = garbageBytes;
+		int readPosition = 0;
+		int newWritePosition = 0;
+		byte[] record = new byte[256];
+		while (readPosition < writePosition) {
+			long id = buffer.getLong(readPosition);
+			int length = buffer.getInt(readPosition + 8);
+			int recordSize = HEADER_SIZE + length;
+			long location = index.get(id);
+			if (location >= 0 && offset(location) == readPosition + HEADER_SIZE) {
+				if (newWritePosition != readPosition) {
+					// copied through a heap array, the ranges can overlap
+					if (record.length < recordSize) {
+						record = new byte[recordSize];
+					}
+					ByteBuffer in = buffer.duplicate();
+					in.position(readPosition);
+					in.get(record, 0, recordSize);
+					ByteBuffer out = buffer.duplicate();
+					out.position(newWritePosition);
+					out.put(record, 0, recordSize);
+					index.put(id, pack(newWritePosition + HEADER_SIZE, length));
+				}
+				newWritePosition += recordSize;
+			}
+			readPosition += recordSize;
+		}
+		writePosition = newWritePosition;
+		garbageBytes = 0;
+		if (log.isDebugEnabled()) {
+			log.debug("compact - Reclaimed " + reclaimed + " bytes for " + codec.getType().getName()
+					+ " in " + (System.nanoTime() - t0) / 1000 + " us.");
+		}
+	}
+
+	/**
+	 * @return the number of stored entities.
+	 */
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return index.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return the number of bytes used, including the records not yet reclaimed by {@link #compact()}.
+	 */
+	public int getUsedBytes() {
+		lock.readLock().lock();
+		try {
+			return writePosition;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return the number of bytes used by the replaced or removed records.
+	 */
+	public int getGarbageBytes() {
+		lock.readLock().lock();
+		try {
+			return garbageBytes;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return the number of entities evicted by {@link #putEvicting(Object)} to make room
+	 * 			for other entities.
+	 */
+	public long getEvictionCount() {
+		lock.readLock().lock();
+		try {
+			return evictionCount;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return the capacity in bytes.
+	 */
+	public int getCapacity() {
+		return buffer.capacity();
+	}
+
+	public EntityCodec<T> getCodec() {
+		return codec;
+	}
+
+	static long toLongId(Object id) {
+		Long longId = id != null ? ReferenceDataIndex.toLong(id) : null;
+		if (longId == null) {
+			throw new IllegalArgumentException("Only the entities with integral ids can be stored. Found id " + id + ".");
+		}
+		return longId;
+	}
+
+	private static long pack(int offset, int length) {
+		return ((long) offset << 32) | (length & 0xFFFFFFFFL);
+	}
+
+	private static int offset(long location) {
+		return (int) (location >>> 32);
+	}
+
+	private static int length(long location) {
+		return (int) location;
+	}
+
+	@Override
+	public String toString() {
+		return "OffHeapEntityStore [type=" + codec.getType().getName() + ", capacity=" + buffer.capacity() + "]";
+	}
+
+
+	/**
+	 * Open addressing hash map from {@code long} keys to non negative {@code long} values
+	 * using linear probing. Not thread safe.
+	 */
+	static final class LongIndex {
+		private static final float LOAD_FACTOR = 0.6f;
+
+		private long[] keys;
+		private long[] values;
+		private boolean[] used;
+		private int size;
+
+		LongIndex() {
+			allocate(16);
+		}
+
+		private void allocate(int capacity) {
+			keys = new long[capacity];
+			values = new long[capacity];
+			used = new boolean[capacity];
+		}
+
+		private int slot(long key) {
+			long h = key * 0x9E3779B97F4A7C15L;
+			return (int) (h ^ (h >>> 32)) & (keys.length - 1);
+		}
+
+		/**
+		 * @return the value for the key or {@code -1} if not found.
+		 */
+		long get(long key) {
+			int mask = keys.length - 1;
+			for (int i = slot(key); used[i]; i = (i + 1) & mask) {
+				if (keys[i] == key) {
+					return values[i];
+				}
+			}
+			return -1;
+		}
+
+		void put(long key, long value) {
+			if (size + 1 > keys.length * LOAD_FACTOR) {
+				rehash(keys.length * 2);
+			}
+			int mask = keys.length - 1;
+			int i = slot(key);
+			for (; used[i]; i = (i + 1) & mask) {
+				if (keys[i] == key) {
+					values[i] = value;
+					return;
+				}
+			}
+			used[i] = true;
+			keys[i] = key;
+			values[i] = value;
+			size++;
+		}
+
+		void remove(long key) {
+			int mask = keys.length - 1;
+			int i = slot(key);
+			for (; used[i]; i = (i + 1) & mask) {
+				if (keys[i] == key) {
+					break;
+				}
+			}
+			if (!used[i]) {
+				return;
+			}
+			// backward shift deletion, keeps the probe sequences intact without tombstones
+			int gap = i;
+			for (int j = (gap + 1) & mask; used[j]; j = (j + 1) & mask) {
+				int home = slot(keys[j]);
+				if (((j - home) & mask) >= ((j - gap) & mask)) {
+					keys[gap] = keys[j];
+					values[gap] = values[j];
+					gap = j;
+				}
+			}
+			used[gap] = false;
+			size--;
+		}
+
+		private void rehash(int capacity) {
+			long[] oldKeys = keys;
+			long[] oldValues = values;
+			boolean[] oldUsed = used;
+			allocate(capacity);
+			size = 0;
+			for (int i = 0; i < oldKeys.length; i++) {
+				if (oldUsed[i]) {
+					put(oldKeys[i], oldValues[i]);
+				}
+			}
+		}
+
+		void clear() {
+			allocate(16);
+			size = 0;
+		}
+
+		int size() {
+			return size;
+		}
+
+		@Override
+		public String toString() {
+			return "LongIndex [size=" + size + ", capacity=" + keys.length + "]";
+		}
+	}
+}
@@ -0,0 +1,308 @@
+package com.asentinel.common.orm.cache;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.StringUtils;
+
+import com.asentinel.common.collections.tree.Node;
+import com.asentinel.common.orm.EntityDescriptor;
+import com.asentinel.common.orm.SimpleEntityDescriptor;
+import com.asentinel.common.orm.jql.SqlBuilder;
+import com.asentinel.common.orm.metrics.OrmMetrics;
+import com.asentinel.common.orm.metrics.OrmMetricsRegistry;
+import com.asentinel.common.orm.jql.SqlBuilderFactory;
+import com.asentinel.common.orm.persist.SimpleUpdater;
+import com.asentinel.common.util.Assert;
+import com.asentinel.common.util.ConcurrentCache;
+
+/**
+ * Cache for the results of the queries created with a {@link SqlBuilder} on which the
+ * {@link SqlBuilder#cached(Duration)} method was called. The results are keyed by the SQL string,
+ * the parameters and the kind of result requested. For each result the cache records the tables
+ * of the {@link EntityDescriptor} tree used to compile the query. When a table is invalidated (see
+ * {@link #invalidate(String)}) all the results that depend on it are discarded. The {@link SimpleUpdater}
+ * and {@link SqlBuilder#execUpdate(String)} invalidate the tables they write to using {@link #invalidateForWrite(String)},
+ * so inside a transaction that wrote to a table the queries depending on that table bypass the cache
+ * and the results are invalidated again when the transaction completes.
+ * <br><br>
+ * Notes:
+ * <li>the invalidation is local to this cache, the writes performed by other nodes or by code that does not
+ * go through the ORM are only seen after the cached results expire;
+ * <li>the tables referenced only in SQL fragments added to the query (for example sub-queries) are not
+ * recorded, so the writes to those tables do not invalidate the results;
+ * <li>the cached entities are shared between the callers, they should be treated as read-only.
+ *
+ * @see SqlBuilderFactory#getQueryResultCache()
+ * @see SqlBuilder#cached(Duration)
+ * @see SimpleUpdater#setQueryResultCache(QueryResultCache)
+ */
+public class QueryResultCache {
+	private static final Logger log = LoggerFactory.getLogger(QueryResultCache.class);
+
+	private final ConcurrentCache<Key, Result> cache;
+
+	// incremented on each invalidation, a result is valid only if the versions
+	// of its tables did not change since the query was started
+	private final ConcurrentMap<String, AtomicLong> tableVersions = new ConcurrentHashMap<>();
+
+	/**
+	 * @param maximumSize the maximum number of cached results.
+	 */
+	public QueryResultCache(int maximumSize) {
+		this.cache = new ConcurrentCache<>(maximumSize);
+	}
+
+	/**
+	 * Gets the result for the specified query from the cache. If not cached or no longer
+	 * valid the result is loaded using the {@code loader} and cached.
+	 *
+	 * @param kind the kind of result, results of different kinds are cached separately even if the
+	 * 			query and the parameters are the same.
+	 * @param sql the SQL string.
+	 * @param params the query parameters.
+	 * @param tables the tables the result depends on.
+	 * @param timeToLive the duration for which the result is cached.
+	 * @param loader executes the query, if it throws an exception nothing is cached.
+	 * @return the query result.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T get(Object kind, String sql, Object[] params, Collection<String> tables,
+			Duration timeToLive, Supplier<T> loader) {
+		Assert.assertNotNull(kind, "kind");
+		Assert.assertNotNull(sql, "sql");
+		Assert.assertNotNull(tables, "tables");
+		Assert.assertNotNull(timeToLive, "timeToLive");
+		Assert.assertNotNull(loader, "loader");
+		if (isWrittenInTransaction(tables)) {
+			// the uncommitted changes must not be visible to other transactions
+			return loader.get();
+		}
+		Key key = new Key(kind, sql, params);
+		boolean[] loaded = new boolean[1];
+		Supplier<T> trackingLoader = () -> {
+			loaded[0] = true;
+			return loader.get();
+		};
+		Result result = get(key, tables, timeToLive, trackingLoader);
+		if (!isValid(result)) {
+			// try once more, the new result is returned even if a write
+			// invalidated it in the meantime. The conditional removal does not
+			// touch a result loaded by another thread after this one was removed
+			cache.remove(key, result);
+			result = get(key, tables, timeToLive, trackingLoader);
+		}
+		OrmMetricsRegistry.get().onCacheAccess(OrmMetrics.QUERY_RESULT_CACHE, !loaded[0]);
+		return (T) result.value;
+	}
+
+	private Result get(Key key, Collection<String> tables, Duration timeToLive, Supplier<?> loader) {
+		Result result = cache.get(key, () -> {
+			// the versions are recorded before the query is executed, so the writes
+			// performed during the query invalidate the result
+			Map<String, Long> versions = new HashMap<>();
+			for (String table: tables) {
+				String t = normalize(table);
+				versions.put(t, getVersion(t).get());
+			}
+			try {
+				return new Result(loader.get(), System.nanoTime() + timeToLive.toNanos(), versions);
+			} catch (RuntimeException e) {
+				return new Result(e);
+			}
+		});
+		if (result.failure != null) {
+			// the failures are not cached, the conditional removal does not
+			// touch a result loaded by another thread after this one was removed
+			cache.remove(key, result);
+			throw result.failure;
+		}
+		return result;
+	}
+
+	private boolean isValid(Result result) {
+		if (System.nanoTime() - result.expiresAt >= 0) {
+			return false;
+		}
+		for (Map.Entry<String, Long> e: result.tableVersions.entrySet()) {
+			if (getVersion(e.getKey()).get() != e.getValue()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private AtomicLong getVersion(String table) {
+		return tableVersions.computeIfAbsent(table, t -> new AtomicLong());
+	}
+
+	/**
+	 * Invalidates all the results that depend on the specified table. The
+	 * table name is not case sensitive.
+	 */
+	public void invalidate(String table) {
+		Assert.assertNotNull(table, "table");
+		getVersion(normalize(table)).incrementAndGet();
+		if (log.isTraceEnabled()) {
+			log.trace("invalidate - Invalidated the results depending on table " + table + ".");
+		}
+	}
+
+	/**
+	 * Invalidates the results that depend on the specified table because the table is written. If a 
+	 * Spring managed transaction is active the queries depending on the table bypass the cache until 
+	 * the transaction completes and the results are invalidated again after completion.
+	 */
+	public void invalidateForWrite(String table) {
+		invalidate(table);
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			return;
+		}
+		String t = normalize(table);
+		Set<String> writtenTables = getWrittenTables();
+		if (writtenTables == null) {
+			Set<String> newWrittenTables = new LinkedHashSet<>();
+			TransactionSynchronizationManager.bindResource(this, newWrittenTables);
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCompletion(int status) {
+					TransactionSynchronizationManager.unbindResourceIfPossible(QueryResultCache.this);
+					for (String writtenTable: newWrittenTables) {
+						invalidate(writtenTable);
+					}
+				}
+			});
+			writtenTables = newWrittenTables;
+		}
+		writtenTables.add(t);
+	}
+	
+	@SuppressWarnings("unchecked")
+	private Set<String> getWrittenTables() {
+		return (Set<String>) TransactionSynchronizationManager.getResource(this);
+	}
+	
+	private boolean isWrittenInTransaction(Collection<String> tables) {
+		Set<String> writtenTables = getWrittenTables();
+		if (writtenTables == null) {
+			return false;
+		}
+		for (String table: tables) {
+			if (writtenTables.contains(normalize(table))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Invalidates all the results.
+	 */
+	public void invalidateAll() {
+		cache.clear();
+	}
+
+	/**
+	 * @return a snapshot of the statistics of this cache.
+	 */
+	public ConcurrentCache.Stats getStats() {
+		return cache.getStats();
+	}
+
+	/**
+	 * @return the tables of the {@link SimpleEntityDescriptor} nodes in the specified tree.
+	 */
+	public static Set<String> getTables(Node<EntityDescriptor> root) {
+		Assert.assertNotNull(root, "root");
+		Set<String> tables = new LinkedHashSet<>();
+		root.traverse(node -> {
+			if (node.getValue() instanceof SimpleEntityDescriptor) {
+				String table = ((SimpleEntityDescriptor) node.getValue()).getTableName();
+				if (StringUtils.hasText(table)) {
+					tables.add(normalize(table));
+				}
+			}
+		});
+		return tables;
+	}
+
+	private static String normalize(String table) {
+		return table.trim().toLowerCase(Locale.ROOT);
+	}
+
+	@Override
+	public String toString() {
+		return "QueryResultCache [cache=" + cache + "]";
+	}
+
+
+	private static final class Key {
+		private final Object kind;
+		private final String sql;
+		private final Object[] params;
+		private final int hash;
+
+		Key(Object kind, String sql, Object[] params) {
+			this.kind = kind;
+			this.sql = sql;
+			this.params = params != null ? params.clone() : new Object[0];
+			this.hash = Objects.hash(kind, sql, Arrays.deepHashCode(this.params));
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return hash == other.hash
+					&& kind.equals(other.kind)
+					&& sql.equals(other.sql)
+					&& Arrays.deepEquals(params, other.params);
+		}
+	}
+
+	private static final class Result {
+		final Object value;
+		final long expiresAt;
+		final Map<String, Long> tableVersions;
+		final RuntimeException failure;
+
+		Result(Object value, long expiresAt, Map<String, Long> tableVersions) {
+			this.value = value;
+			this.expiresAt = expiresAt;
+			this.tableVersions = tableVersions;
+			this.failure = null;
+		}
+
+		Result(RuntimeException failure) {
+			this.value = null;
+			this.expiresAt = 0;
+			this.tableVersions = Map.of();
+			this.failure = failure;
+		}
+	}
+}
@@ -0,0 +1,222 @@
+package com.asentinel.common.orm.cache;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.asentinel.common.orm.CacheEntityDescriptor;
+import com.asentinel.common.orm.EntityUtils;
+import com.asentinel.common.util.Assert;
+
+/**
+ * Immutable index of entities by their id. If all the ids are integral numbers the index
+ * is keyed by primitive {@code long}s, either as a direct array if the ids are dense or as a sorted array
+ * searched with binary search otherwise, so the lookups do not need hashing or boxing. For the other id types
+ * a hash map is used.
+ * <br><br>
+ * The integral numeric ids are normalized, so the entity with the id {@code 1} is found
+ * for {@code 1L} as well. The {@code BigDecimal} and {@code BigInteger} ids (for example returned
+ * by {@code ResultSet.getObject} for Oracle {@code NUMBER} columns) are converted to {@code long} if possible.
+ *
+ * @see ReferenceDataRegistry
+ * @see CacheEntityDescriptor
+ */
+public final class ReferenceDataIndex<T> {
+
+	private static final ReferenceDataIndex<?> EMPTY = new ReferenceDataIndex<>(Collections.emptyList());
+
+	private final List<T> entities;
+
+	// dense index: values[id - minId]
+	private final long minId;
+	private final Object[] denseValues;
+
+	// sparse index: sortedIds[i] is the id of sortedValues[i]
+	private final long[] sortedIds;
+	private final Object[] sortedValues;
+
+	// non integral ids
+	private final Map<Object, T> map;
+
+	private ReferenceDataIndex(Collection<? extends T> entities) {
+		this.entities = Collections.unmodifiableList(new ArrayList<>(entities));
+		long[] ids = new long[this.entities.size()];
+		boolean integral = true;
+		for (int i = 0; i < ids.length; i++) {
+			Object id = EntityUtils.getEntityId(this.entities.get(i));
+			Assert.assertNotNull(id, "id");
+			if (!isIntegral(id)) {
+				integral = false;
+				break;
+			}
+			ids[i] = ((Number) id).longValue();
+		}
+		if (!integral) {
+			Map<Object, T> map = new HashMap<>();
+			for (T entity: this.entities) {
+				Object id = EntityUtils.getEntityId(entity);
+				Assert.assertNotNull(id, "id");
+				if (map.putIfAbsent(SimpleEntityCache.normalizeId(id), entity) != null) {
+					throw duplicateId(id);
+				}
+			}
+			this.map = map;
+			this.minId = 0;
+			this.denseValues = null;
+			this.sortedIds = null;
+			this.sortedValues = null;
+			return;
+		}
+		this.map = null;
+		long min = Long.MAX_VALUE;
+		long max = Long.MIN_VALUE;
+		for (long id: ids) {
+			min = Math.min(min, id);
+			max = Math.max(max, id);
+		}
+		if (ids.length > 0 && max - min < 2L * ids.length + 16) {
+			Object[] values = new Object[(int) (max - min + 1)];
+			for (int i = 0; i < ids.length; i++) {
+				int index = (int) (ids[i] - min);
+				if (values[index] != null) {
+					throw duplicateId(ids[i]);
+				}
+				values[index] = this.entities.get(i);
+			}
+			this.minId = min;
+			this.denseValues = values;
+			this.sortedIds = null;
+			this.sortedValues = null;
+		} else {
+			Integer[] order = new Integer[ids.length];
+			for (int i = 0; i < order.length; i++) {
+				order[i] = i;
+			}
+			Arrays.sort(order, (i1, i2) -> Long.compare(ids[i1], ids[i2]));
+			long[] sortedIds = new long[ids.length];
+			Object[] sortedValues = new Object[ids.length];
+			for (int i = 0; i < order.length; i++) {
+				sortedIds[i] = ids[order[i]];
+				sortedValues[i] = this.entities.get(order[i]);
+				if (i > 0 && sortedIds[i] == sortedIds[i - 1]) {
+					throw duplicateId(sortedIds[i]);
+				}
+			}
+			this.minId = 0;
+			this.denseValues = null;
+			this.sortedIds = sortedIds;
+			this.sortedValues = sortedValues;
+		}
+	}
+
+	private static IllegalStateException duplicateId(Object id) {
+		return new IllegalStateException("Duplicate id " + id + " in the reference data.");
+	}
+
+	/**
+	 * Creates an index for the specified entities. The entities must have non {@code null}
+	 * and unique ids.
+	 *
+	 * @throws IllegalStateException if 2 entities have the same id.
+	 */
+	public static <T> ReferenceDataIndex<T> of(Collection<? extends T> entities) {
+		Assert.assertNotNull(entities, "entities");
+		return new ReferenceDataIndex<>(entities);
+	}
+
+	/**
+	 * @return an empty index.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> ReferenceDataIndex<T> empty() {
+		return (ReferenceDataIndex<T>) EMPTY;
+	}
+
+	private static boolean isIntegral(Object id) {
+		return id instanceof Integer || id instanceof Long
+				|| id instanceof Short || id instanceof Byte;
+	}
+
+	/**
+	 * @return the entity with the specified id or {@code null} if not found.
+	 */
+	public T get(Object id) {
+		if (id == null) {
+			return null;
+		}
+		if (map != null) {
+			return map.get(SimpleEntityCache.normalizeId(id));
+		}
+		Long longId = toLong(id);
+		return longId != null ? get(longId.longValue()) : null;
+	}
+
+	/**
+	 * @return the specified id as a {@code Long} if it is an integral number, or a {@code BigDecimal}/{@code BigInteger}
+	 * 			with an exact {@code long} value, {@code null} otherwise.
+	 */
+	static Long toLong(Object id) {
+		if (isIntegral(id)) {
+			return ((Number) id).longValue();
+		}
+		try {
+			if (id instanceof BigInteger) {
+				return ((BigInteger) id).longValueExact();
+			}
+			if (id instanceof BigDecimal) {
+				return ((BigDecimal) id).longValueExact();
+			}
+		} catch (ArithmeticException e) {
+			// not representable as long
+		}
+		return null;
+	}
+
+	/**
+	 * @return the entity with the specified integral id or {@code null} if not found.
+	 */
+	@SuppressWarnings("unchecked")
+	public T get(long id) {
+		if (denseValues != null) {
+			long index = id - minId;
+			if (index < 0 || index >= denseValues.length) {
+				return null;
+			}
+			return (T) denseValues[(int) index];
+		}
+		if (sortedIds != null) {
+			int index = Arrays.binarySearch(sortedIds, id);
+			return index >= 0 ? (T) sortedValues[index] : null;
+		}
+		if (map != null) {
+			return map.get(id);
+		}
+		return null;
+	}
+
+	/**
+	 * @return the indexed entities as an unmodifiable list.
+	 */
+	public List<T> getEntities() {
+		return entities;
+	}
+
+	/**
+	 * @return the number of indexed entities.
+	 */
+	public int size() {
+		return entities.size();
+	}
+
+	@Override
+	public String toString() {
+		return "ReferenceDataIndex [size=" + entities.size()
+				+ ", type=" + (map != null ? "hash" : denseValues != null ? "dense" : "sorted") + "]";
+	}
+}
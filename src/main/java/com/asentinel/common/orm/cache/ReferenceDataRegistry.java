@@ -0,0 +1,227 @@
+package com.asentinel.common.orm.cache;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.asentinel.common.orm.CacheEntityDescriptor;
+import com.asentinel.common.orm.jql.SqlBuilderFactory;
+import com.asentinel.common.util.Assert;
+
+/**
+ * Registry for reference data, small tables that are read often and change rarely
+ * (countries, currencies, types etc.). Each registered entity type is loaded once and exposed
+ * as a {@link ReferenceData} handle holding an immutable {@link ReferenceDataIndex}. The handle is
+ * stable, so it can be passed to the {@link CacheEntityDescriptor} factory methods (see
+ * {@link CacheEntityDescriptor#forReferenceData(Class, String, Supplier)}) and the descriptor trees
+ * built with it see the refreshed data without being rebuilt. This removes the reference table joins
+ * from the queries.
+ * <br><br>
+ * The data is refreshed:
+ * <li>explicitly by calling {@link #refresh(Class)};
+ * <li>by calling {@link #refreshIfChanged()}, periodically if {@link #scheduleRefresh(ScheduledExecutorService, Duration)}
+ * is used. For each type registered with a version query, the query (for example
+ * {@code select max(updated_at) from Currencies}) is executed and the type is reloaded only if the result
+ * changed. The types registered without a version query are always reloaded.
+ * <br><br>
+ * The entities are shared between all the threads, they must be treated as read-only.
+ * <br><br>
+ * A type is loaded when it is registered, so the reference data is never queried while the rows of
+ * another query are mapped, for example by a {@link CacheEntityDescriptor} node. This is important when
+ * the outer query is still streaming its result set, many drivers do not support a second query on
+ * the same connection at that point.
+ *
+ * @see ReferenceData
+ * @see ReferenceDataIndex
+ * @see CacheEntityDescriptor
+ */
+public class ReferenceDataRegistry {
+	private static final Logger log = LoggerFactory.getLogger(ReferenceDataRegistry.class);
+
+	private final SqlBuilderFactory sqlBuilderFactory;
+
+	private final Map<Class<?>, ReferenceData<?>> data = new ConcurrentHashMap<>();
+
+	public ReferenceDataRegistry(SqlBuilderFactory sqlBuilderFactory) {
+		Assert.assertNotNull(sqlBuilderFactory, "sqlBuilderFactory");
+		this.sqlBuilderFactory = sqlBuilderFactory;
+	}
+
+	/**
+	 * Registers the specified type without a version query, it will be
+	 * reloaded on each {@link #refreshIfChanged()} call.
+	 *
+	 * @see #register(Class, String)
+	 */
+	public <T> ReferenceData<T> register(Class<T> type) {
+		return register(type, null);
+	}
+
+	/**
+	 * Registers and loads the specified type. If the type is already registered the existing
+	 * handle is returned and the data is not loaded again. If the load fails the type is not registered.
+	 *
+	 * @param type the entity type.
+	 * @param versionSql query returning a single value that changes whenever the data changes, for example
+	 * 			{@code select max(updated_at) from Currencies} or the value of a version column. Can be {@code null}.
+	 * @return the handle for the data of the specified type.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> ReferenceData<T> register(Class<T> type, String versionSql) {
+		Assert.assertNotNull(type, "type");
+		ReferenceData<T> referenceData = (ReferenceData<T>) data.get(type);
+		if (referenceData != null) {
+			return referenceData;
+		}
+		// loaded outside the map, the queries should not run inside computeIfAbsent
+		ReferenceData<T> newReferenceData = new ReferenceData<>(this, type, versionSql);
+		newReferenceData.reload();
+		referenceData = (ReferenceData<T>) data.putIfAbsent(type, newReferenceData);
+		return referenceData != null ? referenceData : newReferenceData;
+	}
+
+	/**
+	 * @return the handle for the data of the specified type.
+	 * @throws IllegalArgumentException if the type is not registered.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> ReferenceData<T> get(Class<T> type) {
+		Assert.assertNotNull(type, "type");
+		ReferenceData<T> referenceData = (ReferenceData<T>) data.get(type);
+		if (referenceData == null) {
+			throw new IllegalArgumentException("The type " + type.getName() + " is not registered as reference data.");
+		}
+		return referenceData;
+	}
+
+	/**
+	 * Reloads the data for the specified type.
+	 */
+	public void refresh(Class<?> type) {
+		get(type).reload();
+	}
+
+	/**
+	 * Reloads the data for the registered types whose version changed and
+	 * for those without a version query.
+	 */
+	public void refreshIfChanged() {
+		for (ReferenceData<?> referenceData: data.values()) {
+			try {
+				referenceData.reloadIfChanged();
+			} catch (RuntimeException e) {
+				// keep the old data, it will be retried on the next refresh
+				log.error("refreshIfChanged - Failed to refresh the reference data " + referenceData.getType().getName() + ".", e);
+			}
+		}
+	}
+
+	/**
+	 * Schedules periodic {@link #refreshIfChanged()} calls on the specified executor.
+	 *
+	 * @return the {@code ScheduledFuture} that can be used to cancel the refresh.
+	 */
+	public ScheduledFuture<?> scheduleRefresh(ScheduledExecutorService executor, Duration period) {
+		Assert.assertNotNull(executor, "executor");
+		Assert.assertNotNull(period, "period");
+		Assert.assertTrue(!period.isNegative() && !period.isZero(), "The period must be positive.");
+		long millis = period.toMillis();
+		return executor.scheduleWithFixedDelay(this::refreshIfChanged, millis, millis, TimeUnit.MILLISECONDS);
+	}
+
+	<T> ReferenceDataIndex<T> load(Class<T> type) {
+		long t0 = System.nanoTime();
+		List<T> entities = sqlBuilderFactory.newSqlBuilder(type).select().exec();
+		ReferenceDataIndex<T> index = ReferenceDataIndex.of(entities);
+		if (log.isDebugEnabled()) {
+			log.debug("load - Loaded " + index.size() + " " + type.getName() + " entities in "
+					+ TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - t0) + " ms.");
+		}
+		return index;
+	}
+
+	Object loadVersion(String versionSql) {
+		return sqlBuilderFactory.getSqlQuery().queryForObject(versionSql, (rs, n) -> rs.getObject(1));
+	}
+
+	@Override
+	public String toString() {
+		return "ReferenceDataRegistry [types=" + data.keySet() + "]";
+	}
+
+
+	/**
+	 * Stable handle for the reference data of a type. The {@link #get()} method
+	 * returns the current index, it never queries the database.
+	 */
+	public static final class ReferenceData<T> implements Supplier<ReferenceDataIndex<T>> {
+		private final ReferenceDataRegistry registry;
+		private final Class<T> type;
+		private final String versionSql;
+
+		private volatile ReferenceDataIndex<T> index;
+		private Object version;
+
+		ReferenceData(ReferenceDataRegistry registry, Class<T> type, String versionSql) {
+			this.registry = registry;
+			this.type = type;
+			this.versionSql = versionSql;
+		}
+
+		/**
+		 * @return the current index, never {@code null}.
+		 */
+		@Override
+		public ReferenceDataIndex<T> get() {
+			return index;
+		}
+
+		/**
+		 * @return the entity with the specified id or {@code null} if not found.
+		 */
+		public T get(Object id) {
+			return get().get(id);
+		}
+
+		/**
+		 * @return the entity with the specified id or {@code null} if not found.
+		 */
+		public T get(long id) {
+			return get().get(id);
+		}
+
+		public Class<T> getType() {
+			return type;
+		}
+
+		synchronized ReferenceDataIndex<T> reload() {
+			// the version is read first, so a change during the load is detected on the next refresh
+			Object version = versionSql != null ? registry.loadVersion(versionSql) : null;
+			ReferenceDataIndex<T> index = registry.load(type);
+			this.version = version;
+			this.index = index;
+			return index;
+		}
+
+		synchronized void reloadIfChanged() {
+			if (versionSql != null && Objects.equals(version, registry.loadVersion(versionSql))) {
+				return;
+			}
+			reload();
+		}
+
+		@Override
+		public String toString() {
+			return "ReferenceData [type=" + type.getName() + ", index=" + index + "]";
+		}
+	}
+}
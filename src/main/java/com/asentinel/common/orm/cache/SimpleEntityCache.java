@@ -0,0 +1,181 @@
+package com.asentinel.common.orm.cache;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.asentinel.common.orm.metrics.OrmMetrics;
+import com.asentinel.common.orm.metrics.OrmMetricsRegistry;
+import com.asentinel.common.util.Assert;
+import com.asentinel.common.util.ConcurrentCache;
+
+/**
+ * {@link EntityCache} implementation that caches the entities of a fixed set of types. Each type
+ * has its own {@link ConcurrentCache} bounded to a maximum size and optionally expiring
+ * the entries after a configured duration. The integral numeric ids are normalized, so
+ * an entity cached for the id {@code 1} is found for the id {@code 1L} as well.
+ * <br><br>
+ * An entity loaded while an eviction for its type happened is returned to the caller,
+ * but it is not kept in the cache because it may have been read before the evicting
+ * change was committed.
+ * 
+ * @see EntityCache
+ * @see ConcurrentCache
+ */
+public class SimpleEntityCache implements EntityCache {
+	private static final Logger log = LoggerFactory.getLogger(SimpleEntityCache.class);
+	
+	private final Map<Class<?>, TypeCache> caches;
+	
+	/**
+	 * @param maximumSize the maximum number of entities cached for each type.
+	 * @param expireAfterWrite the duration after which a cached entity expires, can be {@code null}
+	 * 			in which case the entities expire only when evicted.
+	 * @param cacheableTypes the entity types to cache.
+	 */
+	public SimpleEntityCache(int maximumSize, Duration expireAfterWrite, Class<?> ... cacheableTypes) {
+		Assert.assertNotNull(cacheableTypes, "cacheableTypes");
+		Map<Class<?>, TypeCache> caches = new HashMap<>();
+		for (Class<?> type: cacheableTypes) {
+			Assert.assertNotNull(type, "type");
+			caches.put(type, new TypeCache(new ConcurrentCache<>(maximumSize, expireAfterWrite)));
+		}
+		this.caches = caches;
+	}
+
+	@Override
+	public boolean isCacheable(Class<?> type) {
+		return caches.containsKey(type);
+	}
+
+	@Override
+	public <T> T get(Class<T> type, Object id, Function<Object, T> loader) {
+		Assert.assertNotNull(type, "type");
+		Assert.assertNotNull(id, "id");
+		Assert.assertNotNull(loader, "loader");
+		TypeCache typeCache = caches.get(type);
+		if (typeCache == null) {
+			return loader.apply(id);
+		}
+		ConcurrentCache<Object, Object> cache = typeCache.cache;
+		Object key = normalizeId(id);
+		long generation = typeCache.generation.get();
+		boolean[] loaded = new boolean[1];
+		Object entity = cache.get(key, () -> {
+			loaded[0] = true;
+			try {
+				return loader.apply(id);
+			} catch (RuntimeException e) {
+				return new Failure(e);
+			}
+		});
+		OrmMetricsRegistry.get().onCacheAccess(OrmMetrics.ENTITY_CACHE, !loaded[0]);
+		// the conditional removals below do not touch an entry loaded
+		// by another thread after this one was removed
+		if (entity instanceof Failure) {
+			// the failures are not cached
+			cache.remove(key, entity);
+			throw ((Failure) entity).exception;
+		}
+		if (entity == null) {
+			// the missing entities are not cached
+			cache.remove(key, null);
+			return null;
+		}
+		if (loaded[0] && typeCache.generation.get() != generation) {
+			// evicted while loading, the entity may be stale
+			cache.remove(key, entity);
+			if (log.isTraceEnabled()) {
+				log.trace("get - Entity " + type.getName() + " with id " + id + " was loaded during an eviction, it is not cached.");
+			}
+		}
+		return type.cast(entity);
+	}
+
+	@Override
+	public void evict(Class<?> type, Object id) {
+		Assert.assertNotNull(type, "type");
+		Assert.assertNotNull(id, "id");
+		Object key = normalizeId(id);
+		for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+			TypeCache typeCache = caches.get(c);
+			if (typeCache != null) {
+				typeCache.generation.incrementAndGet();
+				typeCache.cache.remove(key);
+				if (log.isTraceEnabled()) {
+					log.trace("evict - Evicted entity " + c.getName() + " with id " + id + ".");
+				}
+			}
+		}
+	}
+
+	@Override
+	public void evict(Class<?> type) {
+		Assert.assertNotNull(type, "type");
+		TypeCache typeCache = caches.get(type);
+		if (typeCache != null) {
+			typeCache.generation.incrementAndGet();
+			typeCache.cache.clear();
+		}
+	}
+
+	@Override
+	public void clear() {
+		for (TypeCache typeCache: caches.values()) {
+			typeCache.generation.incrementAndGet();
+			typeCache.cache.clear();
+		}
+	}
+	
+	/**
+	 * @return the statistics for the specified type or {@code null} if the type
+	 * 			is not cacheable.
+	 */
+	public ConcurrentCache.Stats getStats(Class<?> type) {
+		TypeCache typeCache = caches.get(type);
+		return typeCache != null ? typeCache.cache.getStats() : null;
+	}
+	
+	static Object normalizeId(Object id) {
+		if (id instanceof Integer || id instanceof Long 
+				|| id instanceof Short || id instanceof Byte) {
+			return ((Number) id).longValue();
+		}
+		return id;
+	}
+
+	@Override
+	public String toString() {
+		return "SimpleEntityCache [types=" + caches.keySet() + "]";
+	}
+
+
+	private static final class TypeCache {
+		final ConcurrentCache<Object, Object> cache;
+
+		// incremented before each eviction, an entity is cached only if
+		// no eviction happened while it was loaded
+		final AtomicLong generation = new AtomicLong();
+
+		TypeCache(ConcurrentCache<Object, Object> cache) {
+			this.cache = cache;
+		}
+	}
+
+	/**
+	 * Cached instead of the entity when the loader fails, so that the failed entry can be
+	 * removed without removing an entry that replaced it.
+	 */
+	private static final class Failure {
+		final RuntimeException exception;
+
+		Failure(RuntimeException exception) {
+			this.exception = exception;
+		}
+	}
+}
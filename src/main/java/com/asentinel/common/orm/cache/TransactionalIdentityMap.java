@@ -0,0 +1,169 @@
+package com.asentinel.common.orm.cache;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.asentinel.common.orm.EntityBuilder;
+import com.asentinel.common.orm.OrmOperations;
+import com.asentinel.common.orm.ProxyEntityDescriptor;
+import com.asentinel.common.orm.jql.SqlBuilder;
+import com.asentinel.common.orm.jql.SqlBuilderFactory;
+import com.asentinel.common.orm.persist.SimpleUpdater;
+import com.asentinel.common.util.Assert;
+
+/**
+ * Identity map (first level cache) scoped to the current Spring managed transaction. It is opt-in, the client
+ * code has to call {@link #bind()} inside the transaction, usually at the beginning of the outermost
+ * transactional method. Once bound, until the transaction completes:
+ * <li>the {@link EntityBuilder} reuses the entities already in the map for the leaf nodes of the entity descriptor
+ * tree, including the nodes that would otherwise create proxies. It adds to the map the complete entities it creates
+ * only for the id lookups below and for the queries marked with {@link SqlBuilder#fillIdentityMap()}, the
+ * queries restricting the joined rows (a where clause on a child alias, paging) would add incomplete entities;
+ * <li>{@link OrmOperations#getEntity(Class, Object)}, {@link OrmOperations#getOptional(Class, Object)} and the proxy
+ * loaders (see {@link ProxyEntityDescriptor#getLoader(SqlBuilderFactory, Class, String)}) return the entity
+ * from the map without querying the database if possible;
+ * <li>the {@link SimpleUpdater} removes the entities with the ids it deletes and the other instances
+ * with the ids it inserts, updates or upserts, so the transaction sees its own writes.
+ * <br><br>
+ * The map is keyed by the exact entity class and the entity id, the integral numeric ids are normalized.
+ * The entities with child nodes in a query are not reused, because their children would be added
+ * again to the existing instance, but they are added to the map if not already present. The entities
+ * loaded by a partial tree (projected or missing some of their {@code @Child} members, for example
+ * leaf nodes of classes with children) are never added, so the map only holds entities as complete
+ * as the ones loaded by {@link OrmOperations#getEntity(Class, Object)}.
+ * <br><br>
+ * This class is not thread safe, like the transaction it is bound to it is meant to be used by a single thread.
+ *
+ * @see #bind()
+ * @see #getCurrent()
+ */
+public final class TransactionalIdentityMap {
+	private static final Logger log = LoggerFactory.getLogger(TransactionalIdentityMap.class);
+
+	private final Map<Class<?>, Map<Object, Object>> entities = new HashMap<>();
+
+	private TransactionalIdentityMap() {
+
+	}
+
+	/**
+	 * Binds a new identity map to the current transaction if one is not already bound. The map
+	 * is unbound when the transaction completes.
+	 *
+	 * @return the identity map bound to the current transaction.
+	 * @throws IllegalStateException if the transaction synchronization is not active.
+	 */
+	public static TransactionalIdentityMap bind() {
+		TransactionalIdentityMap map = getCurrent();
+		if (map != null) {
+			return map;
+		}
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			throw new IllegalStateException("The identity map can be bound only inside a transaction.");
+		}
+		TransactionalIdentityMap newMap = new TransactionalIdentityMap();
+		TransactionSynchronizationManager.bindResource(TransactionalIdentityMap.class, newMap);
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+			@Override
+			public void afterCompletion(int status) {
+				TransactionSynchronizationManager.unbindResourceIfPossible(TransactionalIdentityMap.class);
+				if (log.isTraceEnabled()) {
+					log.trace("afterCompletion - Unbound identity map with " + newMap.getSize() + " entities.");
+				}
+			}
+		});
+		return newMap;
+	}
+
+	/**
+	 * @return the identity map bound to the current transaction or {@code null}
+	 * 			if there is none.
+	 */
+	public static TransactionalIdentityMap getCurrent() {
+		return (TransactionalIdentityMap) TransactionSynchronizationManager.getResource(TransactionalIdentityMap.class);
+	}
+
+	/**
+	 * @return the entity with the specified class and id or {@code null} if not in the map.
+	 */
+	public <T> T get(Class<T> type, Object id) {
+		Assert.assertNotNull(type, "type");
+		Assert.assertNotNull(id, "id");
+		Map<Object, Object> map = entities.get(type);
+		if (map == null) {
+			return null;
+		}
+		return type.cast(map.get(SimpleEntityCache.normalizeId(id)));
+	}
+
+	/**
+	 * Adds the entity to the map if there is no entity with the same class and id.
+	 *
+	 * @return the entity in the map after this call.
+	 */
+	public Object putIfAbsent(Class<?> type, Object id, Object entity) {
+		Assert.assertNotNull(type, "type");
+		Assert.assertNotNull(id, "id");
+		Assert.assertNotNull(entity, "entity");
+		Object existing = entities.computeIfAbsent(type, k -> new HashMap<>())
+				.putIfAbsent(SimpleEntityCache.normalizeId(id), entity);
+		return existing != null ? existing : entity;
+	}
+
+	/**
+	 * Removes the entity with the specified id for the specified class and all its
+	 * super classes.
+	 */
+	public void remove(Class<?> type, Object id) {
+		Assert.assertNotNull(type, "type");
+		Assert.assertNotNull(id, "id");
+		Object key = SimpleEntityCache.normalizeId(id);
+		for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+			Map<Object, Object> map = entities.get(c);
+			if (map != null) {
+				map.remove(key);
+			}
+		}
+	}
+
+	/**
+	 * Removes the entity with the specified id for the specified class and all its super
+	 * classes, unless it is the {@code entity} instance. Called after {@code entity} is written, so that
+	 * a different instance with the same id, holding the state before the write, is no longer returned.
+	 */
+	public void removeOther(Class<?> type, Object id, Object entity) {
+		Assert.assertNotNull(type, "type");
+		Assert.assertNotNull(id, "id");
+		Object key = SimpleEntityCache.normalizeId(id);
+		for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+			Map<Object, Object> map = entities.get(c);
+			if (map != null && map.get(key) != entity) {
+				map.remove(key);
+			}
+		}
+	}
+
+	/**
+	 * Removes all the entities.
+	 */
+	public void clear() {
+		entities.clear();
+	}
+
+	/**
+	 * @return the number of entities in the map.
+	 */
+	public int getSize() {
+		return entities.values().stream().mapToInt(Map::size).sum();
+	}
+
+	@Override
+	public String toString() {
+		return "TransactionalIdentityMap [size=" + getSize() + "]";
+	}
+}
@@ -7,6 +7,7 @@ import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
 import com.asentinel.common.orm.OrmTemplate;
+import com.asentinel.common.orm.OrmWarmUp;
 import org.springframework.context.annotation.Import;
 
 import com.asentinel.common.orm.OrmOperations;
@@ -22,6 +23,8 @@ import com.asentinel.common.orm.OrmOperations;
  * {@code spring.datasource.url}, {@code spring.datasource.username}, {@code spring.datasource.password}, etc.).
  * <br>
  * <br> Optionally, it can provide a {@code OrmConversionServiceConfig} bean, for registering custom converters.
+ * <br> Optionally, it can specify the {@link #warmUpPackages()} to have the ORM metadata for the entities in those
+ * packages built at startup.
  * 
  * @since 1.72.0
  * @author Razvan Popian
@@ -33,4 +36,11 @@ import com.asentinel.common.orm.OrmOperations;
 @Import(OrmConfig.class)
 public @interface EnableAsentinelOrm {
 
+	/**
+	 * The packages to scan for {@code @Table} classes whose metadata, proxy classes and default
+	 * {@code EntityDescriptor} trees should be built at startup. By default no warm-up is performed.
+	 * 
+	 * @see OrmWarmUp
+	 */
+	String[] warmUpPackages() default {};
 }
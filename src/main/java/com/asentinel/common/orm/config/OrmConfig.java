@@ -1,24 +1,30 @@
 package com.asentinel.common.orm.config;
 
 import java.sql.DatabaseMetaData;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 import javax.sql.DataSource;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.ImportAware;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.core.convert.ConversionService;
 import org.springframework.core.convert.support.ConfigurableConversionService;
 import org.springframework.core.convert.support.GenericConversionService;
+import org.springframework.core.type.AnnotationMetadata;
 import org.springframework.jdbc.core.JdbcOperations;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.PreparedStatementSetter;
 import org.springframework.jdbc.support.JdbcUtils;
 import org.springframework.jdbc.support.MetaDataAccessException;
 
+import com.asentinel.common.jdbc.ReplicaRoutingSqlQuery;
 import com.asentinel.common.jdbc.SqlQuery;
 import com.asentinel.common.jdbc.SqlQueryTemplate;
 import com.asentinel.common.jdbc.flavors.CustomArgumentPreparedStatementSetter;
@@ -29,10 +35,15 @@ import com.asentinel.common.jdbc.flavors.postgres.PgEchoingJdbcTemplate;
 import com.asentinel.common.jdbc.flavors.postgres.PostgresJdbcFlavor;
 import com.asentinel.common.orm.OrmOperations;
 import com.asentinel.common.orm.OrmTemplate;
+import com.asentinel.common.orm.OrmWarmUp;
+import com.asentinel.common.orm.cache.EntityCache;
+import com.asentinel.common.orm.cache.QueryResultCache;
 import com.asentinel.common.orm.ed.tree.DefaultEntityDescriptorTreeRepository;
 import com.asentinel.common.orm.ed.tree.EntityDescriptorTreeRepository;
 import com.asentinel.common.orm.jql.DefaultSqlBuilderFactory;
 import com.asentinel.common.orm.jql.SqlBuilderFactory;
+import com.asentinel.common.orm.metrics.OrmMetrics;
+import com.asentinel.common.orm.metrics.OrmMetricsRegistration;
 import com.asentinel.common.orm.persist.SimpleUpdater;
 import com.asentinel.common.orm.query.DefaultSqlFactory;
 import com.asentinel.common.orm.query.SqlFactory;
@@ -43,13 +54,31 @@ import com.asentinel.common.orm.query.SqlFactory;
  * @author horatiu.dan
  */
 @Configuration
-public class OrmConfig {
+public class OrmConfig implements ImportAware {
 	private final static Logger log = LoggerFactory.getLogger(OrmConfig.class);
 	
 	private static final String PG_NAME = "PostgreSQL";
 
 	private static final String ORM_SQL_BUILDER_FACTORY_BEAN_NAME = "ormSqlBuilderFactory";
 	static final String ORM_CS_BEAN_NAME = "ormConversionService";
+	
+	/**
+	 * The name of the optional read replica {@code DataSource} bean. When such a bean is
+	 * declared, the main {@code DataSource} bean should be marked as primary.
+	 * 
+	 * @see #sqlQuery(JdbcFlavor, JdbcOperations, DataSource, ObjectProvider)
+	 */
+	public static final String REPLICA_DATA_SOURCE_BEAN_NAME = "ormReplicaDataSource";
+	
+	private String[] warmUpPackages = new String[0];
+	
+	@Override
+	public void setImportMetadata(AnnotationMetadata importMetadata) {
+		Map<String, Object> attributes = importMetadata.getAnnotationAttributes(EnableAsentinelOrm.class.getName());
+		if (attributes != null) {
+			warmUpPackages = (String[]) attributes.get("warmUpPackages");
+		}
+	}
 
 	/**
 	 * Expensive call as it opens a connection to the database to retrieve metadata.
@@ -80,7 +109,10 @@ public class OrmConfig {
     
 	@Bean
 	public JdbcOperations jdbcOperations(DataSource dataSource, JdbcFlavor jdbcFlavor) throws MetaDataAccessException {
-		String name = getDatabaseName(dataSource);
+		return newJdbcOperations(dataSource, jdbcFlavor, getDatabaseName(dataSource));
+	}
+	
+	private static JdbcOperations newJdbcOperations(DataSource dataSource, JdbcFlavor jdbcFlavor, String name) {
 		if (PG_NAME.equalsIgnoreCase(name)) {
 			PgEchoingJdbcTemplate pgt =  new PgEchoingJdbcTemplate(dataSource);
 			pgt.setJdbcFlavor(jdbcFlavor);
@@ -98,9 +130,22 @@ public class OrmConfig {
 		}
 	}
 
+    /**
+     * If a {@code DataSource} bean named {@link #REPLICA_DATA_SOURCE_BEAN_NAME} is present, the
+     * returned {@code SqlQuery} is a {@link ReplicaRoutingSqlQuery} that sends the reads performed outside
+     * transactions to that replica. The replica is assumed to be the same database product as the primary.
+     */
     @Bean
-    public SqlQuery sqlQuery(JdbcFlavor jdbcFlavor, JdbcOperations jdbcOps) {
-        return new SqlQueryTemplate(jdbcFlavor, jdbcOps);
+    public SqlQuery sqlQuery(JdbcFlavor jdbcFlavor, JdbcOperations jdbcOps, DataSource dataSource,
+    		@Qualifier(REPLICA_DATA_SOURCE_BEAN_NAME) ObjectProvider<DataSource> replicaDataSource) throws MetaDataAccessException {
+    	SqlQueryTemplate primary = new SqlQueryTemplate(jdbcFlavor, jdbcOps);
+    	DataSource replica = replicaDataSource.getIfAvailable();
+    	if (replica == null) {
+    		return primary;
+    	}
+    	log.info("sqlQuery - Read replica found, routing the non transactional reads to it.");
+    	JdbcOperations replicaJdbcOps = newJdbcOperations(replica, jdbcFlavor, getDatabaseName(dataSource));
+    	return new ReplicaRoutingSqlQuery(primary, new SqlQueryTemplate(jdbcFlavor, replicaJdbcOps));
     }
 
     @Bean
@@ -120,9 +165,13 @@ public class OrmConfig {
 
     @Bean(name = ORM_SQL_BUILDER_FACTORY_BEAN_NAME)
     public DefaultSqlBuilderFactory sqlBuilderFactory(@Lazy EntityDescriptorTreeRepository entityDescriptorTreeRepository,
-                                                      SqlFactory sqlFactory, SqlQuery sqlQuery) {
+                                                      SqlFactory sqlFactory, SqlQuery sqlQuery,
+                                                      ObjectProvider<EntityCache> entityCache,
+                                                      ObjectProvider<QueryResultCache> queryResultCache) {
         DefaultSqlBuilderFactory sqlBuilderFactory = new DefaultSqlBuilderFactory(sqlFactory, sqlQuery);
         sqlBuilderFactory.setEntityDescriptorTreeRepository(entityDescriptorTreeRepository);
+        sqlBuilderFactory.setEntityCache(entityCache.getIfAvailable());
+        sqlBuilderFactory.setQueryResultCache(queryResultCache.getIfAvailable());
         return sqlBuilderFactory;
     }
     
@@ -141,6 +190,25 @@ public class OrmConfig {
     	ConversionService conversionService = ormConversionService();
        	SimpleUpdater updater = new SimpleUpdater(jdbcFlavor, sqlQuery);
     	updater.setConversionService(conversionService);
+    	updater.setEntityCache(sqlBuilderFactory.getEntityCache());
+    	updater.setQueryResultCache(sqlBuilderFactory.getQueryResultCache());
         return new OrmTemplate(sqlBuilderFactory, updater);
     }
+
+    /**
+     * Registers the {@link OrmMetrics} beans, if any, with the
+     * {@link com.asentinel.common.orm.metrics.OrmMetricsRegistry}.
+     */
+    @Bean
+    public OrmMetricsRegistration ormMetricsRegistration(ObjectProvider<OrmMetrics> metrics) {
+    	return new OrmMetricsRegistration(metrics.orderedStream().collect(Collectors.toList()));
+    }
+
+    /**
+     * Does nothing unless {@link EnableAsentinelOrm#warmUpPackages()} is specified.
+     */
+    @Bean
+    public OrmWarmUp ormWarmUp(EntityDescriptorTreeRepository entityDescriptorTreeRepository) {
+    	return new OrmWarmUp(entityDescriptorTreeRepository, warmUpPackages);
+    }
 }
@@ -22,7 +22,8 @@ import com.asentinel.common.util.Assert;
  * <li> String.class
  * 
  * <br><br>
- * Note that the resulted entity will be a proxy of the real object.
+ * Note that the resulted entity will be a proxy of the real object. If the entity type is cached in the
+ * {@code EntityCache} of the {@code OrmOperations}, the proxy is loaded from the cache.
  * 
  * @see #getEntity(Class, Object)
  * @see EntityToIdConverter
@@ -20,11 +20,13 @@ import com.asentinel.common.collections.tree.TreeUtils.NodeMatcher;
 import com.asentinel.common.jdbc.ConversionSupport;
 import com.asentinel.common.jdbc.flavors.JdbcFlavor;
 import com.asentinel.common.orm.AutoLazyLoader;
+import com.asentinel.common.orm.ClassMetadataCache;
 import com.asentinel.common.orm.EntityDescriptor;
 import com.asentinel.common.orm.EntityDescriptorNodeCallback;
 import com.asentinel.common.orm.EntityDescriptorNodeMatcher;
 import com.asentinel.common.orm.FetchType;
 import com.asentinel.common.orm.ManyToManyEntityDescriptor;
+import com.asentinel.common.orm.OrmMetadataRegistry;
 import com.asentinel.common.orm.QueryReady;
 import com.asentinel.common.orm.QueryUtils;
 import com.asentinel.common.orm.RelationType;
@@ -35,6 +37,7 @@ import com.asentinel.common.orm.TargetMembersHolder;
 import com.asentinel.common.orm.jql.SqlBuilderFactory;
 import com.asentinel.common.orm.mappers.Child;
 import com.asentinel.common.util.Assert;
+import com.asentinel.common.util.ClassValueCache;
 import com.asentinel.common.util.ConcurrentCache;
 import com.asentinel.common.util.ListUtils;
 import com.asentinel.common.util.Utils;
@@ -46,10 +49,11 @@ import com.asentinel.common.util.Utils;
  * 
  * @see EntityDescriptorTreeRepository 
  * @see #setSqlBuilderFactory(SqlBuilderFactory)
+ * @see OrmMetadataRegistry
  * 
  * @author Razvan Popian
  */
-public class DefaultEntityDescriptorTreeRepository implements EntityDescriptorTreeRepository {
+public class DefaultEntityDescriptorTreeRepository implements EntityDescriptorTreeRepository, ClassMetadataCache {
 	
 	private static final Logger log = LoggerFactory.getLogger(DefaultEntityDescriptorTreeRepository.class);
 	
@@ -59,7 +63,10 @@ public class DefaultEntityDescriptorTreeRepository implements EntityDescriptorTr
 	 */
 	static final String TABLE_ALIAS_PREFIX = "t";
 	
-	private final ConcurrentCache<CacheKey, Node<EntityDescriptor>> cache = new ConcurrentCache<>();
+	// trees cached by root class and root table alias
+	private final ClassValueCache<ConcurrentCache<String, Node<EntityDescriptor>>> cache = new ClassValueCache<>();
+	
+	private volatile int maximumTreesPerClass = ConcurrentCache.UNBOUNDED;
 	
 	private final LobHandler lobHandler;
 	
@@ -90,6 +97,7 @@ public class DefaultEntityDescriptorTreeRepository implements EntityDescriptorTr
 	 */
 	public DefaultEntityDescriptorTreeRepository(LobHandler lobHandler) {
 		this.lobHandler = lobHandler;
+		OrmMetadataRegistry.register(this);
 	}
 	
 	/**
@@ -112,6 +120,36 @@ public class DefaultEntityDescriptorTreeRepository implements EntityDescriptorTr
 	}
 
 	
+	public int getMaximumTreesPerClass() {
+		return maximumTreesPerClass;
+	}
+
+	/**
+	 * Sets the maximum number of trees cached for each root class. The trees are cached by root class
+	 * and root table alias, so this bounds the cache if the aliases are not fixed. When exceeded the least
+	 * recently used trees of the class are evicted. It applies to the classes whose first tree is cached
+	 * after this call. The default is {@link ConcurrentCache#UNBOUNDED}.
+	 */
+	public void setMaximumTreesPerClass(int maximumTreesPerClass) {
+		if (maximumTreesPerClass != ConcurrentCache.UNBOUNDED) {
+			Assert.assertStrictPositive(maximumTreesPerClass, "maximumTreesPerClass");
+		}
+		this.maximumTreesPerClass = maximumTreesPerClass;
+	}
+	
+	/**
+	 * @return the statistics of the trees cache aggregated for all the root classes. The
+	 * 			statistics are reset by the invalidation of the cache.
+	 * 
+	 * @see OrmMetadataRegistry
+	 */
+	public ConcurrentCache.Stats getCacheStats() {
+		return cache.getValues().stream()
+				.map(ConcurrentCache::getStats)
+				.reduce(ConcurrentCache.Stats.EMPTY, ConcurrentCache.Stats::plus);
+	}
+
+	
 	public ConversionService getConversionService() {
 		return conversionService;
 	}
@@ -142,9 +180,11 @@ public class DefaultEntityDescriptorTreeRepository implements EntityDescriptorTr
 			// TODO: a possible enhancement is to add support for caching even if NodeCallbacks are used 
 			return getEntityDescriptorTreeInternal(clazz, rootTableAlias, nodeCallbacks);
 		} else {
-			Node<EntityDescriptor> tree = cache.get(new CacheKey(clazz, rootTableAlias), 
-				() -> getEntityDescriptorTreeInternal(clazz, rootTableAlias, nodeCallbacks)
-			);
+			// a null and an empty root table alias result in the same tree
+			Node<EntityDescriptor> tree = cache.get(clazz, () -> new ConcurrentCache<>(maximumTreesPerClass, null, true))
+				.get(rootTableAlias != null ? rootTableAlias : "", 
+					() -> getEntityDescriptorTreeInternal(clazz, rootTableAlias, nodeCallbacks)
+				);
 			
 			if (log.isTraceEnabled()) {
 				log.trace("getEntityDescriptorTree - The tree for class {} is cached.", clazz.getName());
@@ -155,6 +195,25 @@ public class DefaultEntityDescriptorTreeRepository implements EntityDescriptorTr
 		}
 	}
 	
+	/**
+	 * The cached trees contain descriptors for other classes than their root class,
+	 * so all the trees are removed.
+	 */
+	@Override
+	public void invalidate(Class<?> clazz) {
+		cache.clear();
+	}
+
+	@Override
+	public void invalidate(ClassLoader classLoader) {
+		cache.remove(classLoader);
+	}
+
+	@Override
+	public void invalidateAll() {
+		cache.clear();
+	}
+	
 	@Override
 	public Node<EntityDescriptor> getEntityDescriptorTree(
 			Node<EntityDescriptor> root, 
@@ -447,45 +506,4 @@ public class DefaultEntityDescriptorTreeRepository implements EntityDescriptorTr
 		}
 	}
 	
-	private static class CacheKey {
-		private final Class<?> clasz;
-		private final String alias;
-		
-		public CacheKey(Class<?> clasz, String alias) {
-			this.clasz = clasz;
-			this.alias = alias;
-		}
-
-		@Override
-		public int hashCode() {
-			final int prime = 31;
-			int result = 1;
-			result = prime * result + ((alias == null) ? 0 : alias.hashCode());
-			result = prime * result + ((clasz == null) ? 0 : clasz.hashCode());
-			return result;
-		}
-
-		@Override
-		public boolean equals(Object obj) {
-			CacheKey other = (CacheKey) obj;
-			if (alias == null) {
-				if (other.alias != null)
-					return false;
-			} else if (!alias.equals(other.alias))
-				return false;
-			if (clasz == null) {
-				if (other.clasz != null)
-					return false;
-			} else if (!clasz.equals(other.clasz))
-				return false;
-			return true;
-		}
-		
-		@Override
-		public String toString() {
-			return "CacheKey [clasz=" + clasz + ", alias=" + alias + "]";
-		}
-		
-	}
-	
 }
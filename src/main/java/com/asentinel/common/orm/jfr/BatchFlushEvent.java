@@ -0,0 +1,61 @@
+package com.asentinel.common.orm.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event committed by the {@link com.asentinel.common.orm.persist.SimpleUpdater} for each
+ * batch of entities sent to the database.
+ *
+ * @see OrmEvents
+ */
+@Name(BatchFlushEvent.NAME)
+@Label("ORM Batch Flush")
+@Category({OrmEvents.CATEGORY, "Persistence"})
+@Description("Batch insert, update or upsert performed by the SimpleUpdater.")
+public final class BatchFlushEvent extends Event {
+
+	public static final String NAME = OrmEvents.PREFIX + "BatchFlush";
+
+	@Label("Table")
+	String table;
+
+	@Label("Operation")
+	String operation;
+
+	@Label("Batch Size")
+	int batchSize;
+
+	@Label("Rows")
+	@Description("The number of rows affected, as reported by the JDBC driver.")
+	long rows;
+
+	/**
+	 * Sets the event fields, it should be called only if {@link #shouldCommit()} returns {@code true}.
+	 */
+	public void set(String table, String operation, int batchSize, long rows) {
+		this.table = table;
+		this.operation = operation;
+		this.batchSize = batchSize;
+		this.rows = rows;
+	}
+
+	public String getTable() {
+		return table;
+	}
+
+	public String getOperation() {
+		return operation;
+	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	public long getRows() {
+		return rows;
+	}
+}
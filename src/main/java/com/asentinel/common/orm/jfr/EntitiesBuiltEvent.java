@@ -0,0 +1,83 @@
+package com.asentinel.common.orm.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event committed by an {@link com.asentinel.common.orm.EntityBuilder} when its results are
+ * retrieved. The event starts when the {@code EntityBuilder} is created, so it usually spans
+ * the query execution as well, the time spent mapping the rows is in the {@code mappingTime} field.
+ *
+ * @see OrmEvents
+ */
+@Name(EntitiesBuiltEvent.NAME)
+@Label("ORM Entities Built")
+@Category({OrmEvents.CATEGORY, "Mapping"})
+@Description("Entities built by an EntityBuilder from a result set.")
+public final class EntitiesBuiltEvent extends Event {
+
+	public static final String NAME = OrmEvents.PREFIX + "EntitiesBuilt";
+
+	private static final EventType TYPE = EventType.getEventType(EntitiesBuiltEvent.class);
+
+	@Label("Root Entity Type")
+	Class<?> entityType;
+
+	@Label("Rows")
+	long rows;
+
+	@Label("Root Entities")
+	int rootEntities;
+
+	@Label("Entities Created")
+	@Description("The number of entities created for all the nodes of the entity descriptor tree.")
+	long entitiesCreated;
+
+	@Label("Mapping Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long mappingTime;
+
+	/**
+	 * @return {@code true} if the event is enabled in a running recording. The {@code EntityBuilder}
+	 * 			outlives the mapping, so it creates the event only if this method returns {@code true}.
+	 */
+	public static boolean isTypeEnabled() {
+		return TYPE.isEnabled();
+	}
+
+	/**
+	 * Sets the event fields, it should be called only if {@link #shouldCommit()} returns {@code true}.
+	 */
+	public void set(Class<?> entityType, long rows, int rootEntities, long entitiesCreated, long mappingTime) {
+		this.entityType = entityType;
+		this.rows = rows;
+		this.rootEntities = rootEntities;
+		this.entitiesCreated = entitiesCreated;
+		this.mappingTime = mappingTime;
+	}
+
+	public Class<?> getEntityType() {
+		return entityType;
+	}
+
+	public long getRows() {
+		return rows;
+	}
+
+	public int getRootEntities() {
+		return rootEntities;
+	}
+
+	public long getEntitiesCreated() {
+		return entitiesCreated;
+	}
+
+	public long getMappingTime() {
+		return mappingTime;
+	}
+}
@@ -0,0 +1,32 @@
+package com.asentinel.common.orm.jfr;
+
+/**
+ * Constants shared by the JDK Flight Recorder events emitted by the ORM. The events
+ * are named {@code com.asentinel.orm.<EventName>}, so they can be configured in a JFR settings
+ * file ({@code .jfc}) like this:
+ * <pre>
+ * 	&lt;event name="com.asentinel.orm.Query"&gt;
+ * 		&lt;setting name="enabled"&gt;true&lt;/setting&gt;
+ * 		&lt;setting name="threshold"&gt;10 ms&lt;/setting&gt;
+ * 		&lt;setting name="stackTrace"&gt;true&lt;/setting&gt;
+ * 	&lt;/event&gt;
+ * </pre>
+ *
+ * When an event is not enabled in the running recordings its cost is close to zero, the event
+ * fields are computed only if the event is going to be committed.
+ *
+ * @see QueryEvent
+ * @see EntitiesBuiltEvent
+ * @see ProxyLoadEvent
+ * @see BatchFlushEvent
+ */
+public final class OrmEvents {
+
+	/** the prefix of the event names */
+	public static final String PREFIX = "com.asentinel.orm.";
+
+	/** the top level category of the events */
+	public static final String CATEGORY = "Asentinel ORM";
+
+	private OrmEvents() {}
+}
@@ -0,0 +1,48 @@
+package com.asentinel.common.orm.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event committed when a lazy loading proxy is loaded. Many events of this type in a short interval,
+ * with the same stack trace, usually indicate a N+1 queries problem.
+ *
+ * @see com.asentinel.common.orm.proxy.AbstractLazyLoadInterceptor
+ * @see OrmEvents
+ */
+@Name(ProxyLoadEvent.NAME)
+@Label("ORM Proxy Load")
+@Category({OrmEvents.CATEGORY, "Lazy Loading"})
+@Description("Lazy loading proxy loaded from the database.")
+public final class ProxyLoadEvent extends Event {
+
+	public static final String NAME = OrmEvents.PREFIX + "ProxyLoad";
+
+	@Label("Proxied Type")
+	@Description("The entity class for entity proxies, the collection class for collection proxies.")
+	Class<?> type;
+
+	@Label("Id")
+	@Description("The id of the entity for entity proxies, the id of the parent entity for collection proxies.")
+	String id;
+
+	/**
+	 * Sets the event fields, it should be called only if {@link #isEnabled()} returns {@code true}. The
+	 * fields are set before loading the proxy, because the loading discards the id of collection proxies.
+	 */
+	public void set(Class<?> type, Object id) {
+		this.type = type;
+		this.id = id == null ? null : String.valueOf(id);
+	}
+
+	public Class<?> getType() {
+		return type;
+	}
+
+	public String getId() {
+		return id;
+	}
+}
@@ -0,0 +1,95 @@
+package com.asentinel.common.orm.jfr;
+
+import java.util.regex.Pattern;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event committed by the {@link com.asentinel.common.jdbc.SqlQueryTemplate} for each executed
+ * query. The duration includes the result set processing, so for the ORM queries it includes the
+ * mapping to entities. The event is enabled by default and it can be configured (disabled, threshold, stack trace)
+ * using its name in the JFR settings.
+ * <br><br>
+ * The {@link #fingerprint(String)} groups the queries that differ only in the literal values and in the
+ * number of parameters in the {@code IN} lists.
+ */
+@Name(QueryEvent.NAME)
+@Label("ORM Query")
+@Category({OrmEvents.CATEGORY, "Query"})
+@Description("SQL query executed by the SqlQueryTemplate, including the result set processing.")
+public final class QueryEvent extends Event {
+
+	public static final String NAME = OrmEvents.PREFIX + "Query";
+
+	private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+	private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+	private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+	private static final Pattern PLACEHOLDER_LIST = Pattern.compile("\\?(?:\\s*,\\s*\\?)+");
+
+	@Label("SQL")
+	String sql;
+
+	@Label("Fingerprint")
+	@Description("Hash of the normalized SQL, equal for the queries with the same shape.")
+	String fingerprint;
+
+	@Label("Parameters")
+	int parameterCount;
+
+	@Label("Rows")
+	long rows;
+
+	/**
+	 * Sets the event fields, it should be called only if {@link #shouldCommit()} returns {@code true}.
+	 */
+	public void set(String sql, int parameterCount, long rows) {
+		this.sql = sql;
+		this.fingerprint = fingerprint(sql);
+		this.parameterCount = parameterCount;
+		this.rows = rows;
+	}
+
+	public String getSql() {
+		return sql;
+	}
+
+	public String getFingerprint() {
+		return fingerprint;
+	}
+
+	public int getParameterCount() {
+		return parameterCount;
+	}
+
+	public long getRows() {
+		return rows;
+	}
+
+	/**
+	 * Computes the fingerprint of a SQL string. The string is normalized by replacing the literals with
+	 * {@code ?}, collapsing the {@code ?} lists and the whitespace, and the result is hashed with the 64 bit FNV-1a
+	 * algorithm.
+	 *
+	 * @param sql the SQL string.
+	 * @return the fingerprint as a 16 characters hexadecimal string.
+	 */
+	public static String fingerprint(String sql) {
+		if (sql == null) {
+			return null;
+		}
+		String normalized = STRING_LITERAL.matcher(sql).replaceAll("?");
+		normalized = NUMBER_LITERAL.matcher(normalized).replaceAll("?");
+		normalized = PLACEHOLDER_LIST.matcher(normalized).replaceAll("?");
+		normalized = WHITESPACE.matcher(normalized).replaceAll(" ").trim().toLowerCase();
+		long hash = 0xcbf29ce484222325L;
+		for (int i = 0; i < normalized.length(); i++) {
+			hash ^= normalized.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+		return String.format("%016x", hash);
+	}
+}
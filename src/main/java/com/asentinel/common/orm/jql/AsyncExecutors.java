@@ -0,0 +1,116 @@
+package com.asentinel.common.orm.jql;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.asentinel.common.util.Assert;
+
+/**
+ * Utility class for the asynchronous execution of queries, see {@link SqlBuilder#execAsync()}.
+ * <br><br>
+ * The executors created by {@link #newBoundedExecutor(int)} run at most a fixed number of
+ * queries at the same time, the other queries wait in the executor queue. The number should not exceed
+ * the size of the connection pool. If the JVM supports virtual threads they are used instead of platform threads.
+ *
+ * @see SqlBuilder#execAsync()
+ * @see SqlBuilderFactory#getAsyncExecutor()
+ */
+public final class AsyncExecutors {
+	private static final Logger log = LoggerFactory.getLogger(AsyncExecutors.class);
+
+	/** the maximum number of concurrent queries for the default executor */
+	public static final int DEFAULT_MAX_CONCURRENCY = 16;
+
+	private static final String THREAD_NAME_PREFIX = "orm-async-";
+
+	private static volatile ExecutorService defaultExecutor;
+
+	private AsyncExecutors() {}
+
+	/**
+	 * @return the shared executor used when no executor is configured in the {@link SqlBuilderFactory}. It is
+	 * 			created on the first call and it can run {@value #DEFAULT_MAX_CONCURRENCY} queries at the same time.
+	 */
+	public static Executor getDefault() {
+		ExecutorService executor = defaultExecutor;
+		if (executor == null) {
+			synchronized (AsyncExecutors.class) {
+				executor = defaultExecutor;
+				if (executor == null) {
+					executor = newBoundedExecutor(DEFAULT_MAX_CONCURRENCY);
+					defaultExecutor = executor;
+				}
+			}
+		}
+		return executor;
+	}
+
+	/**
+	 * Creates an executor that runs at most {@code maxConcurrency} tasks at the same time. The executor
+	 * threads are virtual threads if supported by the JVM and daemon platform threads otherwise. The caller
+	 * is responsible for shutting down the executor.
+	 *
+	 * @param maxConcurrency the maximum number of tasks executed at the same time.
+	 * @return the new executor.
+	 */
+	public static ExecutorService newBoundedExecutor(int maxConcurrency) {
+		Assert.assertStrictPositive(maxConcurrency, "maxConcurrency");
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(maxConcurrency, maxConcurrency,
+				60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), newThreadFactory());
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	private static ThreadFactory newThreadFactory() {
+		try {
+			// Thread.ofVirtual().name(prefix, 0).factory() - Java 21+
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+			builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, THREAD_NAME_PREFIX, 0L);
+			Method factory = builderClass.getMethod("factory");
+			return (ThreadFactory) factory.invoke(builder);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			if (log.isDebugEnabled()) {
+				log.debug("newThreadFactory - Virtual threads are not available, platform threads will be used.");
+			}
+		}
+		AtomicInteger counter = new AtomicInteger();
+		return r -> {
+			Thread t = new Thread(r, THREAD_NAME_PREFIX + counter.getAndIncrement());
+			t.setDaemon(true);
+			return t;
+		};
+	}
+
+	/**
+	 * Executes the specified supplier on the specified executor. The queries executed
+	 * asynchronously do not participate in the transaction bound to the calling thread, so this method fails if
+	 * such a transaction is active.
+	 *
+	 * @param supplier the code to execute.
+	 * @param executor the executor.
+	 * @return the {@code CompletableFuture} that completes with the result of the supplier.
+	 * @throws IllegalStateException if a transaction is active on the current thread.
+	 */
+	public static <T> CompletableFuture<T> supplyAsync(Supplier<T> supplier, Executor executor) {
+		Assert.assertNotNull(supplier, "supplier");
+		Assert.assertNotNull(executor, "executor");
+		if (TransactionSynchronizationManager.isActualTransactionActive()) {
+			throw new IllegalStateException("Asynchronous queries can not be executed inside a transaction, "
+					+ "they would run outside of it on a different connection. Use the synchronous exec methods instead.");
+		}
+		return CompletableFuture.supplyAsync(supplier, executor);
+	}
+}
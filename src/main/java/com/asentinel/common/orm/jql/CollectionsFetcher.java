@@ -0,0 +1,268 @@
+package com.asentinel.common.orm.jql;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.StringUtils;
+
+import com.asentinel.common.collections.tree.Node;
+import com.asentinel.common.collections.tree.SimpleNode;
+import com.asentinel.common.jdbc.SqlQuery;
+import com.asentinel.common.orm.EntityBuilder;
+import com.asentinel.common.orm.EntityDescriptor;
+import com.asentinel.common.orm.ManyToManyQueryReady;
+import com.asentinel.common.orm.ParameterizedQuery;
+import com.asentinel.common.orm.QueryReady;
+import com.asentinel.common.orm.RelationType;
+import com.asentinel.common.orm.SimpleEntityDescriptor;
+import com.asentinel.common.orm.cache.QueryResultCache;
+import com.asentinel.common.orm.mappers.ColumnRowMapper;
+import com.asentinel.common.orm.query.SqlFactory;
+import com.asentinel.common.util.Assert;
+
+/**
+ * Helper class used by the {@link SqlBuilder} to load the collections of the root entities
+ * with separate queries instead of joining them in the main query. The collection subtrees of the root
+ * are detached from the {@link EntityDescriptor} tree before compiling the main query (see {@link #detach(Node)}),
+ * and after the root entities are loaded each detached subtree is loaded with a query like
+ * {@code select ... from Bill b where b.InvoiceId in (?, ?, ...)} (see {@link #fetch(Map, EntityBuilder)}).
+ * The results are merged in the root entities through an {@link EntityBuilder} sharing the entity caches of the main
+ * {@code EntityBuilder}. This avoids the row multiplication caused by joining multiple collections in the same query.
+ * <br><br>
+ * If an {@code Executor} is provided the subtree queries are executed concurrently, unless a transaction
+ * is active on the current thread. The entity caches are still shared, so the rows of the concurrent
+ * queries are processed one at a time.
+ * <br><br>
+ * The ids are passed as a single array parameter if the database supports it, otherwise as one parameter
+ * for each id, in queries of at most {@value #MAX_IDS_PER_QUERY} ids (see {@link SqlFactory#buildParameterizedInQuery}).
+ * The paginated queries are not supported.
+ *
+ * @see SqlBuilder#fetchCollectionsSeparately()
+ */
+final class CollectionsFetcher {
+	private static final Logger log = LoggerFactory.getLogger(CollectionsFetcher.class);
+
+	static final String PARENT_ID_COLUMN = "orm_parent_id";
+
+	static final int MAX_IDS_PER_QUERY = 1000;
+
+	private final SqlFactory sqlFactory;
+	private final SqlQuery queryExecutor;
+	private final Executor executor;
+
+	private Node<EntityDescriptor> root;
+	private final List<Node<EntityDescriptor>> detachedNodes = new ArrayList<>();
+
+	CollectionsFetcher(SqlFactory sqlFactory, SqlQuery queryExecutor, Executor executor) {
+		Assert.assertNotNull(sqlFactory, "sqlFactory");
+		Assert.assertNotNull(queryExecutor, "queryExecutor");
+		this.sqlFactory = sqlFactory;
+		this.queryExecutor = queryExecutor;
+		this.executor = executor;
+	}
+
+	/**
+	 * Removes the collection children of the specified root node. Only the direct children
+	 * of the root that are mapped to a collection of the root entity through a foreign key
+	 * are removed, the many to many collections and the collections with custom join conditions
+	 * remain in the tree.
+	 *
+	 * @param root the root of the tree to process, it is modified by this method.
+	 * @return the root node.
+	 */
+	Node<EntityDescriptor> detach(Node<EntityDescriptor> root) {
+		Assert.assertNotNull(root, "root");
+		Assert.assertTrue(root.isRoot(), "The Node parameter must be root.");
+		if (!(root.getValue() instanceof QueryReady)) {
+			return root;
+		}
+		this.root = root;
+		for (Node<EntityDescriptor> child: new ArrayList<>(root.getChildren())) {
+			if (isDetachable(child.getValue())) {
+				root.removeChild(child);
+				detachedNodes.add(child);
+			}
+		}
+		if (log.isDebugEnabled() && !detachedNodes.isEmpty()) {
+			log.debug("detach - Detached " + detachedNodes.size() + " collection subtrees from the "
+					+ root.getValue().getEntityClass().getName() + " tree.");
+		}
+		return root;
+	}
+
+	private static boolean isDetachable(EntityDescriptor descriptor) {
+		if (!(descriptor instanceof SimpleEntityDescriptor) || descriptor instanceof ManyToManyQueryReady) {
+			return false;
+		}
+		SimpleEntityDescriptor sed = (SimpleEntityDescriptor) descriptor;
+		return sed.getParentRelationType() == RelationType.MANY_TO_ONE
+				&& !StringUtils.hasText(sed.getJoinConditionsOverride())
+				&& sed.getTargetMember() != null;
+	}
+
+	/**
+	 * @return {@code true} if at least a subtree was detached.
+	 */
+	boolean hasDetachedNodes() {
+		return !detachedNodes.isEmpty();
+	}
+
+	/**
+	 * @return the tables of the detached subtrees.
+	 */
+	Set<String> getTables() {
+		Set<String> tables = new LinkedHashSet<>();
+		for (Node<EntityDescriptor> node: detachedNodes) {
+			tables.addAll(QueryResultCache.getTables(node));
+		}
+		return tables;
+	}
+
+	/**
+	 * Loads the detached subtrees for the specified root entities. This method
+	 * can be called only once.
+	 *
+	 * @param roots the root entities mapped by id.
+	 * @param cacheSource the {@code EntityBuilder} that loaded the root entities.
+	 */
+	void fetch(Map<Object, ?> roots, EntityBuilder<?> cacheSource) {
+		Assert.assertNotNull(roots, "roots");
+		if (detachedNodes.isEmpty() || roots.isEmpty()) {
+			return;
+		}
+		// the root ids can be of any type, so they are not indexed with a ReferenceDataIndex
+		Map<Object, Object> parents = new HashMap<>();
+		for (Map.Entry<Object, ?> entry: roots.entrySet()) {
+			if (entry.getKey() != null) {
+				parents.put(normalizeId(entry.getKey()), entry.getValue());
+			}
+		}
+		List<Object> ids = new ArrayList<>(parents.keySet());
+		if (executor == null || detachedNodes.size() == 1
+				|| TransactionSynchronizationManager.isActualTransactionActive()) {
+			for (Node<EntityDescriptor> node: detachedNodes) {
+				fetch(node, parents, ids, cacheSource, null);
+			}
+			return;
+		}
+		// the queries run concurrently, but the rows are processed one at a time
+		// because the entity caches of the cacheSource are shared
+		Object lock = new Object();
+		List<CompletableFuture<Void>> futures = new ArrayList<>(detachedNodes.size());
+		for (Node<EntityDescriptor> node: detachedNodes) {
+			futures.add(CompletableFuture.runAsync(() -> fetch(node, parents, ids, cacheSource, lock), executor));
+		}
+		try {
+			CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	private void fetch(Node<EntityDescriptor> node, Map<Object, Object> parents,
+			List<Object> ids, EntityBuilder<?> cacheSource, Object lock) {
+		SimpleEntityDescriptor descriptor = (SimpleEntityDescriptor) node.getValue();
+		String fkName = descriptor.getFkName() != null ? descriptor.getFkName() : ((QueryReady) root.getValue()).getPkName();
+		String fkColumn = descriptor.getTableAlias() + "." + fkName;
+		// the queries are built while the node is still detached
+		List<ParameterizedQuery> queries = new ArrayList<>();
+		for (int i = 0; i < ids.size(); i += MAX_IDS_PER_QUERY) {
+			List<Object> chunk = ids.subList(i, Math.min(ids.size(), i + MAX_IDS_PER_QUERY));
+			queries.add(sqlFactory.buildParameterizedInQuery(node, fkColumn, chunk, 
+					fkColumn + " " + PARENT_ID_COLUMN));
+		}
+
+		ColumnRowMapper parentIdMapper = new ColumnRowMapper(PARENT_ID_COLUMN);
+		Node<EntityDescriptor> ebRoot = new SimpleNode<>(
+				new EntityDescriptor(root.getValue().getEntityClass(), parentIdMapper,
+						(rs, n) -> parents.get(normalizeId(parentIdMapper.mapRow(rs, n))), PARENT_ID_COLUMN)
+		);
+		ebRoot.addChild(node);
+		EntityBuilder<?> eb = newEntityBuilder(ebRoot, cacheSource, lock);
+		RowCallbackHandler rch = lock == null ? eb : rs -> {
+			synchronized (lock) {
+				eb.processRow(rs);
+			}
+		};
+
+		long t0 = System.nanoTime();
+		for (ParameterizedQuery pq: queries) {
+			queryExecutor.query(pq.getSql(), rch, pq.getMainParameters().toArray());
+		}
+		// marks the OrmTreeSets as done
+		if (lock == null) {
+			eb.getEntityMap();
+		} else {
+			synchronized (lock) {
+				eb.getEntityMap();
+			}
+		}
+		if (log.isDebugEnabled()) {
+			log.debug("fetch - Loaded the " + descriptor.getEntityClass().getName() + " collection for "
+					+ ids.size() + " root entities in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - t0) + " ms.");
+		}
+	}
+
+	private static EntityBuilder<?> newEntityBuilder(Node<EntityDescriptor> root, EntityBuilder<?> cacheSource, Object lock) {
+		if (lock == null) {
+			return new EntityBuilder<>(root, cacheSource);
+		}
+		synchronized (lock) {
+			return new EntityBuilder<>(root, cacheSource);
+		}
+	}
+
+	/**
+	 * @return the specified id as a {@code Long} if it is an integral number, so that
+	 * 			the root ids and the foreign key values are equal regardless of their JDBC type.
+	 */
+	private static Object normalizeId(Object id) {
+		if (id instanceof Integer || id instanceof Long
+				|| id instanceof Short || id instanceof Byte) {
+			return ((Number) id).longValue();
+		}
+		if (id instanceof BigInteger && ((BigInteger) id).bitLength() < Long.SIZE) {
+			return ((BigInteger) id).longValue();
+		}
+		if (id instanceof BigDecimal) {
+			try {
+				return ((BigDecimal) id).longValueExact();
+			} catch (ArithmeticException e) {
+				return id;
+			}
+		}
+		return id;
+	}
+
+	List<Node<EntityDescriptor>> getDetachedNodes() {
+		return Collections.unmodifiableList(detachedNodes);
+	}
+
+	@Override
+	public String toString() {
+		Collection<String> names = new ArrayList<>();
+		for (Node<EntityDescriptor> node: detachedNodes) {
+			names.add(node.getValue().getEntityClass().getName());
+		}
+		return "CollectionsFetcher [detached=" + names + "]";
+	}
+}
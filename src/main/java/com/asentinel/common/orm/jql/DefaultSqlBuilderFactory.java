@@ -1,8 +1,12 @@
 package com.asentinel.common.orm.jql;
 
+import java.util.concurrent.Executor;
+
 import org.springframework.beans.factory.InitializingBean;
 
 import com.asentinel.common.jdbc.SqlQuery;
+import com.asentinel.common.orm.cache.EntityCache;
+import com.asentinel.common.orm.cache.QueryResultCache;
 import com.asentinel.common.orm.ed.tree.EntityDescriptorTreeRepository;
 import com.asentinel.common.orm.query.SqlFactory;
 import com.asentinel.common.util.Assert;
@@ -21,6 +25,10 @@ public class DefaultSqlBuilderFactory implements SqlBuilderFactory, Initializing
 	private final SqlFactory sqlFactory;
 	private final SqlQuery queryEx;
 	
+	private EntityCache entityCache;
+	private QueryResultCache queryResultCache;
+	private Executor asyncExecutor;
+	
 	public DefaultSqlBuilderFactory(
 			EntityDescriptorTreeRepository entityDescriptorTreeRepository,
 			SqlFactory sqlFactory,
@@ -48,7 +56,9 @@ public class DefaultSqlBuilderFactory implements SqlBuilderFactory, Initializing
 		return new SqlBuilder<>(clasz,
 				entityDescriptorTreeRepository,
 				sqlFactory,
-				queryEx);
+				queryEx,
+				queryResultCache,
+				asyncExecutor);
 	}
 
 
@@ -70,6 +80,51 @@ public class DefaultSqlBuilderFactory implements SqlBuilderFactory, Initializing
 		return queryEx;
 	}
 
+	@Override
+	public EntityCache getEntityCache() {
+		return entityCache;
+	}
+
+	/**
+	 * Sets the second level {@code EntityCache}, can be {@code null}.
+	 * 
+	 * @see EntityCache
+	 */
+	public void setEntityCache(EntityCache entityCache) {
+		this.entityCache = entityCache;
+	}
+	
+	@Override
+	public QueryResultCache getQueryResultCache() {
+		return queryResultCache;
+	}
+
+	/**
+	 * Sets the {@code QueryResultCache}, can be {@code null}.
+	 * 
+	 * @see QueryResultCache
+	 */
+	public void setQueryResultCache(QueryResultCache queryResultCache) {
+		this.queryResultCache = queryResultCache;
+	}
+	
+	@Override
+	public Executor getAsyncExecutor() {
+		return asyncExecutor != null ? asyncExecutor : SqlBuilderFactory.super.getAsyncExecutor();
+	}
+
+	/**
+	 * Sets the {@code Executor} used for the asynchronous queries, can be {@code null}
+	 * in which case the shared executor returned by {@link AsyncExecutors#getDefault()} is used.
+	 * The executor should not run more queries at the same time than the number of
+	 * connections in the pool, see {@link AsyncExecutors#newBoundedExecutor(int)}.
+	 * 
+	 * @see SqlBuilder#execAsync()
+	 */
+	public void setAsyncExecutor(Executor asyncExecutor) {
+		this.asyncExecutor = asyncExecutor;
+	}
+
 	@Override
 	public void afterPropertiesSet() throws Exception {
 		// we always need an EntityDescriptorTreeRepository
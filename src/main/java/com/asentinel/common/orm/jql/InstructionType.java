@@ -32,6 +32,12 @@ enum InstructionType {
 	
 	PAGED_HAVING,
 	
+	/**
+	 * Tells the compiler to create a paginated query that pulls only the root ids,
+	 * the entities are loaded in a second query.
+	 */
+	PAGED_TWO_PHASE,
+	
 	/**
 	 * Sets the path to a certain node in the {@link EntityDescriptor} tree. The path
 	 * set by this instruction is used by all subsequent column related instructions to 
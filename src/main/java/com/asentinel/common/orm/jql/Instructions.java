@@ -3,12 +3,17 @@ package com.asentinel.common.orm.jql;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.StringUtils;
+
 import com.asentinel.common.collections.tree.Node;
 import com.asentinel.common.orm.EntityDescriptor;
 import com.asentinel.common.orm.EntityDescriptorUtils;
 import com.asentinel.common.orm.ParameterizedQuery;
 import com.asentinel.common.orm.QueryCriteria;
 import com.asentinel.common.orm.QueryReady;
+import com.asentinel.common.orm.metrics.OrmMetricsRegistry;
 import com.asentinel.common.orm.query.SqlFactory;
 import com.asentinel.common.util.Assert;
 
@@ -25,6 +30,8 @@ import com.asentinel.common.util.Assert;
  *  @author Razvan Popian
  */
 class Instructions {
+	private final static Logger log = LoggerFactory.getLogger(Instructions.class);
+	
 	final static String DEFAULT_SEPARATOR = ".";
 	
 	private final SqlFactory sqlFactory;
@@ -59,17 +66,25 @@ class Instructions {
 	 * @throws IllegalStateException if a valid initial query instruction can not
 	 *                               be found.
 	 */
-	@SuppressWarnings("unchecked")
 	public CompiledSql compile() {
+		return compile(getRootNode());
+	}
+	
+	/**
+	 * @return the root of the {@link EntityDescriptor} tree used by the query initialization instruction.
+	 * @throws IllegalStateException if a valid initial query instruction can not
+	 *                               be found.
+	 */
+	@SuppressWarnings("unchecked")
+	Node<EntityDescriptor> getRootNode() {
 		for (Instruction instruction: instructions) {
 			if (InstructionType.INITIAL_QUERY.equals(instruction.getType())) {
-				return compile((Node<EntityDescriptor>) instruction.getActual());		
+				return (Node<EntityDescriptor>) instruction.getActual();		
 			} else if (InstructionType.PAGED_INITIAL_QUERY.equals(instruction.getType())) {
 				Object[] params = (Object[]) instruction.getActual();
-				Node<EntityDescriptor> root = (Node<EntityDescriptor>) params[0]; 
-				return compile(root);				
+				return (Node<EntityDescriptor>) params[0]; 
 			} else if (InstructionType.FROM_QUERY.equals(instruction.getType())) {
-				return compile((Node<EntityDescriptor>) instruction.getActual());
+				return (Node<EntityDescriptor>) instruction.getActual();
 			}
 
 		}
@@ -98,7 +113,16 @@ class Instructions {
 	 */
 	public CompiledSql compile(Node<EntityDescriptor> root) {
 		Assert.assertNotNull(root, "root");
-		
+		if (!OrmMetricsRegistry.isEnabled()) {
+			return doCompile(root);
+		}
+		long t0 = System.nanoTime();
+		CompiledSql compiledSql = doCompile(root);
+		OrmMetricsRegistry.get().onSqlCompiled(compiledSql.getSqlString(), System.nanoTime() - t0);
+		return compiledSql;
+	}
+	
+	private CompiledSql doCompile(Node<EntityDescriptor> root) {
 		CompiledSql cMainSql = new CompiledSql(root);
 		CompiledSql cMainOrderBySql = new CompiledSql(root);
 		CompiledSql cMainHavingSql = new CompiledSql(root);
@@ -108,6 +132,9 @@ class Instructions {
 		long endIndex = 0;
 		boolean paginated = false;
 		boolean pagedUseGroupBy = false;
+		boolean pagedTwoPhase = false;
+		boolean pagedMainClause = false;
+		boolean pagedCollectionReferenced = false;
 		String[] pagedAdditionalColumns = null;
 		String[] pagedGroupByAdditionalColumns = null;
 		QueryReady activeEd = (QueryReady) root.getValue();
@@ -137,13 +164,16 @@ class Instructions {
 					break;
 				case PAGED_MAIN_WHERE:
 					cCurrentSql = cMainSql;
+					pagedMainClause = true;
 					pagedAdditionalColumns = (String[]) instr.getActual();
 					break;
 				case PAGED_MAIN_ORDER_BY:
 					cCurrentSql = cMainOrderBySql;
+					pagedMainClause = true;
 					break;
 				case PAGED_SECONDARY_WHERE:
 					cCurrentSql = cSecondarySql;
+					pagedMainClause = false;
 					break;
 				case PAGED_USE_GROUP_BY:
 					pagedUseGroupBy = true;
@@ -151,17 +181,25 @@ class Instructions {
 					break;
 				case PAGED_HAVING:
 					cCurrentSql = cMainHavingSql;
+					pagedMainClause = true;
+					break;
+				case PAGED_TWO_PHASE:
+					pagedTwoPhase = true;
 					break;
 				case STRING:
 					cCurrentSql.appendSql(instr.getActual());
 					break;
 				case PATH:
-					EntityDescriptor temp = EntityDescriptorUtils.getEntityDescriptor(root, (Object[]) instr.getActual());
+					Node<EntityDescriptor> tempNode = EntityDescriptorUtils.getEntityDescriptorNode(root, (Object[]) instr.getActual());
+					EntityDescriptor temp = tempNode.getValue();
 					if (!(temp instanceof QueryReady)) {
 						throw new ClassCastException("It looks like you are trying to access an entity table that is not part of the generated query, "
 								+ "possibly because it is lazy loaded. The offending entity type is " + temp.getEntityClass() + " .");
 					}
 					activeEd = (QueryReady) temp;
+					if (pagedMainClause && isInCollection(tempNode)) {
+						pagedCollectionReferenced = true;
+					}
 					break;
 				case PATH_ROOT:
 					activeEd = (QueryReady) root.getValue();
@@ -258,9 +296,25 @@ class Instructions {
 								.mainOrderByClause(cMainOrderBySql.getSqlString().trim())
 								.secondaryWhereClause(cSecondarySql.getSqlString().trim())
 								.build();
-			ParameterizedQuery pageSnippet = sqlFactory.buildPaginatedParameterizedQuery(criteria);
+			if (pagedTwoPhase && StringUtils.hasText(criteria.getSecondaryWhereClause())) {
+				throw new IllegalStateException("The secondary where clause is not supported by the two phase pagination.");
+			}
+			if (pagedTwoPhase && pagedCollectionReferenced) {
+				// the second phase can not reproduce the rows filtered or ordered by the collection
+				// columns, so we load the page with a single query
+				if (log.isDebugEnabled()) {
+					log.debug("doCompile - The main clauses reference collection tables, the two phase pagination is disabled.");
+				}
+				pagedTwoPhase = false;
+			}
+			ParameterizedQuery pageSnippet = pagedTwoPhase 
+					? sqlFactory.buildPaginatedIdsParameterizedQuery(criteria)
+					: sqlFactory.buildPaginatedParameterizedQuery(criteria);
 			ParameterizedQuery countSnippet = sqlFactory.buildCountParameterizedQuery(criteria);
 			PagedCompiledSql finalCSql = new PagedCompiledSql(root);
+			if (pagedTwoPhase) {
+				finalCSql.setTwoPhase(cMainSql, pagedUseGroupBy ? new CompiledSql(root) : cMainOrderBySql);
+			}
 			finalCSql.appendSql(pageSnippet.getSql());
 			finalCSql
 				.addParametersStrict(pageSnippet.getMainParameters())
@@ -282,6 +336,22 @@ class Instructions {
 		}
 	}
 	
+	/**
+	 * @return {@code true} if the node or one of its ancestors is a collection that is joined
+	 * 			outside the main query of a paginated query.
+	 */
+	private static boolean isInCollection(Node<EntityDescriptor> node) {
+		for (Node<EntityDescriptor> n = node; n != null && !n.isRoot(); n = n.getParent()) {
+			if (n.getValue() instanceof QueryReady) {
+				QueryReady qr = (QueryReady) n.getValue();
+				if (qr.isMany() && !qr.isForceManyAsOneInPaginatedQueries()) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+	
 	@Override
 	public String toString() {
 		StringBuilder sb = new StringBuilder();
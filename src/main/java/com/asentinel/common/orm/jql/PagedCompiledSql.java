@@ -15,6 +15,9 @@ public class PagedCompiledSql extends CompiledSql {
 	
 	private String countSql;
 	private final List<Object> countParams = new ArrayList<Object>();
+	private boolean twoPhase;
+	private CompiledSql secondPhaseWhere;
+	private CompiledSql secondPhaseOrderBy;
 	
 
 	PagedCompiledSql(Node<EntityDescriptor> root) {
@@ -56,4 +59,45 @@ public class PagedCompiledSql extends CompiledSql {
 		return countParams;
 	}
 	
+	void setTwoPhase(CompiledSql secondPhaseWhere, CompiledSql secondPhaseOrderBy) {
+		Assert.assertNotNull(secondPhaseWhere, "secondPhaseWhere");
+		Assert.assertNotNull(secondPhaseOrderBy, "secondPhaseOrderBy");
+		this.twoPhase = true;
+		this.secondPhaseWhere = secondPhaseWhere;
+		this.secondPhaseOrderBy = secondPhaseOrderBy;
+	}
+	
+	/**
+	 * @return {@code true} if the SQL string pulls only the root ids for the page and
+	 * 			the entities must be loaded with a second query.
+	 * 
+	 * @see SqlBuilder#pagedTwoPhase()
+	 */
+	public boolean isTwoPhase() {
+		return twoPhase;
+	}
+	
+	/**
+	 * @return the main where clause of the paginated query and its parameters. The second phase 
+	 * 			query applies it, so the rows of the tables joined in the main query are filtered like in
+	 * 			a single phase query. The SQL string may be empty.
+	 * 
+	 * @see #isTwoPhase()
+	 */
+	public CompiledSql getSecondPhaseWhere() {
+		return secondPhaseWhere;
+	}
+
+	/**
+	 * @return the main order by clause of the paginated query and its parameters. The second phase 
+	 * 			query applies it, so the rows of the tables joined in the main query are ordered like in
+	 * 			a single phase query. The SQL string is empty if the main query uses group by, the clause
+	 * 			may contain aggregates.
+	 * 
+	 * @see #isTwoPhase()
+	 */
+	public CompiledSql getSecondPhaseOrderBy() {
+		return secondPhaseOrderBy;
+	}
+	
 }
@@ -0,0 +1,97 @@
+package com.asentinel.common.orm.jql;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import com.asentinel.common.jdbc.SqlQuery;
+import com.asentinel.common.orm.EntityBuilder;
+import com.asentinel.common.util.Assert;
+
+/**
+ * Executes the queries of multiple {@link SqlBuilder}s together. If the database supports it
+ * (see {@link com.asentinel.common.jdbc.flavors.JdbcFlavor#isMultipleResultSetsSupported()}) all the
+ * queries are sent in a single round trip, otherwise they are executed one after the other. The results of
+ * each query are mapped by a separate {@link EntityBuilder}.
+ * <br><br>
+ * Usage example:
+ * <pre>
+ * 	QueryBatch batch = orm.newQueryBatch();
+ * 	Supplier&lt;List&lt;Invoice&gt;&gt; invoices = batch.add(orm.newSqlBuilder(Invoice.class).select().where().id().lt(10));
+ * 	Supplier&lt;List&lt;Customer&gt;&gt; customers = batch.add(orm.newSqlBuilder(Customer.class).select());
+ * 	batch.exec();
+ * 	invoices.get();
+ * 	customers.get();
+ * </pre>
+ *
+ * This class is not thread safe.
+ *
+ * @see com.asentinel.common.orm.OrmOperations#batchQueries(SqlBuilder...)
+ * @see SqlQuery#queryMultiple(String[], RowCallbackHandler[], Object[][])
+ */
+public class QueryBatch {
+
+	private final SqlQuery queryExecutor;
+
+	private final List<String> sqls = new ArrayList<>();
+	private final List<Object[]> parameters = new ArrayList<>();
+	private final List<EntityBuilder<?>> entityBuilders = new ArrayList<>();
+
+	private boolean executed;
+
+	public QueryBatch(SqlQuery queryExecutor) {
+		Assert.assertNotNull(queryExecutor, "queryExecutor");
+		this.queryExecutor = queryExecutor;
+	}
+
+	/**
+	 * Compiles the query of the specified builder and adds it to this batch. The builder
+	 * must not be configured for cached results or for loading the collections separately.
+	 *
+	 * @param sqlBuilder the builder.
+	 * @return a {@code Supplier} for the entities resulted from the query, it can be called
+	 * 			only after {@link #exec()}.
+	 */
+	public <E> Supplier<List<E>> add(SqlBuilder<E> sqlBuilder) {
+		Assert.assertNotNull(sqlBuilder, "sqlBuilder");
+		if (executed) {
+			throw new IllegalStateException("The batch was already executed.");
+		}
+		CompiledSql compiledSql = sqlBuilder.compileForBatch();
+		EntityBuilder<E> eb = new EntityBuilder<>(compiledSql.getRootNode());
+		sqls.add(compiledSql.getSqlString());
+		parameters.add(compiledSql.getParameters());
+		entityBuilders.add(eb);
+		return () -> {
+			if (!executed) {
+				throw new IllegalStateException("The batch was not executed.");
+			}
+			return eb.getEntityList();
+		};
+	}
+
+	/**
+	 * @return the number of queries in this batch.
+	 */
+	public int size() {
+		return sqls.size();
+	}
+
+	/**
+	 * Executes all the queries in this batch. Can be called only once.
+	 */
+	public void exec() {
+		if (executed) {
+			throw new IllegalStateException("The batch was already executed.");
+		}
+		if (!sqls.isEmpty()) {
+			queryExecutor.queryMultiple(
+					sqls.toArray(new String[0]),
+					entityBuilders.toArray(new RowCallbackHandler[0]),
+					parameters.toArray(new Object[0][]));
+		}
+		executed = true;
+	}
+}
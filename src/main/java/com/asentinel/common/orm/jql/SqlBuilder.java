@@ -11,6 +11,7 @@ import static com.asentinel.common.orm.jql.InstructionType.PAGED_INITIAL_QUERY;
 import static com.asentinel.common.orm.jql.InstructionType.PAGED_MAIN_ORDER_BY;
 import static com.asentinel.common.orm.jql.InstructionType.PAGED_MAIN_WHERE;
 import static com.asentinel.common.orm.jql.InstructionType.PAGED_SECONDARY_WHERE;
+import static com.asentinel.common.orm.jql.InstructionType.PAGED_TWO_PHASE;
 import static com.asentinel.common.orm.jql.InstructionType.PAGED_USE_GROUP_BY;
 import static com.asentinel.common.orm.jql.InstructionType.PARAM;
 import static com.asentinel.common.orm.jql.InstructionType.PATH;
@@ -21,12 +22,19 @@ import static com.asentinel.common.orm.jql.InstructionType.STRING;
 
 import java.lang.annotation.Annotation;
 import java.sql.PreparedStatement;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -36,6 +44,7 @@ import org.springframework.jdbc.core.RowMapper;
 import org.springframework.util.StringUtils;
 
 import com.asentinel.common.collections.tree.Node;
+import com.asentinel.common.collections.tree.TreeUtils;
 import com.asentinel.common.jdbc.RowAsArrayRowMapper;
 import com.asentinel.common.jdbc.SqlQuery;
 import com.asentinel.common.jdbc.arrays.Array;
@@ -44,10 +53,13 @@ import com.asentinel.common.orm.EntityDescriptor;
 import com.asentinel.common.orm.EntityDescriptorNodeCallback;
 import com.asentinel.common.orm.EntityDescriptorNodeMatcher;
 import com.asentinel.common.orm.EntityDescriptorUtils;
+import com.asentinel.common.orm.ParameterizedQuery;
 import com.asentinel.common.orm.QueryCriteria;
 import com.asentinel.common.orm.QueryReady;
 import com.asentinel.common.orm.QueryUtils;
 import com.asentinel.common.orm.SimpleEntityDescriptor;
+import com.asentinel.common.orm.cache.QueryResultCache;
+import com.asentinel.common.orm.cache.TransactionalIdentityMap;
 import com.asentinel.common.orm.ed.tree.EntityDescriptorTreeRepository;
 import com.asentinel.common.orm.query.SqlFactory;
 import com.asentinel.common.util.Assert;
@@ -148,10 +160,19 @@ public class SqlBuilder<E> {
 	private final EntityDescriptorTreeRepository entityDescriptorTreeRepository;
 	private final SqlFactory sqlFactory;
 	private final SqlQuery queryExecutor;
+	private final QueryResultCache queryResultCache;
+	private final Executor asyncExecutor;
 	
 	private final Class<E> clasz;
 	private final Instructions instructions;
 	
+	private Duration cacheTimeToLive;
+	
+	private boolean fetchCollectionsSeparately;
+	private Executor collectionsExecutor;
+	
+	private boolean fillIdentityMap;
+	
 	// TODO 01: add secondary order by method secondaryOrderBy, @see QueryCriteria
 	
 	/**
@@ -163,11 +184,40 @@ public class SqlBuilder<E> {
 			EntityDescriptorTreeRepository entityDescriptorTreeRepository,
 			SqlFactory sqlFactory,
 			SqlQuery queryExecutor) {
+		this(clasz, entityDescriptorTreeRepository, sqlFactory, queryExecutor, null);
+	}
+
+	/**
+	 * Package private constructor.
+	 * 
+	 * @see SqlBuilderFactory
+	 */
+	SqlBuilder(Class<E> clasz,
+			EntityDescriptorTreeRepository entityDescriptorTreeRepository,
+			SqlFactory sqlFactory,
+			SqlQuery queryExecutor,
+			QueryResultCache queryResultCache) {
+		this(clasz, entityDescriptorTreeRepository, sqlFactory, queryExecutor, queryResultCache, null);
+	}
+
+	/**
+	 * Package private constructor.
+	 * 
+	 * @see SqlBuilderFactory
+	 */
+	SqlBuilder(Class<E> clasz,
+			EntityDescriptorTreeRepository entityDescriptorTreeRepository,
+			SqlFactory sqlFactory,
+			SqlQuery queryExecutor,
+			QueryResultCache queryResultCache,
+			Executor asyncExecutor) {
 		Assert.assertNotNull(clasz, "clasz");
 		this.clasz = clasz;
 		this.entityDescriptorTreeRepository = entityDescriptorTreeRepository;
 		this.sqlFactory = sqlFactory;
 		this.queryExecutor = queryExecutor;
+		this.queryResultCache = queryResultCache;
+		this.asyncExecutor = asyncExecutor;
 		this.instructions = new Instructions(sqlFactory);
 	}
 
@@ -263,6 +313,124 @@ public class SqlBuilder<E> {
 	
 	// -----------------------------------------------------------------------------------------------------
 	
+	/**
+	 * Caches the results of the entity queries executed by this builder ({@link #exec()}, {@link #execForMap()}, 
+	 * {@link #execForEntity()}, {@link #execForOptional()} and {@link #execForPage()}) in the {@link QueryResultCache} 
+	 * configured in the {@link SqlBuilderFactory}. The results are keyed by the SQL string and the parameters and 
+	 * are discarded when any of the tables in the entity descriptor tree is written through the ORM or when the
+	 * specified duration elapses. The cached entities are shared, they should be treated as read-only.
+	 * 
+	 * @param timeToLive the maximum duration for which the results are cached.
+	 * @throws IllegalStateException if there is no {@code QueryResultCache} configured.
+	 * 
+	 * @see QueryResultCache
+	 */
+	public SqlBuilder<E> cached(Duration timeToLive) {
+		Assert.assertNotNull(timeToLive, "timeToLive");
+		Assert.assertTrue(!timeToLive.isNegative() && !timeToLive.isZero(), "The timeToLive duration must be positive.");
+		if (queryResultCache == null) {
+			throw new IllegalStateException("No QueryResultCache is configured in the SqlBuilderFactory.");
+		}
+		this.cacheTimeToLive = timeToLive;
+		return this;
+	}
+	
+	/**
+	 * Loads the collections of the root entity with separate queries instead of joining them in the main query.
+	 * After the root entities are loaded, each collection subtree of the root is loaded with a query like
+	 * {@code select ... from Bill b where b.InvoiceId in (?, ?, ...)} and merged in the root entities. This avoids
+	 * the row multiplication caused by joining multiple collections in the same query. Applies to
+	 * {@link #exec()}, {@link #execForMap()}, {@link #execForEntity()} and {@link #execForOptional()}, the 
+	 * paginated queries are not covered and still join the collections.
+	 * <br>
+	 * Only the direct collection children of the root mapped through a foreign key are loaded separately, 
+	 * the many to many collections and the collections with custom join conditions are still joined. The 
+	 * {@code where} and {@code order by} clauses of the query must not reference the tables of the separately 
+	 * loaded collections.
+	 * 
+	 * @see #fetchCollectionsSeparately(Executor)
+	 */
+	public SqlBuilder<E> fetchCollectionsSeparately() {
+		return fetchCollectionsSeparately(null);
+	}
+
+	/**
+	 * Same as {@link #fetchCollectionsSeparately()}, but the collection queries are executed concurrently 
+	 * on the specified executor. If a transaction is active on the current thread the collection queries are
+	 * executed sequentially on the current thread.
+	 * 
+	 * @param executor the executor for the collection queries, can be {@code null}.
+	 * 
+	 * @see #fetchCollectionsSeparately()
+	 */
+	public SqlBuilder<E> fetchCollectionsSeparately(Executor executor) {
+		this.fetchCollectionsSeparately = true;
+		this.collectionsExecutor = executor;
+		return this;
+	}
+	
+	/**
+	 * Adds the complete entities created by the entity queries executed by this builder ({@link #exec()}, 
+	 * {@link #execForMap()}, {@link #execForEntity()} and {@link #execForOptional()}) to the 
+	 * {@link TransactionalIdentityMap} bound to the current transaction, if any. This should be called only
+	 * if the query does not restrict the rows of the joined children, for example with a {@code where} clause 
+	 * on a child table. Otherwise the entities would be returned from the identity map with partial collections.
+	 * The paginated queries never fill the identity map.
+	 * 
+	 * @see EntityBuilder#setFillIdentityMap(boolean)
+	 */
+	public SqlBuilder<E> fillIdentityMap() {
+		this.fillIdentityMap = true;
+		return this;
+	}
+	
+	private Map<Object, E> compileAndQueryForEntityMap() {
+		if (!fetchCollectionsSeparately) {
+			return queryForEntityMap(getInstructions().compile(), null);
+		}
+		Node<EntityDescriptor> root = TreeUtils.copy(getInstructions().getRootNode());
+		CollectionsFetcher fetcher = new CollectionsFetcher(sqlFactory, queryExecutor, collectionsExecutor);
+		fetcher.detach(root);
+		return queryForEntityMap(getInstructions().compile(root), fetcher.hasDetachedNodes() ? fetcher : null);
+	}
+	
+	private Map<Object, E> queryForEntityMap(CompiledSql compiledSql, CollectionsFetcher fetcher) {
+		if (cacheTimeToLive == null) {
+			return doQueryForEntityMap(compiledSql, fetcher);
+		}
+		Object kind = clasz;
+		Set<String> tables = QueryResultCache.getTables(compiledSql.getRootNode());
+		if (fetcher != null) {
+			kind = Arrays.asList(clasz, CollectionsFetcher.class);
+			tables.addAll(fetcher.getTables());
+		}
+		Map<Object, E> entities = queryResultCache.get(kind, compiledSql.getSqlString(), compiledSql.getParameters(),
+				tables, cacheTimeToLive, 
+				() -> Collections.unmodifiableMap(doQueryForEntityMap(compiledSql, fetcher)));
+		return new LinkedHashMap<>(entities);
+	}
+
+	private Map<Object, E> doQueryForEntityMap(CompiledSql compiledSql, CollectionsFetcher fetcher) {
+		EntityBuilder<E> eb = new EntityBuilder<>(compiledSql.getRootNode());
+		eb.setFillIdentityMap(fillIdentityMap);
+		queryExecutor.query(compiledSql.getSqlString(), eb, compiledSql.getParameters());
+		Map<Object, E> entities = eb.getEntityMap();
+		if (fetcher != null) {
+			fetcher.fetch(entities, eb);
+		}
+		return entities;
+	}
+	
+	private static <E> E getSingleEntity(Map<Object, E> entities) {
+		if (entities.size() == 1) {
+			return entities.values().iterator().next();
+		}
+		if (entities.isEmpty()) {
+			throw new EmptyResultDataAccessException(1);	
+		}
+		throw new IncorrectResultSizeDataAccessException(1, entities.size());
+	}
+	
 	/**
 	 * Compiles the instructions that were added to the builder. This method will work even if
 	 * one of the {@code select} or {@code from} methods was not called.
@@ -299,6 +467,47 @@ public class SqlBuilder<E> {
 		return getInstructions().compile();
 	}
 	
+	/**
+	 * Compiles the instructions for execution in a {@link QueryBatch}.
+	 * 
+	 * @throws IllegalStateException if the builder is configured for cached results or
+	 * 			for loading the collections with separate queries.
+	 */
+	CompiledSql compileForBatch() {
+		if (cacheTimeToLive != null || fetchCollectionsSeparately) {
+			throw new IllegalStateException("Cached queries and queries loading the collections separately can not be batched.");
+		}
+		return getInstructions().compile();
+	}
+	
+	/**
+	 * Compiles the instructions as they are (see {@link #compileAsIs(String)}) and executes the resulting
+	 * {@code update} or {@code delete} statement. If a {@link QueryResultCache} is configured the cached results 
+	 * depending on the table of the root entity are invalidated.
+	 * <br>
+	 * Usage example:
+	 * <pre>
+	 * 	sqlBuilderFactory.newSqlBuilder(Invoice.class)
+	 * 		.delete().fromK().table().sql("i").where().id().eq(1)
+	 * 		.execUpdate("i");
+	 * </pre>
+	 * 
+	 * @param rootTableAlias the alias for the table corresponding to the root class.
+	 * @return the number of rows affected.
+	 * 
+	 * @see #update()
+	 * @see #delete()
+	 */
+	public int execUpdate(String rootTableAlias) {
+		Node<EntityDescriptor> root = entityDescriptorTreeRepository.getEntityDescriptorTree(clasz, rootTableAlias);
+		CompiledSql compiledSql = compileAsIs(root);
+		int ret = queryExecutor.update(compiledSql.getSqlString(), compiledSql.getParameters());
+		if (queryResultCache != null && root.getValue() instanceof SimpleEntityDescriptor) {
+			queryResultCache.invalidateForWrite(((SimpleEntityDescriptor) root.getValue()).getTableName());
+		}
+		return ret;
+	}
+	
 	/**
 	 * Compiles and then executes the resulting query.
 	 * @return the list of objects resulted from the SQL query.
@@ -316,10 +525,7 @@ public class SqlBuilder<E> {
 	 * @return the list of objects resulted from the SQL query.
 	 */
 	public List<E> exec() {
-		CompiledSql compiledSql = getInstructions().compile();
-		EntityBuilder<E> eb = new EntityBuilder<>(compiledSql.getRootNode());
-		queryExecutor.query(compiledSql.getSqlString(), eb, compiledSql.getParameters());
-		return eb.getEntityList();
+		return new ArrayList<>(compileAndQueryForEntityMap().values());
 	}
 
 	/**
@@ -339,10 +545,7 @@ public class SqlBuilder<E> {
 	 * @return the map of objects resulted from the SQL query.
 	 */
 	public Map<Object, E> execForMap() {
-		CompiledSql compiledSql = getInstructions().compile();
-		EntityBuilder<E> eb = new EntityBuilder<>(compiledSql.getRootNode());
-		queryExecutor.query(compiledSql.getSqlString(), eb, compiledSql.getParameters());
-		return eb.getEntityMap();
+		return compileAndQueryForEntityMap();
 	}
 
 	/**
@@ -369,10 +572,7 @@ public class SqlBuilder<E> {
 	 * @throws IncorrectResultSizeDataAccessException if more than 1 object was produced.
 	 */
 	public E execForEntity() {
-		CompiledSql compiledSql = getInstructions().compile();
-		EntityBuilder<E> eb = new EntityBuilder<>(compiledSql.getRootNode());
-		queryExecutor.query(compiledSql.getSqlString(), eb, compiledSql.getParameters());
-		return eb.getEntity();
+		return getSingleEntity(compileAndQueryForEntityMap());
 	}
 
 	/**
@@ -395,6 +595,55 @@ public class SqlBuilder<E> {
 		return Optional.ofNullable(entity);
 	}
 	
+	// ----------------------- async execs ----------------------------------------------
+	
+	private Executor getAsyncExecutor() {
+		return asyncExecutor != null ? asyncExecutor : AsyncExecutors.getDefault();
+	}
+
+	/**
+	 * Asynchronous version of {@link #exec()}. The query is executed on the executor configured
+	 * in the {@link SqlBuilderFactory}, see {@link SqlBuilderFactory#getAsyncExecutor()}. The query runs
+	 * on its own connection outside of any transaction, so this method can not be called inside a transaction.
+	 * The builder must not be modified after this method is called.
+	 * 
+	 * @return a {@code CompletableFuture} that completes with the list of objects resulted from the SQL query.
+	 * @throws IllegalStateException if a transaction is active on the current thread.
+	 * 
+	 * @see AsyncExecutors
+	 */
+	public CompletableFuture<List<E>> execAsync() {
+		return AsyncExecutors.supplyAsync(this::exec, getAsyncExecutor());
+	}
+
+	/**
+	 * Asynchronous version of {@link #execForMap()}.
+	 * 
+	 * @see #execAsync()
+	 */
+	public CompletableFuture<Map<Object, E>> execForMapAsync() {
+		return AsyncExecutors.supplyAsync(this::execForMap, getAsyncExecutor());
+	}
+
+	/**
+	 * Asynchronous version of {@link #execForEntity()}. The returned future completes exceptionally 
+	 * if the query does not produce exactly 1 object.
+	 * 
+	 * @see #execAsync()
+	 */
+	public CompletableFuture<E> execForEntityAsync() {
+		return AsyncExecutors.supplyAsync(this::execForEntity, getAsyncExecutor());
+	}
+
+	/**
+	 * Asynchronous version of {@link #execForOptional()}.
+	 * 
+	 * @see #execAsync()
+	 */
+	public CompletableFuture<Optional<E>> execForOptionalAsync() {
+		return AsyncExecutors.supplyAsync(this::execForOptional, getAsyncExecutor());
+	}
+	
 	// ----------------------- non entity result execs ----------------------------------------------
 	
 	/**
@@ -1489,6 +1738,30 @@ public class SqlBuilder<E> {
 		return rootAlias();
 	}
 	
+	/**
+	 * Tells the builder to load the page in two phases. The first query pulls only the ids of the 
+	 * root entities in the page, applying the {@code pagedWhere}, {@code pagedHaving} and {@code pagedOrderBy} 
+	 * criteria. The second query loads the entity graph for exactly those ids, and the entities are returned in the
+	 * order of the first query. This avoids computing the row index over the rows multiplied by the joined collections,
+	 * so it should be preferred for large tables with collections. The collections are joined in the first query only if
+	 * {@link #pagedEnableGroupBy()} is used.
+	 * <br>
+	 * The second query applies again the {@code pagedWhere} clause and, if group by is not used, the 
+	 * {@code pagedOrderBy} clause, so the rows joined in the main query (associations and collections
+	 * forced as one, see {@link QueryReady#isForceManyAsOneInPaginatedQueries()}) are filtered and ordered like in a
+	 * single phase query. If these clauses reference the tables of the collections joined outside the main query
+	 * through {@link #alias(Object...)}, the page is loaded in a single phase. The raw SQL added with 
+	 * {@link #sql(String, Object...)} is not inspected.
+	 * <br>
+	 * The {@link #pagedSecondaryWhere()} is not supported in this mode.
+	 * 
+	 * @see SqlFactory#buildPaginatedIdsParameterizedQuery(QueryCriteria)
+	 */
+	public SqlBuilder<E> pagedTwoPhase() {
+		getInstructions().add(new Instruction(PAGED_TWO_PHASE, null));
+		return this;
+	}
+	
 	/**
 	 * Compiles the paginated instructions that were added to the builder. This method will only work if a 
 	 * call was made to the <code>pagedSelect</code> method.
@@ -1531,17 +1804,86 @@ public class SqlBuilder<E> {
 	 */
 	public Page<E> execForPage() {
 		PagedCompiledSql compiledSql = pagedCompile();
+		if (cacheTimeToLive != null) {
+			Page<E> page = queryResultCache.get(Arrays.asList(clasz, Page.class), 
+					compiledSql.getSqlString() + "\n" + compiledSql.getSqlCountString(), 
+					new Object[] {compiledSql.getParameters(), compiledSql.getCountParameters()},
+					QueryResultCache.getTables(compiledSql.getRootNode()), cacheTimeToLive, 
+					() -> doQueryForPage(compiledSql));
+			return new Page<>(new ArrayList<>(page.getItems()), page.getCount());
+		}
+		return doQueryForPage(compiledSql);
+	}
+
+	/**
+	 * Asynchronous version of {@link #execForPage()}. 
+	 * 
+	 * @see #execAsync()
+	 */
+	public CompletableFuture<Page<E>> execForPageAsync() {
+		return AsyncExecutors.supplyAsync(this::execForPage, getAsyncExecutor());
+	}
+
+	private Page<E> doQueryForPage(PagedCompiledSql compiledSql) {
 		long count = queryExecutor.queryForLong(compiledSql.getSqlCountString(), compiledSql.getCountParameters());
 		if (count > 0) {
-			EntityBuilder<E> eb = new EntityBuilder<>(compiledSql.getRootNode());
-			queryExecutor.query(compiledSql.getSqlString(), eb, compiledSql.getParameters());
-			return new Page<>(eb.getEntityList(), count);
+			return new Page<>(queryForPageItems(compiledSql), count);
 		} else {
 			List<E> empty = Collections.emptyList();
 			return new Page<>(empty, count);
 		}
 	}
 	
+	private List<E> queryForPageItems(PagedCompiledSql compiledSql) {
+		if (!compiledSql.isTwoPhase()) {
+			EntityBuilder<E> eb = new EntityBuilder<>(compiledSql.getRootNode());
+			queryExecutor.query(compiledSql.getSqlString(), eb, compiledSql.getParameters());
+			return eb.getEntityList();
+		}
+		// phase 1 - the ids in the page
+		Node<EntityDescriptor> root = compiledSql.getRootNode();
+		// the ids repeat if collections are forced as one
+		List<Object> ids = new ArrayList<>(new LinkedHashSet<>(queryExecutor.query(compiledSql.getSqlString(), 
+				root.getValue().getEntityIdRowMapper(), compiledSql.getParameters())));
+		if (ids.isEmpty()) {
+			return new ArrayList<>();
+		}
+		
+		// phase 2 - the entities for the ids, the main where and order by clauses
+		// are applied again because they may filter and order the joined rows
+		QueryReady rootEd = (QueryReady) root.getValue();
+		String pkColumn = rootEd.getTableAlias() + "." + rootEd.getPkName();
+		String where = compiledSql.getSecondPhaseWhere().getSqlString().trim();
+		String orderBy = compiledSql.getSecondPhaseOrderBy().getSqlString().trim();
+		EntityBuilder<E> eb = new EntityBuilder<>(root);
+		for (int i = 0; i < ids.size(); i += CollectionsFetcher.MAX_IDS_PER_QUERY) {
+			List<?> chunk = ids.subList(i, Math.min(ids.size(), i + CollectionsFetcher.MAX_IDS_PER_QUERY));
+			ParameterizedQuery pq = sqlFactory.buildParameterizedInQuery(root, pkColumn, chunk);
+			StringBuilder sql = new StringBuilder(pq.getSql());
+			List<Object> params = new ArrayList<>(pq.getMainParameters());
+			if (StringUtils.hasText(where)) {
+				sql.append(" and (").append(where).append(")");
+				params.addAll(compiledSql.getSecondPhaseWhere().getParametersList());
+			}
+			if (StringUtils.hasText(orderBy)) {
+				sql.append(" order by ").append(orderBy);
+				params.addAll(compiledSql.getSecondPhaseOrderBy().getParametersList());
+			}
+			queryExecutor.query(sql.toString(), eb, params.toArray());
+		}
+		
+		// restore the page order
+		Map<Object, E> entities = eb.getEntityMap();
+		List<E> items = new ArrayList<>(ids.size());
+		for (Object id: ids) {
+			E entity = entities.get(id);
+			if (entity != null) {
+				items.add(entity);
+			}
+		}
+		return items;
+	}
+	
 	/**
 	 * Compiles and then executes ONLY the actual paginated query. Unlike
 	 * {@link #execForPage(SqlQuery)} this method does not calculate the total
@@ -1566,10 +1908,7 @@ public class SqlBuilder<E> {
 	 */
 	@Deprecated
 	public List<E> execForRange() {
-		PagedCompiledSql compiledSql = pagedCompile();
-		EntityBuilder<E> eb = new EntityBuilder<>(compiledSql.getRootNode());
-		queryExecutor.query(compiledSql.getSqlString(), eb, compiledSql.getParameters());
-		return eb.getEntityList();
+		return queryForPageItems(pagedCompile());
 	}
 	
 	/**
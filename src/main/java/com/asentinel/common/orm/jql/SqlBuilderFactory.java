@@ -1,6 +1,10 @@
 package com.asentinel.common.orm.jql;
 
+import java.util.concurrent.Executor;
+
 import com.asentinel.common.jdbc.SqlQuery;
+import com.asentinel.common.orm.cache.EntityCache;
+import com.asentinel.common.orm.cache.QueryResultCache;
 import com.asentinel.common.orm.ed.tree.EntityDescriptorTreeRepository;
 
 /**
@@ -29,4 +33,29 @@ public interface SqlBuilderFactory {
 	 * @return the underlying {@code SqlQuery}.
 	 */
 	SqlQuery getSqlQuery();
+	
+	/**
+	 * @return the second level {@code EntityCache} consulted when loading entities by id
+	 * 			or {@code null} if there is no such cache. 
+	 */
+	default EntityCache getEntityCache() {
+		return null;
+	}
+	
+	/**
+	 * @return the {@code QueryResultCache} used by the {@code SqlBuilder}s on which 
+	 * 			{@link SqlBuilder#cached(java.time.Duration)} is called or {@code null} if 
+	 * 			there is no such cache.
+	 */
+	default QueryResultCache getQueryResultCache() {
+		return null;
+	}
+	
+	/**
+	 * @return the {@code Executor} used by the asynchronous methods of the {@code SqlBuilder}, 
+	 * 			see {@link SqlBuilder#execAsync()}.
+	 */
+	default Executor getAsyncExecutor() {
+		return AsyncExecutors.getDefault();
+	}
 }
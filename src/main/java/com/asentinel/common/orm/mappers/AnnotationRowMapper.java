@@ -1,6 +1,7 @@
 package com.asentinel.common.orm.mappers;
 
 import static com.asentinel.common.orm.mappers.SqlParameterTypeDescriptor.isCustomConversion;
+import static java.util.stream.Collectors.toUnmodifiableSet;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.AnnotatedElement;
@@ -8,18 +9,23 @@ import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.function.BiConsumer;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.core.convert.ConversionService;
 import org.springframework.core.convert.TypeDescriptor;
+import org.springframework.util.ReflectionUtils;
 
 import com.asentinel.common.jdbc.AbstractReflectionRowMapper;
 import com.asentinel.common.jdbc.ColumnMetadata;
+import com.asentinel.common.jdbc.DefaultObjectFactory;
 import com.asentinel.common.jdbc.ObjectFactory;
 import com.asentinel.common.jdbc.TypedObjectFactory;
 import com.asentinel.common.orm.EntityBuilder;
@@ -27,9 +33,7 @@ import com.asentinel.common.orm.SimpleEntityDescriptor;
 import com.asentinel.common.orm.TargetMember;
 import com.asentinel.common.orm.TargetMembers;
 import com.asentinel.common.orm.TargetMembersHolder;
-
-// TODO: add support for creating immutable entities (all fields final).
-// See the TODO in the ObjectFactory interface for some ideas
+import com.asentinel.common.util.Assert;
 
 /**
  * <code>RowMapper</code> implementation that converts resultset rows based
@@ -52,10 +56,16 @@ import com.asentinel.common.orm.TargetMembersHolder;
  * annotation attributes in a subclass.
  * 
  * <br><br>
+ * Immutable entities are supported, if the target class has a constructor with all the parameters
+ * annotated with <code>Column</code> or <code>PkColumn</code> the entity is created by calling that constructor
+ * with the values read from the resultset, see {@link EntityConstructor}. The primary key parameter is always
+ * read, regardless of the <code>ignorePkColumn</code> flag.
+ * <br><br>
  * Instances of this class should be used as effectively immutable objects.
  * 
  * 
  * @see PkColumn
+ * @see EntityConstructor
  * @see Column
  * @see TargetMembersHolder
  * @see TargetMembers
@@ -70,6 +80,14 @@ public class AnnotationRowMapper<T> extends AbstractReflectionRowMapper<T> {
 	private final String columnPrefix;
 	
 	private final Map<ColumnMetadata, TargetMember> elementsMap = new HashMap<>();
+	
+	private final Set<String> projection;
+	
+	private final EntityConstructor<T> entityConstructor;
+	private final ColumnMetadata[] constructorColumns;
+	
+	// the generated writers are not used if a subclass customizes the reflective writes
+	private final boolean useWriters = !overridesSetValue(getClass());
 
 	/**
 	 * Constructor, takes the target object class as parameter.
@@ -110,11 +128,24 @@ public class AnnotationRowMapper<T> extends AbstractReflectionRowMapper<T> {
 	 * 			otherwise.
 	 * @param columnPrefix the prefix expected in front of each column name in the resultset.
 	 */
+	@SuppressWarnings("unchecked")
 	public AnnotationRowMapper(Class<T> clasz, boolean ignorePkColumn, String columnPrefix) {
-		super(clasz);
+		super(getObjectFactory(clasz));
 		this.columnPrefix = columnPrefix;
+		this.entityConstructor = objectFactory instanceof EntityConstructor ? (EntityConstructor<T>) objectFactory : null;
+		this.constructorColumns = getConstructorColumns();
+		this.projection = null;
 		initialize(clasz, ignorePkColumn);
 	}
+	
+	private static <T> ObjectFactory<T> getObjectFactory(Class<T> clasz) {
+		Assert.assertNotNull(clasz, "clasz");
+		EntityConstructor<T> entityConstructor = EntityConstructor.forClass(clasz);
+		if (entityConstructor != null) {
+			return entityConstructor;
+		}
+		return new DefaultObjectFactory<>(clasz);
+	}
 
 	/**
 	 * Constructor, each target object will be created by a 
@@ -161,6 +192,9 @@ public class AnnotationRowMapper<T> extends AbstractReflectionRowMapper<T> {
 	public AnnotationRowMapper(ObjectFactory<T> objectFactory, boolean ignorePkColumn, String columnPrefix) {
 		super(objectFactory);
 		this.columnPrefix = columnPrefix;
+		this.entityConstructor = objectFactory instanceof EntityConstructor ? (EntityConstructor<T>) objectFactory : null;
+		this.constructorColumns = getConstructorColumns();
+		this.projection = null;
 		
 		Class<T> type;
 		if (objectFactory instanceof TypedObjectFactory) {
@@ -171,6 +205,49 @@ public class AnnotationRowMapper<T> extends AbstractReflectionRowMapper<T> {
 		initialize(type, ignorePkColumn);
 	}
 	
+	/**
+	 * Copy constructor, the new mapper has the configuration of the {@code source}
+	 * mapper and maps only the specified columns.
+	 * @param source the mapper to copy.
+	 * @param columnNames the column names (case insensitive), {@code null} to map all the members.
+	 * @throws IllegalArgumentException if a constructor column is not part of the projection.
+	 * 
+	 * @see #withProjection(Collection)
+	 */
+	protected AnnotationRowMapper(AnnotationRowMapper<T> source, Collection<String> columnNames) 
+			throws IllegalArgumentException {
+		super(source.objectFactory);
+		this.columnPrefix = source.columnPrefix;
+		this.entityConstructor = source.entityConstructor;
+		this.constructorColumns = source.constructorColumns;
+		this.elementsMap.putAll(source.elementsMap);
+		this.projection = toProjection(columnNames);
+		copyConversionSupport(source);
+	}
+	
+	private ColumnMetadata[] getConstructorColumns() {
+		if (entityConstructor == null) {
+			return null;
+		}
+		ColumnMetadata[] columns = new ColumnMetadata[entityConstructor.getParameterCount()];
+		for (int i = 0; i < columns.length; i++) {
+			columns[i] = new ColumnMetadata(columnPrefix, entityConstructor.getColumnName(i), entityConstructor.isAllowNull(i));
+		}
+		return columns;
+	}
+	
+	private boolean isConstructorColumn(String columnName) {
+		if (entityConstructor == null) {
+			return false;
+		}
+		for (int i = 0; i < entityConstructor.getParameterCount(); i++) {
+			if (entityConstructor.getColumnName(i).equalsIgnoreCase(columnName)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
 	private void initialize(Class<T> clasz, boolean ignorePkColumn) {
 		List<TargetMember> targetMembers;
 		if (ignorePkColumn) {
@@ -191,6 +268,10 @@ public class AnnotationRowMapper<T> extends AbstractReflectionRowMapper<T> {
 			if (columnName == null) {
 				continue;
 			}
+			if (isConstructorColumn(columnName)) {
+				// set by the constructor, see #createTarget(ResultSet)
+				continue;
+			}
 
 			if (elementsMap.putIfAbsent(new ColumnMetadata(columnPrefix, columnName, allowNull), targetMember) != null) {
 				log.warn("initialize - Column '" + columnName + "' is already assigned to a field or method. "
@@ -199,22 +280,90 @@ public class AnnotationRowMapper<T> extends AbstractReflectionRowMapper<T> {
 		}
 	}
 	
+	/**
+	 * If the target class has a constructor with all the parameters annotated
+	 * with {@code Column} or {@code PkColumn} the constructor arguments are read from
+	 * the resultset and the entity is created in a single call, otherwise the 
+	 * entity is created using the {@code ObjectFactory}.
+	 * 
+	 * @see EntityConstructor
+	 */
+	@Override
+	protected T createTarget(ResultSet rs) throws SQLException {
+		if (entityConstructor == null) {
+			return super.createTarget(rs);
+		}
+		Object[] args = new Object[constructorColumns.length];
+		for (int i = 0; i < args.length; i++) {
+			args[i] = getValueInternal(null, entityConstructor.getTypeDescriptor(i), rs, constructorColumns[i]);
+		}
+		try {
+			return entityConstructor.newObject(args);
+		} catch (RuntimeException e) {
+			throw new SQLException("Failed to create an instance of " + entityConstructor.getType().getName() + " .", e);
+		}
+	}
+	
+	/**
+	 * @return the {@code EntityConstructor} used to create the target objects or {@code null}
+	 * 			if the target objects are created with a no-args constructor and populated member by member.
+	 */
+	public EntityConstructor<T> getEntityConstructor() {
+		return entityConstructor;
+	}
+	
 	@Override
 	protected void populateTarget(T object, ResultSet rs) throws SQLException {
 		for (Entry<ColumnMetadata, TargetMember> entry: elementsMap.entrySet()) {
-			AnnotatedElement element = entry.getValue().getAnnotatedElement();
-			if (element instanceof Field) {
-				Field field = (Field) element; 
-				Object value = getValueInternal(object, entry.getValue().getTypeDescriptor(), rs, entry.getKey());
-				setValue(object, field, value);
-			} else if (element instanceof Method) {
-				Method method = (Method) element; 
-				Object value = getValueInternal(object, entry.getValue().getTypeDescriptor(), rs, entry.getKey());
-				setValue(object, method, value);
-			} else {
-				throw new IllegalStateException("Expected Field or Method. Found " + element.getClass().getName() + ".");
+			TargetMember targetMember = entry.getValue();
+			if (projection != null
+					&& targetMember.getAnnotation() instanceof Column
+					&& !projection.contains(entry.getKey().getMappedName().toLowerCase())) {
+				continue;
 			}
+			Object value = getValueInternal(object, targetMember.getTypeDescriptor(), rs, entry.getKey());
+			setValue(object, targetMember, value);
+		}
+	}
+	
+	/**
+	 * Sets the value in the target object using the direct writer of the {@code TargetMember}
+	 * if available, otherwise it delegates to {@link #setValue(Object, Field, Object)} or
+	 * {@link #setValue(Object, Method, Object)}. The direct writers are not used if this class is extended
+	 * and any of these 2 methods is overridden. Subclasses can override this method
+	 * to customize the call.
+	 * 
+	 * @see TargetMember#getWriter()
+	 */
+	protected void setValue(T object, TargetMember targetMember, Object value) throws SQLException {
+		BiConsumer<Object, Object> writer = useWriters ? targetMember.getWriter() : null;
+		AnnotatedElement element = targetMember.getAnnotatedElement();
+		if (writer != null) {
+			try {
+				writer.accept(object, value);
+			} catch (Exception e) {
+				String valueClass = value==null ? "null" : value.getClass().getName();
+				throw new SQLException("Failed to set member '" + element + "'" 
+						+ " for value " + value + " with type " + valueClass
+						+ ".", e);
+			}
+		} else if (element instanceof Field) {
+			setValue(object, (Field) element, value);
+		} else if (element instanceof Method) {
+			setValue(object, (Method) element, value);
+		} else {
+			throw new IllegalStateException("Expected Field or Method. Found " + element.getClass().getName() + ".");
+		}
+	}
+	
+	private static boolean overridesSetValue(Class<?> mapperClass) {
+		if (mapperClass == AnnotationRowMapper.class) {
+			return false;
 		}
+		Method fieldSetter = ReflectionUtils.findMethod(mapperClass, "setValue", Object.class, Field.class, Object.class);
+		Method methodSetter = ReflectionUtils.findMethod(mapperClass, "setValue", Object.class, Method.class, Object.class);
+		return fieldSetter.getDeclaringClass() != AbstractReflectionRowMapper.class
+				|| methodSetter.getDeclaringClass() != AbstractReflectionRowMapper.class;
 	}
 	
 	@Override
@@ -244,6 +393,59 @@ public class AnnotationRowMapper<T> extends AbstractReflectionRowMapper<T> {
 		return columnPrefix;
 	}
 	
+	/**
+	 * @return the lower case names of the {@code Column} annotated members
+	 * 			mapped by this mapper or {@code null} if all the members are mapped.
+	 */
+	public Set<String> getProjection() {
+		return projection;
+	}
+
+	/**
+	 * Creates a copy of this mapper that populates only the {@code Column} annotated members mapped
+	 * to the specified column names, the other members are left with their default values and their
+	 * columns are not expected in the resultset. The {@code PkColumn} member is always mapped.
+	 * If the entity is created through an {@link EntityConstructor} the projection must include
+	 * all the constructor columns. This mapper is not modified.
+	 * <br>
+	 * Subclasses must override this method to return an instance of their own class.
+	 * 
+	 * @param columnNames the column names (case insensitive), {@code null} to map all the members.
+	 * @return the new mapper.
+	 * @throws IllegalArgumentException if a constructor column is not part of the projection.
+	 * @throws UnsupportedOperationException if a subclass does not override this method.
+	 * 
+	 * @see SimpleEntityDescriptor.Builder#columns(String...)
+	 */
+	public AnnotationRowMapper<T> withProjection(Collection<String> columnNames) 
+			throws IllegalArgumentException, UnsupportedOperationException {
+		if (getClass() != AnnotationRowMapper.class) {
+			throw new UnsupportedOperationException("The mapper class " + getClass().getName() 
+					+ " does not support projections, it must override withProjection(Collection).");
+		}
+		return new AnnotationRowMapper<>(this, columnNames);
+	}
+	
+	private Set<String> toProjection(Collection<String> columnNames) {
+		if (columnNames == null) {
+			return null;
+		}
+		Set<String> projection = columnNames.stream()
+				.map(String::toLowerCase)
+				.collect(toUnmodifiableSet());
+		if (entityConstructor != null) {
+			for (int i = 0; i < constructorColumns.length; i++) {
+				if (!entityConstructor.isPk(i)
+						&& !projection.contains(constructorColumns[i].getMappedName().toLowerCase())) {
+					throw new IllegalArgumentException("The column " + constructorColumns[i].getMappedName() 
+							+ " is a constructor parameter of the immutable class " + entityConstructor.getType().getName() 
+							+ ", it must be part of the projection.");
+				}
+			}
+		}
+		return projection;
+	}
+	
 	@Override
 	public String toString() {
 		return "AnnotationRowMapper [objectFactory=" + objectFactory + "]";
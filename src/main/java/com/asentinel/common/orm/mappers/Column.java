@@ -19,7 +19,8 @@ import com.asentinel.common.orm.mappers.dynamic.DynamicColumnsEntity;
  * Annotation that associates a table column
  * with a property or setter method. Should be used with
  * {@link AnnotationRowMapper}. Either fields or setter methods
- * should be annotated. Getter methods are not supported.
+ * should be annotated. Getter methods are not supported. The parameters
+ * of the constructor of an immutable entity can also be annotated, see {@link EntityConstructor}.
  * 
  * <br><br>
  * 
@@ -40,7 +41,7 @@ import com.asentinel.common.orm.mappers.dynamic.DynamicColumnsEntity;
  * 
  * @author Razvan Popian
  */
-@Target({ElementType.METHOD, ElementType.FIELD})
+@Target({ElementType.METHOD, ElementType.FIELD, ElementType.PARAMETER})
 @Retention(RetentionPolicy.RUNTIME)
 @Documented
 public @interface Column {
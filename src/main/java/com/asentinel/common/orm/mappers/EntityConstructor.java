@@ -0,0 +1,237 @@
+package com.asentinel.common.orm.mappers;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Parameter;
+
+import org.springframework.core.MethodParameter;
+import org.springframework.core.convert.TypeDescriptor;
+import org.springframework.util.ReflectionUtils;
+
+import com.asentinel.common.jdbc.TypedObjectFactory;
+import com.asentinel.common.orm.ClassMetadataCache;
+import com.asentinel.common.orm.OrmMetadataRegistry;
+import com.asentinel.common.util.Assert;
+import com.asentinel.common.util.ClassValueCache;
+
+/**
+ * {@link TypedObjectFactory} for immutable entities, it creates the entities by calling the constructor
+ * that has all its parameters annotated with {@link Column} or {@link PkColumn}. The constructor is resolved once
+ * per class and invoked through a {@code MethodHandle}, so an entity is created in a single call instead of
+ * a reflective write for each member. Example:
+ *
+ * <pre>
+ * &#064;Table("Invoices")
+ * public class Invoice {
+ * 	&#064;PkColumn("id")
+ * 	private final int id;
+ *
+ * 	&#064;Column("number")
+ * 	private final String number;
+ *
+ * 	public Invoice(&#064;PkColumn("id") int id, &#064;Column("number") String number) {
+ * 		this.id = id;
+ * 		this.number = number;
+ * 	}
+ * }
+ * </pre>
+ *
+ * The fields are annotated as well so that the entity can be persisted, the {@link AnnotationRowMapper} does not
+ * write the members whose columns are passed to the constructor. The immutable entities can not be lazy loaded,
+ * encoded in an off-heap cache or projected without their constructor columns. This class is immutable and thread safe.
+ *
+ * @see AnnotationRowMapper
+ */
+public final class EntityConstructor<T> implements TypedObjectFactory<T> {
+
+	private final Class<T> type;
+	private final MethodHandle constructor;
+	private final String[] columnNames;
+	private final boolean[] allowNull;
+	private final boolean[] pk;
+	private final TypeDescriptor[] typeDescriptors;
+
+	private EntityConstructor(Class<T> type, Constructor<T> constructor) {
+		this.type = type;
+		ReflectionUtils.makeAccessible(constructor);
+		int count = constructor.getParameterCount();
+		try {
+			this.constructor = MethodHandles.lookup().unreflectConstructor(constructor)
+					.asSpreader(Object[].class, count);
+		} catch (IllegalAccessException e) {
+			throw new IllegalStateException("Can not access the constructor " + constructor + " .", e);
+		}
+		this.columnNames = new String[count];
+		this.allowNull = new boolean[count];
+		this.pk = new boolean[count];
+		this.typeDescriptors = new TypeDescriptor[count];
+		Parameter[] parameters = constructor.getParameters();
+		for (int i = 0; i < count; i++) {
+			PkColumn pkColumn = parameters[i].getAnnotation(PkColumn.class);
+			if (pkColumn != null) {
+				columnNames[i] = pkColumn.value();
+				pk[i] = true;
+			} else {
+				Column column = parameters[i].getAnnotation(Column.class);
+				columnNames[i] = column.value();
+				allowNull[i] = column.allowNull();
+			}
+			typeDescriptors[i] = new TypeDescriptor(MethodParameter.forExecutable(constructor, i));
+		}
+	}
+
+	/**
+	 * @param type the entity class.
+	 * @return the {@code EntityConstructor} for the specified class or {@code null} if the class
+	 * 			does not have a constructor with all the parameters annotated with {@code Column} or {@code PkColumn}.
+	 * @throws IllegalStateException if the class has more than one such constructor.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> EntityConstructor<T> forClass(Class<T> type) throws IllegalStateException {
+		Assert.assertNotNull(type, "type");
+		return (EntityConstructor<T>) EntityConstructors.instance.get(type);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> EntityConstructor<T> resolve(Class<T> type) {
+		Constructor<T> found = null;
+		for (Constructor<?> constructor: type.getDeclaredConstructors()) {
+			if (constructor.getParameterCount() == 0 || !isAnnotated(constructor)) {
+				continue;
+			}
+			if (found != null) {
+				throw new IllegalStateException("Class " + type.getName() + " has more than one constructor with "
+						+ "annotated parameters.");
+			}
+			found = (Constructor<T>) constructor;
+		}
+		return found == null ? null : new EntityConstructor<>(type, found);
+	}
+
+	private static boolean isAnnotated(Constructor<?> constructor) {
+		for (Parameter parameter: constructor.getParameters()) {
+			if (!parameter.isAnnotationPresent(Column.class) && !parameter.isAnnotationPresent(PkColumn.class)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return the number of constructor parameters.
+	 */
+	public int getParameterCount() {
+		return columnNames.length;
+	}
+
+	/**
+	 * @return the column name for the parameter with the specified index.
+	 */
+	public String getColumnName(int index) {
+		return columnNames[index];
+	}
+
+	/**
+	 * @return {@code true} if the parameter with the specified index is {@link Column#allowNull()}.
+	 */
+	public boolean isAllowNull(int index) {
+		return allowNull[index];
+	}
+
+	/**
+	 * @return {@code true} if the parameter with the specified index is annotated with {@link PkColumn}.
+	 */
+	public boolean isPk(int index) {
+		return pk[index];
+	}
+
+	/**
+	 * @return the {@code TypeDescriptor} of the parameter with the specified index, it exposes
+	 * 			the annotations of the parameter.
+	 */
+	public TypeDescriptor getTypeDescriptor(int index) {
+		return typeDescriptors[index];
+	}
+
+	/**
+	 * Always throws, the entity can only be created with its constructor arguments.
+	 * @see #newObject(Object...)
+	 */
+	@Override
+	public T newObject() throws IllegalStateException {
+		throw new IllegalStateException("The class " + type.getName() + " can only be created with constructor arguments.");
+	}
+
+	/**
+	 * Creates a new entity. The {@code null} arguments for primitive parameters are
+	 * replaced with the default value of the primitive type.
+	 *
+	 * @param args the constructor arguments in the declaration order.
+	 * @return the new entity.
+	 * @throws IllegalStateException if the constructor call fails.
+	 */
+	@SuppressWarnings("unchecked")
+	public T newObject(Object ... args) throws IllegalStateException {
+		Assert.assertNotNull(args, "args");
+		Assert.assertTrue(args.length == columnNames.length, "Expected " + columnNames.length + " arguments.");
+		for (int i = 0; i < args.length; i++) {
+			Class<?> parameterType = typeDescriptors[i].getType();
+			if (args[i] == null && parameterType.isPrimitive()) {
+				args[i] = Array.get(Array.newInstance(parameterType, 1), 0);
+			}
+		}
+		try {
+			return (T) constructor.invoke(args);
+		} catch (RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new IllegalStateException("Failed to create instance of " + type.getName() + " .", e);
+		}
+	}
+
+	@Override
+	public Class<T> getType() {
+		return type;
+	}
+
+	@Override
+	public String toString() {
+		return "EntityConstructor [type=" + type.getName() + "]";
+	}
+
+	/**
+	 * Caches the resolved constructors, the classes without an annotated
+	 * constructor are cached with a {@code null} value.
+	 */
+	private static final class EntityConstructors implements ClassMetadataCache {
+
+		private static final EntityConstructors instance = new EntityConstructors();
+
+		private final ClassValueCache<EntityConstructor<?>> cache = new ClassValueCache<>();
+
+		private EntityConstructors() {
+			OrmMetadataRegistry.register(this);
+		}
+
+		EntityConstructor<?> get(Class<?> type) {
+			return cache.get(type, () -> resolve(type));
+		}
+
+		@Override
+		public void invalidate(Class<?> clazz) {
+			cache.remove(clazz);
+		}
+
+		@Override
+		public void invalidate(ClassLoader classLoader) {
+			cache.remove(classLoader);
+		}
+
+		@Override
+		public void invalidateAll() {
+			cache.clear();
+		}
+	}
+}
@@ -18,7 +18,8 @@ import com.asentinel.common.orm.persist.Updater;
  * Annotation that associates the table primary key
  * with a property or setter method. Should be used with
  * {@link AnnotationRowMapper}. Either fields or setter methods
- * should be annotated. Getter methods are not supported.
+ * should be annotated. Getter methods are not supported. The parameters
+ * of the constructor of an immutable entity can also be annotated, see {@link EntityConstructor}.
  * 
  * <br><br>
  * 
@@ -45,7 +46,7 @@ import com.asentinel.common.orm.persist.Updater;
  * 
  * @author Razvan Popian
  */
-@Target({ElementType.METHOD, ElementType.FIELD})
+@Target({ElementType.METHOD, ElementType.FIELD, ElementType.PARAMETER})
 @Retention(RetentionPolicy.RUNTIME)
 @Documented
 public @interface PkColumn {
@@ -60,4 +60,15 @@ public @interface Table {
 	 * 
 	 */
 	boolean view() default false;
+	
+	/**
+	 * @return the column whose value determines the database shard of the entity when the
+	 *         entities are distributed over multiple databases, see
+	 *         {@link com.asentinel.common.orm.shard.ShardedOrmTemplate}. The column must be
+	 *         mapped by a {@link PkColumn} or {@link Column} annotated member. The default
+	 *         is empty, in which case the id column is the shard key.
+	 * 
+	 * @see com.asentinel.common.orm.shard.ShardKeys
+	 */
+	String shardKey() default "";
 }
@@ -46,6 +46,23 @@ public class DynamicColumnsRowMapper<C extends DynamicColumn, T extends DynamicC
 		this.dynamicColumns = dynamicColumns;
 	}
 	
+	/**
+	 * Copy constructor.
+	 * @see AnnotationRowMapper#withProjection(Collection)
+	 */
+	protected DynamicColumnsRowMapper(DynamicColumnsRowMapper<C, T> source, Collection<String> columnNames) {
+		super(source, columnNames);
+		this.dynamicColumns = source.dynamicColumns;
+	}
+	
+	/**
+	 * The dynamic columns are always mapped, the projection applies only to the static columns.
+	 */
+	@Override
+	public DynamicColumnsRowMapper<C, T> withProjection(Collection<String> columnNames) {
+		return new DynamicColumnsRowMapper<>(this, columnNames);
+	}
+	
 	@Override
 	protected void populateTarget(T object, ResultSet rs) throws SQLException {
 		// process static columns
@@ -0,0 +1,159 @@
+package com.asentinel.common.orm.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.asentinel.common.util.Assert;
+
+/**
+ * Lock free histogram of non negative {@code long} values with log-linear buckets, in the style
+ * of the HDR histograms. The values lower than {@value #SUB_BUCKETS} are recorded exactly, each greater
+ * power of 2 interval is split in {@value #SUB_BUCKETS} equal buckets, so the relative error of the reported
+ * percentiles is at most 1/{@value #SUB_BUCKETS}. The values greater than {@value #MAX_TRACKABLE_VALUE}
+ * are recorded in the last bucket, but the maximum is always exact.
+ * <br><br>
+ * Recording is wait free and allocation free, so this class can be safely used on hot paths. The methods
+ * that read the histogram are not atomic with respect to the concurrent recordings.
+ *
+ * @see InMemoryOrmMetrics
+ */
+public final class Histogram {
+
+	/** the number of buckets per power of 2 */
+	static final int SUB_BUCKETS = 16;
+
+	private static final int SUB_BUCKET_BITS = 4;
+
+	/** the highest power of 2 with dedicated buckets, about 18 minutes if the values are nanoseconds */
+	private static final int MAX_EXPONENT = 40;
+
+	/** the maximum value recorded without loss of precision */
+	public static final long MAX_TRACKABLE_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+
+	private static final int BUCKET_COUNT = SUB_BUCKETS + (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+	/**
+	 * Records a value.
+	 *
+	 * @param value the value, the negative values are recorded as {@code 0}.
+	 */
+	public void record(long value) {
+		if (value < 0) {
+			value = 0;
+		}
+		buckets.incrementAndGet(indexOf(value));
+		count.increment();
+		sum.add(value);
+		max.accumulate(value);
+	}
+
+	static int indexOf(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		if (value > MAX_TRACKABLE_VALUE) {
+			return BUCKET_COUNT - 1;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) - SUB_BUCKETS;
+		return SUB_BUCKETS + (exponent - SUB_BUCKET_BITS) * SUB_BUCKETS + subBucket;
+	}
+
+	/**
+	 * @return the highest value that is recorded in the bucket with the specified index.
+	 */
+	static long highestValueOf(int index) {
+		if (index < SUB_BUCKETS) {
+			return index;
+		}
+		int exponent = (index - SUB_BUCKETS) / SUB_BUCKETS + SUB_BUCKET_BITS;
+		int subBucket = (index - SUB_BUCKETS) % SUB_BUCKETS;
+		int shift = exponent - SUB_BUCKET_BITS;
+		return ((long) (SUB_BUCKETS + subBucket + 1) << shift) - 1;
+	}
+
+	/**
+	 * @return the number of recorded values.
+	 */
+	public long getCount() {
+		return count.sum();
+	}
+
+	/**
+	 * @return the sum of the recorded values.
+	 */
+	public long getSum() {
+		return sum.sum();
+	}
+
+	/**
+	 * @return the maximum recorded value or {@code 0} if no value was recorded.
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * @return the mean of the recorded values or {@code 0} if no value was recorded.
+	 */
+	public double getMean() {
+		long c = getCount();
+		return c == 0 ? 0 : (double) getSum() / c;
+	}
+
+	/**
+	 * @param percentile the percentile, between {@code 0} and {@code 100}.
+	 * @return the value below which the specified percentage of the recorded values fall or
+	 * 			{@code 0} if no value was recorded. The returned value is the highest value of the bucket
+	 * 			containing the percentile, but never more than {@link #getMax()}.
+	 */
+	public long getValueAtPercentile(double percentile) {
+		Assert.assertTrue(percentile >= 0 && percentile <= 100, "The percentile must be between 0 and 100.");
+		long total = 0;
+		long[] snapshot = new long[BUCKET_COUNT];
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			snapshot[i] = buckets.get(i);
+			total += snapshot[i];
+		}
+		if (total == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+		long seen = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			seen += snapshot[i];
+			if (seen >= rank) {
+				return Math.min(highestValueOf(i), getMax());
+			}
+		}
+		return getMax();
+	}
+
+	/**
+	 * Clears this histogram. The values recorded concurrently with this call may be partially lost.
+	 */
+	public void reset() {
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			buckets.set(i, 0);
+		}
+		count.reset();
+		sum.reset();
+		max.reset();
+	}
+
+	@Override
+	public String toString() {
+		return "Histogram [count=" + getCount()
+				+ ", mean=" + String.format("%.1f", getMean())
+				+ ", p50=" + getValueAtPercentile(50)
+				+ ", p99=" + getValueAtPercentile(99)
+				+ ", max=" + getMax()
+				+ "]";
+	}
+}
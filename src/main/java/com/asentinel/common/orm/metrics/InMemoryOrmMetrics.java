@@ -0,0 +1,313 @@
+package com.asentinel.common.orm.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import com.asentinel.common.orm.EntityBuilderStatistics;
+import com.asentinel.common.util.Assert;
+
+/**
+ * {@link OrmMetrics} implementation that aggregates the events in memory. The queries are
+ * grouped by shape, the shape being the SQL string, and for each shape the compilation and execution
+ * times and the fetched rows are recorded in {@link Histogram}s. The mapping times are grouped by the root entity class
+ * name, the persistence events by table, the proxy loads by the proxied class name and the cache accesses by cache name.
+ * The classes are referenced by name, so the metrics do not prevent their class loaders from being unloaded.
+ * <br><br>
+ * Recording is lock free. The number of query shapes is limited (see {@link #InMemoryOrmMetrics(int)}), the queries
+ * that exceed the limit are aggregated under the {@link #OTHER_QUERIES} shape, so the memory used by this class
+ * remains bounded even if the application generates many distinct SQL strings.
+ *
+ * @see OrmMetricsRegistry
+ */
+public class InMemoryOrmMetrics implements OrmMetrics {
+
+	/** the default maximum number of query shapes */
+	public static final int DEFAULT_MAX_QUERY_SHAPES = 256;
+
+	/** the shape under which the queries exceeding the maximum number of shapes are aggregated */
+	public static final String OTHER_QUERIES = "<other>";
+
+	private final int maxQueryShapes;
+
+	private final ConcurrentMap<String, QueryMetrics> queries = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, MappingMetrics> mappings = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, UpdateMetrics> updates = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, Histogram> proxyLoads = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, CacheMetrics> caches = new ConcurrentHashMap<>();
+
+	public InMemoryOrmMetrics() {
+		this(DEFAULT_MAX_QUERY_SHAPES);
+	}
+
+	/**
+	 * @param maxQueryShapes the maximum number of distinct query shapes tracked separately.
+	 */
+	public InMemoryOrmMetrics(int maxQueryShapes) {
+		Assert.assertStrictPositive(maxQueryShapes, "maxQueryShapes");
+		this.maxQueryShapes = maxQueryShapes;
+	}
+
+	private QueryMetrics getQueryMetrics(String sql) {
+		QueryMetrics metrics = queries.get(sql);
+		if (metrics != null) {
+			return metrics;
+		}
+		if (queries.size() >= maxQueryShapes) {
+			// the limit may be slightly exceeded by concurrent callers, that is fine
+			sql = OTHER_QUERIES;
+		}
+		return queries.computeIfAbsent(sql, k -> new QueryMetrics());
+	}
+
+	private static <K, V> V get(ConcurrentMap<K, V> map, K key, Function<K, V> factory) {
+		V value = map.get(key);
+		if (value != null) {
+			return value;
+		}
+		return map.computeIfAbsent(key, factory);
+	}
+
+	@Override
+	public void onSqlCompiled(String sql, long nanos) {
+		getQueryMetrics(sql).compileTime.record(nanos);
+	}
+
+	@Override
+	public void onQueryExecuted(String sql, long nanos, long rows) {
+		QueryMetrics metrics = getQueryMetrics(sql);
+		metrics.executionTime.record(nanos);
+		metrics.rows.record(rows);
+	}
+
+	@Override
+	public void onEntitiesMapped(EntityBuilderStatistics statistics, long nanos) {
+		MappingMetrics metrics = get(mappings, statistics.getRootDescriptor().getEntityClass().getName(), k -> new MappingMetrics());
+		metrics.mappingTime.record(nanos);
+		metrics.rows.add(statistics.getRowCount());
+	}
+
+	@Override
+	public void onUpdate(String table, int batchSize, long rows, long nanos) {
+		UpdateMetrics metrics = get(updates, table, k -> new UpdateMetrics());
+		metrics.executionTime.record(nanos);
+		metrics.batchSize.record(batchSize);
+		metrics.rows.add(rows);
+	}
+
+	@Override
+	public void onProxyLoaded(Class<?> type, long nanos) {
+		get(proxyLoads, type.getName(), k -> new Histogram()).record(nanos);
+	}
+
+	@Override
+	public void onCacheAccess(String cache, boolean hit) {
+		CacheMetrics metrics = get(caches, cache, k -> new CacheMetrics());
+		if (hit) {
+			metrics.hits.increment();
+		} else {
+			metrics.misses.increment();
+		}
+	}
+
+	/**
+	 * @return unmodifiable live view of the metrics by query shape.
+	 */
+	public Map<String, QueryMetrics> getQueryMetrics() {
+		return Collections.unmodifiableMap(queries);
+	}
+
+	/**
+	 * @return unmodifiable live view of the mapping metrics by root entity class name.
+	 */
+	public Map<String, MappingMetrics> getMappingMetrics() {
+		return Collections.unmodifiableMap(mappings);
+	}
+
+	/**
+	 * @return unmodifiable live view of the persistence metrics by table.
+	 */
+	public Map<String, UpdateMetrics> getUpdateMetrics() {
+		return Collections.unmodifiableMap(updates);
+	}
+
+	/**
+	 * @return unmodifiable live view of the proxy loading times by proxied class name.
+	 */
+	public Map<String, Histogram> getProxyLoadMetrics() {
+		return Collections.unmodifiableMap(proxyLoads);
+	}
+
+	/**
+	 * @return unmodifiable live view of the cache metrics by cache name.
+	 */
+	public Map<String, CacheMetrics> getCacheMetrics() {
+		return Collections.unmodifiableMap(caches);
+	}
+
+	/**
+	 * Discards all the aggregated metrics.
+	 */
+	public void clear() {
+		queries.clear();
+		mappings.clear();
+		updates.clear();
+		proxyLoads.clear();
+		caches.clear();
+	}
+
+	@Override
+	public String toString() {
+		return "InMemoryOrmMetrics [queryShapes=" + queries.size()
+				+ ", mappings=" + mappings.keySet()
+				+ ", updates=" + updates.keySet()
+				+ ", proxyLoads=" + proxyLoads.keySet()
+				+ ", caches=" + caches
+				+ "]";
+	}
+
+
+	/**
+	 * Metrics for a query shape.
+	 */
+	public static final class QueryMetrics {
+		private final Histogram compileTime = new Histogram();
+		private final Histogram executionTime = new Histogram();
+		private final Histogram rows = new Histogram();
+
+		QueryMetrics() {}
+
+		/**
+		 * @return the compilation times in nanoseconds, only the queries created
+		 * 			using a {@link com.asentinel.common.orm.jql.SqlBuilder} are compiled.
+		 */
+		public Histogram getCompileTime() {
+			return compileTime;
+		}
+
+		/**
+		 * @return the execution times in nanoseconds.
+		 */
+		public Histogram getExecutionTime() {
+			return executionTime;
+		}
+
+		/**
+		 * @return the number of rows fetched by each execution.
+		 */
+		public Histogram getRows() {
+			return rows;
+		}
+
+		@Override
+		public String toString() {
+			return "QueryMetrics [compileTime=" + compileTime
+					+ ", executionTime=" + executionTime
+					+ ", rows=" + rows + "]";
+		}
+	}
+
+	/**
+	 * Mapping metrics for a root entity class.
+	 */
+	public static final class MappingMetrics {
+		private final Histogram mappingTime = new Histogram();
+		private final LongAdder rows = new LongAdder();
+
+		MappingMetrics() {}
+
+		/**
+		 * @return the time in nanoseconds spent by each {@link com.asentinel.common.orm.EntityBuilder}
+		 * 			to map the rows.
+		 */
+		public Histogram getMappingTime() {
+			return mappingTime;
+		}
+
+		/**
+		 * @return the total number of rows mapped.
+		 */
+		public long getRows() {
+			return rows.sum();
+		}
+
+		@Override
+		public String toString() {
+			return "MappingMetrics [mappingTime=" + mappingTime + ", rows=" + getRows() + "]";
+		}
+	}
+
+	/**
+	 * Persistence metrics for a table.
+	 */
+	public static final class UpdateMetrics {
+		private final Histogram executionTime = new Histogram();
+		private final Histogram batchSize = new Histogram();
+		private final LongAdder rows = new LongAdder();
+
+		UpdateMetrics() {}
+
+		/**
+		 * @return the operation times in nanoseconds, see {@link OrmMetrics#onUpdate(String, int, long, long)}.
+		 */
+		public Histogram getExecutionTime() {
+			return executionTime;
+		}
+
+		/**
+		 * @return the number of entities sent to the database by each statement.
+		 */
+		public Histogram getBatchSize() {
+			return batchSize;
+		}
+
+		/**
+		 * @return the total number of rows affected.
+		 */
+		public long getRows() {
+			return rows.sum();
+		}
+
+		@Override
+		public String toString() {
+			return "UpdateMetrics [executionTime=" + executionTime
+					+ ", batchSize=" + batchSize
+					+ ", rows=" + getRows() + "]";
+		}
+	}
+
+	/**
+	 * Hit and miss counters for a cache.
+	 */
+	public static final class CacheMetrics {
+		private final LongAdder hits = new LongAdder();
+		private final LongAdder misses = new LongAdder();
+
+		CacheMetrics() {}
+
+		public long getHits() {
+			return hits.sum();
+		}
+
+		public long getMisses() {
+			return misses.sum();
+		}
+
+		/**
+		 * @return the ratio of hits or {@code 0} if the cache was not accessed.
+		 */
+		public double getHitRatio() {
+			long h = getHits();
+			long total = h + getMisses();
+			return total == 0 ? 0 : (double) h / total;
+		}
+
+		@Override
+		public String toString() {
+			return "CacheMetrics [hits=" + getHits() + ", misses=" + getMisses() + "]";
+		}
+	}
+}
@@ -0,0 +1,94 @@
+package com.asentinel.common.orm.metrics;
+
+import com.asentinel.common.orm.EntityBuilderStatistics;
+
+/**
+ * Listener SPI notified by the ORM components about the work they perform: SQL compilation,
+ * query execution, result set mapping, persistence, proxy loading and cache access. All the methods
+ * have empty default implementations, so implementations can override only the events they are interested in.
+ * <br><br>
+ * Implementations are registered with {@link OrmMetricsRegistry#register(OrmMetrics)} or, if the ORM
+ * is configured using {@link com.asentinel.common.orm.config.EnableAsentinelOrm}, by simply declaring them as beans.
+ * They are shared by all the threads, so they must be thread safe, and they are called on the
+ * hot paths of the ORM, so they should be fast.
+ *
+ * @see OrmMetricsRegistry
+ * @see InMemoryOrmMetrics
+ */
+public interface OrmMetrics {
+
+	/** the cache name reported for the {@link com.asentinel.common.orm.cache.EntityCache} implementations */
+	String ENTITY_CACHE = "entityCache";
+
+	/** the cache name reported for the {@link com.asentinel.common.orm.cache.QueryResultCache} */
+	String QUERY_RESULT_CACHE = "queryResultCache";
+
+	/**
+	 * Called after an ORM query was compiled to SQL.
+	 *
+	 * @param sql the resulting SQL string, it identifies the query shape.
+	 * @param nanos the compilation time in nanoseconds.
+	 */
+	default void onSqlCompiled(String sql, long nanos) {
+	}
+
+	/**
+	 * Called after a query was executed and its result set was fully processed.
+	 *
+	 * @param sql the SQL string.
+	 * @param nanos the execution time in nanoseconds, including the result set processing.
+	 * @param rows the number of rows fetched.
+	 */
+	default void onQueryExecuted(String sql, long nanos, long rows) {
+	}
+
+	/**
+	 * Called when an {@link com.asentinel.common.orm.EntityBuilder} returns its results.
+	 *
+	 * @param statistics the statistics collected by the {@code EntityBuilder}.
+	 * @param nanos the time spent mapping the rows to entities in nanoseconds.
+	 */
+	default void onEntitiesMapped(EntityBuilderStatistics statistics, long nanos) {
+	}
+
+	/**
+	 * Called after an insert, update, upsert or delete was performed by the
+	 * {@link com.asentinel.common.orm.persist.SimpleUpdater}.
+	 *
+	 * @param table the table.
+	 * @param batchSize the number of entities (or ids for deletes) sent to the database in one statement.
+	 * @param rows the number of rows affected, as reported by the JDBC driver.
+	 * @param nanos the time in nanoseconds spent performing the operation, including the creation of the SQL statement.
+	 */
+	default void onUpdate(String table, int batchSize, long rows, long nanos) {
+	}
+
+	/**
+	 * Called after a lazy loading proxy was loaded.
+	 *
+	 * @param type the proxied class, this is the entity class for entity proxies and the
+	 * 			collection class for collection proxies.
+	 * @param nanos the loading time in nanoseconds.
+	 */
+	default void onProxyLoaded(Class<?> type, long nanos) {
+	}
+
+	/**
+	 * Called when a cache is looked up.
+	 *
+	 * @param cache the cache name, see {@link #ENTITY_CACHE} and {@link #QUERY_RESULT_CACHE}.
+	 * @param hit {@code true} if the value was found in the cache, {@code false} if it had to be loaded.
+	 */
+	default void onCacheAccess(String cache, boolean hit) {
+	}
+
+	/**
+	 * Called when a query exceeded the slow query threshold of the
+	 * {@link com.asentinel.common.jdbc.flavors.postgres.PgEchoingJdbcTemplate}. The calls
+	 * are rate limited per query fingerprint.
+	 *
+	 * @param slowQuery the query, its bind values and its plan.
+	 */
+	default void onSlowQuery(SlowQuery slowQuery) {
+	}
+}
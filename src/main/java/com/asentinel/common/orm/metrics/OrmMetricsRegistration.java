@@ -0,0 +1,43 @@
+package com.asentinel.common.orm.metrics;
+
+import java.util.List;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+import com.asentinel.common.util.Assert;
+
+/**
+ * Bean that registers {@link OrmMetrics} instances with the {@link OrmMetricsRegistry}
+ * when the Spring container starts and unregisters them when it is closed.
+ *
+ * @see com.asentinel.common.orm.config.OrmConfig
+ */
+public class OrmMetricsRegistration implements InitializingBean, DisposableBean {
+
+	private final List<OrmMetrics> metrics;
+
+	public OrmMetricsRegistration(List<OrmMetrics> metrics) {
+		Assert.assertNotNull(metrics, "metrics");
+		this.metrics = List.copyOf(metrics);
+	}
+
+	@Override
+	public void afterPropertiesSet() {
+		metrics.forEach(OrmMetricsRegistry::register);
+	}
+
+	@Override
+	public void destroy() {
+		metrics.forEach(OrmMetricsRegistry::unregister);
+	}
+
+	public List<OrmMetrics> getMetrics() {
+		return metrics;
+	}
+
+	@Override
+	public String toString() {
+		return "OrmMetricsRegistration [metrics=" + metrics + "]";
+	}
+}
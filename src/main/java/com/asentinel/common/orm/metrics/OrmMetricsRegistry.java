@@ -0,0 +1,177 @@
+package com.asentinel.common.orm.metrics;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.asentinel.common.orm.EntityBuilderStatistics;
+import com.asentinel.common.util.Assert;
+
+/**
+ * Holds the {@link OrmMetrics} instances notified by the ORM components. The components
+ * call {@link #get()} for each event, so when nothing is registered the cost is a volatile read
+ * and a call to an empty method. Components that need extra work to produce an event (like measuring time)
+ * should check {@link #isEnabled()} first.
+ * <br><br>
+ * The exceptions thrown by the registered instances are logged and ignored.
+ *
+ * @see OrmMetrics
+ */
+public final class OrmMetricsRegistry {
+	private static final Logger log = LoggerFactory.getLogger(OrmMetricsRegistry.class);
+
+	private static final OrmMetrics NO_OP = new OrmMetrics() {
+		@Override
+		public String toString() {
+			return "NoOpOrmMetrics";
+		}
+	};
+
+	private static final List<OrmMetrics> registered = new CopyOnWriteArrayList<>();
+
+	private static volatile OrmMetrics current = NO_OP;
+
+	private OrmMetricsRegistry() {}
+
+	/**
+	 * Registers an {@code OrmMetrics} instance. Registering the same instance
+	 * multiple times has no effect.
+	 */
+	public static synchronized void register(OrmMetrics metrics) {
+		Assert.assertNotNull(metrics, "metrics");
+		if (!registered.contains(metrics)) {
+			registered.add(metrics);
+			refresh();
+		}
+	}
+
+	/**
+	 * Removes an instance registered with {@link #register(OrmMetrics)}.
+	 */
+	public static synchronized void unregister(OrmMetrics metrics) {
+		if (registered.remove(metrics)) {
+			refresh();
+		}
+	}
+
+	private static void refresh() {
+		if (registered.isEmpty()) {
+			current = NO_OP;
+		} else {
+			current = new SafeOrmMetrics(registered.toArray(new OrmMetrics[0]));
+		}
+		if (log.isDebugEnabled()) {
+			log.debug("refresh - Registered metrics: " + registered);
+		}
+	}
+
+	/**
+	 * @return the {@code OrmMetrics} that dispatches the events to all the registered instances,
+	 * 			never {@code null}.
+	 */
+	public static OrmMetrics get() {
+		return current;
+	}
+
+	/**
+	 * @return {@code true} if at least one {@code OrmMetrics} is registered.
+	 */
+	public static boolean isEnabled() {
+		return current != NO_OP;
+	}
+
+
+	/**
+	 * Dispatches the events to the registered instances, isolating them from each other's failures.
+	 */
+	private static final class SafeOrmMetrics implements OrmMetrics {
+		private final OrmMetrics[] targets;
+
+		SafeOrmMetrics(OrmMetrics[] targets) {
+			this.targets = targets;
+		}
+
+		private static void failed(String method, OrmMetrics target, RuntimeException e) {
+			log.error(method + " - Metrics " + target + " failed.", e);
+		}
+
+		@Override
+		public void onSqlCompiled(String sql, long nanos) {
+			for (OrmMetrics target: targets) {
+				try {
+					target.onSqlCompiled(sql, nanos);
+				} catch (RuntimeException e) {
+					failed("onSqlCompiled", target, e);
+				}
+			}
+		}
+
+		@Override
+		public void onQueryExecuted(String sql, long nanos, long rows) {
+			for (OrmMetrics target: targets) {
+				try {
+					target.onQueryExecuted(sql, nanos, rows);
+				} catch (RuntimeException e) {
+					failed("onQueryExecuted", target, e);
+				}
+			}
+		}
+
+		@Override
+		public void onEntitiesMapped(EntityBuilderStatistics statistics, long nanos) {
+			for (OrmMetrics target: targets) {
+				try {
+					target.onEntitiesMapped(statistics, nanos);
+				} catch (RuntimeException e) {
+					failed("onEntitiesMapped", target, e);
+				}
+			}
+		}
+
+		@Override
+		public void onUpdate(String table, int batchSize, long rows, long nanos) {
+			for (OrmMetrics target: targets) {
+				try {
+					target.onUpdate(table, batchSize, rows, nanos);
+				} catch (RuntimeException e) {
+					failed("onUpdate", target, e);
+				}
+			}
+		}
+
+		@Override
+		public void onProxyLoaded(Class<?> type, long nanos) {
+			for (OrmMetrics target: targets) {
+				try {
+					target.onProxyLoaded(type, nanos);
+				} catch (RuntimeException e) {
+					failed("onProxyLoaded", target, e);
+				}
+			}
+		}
+
+		@Override
+		public void onCacheAccess(String cache, boolean hit) {
+			for (OrmMetrics target: targets) {
+				try {
+					target.onCacheAccess(cache, hit);
+				} catch (RuntimeException e) {
+					failed("onCacheAccess", target, e);
+				}
+			}
+		}
+
+		@Override
+		public void onSlowQuery(SlowQuery slowQuery) {
+			for (OrmMetrics target: targets) {
+				try {
+					target.onSlowQuery(slowQuery);
+				} catch (RuntimeException e) {
+					failed("onSlowQuery", target, e);
+				}
+			}
+		}
+	}
+}
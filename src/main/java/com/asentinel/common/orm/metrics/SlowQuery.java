@@ -0,0 +1,69 @@
+package com.asentinel.common.orm.metrics;
+
+import java.util.List;
+
+/**
+ * Describes a query that exceeded the slow query threshold of the
+ * {@link com.asentinel.common.jdbc.flavors.postgres.PgEchoingJdbcTemplate}.
+ *
+ * @see OrmMetrics#onSlowQuery(SlowQuery)
+ * @see com.asentinel.common.jdbc.flavors.postgres.PgEchoingJdbcTemplate#setSlowQueryThreshold(long)
+ */
+public final class SlowQuery {
+
+	private final String sql;
+	private final String fingerprint;
+	private final long nanos;
+	private final List<String> bindValues;
+	private final String plan;
+
+	public SlowQuery(String sql, String fingerprint, long nanos, List<String> bindValues, String plan) {
+		this.sql = sql;
+		this.fingerprint = fingerprint;
+		this.nanos = nanos;
+		this.bindValues = bindValues == null ? List.of() : List.copyOf(bindValues);
+		this.plan = plan;
+	}
+
+	public String getSql() {
+		return sql;
+	}
+
+	/**
+	 * @return the fingerprint of the SQL, the same for all the statements
+	 * 			that differ only by literals and whitespace.
+	 */
+	public String getFingerprint() {
+		return fingerprint;
+	}
+
+	/**
+	 * @return the execution time in nanoseconds, including the result set processing.
+	 */
+	public long getNanos() {
+		return nanos;
+	}
+
+	/**
+	 * @return the bind values as rendered by the configured redactor.
+	 */
+	public List<String> getBindValues() {
+		return bindValues;
+	}
+
+	/**
+	 * @return the execution plan or {@code null} if it was not captured.
+	 */
+	public String getPlan() {
+		return plan;
+	}
+
+	@Override
+	public String toString() {
+		return "SlowQuery [fingerprint=" + fingerprint
+				+ ", millis=" + (nanos / 1_000_000)
+				+ ", sql=" + sql
+				+ ", bindValues=" + bindValues
+				+ ", plan=" + plan + "]";
+	}
+}
@@ -2,13 +2,11 @@ package com.asentinel.common.orm.persist;
 
 import static com.asentinel.common.orm.mappers.SqlParameterTypeDescriptor.isCustomConversion;
 import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
 import static java.util.stream.Collectors.joining;
 import static java.util.stream.Collectors.partitioningBy;
 import static java.util.stream.Collectors.toList;
 
-import java.lang.reflect.AnnotatedElement;
-import java.lang.reflect.Field;
-import java.lang.reflect.Method;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -20,6 +18,7 @@ import java.util.Collections;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 
@@ -40,13 +39,13 @@ import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.jdbc.support.lob.LobCreator;
 import org.springframework.transaction.support.TransactionSynchronization;
 import org.springframework.transaction.support.TransactionSynchronizationManager;
-import org.springframework.util.ReflectionUtils;
 import org.springframework.util.StringUtils;
 
 import com.asentinel.common.jdbc.BooleanParameterConverter;
 import com.asentinel.common.jdbc.ConversionSupport;
 import com.asentinel.common.jdbc.DefaultBooleanParameterConverter;
 import com.asentinel.common.jdbc.JdbcUtils;
+import com.asentinel.common.jdbc.ReplicaRoutingSqlQuery;
 import com.asentinel.common.jdbc.SimpleUser;
 import com.asentinel.common.jdbc.SqlQuery;
 import com.asentinel.common.jdbc.ThreadLocalUser;
@@ -57,11 +56,16 @@ import com.asentinel.common.orm.TargetChildMember;
 import com.asentinel.common.orm.TargetMember;
 import com.asentinel.common.orm.TargetMembers;
 import com.asentinel.common.orm.TargetMembersHolder;
+import com.asentinel.common.orm.cache.EntityCache;
+import com.asentinel.common.orm.cache.QueryResultCache;
+import com.asentinel.common.orm.cache.TransactionalIdentityMap;
+import com.asentinel.common.orm.jfr.BatchFlushEvent;
 import com.asentinel.common.orm.mappers.Column;
 import com.asentinel.common.orm.mappers.SqlParam;
 import com.asentinel.common.orm.mappers.SqlParameterTypeDescriptor;
 import com.asentinel.common.orm.mappers.dynamic.DynamicColumn;
 import com.asentinel.common.orm.mappers.dynamic.DynamicColumnsEntity;
+import com.asentinel.common.orm.metrics.OrmMetricsRegistry;
 import com.asentinel.common.orm.proxy.InputStreamProxy;
 import com.asentinel.common.util.Assert;
 
@@ -110,6 +114,8 @@ public class SimpleUpdater implements Updater {
 	
 	private NewRowOnUpsertDetector newRowOnUpsertDetector;
 	private ConversionService conversionService;
+	private EntityCache entityCache;
+	private QueryResultCache queryResultCache;
 
 	public SimpleUpdater(JdbcFlavor jdbcFlavor, SqlQuery queryEx) {
 		Assert.assertNotNull(jdbcFlavor, "jdbcFlavor");
@@ -194,6 +200,36 @@ public class SimpleUpdater implements Updater {
 		this.conversionService = conversionService;
 	}
 	
+	public EntityCache getEntityCache() {
+		return entityCache;
+	}
+
+	/**
+	 * Sets the second level {@code EntityCache} from which the updated, upserted or deleted
+	 * entities are evicted. The eviction is performed immediately and, if a Spring managed transaction
+	 * is active, again after the transaction completes, so that the entities loaded by other threads
+	 * before the commit do not remain in the cache.
+	 * 
+	 * @see EntityCache
+	 */
+	public void setEntityCache(EntityCache entityCache) {
+		this.entityCache = entityCache;
+	}
+	
+	public QueryResultCache getQueryResultCache() {
+		return queryResultCache;
+	}
+
+	/**
+	 * Sets the {@code QueryResultCache} in which the results depending on the written tables
+	 * are invalidated.
+	 * 
+	 * @see QueryResultCache#invalidateForWrite(String)
+	 */
+	public void setQueryResultCache(QueryResultCache queryResultCache) {
+		this.queryResultCache = queryResultCache;
+	}
+	
 	@Override
 	public int update(Object entity, UpdateSettings<? extends DynamicColumn> settings) {
 		if (EntityUtils.isProxy(entity) && !EntityUtils.isLoadedProxy(entity)) {
@@ -211,6 +247,7 @@ public class SimpleUpdater implements Updater {
 			}
 		}
 
+		long t0 = System.nanoTime();
 		int ret;
 		TargetMembers targetMembers = TargetMembersHolder.getInstance().getTargetMembers(entity.getClass());
 
@@ -249,6 +286,10 @@ public class SimpleUpdater implements Updater {
 		default:
 			throw new NullPointerException("Null update type.");
 		}
+		OrmMetricsRegistry.get().onUpdate(table, 1, ret, System.nanoTime() - t0);
+		invalidateQueryResults(table);
+		removeOthersFromIdentityMap(singletonList(entity));
+		evictFromEntityCache(entity.getClass(), singletonList(EntityUtils.getEntityId(entity)));
 		return ret;
 	}
 
@@ -276,6 +317,7 @@ public class SimpleUpdater implements Updater {
 					"The hints must be a collection of key-value pairs, so the number of hints should be a multiple of 2.");
 		}
 
+		long t0 = System.nanoTime();
 		TargetMembers targetMembers = TargetMembersHolder.getInstance().getTargetMembers(entity.getClass());
 		Collection<? extends DynamicColumn> dynamicColumns = settings.getDynamicColumns();
 
@@ -304,6 +346,10 @@ public class SimpleUpdater implements Updater {
 			setEntityId(entity, (Number) keyHolder.getKeys().get(pkColumn), pkMember, settings.getPkDynamicColumn());
 		}
 		setNewRowOnUpsert(entity, keyHolder.getKeys());
+		OrmMetricsRegistry.get().onUpdate(table, 1, ret, System.nanoTime() - t0);
+		invalidateQueryResults(table);
+		removeOthersFromIdentityMap(singletonList(entity));
+		evictFromEntityCache(entity.getClass(), singletonList(EntityUtils.getEntityId(entity)));
 		return ret;
 	}
 
@@ -339,26 +385,37 @@ public class SimpleUpdater implements Updater {
 		// TODO: all objects in the collection should have the same type
 		// because the generated SQL statements are based on the first object type.
 		// Some enhancements may be needed here.
+		BatchFlushEvent event = new BatchFlushEvent();
+		event.begin();
+		long t0 = System.nanoTime();
 		Object probeEntity = entities.get(0);
 		TargetMembers targetMembers = TargetMembersHolder.getInstance().getTargetMembers(probeEntity.getClass());
 		String table = getUpdatableTable(targetMembers, settings);
 		TargetMember pkMember = targetMembers.getPkColumnMember();
+		markWrite();
 		JdbcOperations jdbcOps = queryEx.getJdbcOperations();
 		String sql;
+		int[] rows;
 		switch (updateType) {
 		case INSERT:
 			List<TargetMember> insertableMembers = targetMembers.getInsertableColumnMembers();
 			sql = buildInsertStatement(updateType, table, pkMember, insertableMembers, settings);
 			log(sql);
-			jdbcOps.batchUpdate(sql, new CustomBatchPreparedStatementSetter(entities,
+			rows = jdbcOps.batchUpdate(sql, new CustomBatchPreparedStatementSetter(entities,
 					updateType, insertableMembers, dynamicColumns));
+			reportBatch(event, table, updateType.name(), entities.size(), rows, t0);
+			invalidateQueryResults(table);
+			removeOthersFromIdentityMap(entities);
 			return;
 		case INSERT_AUTO_ID:
 			insertableMembers = targetMembers.getInsertableColumnMembers();
 			sql = buildInsertStatement(updateType, table, pkMember, insertableMembers, settings);
 			log(sql);
-			jdbcOps.execute(new CustomBatchPreparedStatementCreator(entities,
+			rows = jdbcOps.execute(new CustomBatchPreparedStatementCreator(entities,
 					insertableMembers, emptyList(), settings, pkMember, sql), new CustomBatchPreparedStatementCallback(entities, pkMember, settings));
+			reportBatch(event, table, updateType.name(), entities.size(), rows, t0);
+			invalidateQueryResults(table);
+			removeOthersFromIdentityMap(entities);
 			return;
 		case UPDATE:
 			List<TargetMember> updatableMembers = targetMembers.getUpdatableColumnMembers();
@@ -369,8 +426,12 @@ public class SimpleUpdater implements Updater {
 			}
 			sql = sqlOptional.get();
 			log(sql);
-			jdbcOps.batchUpdate(sql, new CustomBatchPreparedStatementSetter(entities,
+			rows = jdbcOps.batchUpdate(sql, new CustomBatchPreparedStatementSetter(entities,
 					updateType, updatableMembers, dynamicColumns));
+			reportBatch(event, table, updateType.name(), entities.size(), rows, t0);
+			invalidateQueryResults(table);
+			removeOthersFromIdentityMap(entities);
+			evictFromEntityCache(probeEntity.getClass(), getEntityIds(entities));
 			return;
 		default:
 			throw new NullPointerException("Null update type.");
@@ -410,6 +471,9 @@ public class SimpleUpdater implements Updater {
 		// because the generated SQL statements are based on the first object type.
 		// Some enhancements may be needed here.
 
+		BatchFlushEvent event = new BatchFlushEvent();
+		event.begin();
+		long t0 = System.nanoTime();
 		Object probeEntity = entities.get(0);
 		TargetMembers targetMembers = TargetMembersHolder.getInstance().getTargetMembers(probeEntity.getClass());
 
@@ -427,10 +491,15 @@ public class SimpleUpdater implements Updater {
 		String sql = concatSqlsForUpsert(sqlInsert, sqlUpdate, pkMember, updateTypeInsert, hints);
 		log(sql);
 
+		markWrite();
 		JdbcOperations jdbcOps = queryEx.getJdbcOperations();
-		jdbcOps.execute(new CustomBatchPreparedStatementCreator(entities,
+		int[] rows = jdbcOps.execute(new CustomBatchPreparedStatementCreator(entities,
 				insertableMembers, updatableMembers, settings, pkMember, sql, EnumSet.of(StatementHints.UPSERT), updateTypeInsert), 
 				new CustomBatchPreparedStatementCallback(entities, pkMember, settings, true, updateTypeInsert));
+		reportBatch(event, table, "UPSERT", entities.size(), rows, t0);
+		invalidateQueryResults(table);
+		removeOthersFromIdentityMap(entities);
+		evictFromEntityCache(probeEntity.getClass(), getEntityIds(entities));
 	}
 	
 	@Override
@@ -439,6 +508,7 @@ public class SimpleUpdater implements Updater {
 		if (ids == null || ids.length == 0) {
 			return 0;
 		}
+		long t0 = System.nanoTime();
 		TargetMembers targetMembers = TargetMembersHolder.getInstance()
 				.getTargetMembers(entityType);
 		String table = targetMembers.getUpdatableTable();
@@ -452,7 +522,17 @@ public class SimpleUpdater implements Updater {
 		String sql = String.format("delete from %s where %s in (%s)",
 				table, pkColumn, 
 				Arrays.asList(ids).stream().map(id -> "?").collect(joining(",")));
-		return queryEx.update(sql, ids);
+		int ret = queryEx.update(sql, ids);
+		OrmMetricsRegistry.get().onUpdate(table, ids.length, ret, System.nanoTime() - t0);
+		invalidateQueryResults(table);
+		TransactionalIdentityMap identityMap = TransactionalIdentityMap.getCurrent();
+		if (identityMap != null) {
+			for (Object id: ids) {
+				identityMap.remove(entityType, id);
+			}
+		}
+		evictFromEntityCache(entityType, Arrays.asList(ids));
+		return ret;
 	}
 
 
@@ -544,6 +624,90 @@ public class SimpleUpdater implements Updater {
 		}
 	}
 
+	/**
+	 * Reports a batch to the {@link OrmMetricsRegistry} and commits the {@link BatchFlushEvent}. The JDBC drivers may report
+	 * {@link java.sql.Statement#SUCCESS_NO_INFO} instead of the actual row counts, such rows are not counted.
+	 */
+	private static void reportBatch(BatchFlushEvent event, String table, String operation, int batchSize, int[] counts, long t0) {
+		long rows = 0;
+		if (counts != null) {
+			for (int count: counts) {
+				if (count > 0) {
+					rows += count;
+				}
+			}
+		}
+		OrmMetricsRegistry.get().onUpdate(table, batchSize, rows, System.nanoTime() - t0);
+		if (event.shouldCommit()) {
+			event.set(table, operation, batchSize, rows);
+			event.commit();
+		}
+	}
+	
+	/**
+	 * Marks the current session as a writer if the queries are routed to a replica, the 
+	 * batch writes bypass the {@link SqlQuery} update methods that would mark it.
+	 */
+	private void markWrite() {
+		if (queryEx instanceof ReplicaRoutingSqlQuery) {
+			((ReplicaRoutingSqlQuery) queryEx).markWrite();
+		}
+	}
+	
+	private void invalidateQueryResults(String table) {
+		if (queryResultCache != null) {
+			queryResultCache.invalidateForWrite(table);
+		}
+	}
+	
+	/**
+	 * Removes from the current {@link TransactionalIdentityMap} the instances other than the written
+	 * entities that have the same ids, they hold the state before the write.
+	 */
+	private static void removeOthersFromIdentityMap(Collection<?> entities) {
+		TransactionalIdentityMap identityMap = TransactionalIdentityMap.getCurrent();
+		if (identityMap == null) {
+			return;
+		}
+		for (Object entity: entities) {
+			Object id = EntityUtils.getEntityId(entity);
+			if (id != null) {
+				identityMap.removeOther(entity.getClass(), id, entity);
+			}
+		}
+	}
+	
+	private void evictFromEntityCache(Class<?> entityType, Collection<?> ids) {
+		if (entityCache == null || ids.isEmpty()) {
+			return;
+		}
+		for (Object id: ids) {
+			entityCache.evict(entityType, id);
+		}
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			// other threads may cache the old state until the transaction commits, 
+			// so we evict again after completion
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCompletion(int status) {
+					for (Object id: ids) {
+						entityCache.evict(entityType, id);
+					}
+					if (log.isTraceEnabled()) {
+						log.trace("evictFromEntityCache - {} entities of type {} evicted after transaction completion.", 
+								ids.size(), entityType.getName());
+					}
+				}
+			});
+		}
+	}
+	
+	private static List<Object> getEntityIds(Collection<?> entities) {
+		return entities.stream().map(EntityUtils::getEntityId)
+				.filter(Objects::nonNull)
+				.collect(toList());
+	}
+
 	private static <E> List<E> removeUnloadedProxies(Collection<E> entities) {
 		return entities.stream().filter(e -> !EntityUtils.isProxy(e) || EntityUtils.isLoadedProxy(e))
 				.collect(toList());
@@ -757,22 +921,7 @@ public class SimpleUpdater implements Updater {
 	}
 
 	private Object getArgument(TargetMember targetMember, Object entity) {
-		AnnotatedElement member = targetMember.getAnnotatedElement();
-		Object argument;
-		if (member instanceof Field) {
-			ReflectionUtils.makeAccessible((Field) member);
-			argument = ReflectionUtils.getField((Field) member, entity);
-		} else if (member instanceof Method) {
-			Method getMethod = targetMember.getGetMethod();
-			if (getMethod == null) {
-				throw new IllegalArgumentException("No get method available for setter " + member
-						+ ". Please define a corresponding getter method.");
-			}
-			ReflectionUtils.makeAccessible(getMethod);
-			argument = ReflectionUtils.invokeMethod(getMethod, entity);
-		} else {
-			throw new IllegalStateException("Expected Field or Method. Found " + member.getClass().getName());
-		}
+		Object argument = targetMember.getValue(entity);
 		if (targetMember instanceof TargetChildMember) {
 			if (argument != null) {
 				argument = EntityUtils.getEntityId(argument);
@@ -14,6 +14,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.util.ReflectionUtils;
 
+import com.asentinel.common.orm.jfr.ProxyLoadEvent;
+import com.asentinel.common.orm.metrics.OrmMetricsRegistry;
+
 /**
  * Base class that serves as a template for the lazy loading algorithm. The intercepting method called by ByteBuddy
  * is {@link #loadProxy(Object, Callable)}, the name of this method matches the {@link ProxyFactorySupport#INTERCEPTOR_METHOD_NAME}.
@@ -57,6 +60,15 @@ public abstract class AbstractLazyLoadInterceptor<T> {
 	 */
 	protected abstract void copyState(T source, Object proxy);
 
+	/**
+	 * @return the id used to load the proxy, it is reported in the {@link ProxyLoadEvent}. This
+	 * 		implementation returns {@code null}.
+	 * 		Important note: when this gets called the default lock of the proxy has been already acquired.
+	 */
+	protected Object getId(Object proxy) {
+		return null;
+	}
+
 	/**
 	 * Important note: when this gets called the default lock of the proxy has been already acquired.
 	 */
@@ -77,11 +89,23 @@ public abstract class AbstractLazyLoadInterceptor<T> {
 			@SuppressWarnings("unchecked")
 			Function<Object, T> loader = (Function<Object, T>) ReflectionUtils.getField(fieldLoaded, proxy);
 			if (loader != null) {
+				ProxyLoadEvent event = new ProxyLoadEvent();
+				event.begin();
+				long t0 = System.nanoTime();
 				List<Field> toBeDiscarded = new ArrayList<>(2);
+				if (event.isEnabled()) {
+					// the id is captured before the helper fields are discarded
+					event.set(proxy.getClass().getSuperclass(), getId(proxy));
+				}
+				if (NPlusOneDetector.getInstalled() != null) {
+					NPlusOneDetector.onLoad(loader, getId(proxy));
+				}
 				T source = load(loader, proxy, toBeDiscarded);
 				copyState(source, proxy);
 				ReflectionUtils.setField(fieldLoaded, proxy, null);
 				discardHelperFields(proxy, toBeDiscarded);
+				OrmMetricsRegistry.get().onProxyLoaded(proxy.getClass().getSuperclass(), System.nanoTime() - t0);
+				event.commit();
 				if (log.isDebugEnabled()) {
 					log.debug("loadProxy - Successfully copied the target state into the proxy.");
 				}
@@ -0,0 +1,130 @@
+package com.asentinel.common.orm.proxy;
+
+import java.lang.reflect.Member;
+import java.util.Objects;
+import java.util.function.Function;
+
+import com.asentinel.common.orm.AutoEagerLoader;
+import com.asentinel.common.util.Assert;
+
+/**
+ * Describes where a lazy loading proxy comes from: the entity type it loads and the member of the parent
+ * entity it was created for. The site is attached to the proxy loader function by the proxy entity descriptors
+ * (see {@link #wrap(Function, Class, Member)}) and it is used by the {@link NPlusOneDetector} to report
+ * the repeated loads and to suggest the {@link AutoEagerLoader} that would avoid them.
+ *
+ * @see NPlusOneDetector
+ */
+public final class LazyLoadSite {
+
+	private final Class<?> entityType;
+	private final Member targetMember;
+
+	LazyLoadSite(Class<?> entityType, Member targetMember) {
+		Assert.assertNotNull(entityType, "entityType");
+		this.entityType = entityType;
+		this.targetMember = targetMember;
+	}
+
+	/**
+	 * Attaches a site to a loader function.
+	 *
+	 * @param loader the loader function, can be {@code null}.
+	 * @param entityType the type of the entities loaded.
+	 * @param targetMember the member of the parent entity, can be {@code null}.
+	 * @return a function that delegates to the {@code loader} and that carries the site or
+	 * 			{@code null} if the loader is {@code null}.
+	 */
+	public static <T> Function<Object, T> wrap(Function<Object, T> loader, Class<?> entityType, Member targetMember) {
+		if (loader == null || loader instanceof SiteLoader) {
+			return loader;
+		}
+		return new SiteLoader<>(loader, new LazyLoadSite(entityType, targetMember));
+	}
+
+	/**
+	 * @return the site attached to the loader or {@code null} if the loader
+	 * 			was not created by {@link #wrap(Function, Class, Member)}.
+	 */
+	public static LazyLoadSite of(Function<?, ?> loader) {
+		if (loader instanceof SiteLoader) {
+			return ((SiteLoader<?>) loader).site;
+		}
+		return null;
+	}
+
+	/**
+	 * @return the type of the entities loaded, for collection proxies this is
+	 * 			the type of the collection elements.
+	 */
+	public Class<?> getEntityType() {
+		return entityType;
+	}
+
+	/**
+	 * @return the member of the parent entity the proxy was created for, can be {@code null}.
+	 */
+	public Member getTargetMember() {
+		return targetMember;
+	}
+
+	/**
+	 * @return the Java code creating the {@link AutoEagerLoader} that loads this site eagerly. The
+	 * 			path starts with the class declaring the target member, if that class is not the root of
+	 * 			the query the classes from the root have to be prepended.
+	 */
+	public String getAutoEagerLoaderSuggestion() {
+		String child = entityType.getSimpleName() + ".class";
+		if (targetMember == null) {
+			return "AutoEagerLoader.forPath(null, " + child + ")";
+		}
+		return "AutoEagerLoader.forPath(" + targetMember.getDeclaringClass().getSimpleName() + ".class, " + child + ")";
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof LazyLoadSite)) {
+			return false;
+		}
+		LazyLoadSite other = (LazyLoadSite) obj;
+		return entityType == other.entityType && Objects.equals(targetMember, other.targetMember);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(entityType, targetMember);
+	}
+
+	@Override
+	public String toString() {
+		if (targetMember == null) {
+			return entityType.getName();
+		}
+		return targetMember.getDeclaringClass().getName() + "." + targetMember.getName()
+				+ " -> " + entityType.getName();
+	}
+
+
+	private static final class SiteLoader<T> implements Function<Object, T> {
+		private final Function<Object, T> loader;
+		private final LazyLoadSite site;
+
+		SiteLoader(Function<Object, T> loader, LazyLoadSite site) {
+			this.loader = loader;
+			this.site = site;
+		}
+
+		@Override
+		public T apply(Object id) {
+			return loader.apply(id);
+		}
+
+		@Override
+		public String toString() {
+			return "SiteLoader [site=" + site + ", loader=" + loader + "]";
+		}
+	}
+}
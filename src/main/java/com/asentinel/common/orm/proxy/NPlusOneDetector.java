@@ -0,0 +1,391 @@
+package com.asentinel.common.orm.proxy;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.asentinel.common.util.Assert;
+
+/**
+ * Detects the N+1 queries problem caused by lazy loading: code that iterates over entities and
+ * triggers the load of their proxies one at a time. The proxy loads are tracked per scope, a scope being either
+ * explicitly opened (see {@link #openScope()}), for example by a servlet filter for each request or by a test,
+ * or implicitly bound to the current Spring managed transaction. The loads are grouped by the {@link LazyLoadSite}
+ * of the proxy and by the call site, the first frame outside the proxy and the JDK that triggered the load. When
+ * the scope ends, the groups with at least {@code threshold} distinct ids are reported as {@link Finding}s,
+ * together with the {@link com.asentinel.common.orm.AutoEagerLoader} that would load the proxies in the initial query.
+ * <br><br>
+ * The findings are logged as warnings and passed to the registered listeners. If {@link #setFailOnDetection(boolean)}
+ * is set, closing an explicit scope with findings throws a {@link NPlusOneException}, this is meant for tests.
+ * For production use, {@link #setSamplingRate(double)} limits the overhead to a fraction of the scopes.
+ * <br><br>
+ * Usage example:
+ * <pre>
+ * 	NPlusOneDetector detector = new NPlusOneDetector(5);
+ * 	detector.setFailOnDetection(true);
+ * 	NPlusOneDetector.install(detector);
+ * 	try (NPlusOneDetector.Scope scope = detector.openScope()) {
+ * 		// code under test
+ * 	}
+ * </pre>
+ *
+ * Only one detector is active at a time, see {@link #install(NPlusOneDetector)}. When no detector is installed
+ * the cost for each proxy load is a volatile read.
+ *
+ * @see LazyLoadSite
+ * @see AbstractLazyLoadInterceptor
+ */
+public final class NPlusOneDetector {
+	private static final Logger log = LoggerFactory.getLogger(NPlusOneDetector.class);
+
+	private static final StackWalker STACK_WALKER = StackWalker.getInstance();
+
+	private static volatile NPlusOneDetector installed;
+
+	private final int threshold;
+
+	private volatile double samplingRate = 1;
+	private volatile boolean failOnDetection;
+	private final List<Consumer<Finding>> listeners = new CopyOnWriteArrayList<>();
+
+	private final ThreadLocal<Scope> currentScope = new ThreadLocal<>();
+
+	/**
+	 * @param threshold the minimum number of distinct ids loaded from the same lazy load site
+	 * 			and call site in a scope for a finding to be reported, at least 2.
+	 */
+	public NPlusOneDetector(int threshold) {
+		Assert.assertTrue(threshold >= 2, "The threshold must be at least 2.");
+		this.threshold = threshold;
+	}
+
+	/**
+	 * Installs the detector, replacing the previously installed one if any.
+	 */
+	public static void install(NPlusOneDetector detector) {
+		Assert.assertNotNull(detector, "detector");
+		installed = detector;
+	}
+
+	/**
+	 * Removes the installed detector.
+	 */
+	public static void uninstall() {
+		installed = null;
+	}
+
+	/**
+	 * @return the installed detector or {@code null} if none.
+	 */
+	public static NPlusOneDetector getInstalled() {
+		return installed;
+	}
+
+	/**
+	 * Called by the {@link AbstractLazyLoadInterceptor} before a proxy is loaded.
+	 */
+	static void onLoad(Function<?, ?> loader, Object id) {
+		NPlusOneDetector detector = installed;
+		if (detector != null) {
+			detector.record(loader, id);
+		}
+	}
+
+	public int getThreshold() {
+		return threshold;
+	}
+
+	public double getSamplingRate() {
+		return samplingRate;
+	}
+
+	/**
+	 * Sets the fraction of the scopes that are tracked, the default is {@code 1}, all the
+	 * scopes are tracked.
+	 *
+	 * @param samplingRate a value between {@code 0} and {@code 1}.
+	 */
+	public void setSamplingRate(double samplingRate) {
+		Assert.assertTrue(samplingRate >= 0 && samplingRate <= 1, "The sampling rate must be between 0 and 1.");
+		this.samplingRate = samplingRate;
+	}
+
+	public boolean isFailOnDetection() {
+		return failOnDetection;
+	}
+
+	/**
+	 * @param failOnDetection whether closing an explicit scope with findings throws
+	 * 			a {@link NPlusOneException}. The scopes bound to transactions never throw.
+	 */
+	public void setFailOnDetection(boolean failOnDetection) {
+		this.failOnDetection = failOnDetection;
+	}
+
+	/**
+	 * Registers a listener notified for each finding.
+	 */
+	public void addListener(Consumer<Finding> listener) {
+		Assert.assertNotNull(listener, "listener");
+		listeners.add(listener);
+	}
+
+	public void removeListener(Consumer<Finding> listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Opens a scope bound to the current thread. If a scope is already open on the current thread,
+	 * the returned scope is a nested scope, closing it has no effect, the loads are tracked by the outer scope.
+	 *
+	 * @return the scope, to be closed when the unit of work (request, test) ends.
+	 */
+	public Scope openScope() {
+		Scope scope = currentScope.get();
+		if (scope != null) {
+			return new Scope(this, scope.sampled, false);
+		}
+		scope = new Scope(this, isSampled(), true);
+		currentScope.set(scope);
+		return scope;
+	}
+
+	private boolean isSampled() {
+		double rate = samplingRate;
+		return rate >= 1 || (rate > 0 && ThreadLocalRandom.current().nextDouble() < rate);
+	}
+
+	private void record(Function<?, ?> loader, Object id) {
+		Scope scope = currentScope.get();
+		if (scope == null) {
+			scope = getTransactionScope();
+			if (scope == null) {
+				return;
+			}
+		}
+		if (!scope.sampled) {
+			return;
+		}
+		LazyLoadSite site = LazyLoadSite.of(loader);
+		if (site == null) {
+			return;
+		}
+		scope.record(new Key(site, findCallSite()), id);
+	}
+
+	private Scope getTransactionScope() {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			return null;
+		}
+		Scope scope = (Scope) TransactionSynchronizationManager.getResource(this);
+		if (scope != null) {
+			return scope;
+		}
+		Scope newScope = new Scope(this, isSampled(), false);
+		TransactionSynchronizationManager.bindResource(this, newScope);
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+			@Override
+			public void afterCompletion(int status) {
+				TransactionSynchronizationManager.unbindResourceIfPossible(NPlusOneDetector.this);
+				newScope.evaluate();
+			}
+		});
+		return newScope;
+	}
+
+	/**
+	 * @return the first frame after the lazy loading interceptor that is not in a proxy
+	 * 			class or in the JDK.
+	 */
+	private static String findCallSite() {
+		return STACK_WALKER.walk(frames -> {
+			boolean afterInterceptor = false;
+			for (StackWalker.StackFrame frame: (Iterable<StackWalker.StackFrame>) frames::iterator) {
+				String className = frame.getClassName();
+				if (!afterInterceptor) {
+					afterInterceptor = className.equals(AbstractLazyLoadInterceptor.class.getName());
+					continue;
+				}
+				if (className.endsWith(ProxyFactorySupport.PROXY_CLASS_NAME_SUFFIX)
+						|| className.startsWith("java.")
+						|| className.startsWith("jdk.")
+						|| className.startsWith("sun.")) {
+					continue;
+				}
+				return className + "." + frame.getMethodName() + "(" + frame.getFileName() + ":" + frame.getLineNumber() + ")";
+			}
+			return "unknown";
+		});
+	}
+
+	private void report(List<Finding> findings, boolean explicit) {
+		for (Finding finding: findings) {
+			log.warn("report - N+1 lazy loading detected: " + finding);
+			for (Consumer<Finding> listener: listeners) {
+				try {
+					listener.accept(finding);
+				} catch (RuntimeException e) {
+					log.error("report - Listener " + listener + " failed.", e);
+				}
+			}
+		}
+		if (explicit && failOnDetection && !findings.isEmpty()) {
+			throw new NPlusOneException(findings);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "NPlusOneDetector [threshold=" + threshold
+				+ ", samplingRate=" + samplingRate
+				+ ", failOnDetection=" + failOnDetection + "]";
+	}
+
+
+	/**
+	 * Tracks the proxy loads of a unit of work. This class is not thread safe, like the unit
+	 * of work it is meant to be used by a single thread.
+	 */
+	public static final class Scope implements AutoCloseable {
+		private final NPlusOneDetector detector;
+		private final boolean sampled;
+		private final boolean owner;
+		private final Map<Key, Set<Object>> loads = new LinkedHashMap<>();
+		private boolean closed;
+
+		Scope(NPlusOneDetector detector, boolean sampled, boolean owner) {
+			this.detector = detector;
+			this.sampled = sampled;
+			this.owner = owner;
+		}
+
+		void record(Key key, Object id) {
+			loads.computeIfAbsent(key, k -> new HashSet<>()).add(id);
+		}
+
+		/**
+		 * @return {@code true} if the loads are tracked for this scope, see {@link NPlusOneDetector#setSamplingRate(double)}.
+		 */
+		public boolean isSampled() {
+			return sampled;
+		}
+
+		/**
+		 * @return the findings for the loads tracked so far.
+		 */
+		public List<Finding> getFindings() {
+			List<Finding> findings = new ArrayList<>();
+			for (Map.Entry<Key, Set<Object>> e: loads.entrySet()) {
+				if (e.getValue().size() >= detector.threshold) {
+					findings.add(new Finding(e.getKey().site, e.getKey().callSite, e.getValue().size()));
+				}
+			}
+			return findings;
+		}
+
+		private List<Finding> evaluate() {
+			List<Finding> findings = getFindings();
+			loads.clear();
+			detector.report(findings, owner);
+			return findings;
+		}
+
+		/**
+		 * Ends the scope and reports the findings.
+		 *
+		 * @throws NPlusOneException if there are findings and {@link NPlusOneDetector#setFailOnDetection(boolean)}
+		 * 			is set.
+		 */
+		@Override
+		public void close() {
+			if (!owner || closed) {
+				return;
+			}
+			closed = true;
+			detector.currentScope.remove();
+			evaluate();
+		}
+	}
+
+	/**
+	 * Repeated lazy loads from the same {@link LazyLoadSite} and call site.
+	 */
+	public static final class Finding {
+		private final LazyLoadSite site;
+		private final String callSite;
+		private final int loads;
+
+		Finding(LazyLoadSite site, String callSite, int loads) {
+			this.site = site;
+			this.callSite = callSite;
+			this.loads = loads;
+		}
+
+		public LazyLoadSite getSite() {
+			return site;
+		}
+
+		/**
+		 * @return the code location that triggered the loads.
+		 */
+		public String getCallSite() {
+			return callSite;
+		}
+
+		/**
+		 * @return the number of distinct ids loaded.
+		 */
+		public int getLoads() {
+			return loads;
+		}
+
+		/**
+		 * @return the suggested fix.
+		 */
+		public String getSuggestion() {
+			return "Load eagerly using " + site.getAutoEagerLoaderSuggestion() + " in the initial query.";
+		}
+
+		@Override
+		public String toString() {
+			return loads + " single id loads of " + site + " triggered from " + callSite + ". " + getSuggestion();
+		}
+	}
+
+	private static final class Key {
+		private final LazyLoadSite site;
+		private final String callSite;
+
+		Key(LazyLoadSite site, String callSite) {
+			this.site = site;
+			this.callSite = callSite;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return site.equals(other.site) && callSite.equals(other.callSite);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(site, callSite);
+		}
+	}
+}
@@ -0,0 +1,28 @@
+package com.asentinel.common.orm.proxy;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Thrown by the {@link NPlusOneDetector} when a scope with N+1 lazy loading findings
+ * is closed and the detector is configured to fail on detection.
+ *
+ * @see NPlusOneDetector#setFailOnDetection(boolean)
+ */
+public class NPlusOneException extends IllegalStateException {
+
+	private static final long serialVersionUID = 1L;
+
+	private final transient List<NPlusOneDetector.Finding> findings;
+
+	public NPlusOneException(List<NPlusOneDetector.Finding> findings) {
+		super("N+1 lazy loading detected:\n" + findings.stream()
+				.map(Object::toString)
+				.collect(Collectors.joining("\n")));
+		this.findings = List.copyOf(findings);
+	}
+
+	public List<NPlusOneDetector.Finding> getFindings() {
+		return findings;
+	}
+}
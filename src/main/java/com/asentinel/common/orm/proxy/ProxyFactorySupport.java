@@ -11,15 +11,19 @@ import org.slf4j.LoggerFactory;
 import org.springframework.util.ReflectionUtils;
 
 import com.asentinel.common.jdbc.DefaultObjectFactory;
+import com.asentinel.common.orm.ClassMetadataCache;
+import com.asentinel.common.orm.OrmMetadataRegistry;
 import com.asentinel.common.orm.proxy.collection.CollectionProxyFactory;
 import com.asentinel.common.orm.proxy.entity.ProxyFactory;
 import com.asentinel.common.util.Assert;
+import com.asentinel.common.util.ClassValueCache;
 import com.asentinel.common.util.ConcurrentCache;
 
 import net.bytebuddy.description.modifier.FieldManifestation;
 import net.bytebuddy.description.modifier.FieldPersistence;
 import net.bytebuddy.description.modifier.ModifierContributor;
 import net.bytebuddy.description.modifier.Visibility;
+import net.bytebuddy.dynamic.DynamicType;
 import net.bytebuddy.dynamic.DynamicType.Builder;
 import net.bytebuddy.dynamic.loading.ClassInjector;
 import net.bytebuddy.dynamic.loading.ClassLoadingStrategy;
@@ -34,7 +38,7 @@ import net.bytebuddy.dynamic.loading.ClassLoadingStrategy;
  * 
  * @author Razvan Popian
  */
-public abstract class ProxyFactorySupport {
+public abstract class ProxyFactorySupport implements ClassMetadataCache {
 	private final static Logger log = LoggerFactory.getLogger(ProxyFactorySupport.class);
 	
 	/**
@@ -60,7 +64,12 @@ public abstract class ProxyFactorySupport {
 	protected static final String PROXY_CLASS_NAME_SUFFIX = "$com$asentinel$common$orm$Proxy";
 	
 
-	protected final ConcurrentCache<Class<?>, DefaultObjectFactory<?>> cache = new ConcurrentCache<>();
+	// not bounded, the proxy classes can not be redefined so evicting their factories would not release them
+	protected final ClassValueCache<DefaultObjectFactory<?>> cache = new ClassValueCache<>(true);
+	
+	protected ProxyFactorySupport() {
+		OrmMetadataRegistry.register(this);
+	}
 
 	protected abstract <T> DefaultObjectFactory<? extends T> getProxyObjectFactoryInternal(Class<T> clazz);
 	
@@ -98,6 +107,32 @@ public abstract class ProxyFactorySupport {
 		return cache.getSize();
 	}
 	
+	/**
+	 * @return the statistics of the proxy object factories cache.
+	 */
+	public final ConcurrentCache.Stats getCacheStats() {
+		return cache.getStats();
+	}
+	
+	/**
+	 * Removes the proxy object factory for the specified class. Note that the proxy class itself
+	 * can not be redefined, it will be reused if the proxy is requested again for the same class.
+	 */
+	@Override
+	public void invalidate(Class<?> clazz) {
+		cache.remove(clazz);
+	}
+
+	@Override
+	public void invalidate(ClassLoader classLoader) {
+		cache.remove(classLoader);
+	}
+
+	@Override
+	public void invalidateAll() {
+		cache.clear();
+	}
+	
 	public static Field findLoaderField(Class<?> proxyClass) {
 		Assert.assertNotNull(proxyClass, "proxyClass");
 		Field fieldLoader = ReflectionUtils.findField(proxyClass, LOADER_FIELD_NAME);
@@ -148,11 +183,22 @@ public abstract class ProxyFactorySupport {
 			throw new IllegalStateException("No code generation strategy available");
 		}
 
-		return new DefaultObjectFactory<>(
-				byteBuddyBuilder
-				.make()
-				.load(clasz.getClassLoader(), strategy)
-				.getLoaded());
+		DynamicType.Unloaded<?> unloaded = byteBuddyBuilder.make();
+		try {
+			return new DefaultObjectFactory<>(unloaded.load(clasz.getClassLoader(), strategy).getLoaded());
+		} catch (RuntimeException | LinkageError e) {
+			// the proxy class was already defined before the metadata was invalidated, 
+			// a class can not be redefined so we reuse it
+			String proxyClassName = unloaded.getTypeDescription().getName();
+			Class<?> proxyClass;
+			try {
+				proxyClass = Class.forName(proxyClassName, false, clasz.getClassLoader());
+			} catch (ClassNotFoundException e2) {
+				throw e;
+			}
+			log.debug("newObjectFactory - Reusing the existing proxy class " + proxyClassName + ".");
+			return new DefaultObjectFactory<>(proxyClass);
+		}
 	}
 
 }
@@ -52,6 +52,11 @@ public final class CollectionLazyLoadInterceptor extends AbstractLazyLoadInterce
 		return target;
 	}
 	
+	@Override
+	protected Object getId(Object proxy) {
+		return ReflectionUtils.getField(CollectionProxyFactory.findParentIdField(proxy.getClass()), proxy);
+	}
+	
 	@SuppressWarnings({ "unchecked", "rawtypes" })
 	@Override
 	protected void copyState(Collection<?> source, Object proxy) {
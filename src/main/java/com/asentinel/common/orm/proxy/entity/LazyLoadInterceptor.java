@@ -1,13 +1,11 @@
 package com.asentinel.common.orm.proxy.entity;
 
 import java.lang.reflect.Field;
-import java.lang.reflect.Modifier;
 import java.util.List;
 import java.util.function.Function;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.util.ReflectionUtils;
 
 import com.asentinel.common.orm.EntityUtils;
 import com.asentinel.common.orm.proxy.AbstractLazyLoadInterceptor;
@@ -16,6 +14,8 @@ import com.asentinel.common.orm.proxy.AbstractLazyLoadInterceptor;
  * ByteBuddy interceptor that can perfom lazy initialization of
  * the fields of the target instance. The lazy initialization is performed by loading
  * an instance and than copying the fields of the loaded instance in the target instance.
+ * The copying is delegated to the {@link StateCopier} created by the {@link ProxyFactory} for
+ * the proxied class.
  * <br><br>
  * This class should not be used directly by any client code. 
  * 
@@ -38,25 +38,15 @@ public final class LazyLoadInterceptor extends AbstractLazyLoadInterceptor<Objec
 		return target;
 	}
 	
+	@Override
+	protected Object getId(Object proxy) {
+		return EntityUtils.getEntityId(proxy);
+	}
+	
 	@Override
 	protected void copyState(Object source, Object proxy) {
-		ReflectionUtils.doWithFields(proxy.getClass().getSuperclass(), 
-			new ReflectionUtils.FieldCallback() {
-				@Override
-				public void doWith(Field field) {
-					if (Modifier.isStatic(field.getModifiers())) {
-						return;
-					}
-					
-					// Note that even the final fields will be copied, not sure why this works
-					// but this is the behavior we prefer anyway
-					
-					ReflectionUtils.makeAccessible(field);
-					Object value = ReflectionUtils.getField(field, source);
-					ReflectionUtils.setField(field, proxy, value);
-				}
-			}
-		);
+		ProxyFactory.getInstance().getStateCopier(proxy.getClass().getSuperclass())
+			.copy(source, proxy);
 	}
 	
 }
@@ -13,8 +13,10 @@ import com.asentinel.common.jdbc.ObjectFactory;
 import com.asentinel.common.orm.Entity;
 import com.asentinel.common.orm.TargetMember;
 import com.asentinel.common.orm.TargetMembersHolder;
+import com.asentinel.common.orm.mappers.EntityConstructor;
 import com.asentinel.common.orm.proxy.Proxy;
 import com.asentinel.common.orm.proxy.ProxyFactorySupport;
+import com.asentinel.common.util.ClassValueCache;
 
 import net.bytebuddy.ByteBuddy;
 import net.bytebuddy.description.method.MethodDescription;
@@ -50,6 +52,8 @@ public final class ProxyFactory extends ProxyFactorySupport {
 	private final LazyLoadInterceptor lazyLoadInterceptor = new LazyLoadInterceptor();
 	private final ToStringInterceptor toStringInterceptor = new ToStringInterceptor();
 	
+	private final ClassValueCache<StateCopier> stateCopiers = new ClassValueCache<>();
+	
 	
 	public static ProxyFactory getInstance() {
 		return proxyFactory;
@@ -67,6 +71,10 @@ public final class ProxyFactory extends ProxyFactorySupport {
 	@Override
 	@SuppressWarnings("unchecked")
 	protected <T> DefaultObjectFactory<? extends T> getProxyObjectFactoryInternal(Class<T> clazz) {
+		if (EntityConstructor.forClass(clazz) != null) {
+			throw new IllegalStateException("Dynamic proxying is not supported for class " + clazz
+					+ ", because it is an immutable entity created through its constructor.");
+		}
 		ElementMatcher<? super MethodDescription> matcher;
 		if (Entity.class.isAssignableFrom(clazz)) {
 			matcher = ElementMatchers.not(ElementMatchers.isOverriddenFrom(Entity.class));
@@ -119,7 +127,11 @@ public final class ProxyFactory extends ProxyFactorySupport {
 					byteBuddyBuilder = byteBuddyBuilder.serialVersionUid(serialVersionUid);
 				}
 				
-				return newObjectFactory(byteBuddyBuilder, clazz);
+				DefaultObjectFactory<?> objectFactory = newObjectFactory(byteBuddyBuilder, clazz);
+				// the state copier is created together with the proxy class so that
+				// the first lazy load does not pay for the field introspection
+				getStateCopier(clazz);
+				return objectFactory;
 			}
 		);
 		return proxyFactory;
@@ -134,4 +146,31 @@ public final class ProxyFactory extends ProxyFactorySupport {
 		return proxy;
 	}
 	
+	/**
+	 * @param targetClass the proxied class.
+	 * @return the {@link StateCopier} used to initialize the proxies of
+	 * 			the {@code targetClass} when they are loaded.
+	 */
+	StateCopier getStateCopier(Class<?> targetClass) {
+		return stateCopiers.get(targetClass, () -> new StateCopier(targetClass));
+	}
+	
+	@Override
+	public void invalidate(Class<?> clazz) {
+		super.invalidate(clazz);
+		stateCopiers.remove(clazz);
+	}
+
+	@Override
+	public void invalidate(ClassLoader classLoader) {
+		super.invalidate(classLoader);
+		stateCopiers.remove(classLoader);
+	}
+
+	@Override
+	public void invalidateAll() {
+		super.invalidateAll();
+		stateCopiers.clear();
+	}
+	
 }
\ No newline at end of file
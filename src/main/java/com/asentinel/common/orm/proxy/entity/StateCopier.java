@@ -0,0 +1,110 @@
+package com.asentinel.common.orm.proxy.entity;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.util.ReflectionUtils;
+
+import com.asentinel.common.util.Assert;
+
+/**
+ * Copies the state of a loaded target instance into a proxy. It is created once per proxied
+ * class by the {@link ProxyFactory}, at the same time with the proxy class, and it holds
+ * one pre-resolved {@code MethodHandle} for each instance field found in the proxied class
+ * hierarchy. This way the lazy loading does not need to introspect the class and make
+ * the fields accessible each time a proxy is loaded.
+ * <br><br>
+ * This class should not be used directly by any client code.
+ *
+ * @see ProxyFactory
+ * @see LazyLoadInterceptor
+ */
+final class StateCopier {
+
+	private static final MethodType COPY_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+	private static final MethodHandle COPY_REFLECTIVELY;
+	static {
+		try {
+			COPY_REFLECTIVELY = MethodHandles.lookup().findStatic(StateCopier.class, "copyReflectively",
+					MethodType.methodType(void.class, Field.class, Object.class, Object.class));
+		} catch (NoSuchMethodException | IllegalAccessException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	private final Class<?> targetClass;
+
+	/**
+	 * Each handle has the signature {@code (Object proxy, Object source)void}.
+	 */
+	private final MethodHandle[] fieldCopiers;
+
+	StateCopier(Class<?> targetClass) {
+		Assert.assertNotNull(targetClass, "targetClass");
+		this.targetClass = targetClass;
+		MethodHandles.Lookup lookup = MethodHandles.lookup();
+		List<MethodHandle> fieldCopiers = new ArrayList<>();
+		ReflectionUtils.doWithFields(targetClass,
+			field -> fieldCopiers.add(newFieldCopier(lookup, field)),
+			field -> !Modifier.isStatic(field.getModifiers())
+		);
+		this.fieldCopiers = fieldCopiers.toArray(new MethodHandle[fieldCopiers.size()]);
+	}
+
+	private static MethodHandle newFieldCopier(MethodHandles.Lookup lookup, Field field) {
+		ReflectionUtils.makeAccessible(field);
+		// Note that even the final fields will be copied, this is the behavior we prefer. Depending
+		// on the JVM version a setter handle may not be available for a final field, in that case we
+		// fall back to reflection for that field only
+		if (!Modifier.isFinal(field.getModifiers())) {
+			try {
+				MethodHandle getter = lookup.unreflectGetter(field);
+				MethodHandle setter = lookup.unreflectSetter(field);
+				return MethodHandles.filterArguments(setter, 1, getter).asType(COPY_TYPE);
+			} catch (IllegalAccessException e) {
+				// fall through to the reflective copier
+			}
+		}
+		return MethodHandles.insertArguments(COPY_REFLECTIVELY, 0, field);
+	}
+
+	@SuppressWarnings("unused") // called through the COPY_REFLECTIVELY handle
+	private static void copyReflectively(Field field, Object proxy, Object source) {
+		ReflectionUtils.setField(field, proxy, ReflectionUtils.getField(field, source));
+	}
+
+	/**
+	 * Copies all the instance fields declared in the proxied class hierarchy from the
+	 * {@code source} to the {@code proxy}.
+	 *
+	 * @param source the loaded target instance.
+	 * @param proxy the proxy to be initialized.
+	 */
+	void copy(Object source, Object proxy) {
+		for (MethodHandle fieldCopier: fieldCopiers) {
+			try {
+				fieldCopier.invokeExact(proxy, source);
+			} catch (RuntimeException | Error e) {
+				throw e;
+			} catch (Throwable t) {
+				throw new IllegalStateException("Failed to copy the state of the target " + targetClass.getName()
+					+ " instance into the proxy.", t);
+			}
+		}
+	}
+
+	int getFieldCount() {
+		return fieldCopiers.length;
+	}
+
+	@Override
+	public String toString() {
+		return "StateCopier [targetClass=" + targetClass.getName() + ", fieldCount=" + fieldCopiers.length + "]";
+	}
+}
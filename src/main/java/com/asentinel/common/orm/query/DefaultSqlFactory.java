@@ -52,6 +52,9 @@ public class DefaultSqlFactory implements SqlFactory {
 	
 	private final static String COUNT_SQL = "select count(*) from ( %s ) main";
 	
+	// the pagination templates do not guarantee the order of the page rows
+	private final static String IDS_SQL = "select * from ( %s ) ids order by " + ROW_INDEX_COL;
+	
 	
 	private final static ThreadLocal<Integer> descriptorId = new ThreadLocal<Integer>();
 	
@@ -74,11 +77,11 @@ public class DefaultSqlFactory implements SqlFactory {
 
 	@Override
 	public ParameterizedQuery buildParameterizedQuery(Node<?> root, String ... additionalColumns) {
-		return buildParameterizedQuery(root, true, additionalColumns);
+		return buildParameterizedQuery(root, QueryType.STANDARD, additionalColumns);
 	}
 	
 	@SuppressWarnings({ "unchecked", "rawtypes" })
-	private static ParameterizedQuery buildParameterizedQuery(Node<?> root, boolean standardQuery, String ... additionalColumns) {
+	private static ParameterizedQuery buildParameterizedQuery(Node<?> root, QueryType queryType, String ... additionalColumns) {
 		Assert.assertNotNull(root, "root");
 		Assert.assertTrue(root.isRoot(), "The Node parameter must be root.");
 		Assert.assertNotNull(root.getValue(), "root.getValue()");
@@ -92,7 +95,7 @@ public class DefaultSqlFactory implements SqlFactory {
 		final StringBuilder fields = new StringBuilder();
 		final StringBuilder tables = new StringBuilder();
 
-		if (standardQuery &&  additionalColumns != null) {
+		if (queryType != QueryType.COUNT &&  additionalColumns != null) {
 			// append additional fields
 			for (String c: additionalColumns) {
 				if (StringUtils.hasText(c)) {
@@ -120,7 +123,7 @@ public class DefaultSqlFactory implements SqlFactory {
 					sq.addMainParameters(params);
 				}
 				
-				if (standardQuery) {
+				if (queryType == QueryType.STANDARD) {
 					// fields & methods
 					Collection<String> colNames = childDescriptor.getColumnNames();
 					for (String colName: colNames) {
@@ -129,12 +132,12 @@ public class DefaultSqlFactory implements SqlFactory {
 				}
 			}
 		});
-		if (!standardQuery) {
-			// this is a count query, we add the root PK col name to the fields section
+		if (queryType != QueryType.STANDARD) {
+			// this is a count or ids query, we add the root PK col name to the fields section
 			EntityDescriptor rootEd = (EntityDescriptor) root.getValue();
 			String rootPkColumn = TargetMembersHolder.getInstance().getTargetMembers(rootEd.getEntityClass())
 					.getPkColumnMember().getPkColumnAnnotation().value();
-			addColumnName(fields, (QueryReady) rootEd, rootPkColumn, false);			
+			addColumnName(fields, (QueryReady) rootEd, rootPkColumn, queryType == QueryType.IDS);			
 		}
 		if (StringUtils.hasLength(fields)) {
 			fields.delete(fields.length() - FIELD_SEPARATOR.length(), fields.length());
@@ -334,7 +337,7 @@ public class DefaultSqlFactory implements SqlFactory {
 		TreeBreakdown treeBreakdown = breakTree(root);
 		if (!treeBreakdown.hasSubTrees()) {
 			// the entity descriptor tree has only associations
-			sq = buildParameterizedQuery(treeBreakdown.getMainTree(), false, criteria.getMainAdditionalColumns());
+			sq = buildParameterizedQuery(treeBreakdown.getMainTree(), QueryType.COUNT, criteria.getMainAdditionalColumns());
 			StringBuilder sql = new StringBuilder(sq.getSql());
 			appendWhereClause(sql, criteria);
 			String q = String.format(COUNT_SQL, sql.toString());
@@ -346,7 +349,7 @@ public class DefaultSqlFactory implements SqlFactory {
 			return sq;
 		} else {
 			// the entity descriptor tree has at least one entity that contains a collection
-			sq = buildParameterizedQuery(treeBreakdown.getMainTree(), false, criteria.getMainAdditionalColumns());
+			sq = buildParameterizedQuery(treeBreakdown.getMainTree(), QueryType.COUNT, criteria.getMainAdditionalColumns());
 			StringBuilder sql = new StringBuilder(sq.getSql());
 			List<Object> params = appendOutsideJoins(sql, criteria, treeBreakdown);
 			sq.addMainParameters(params);
@@ -365,6 +368,38 @@ public class DefaultSqlFactory implements SqlFactory {
 	
 	
 	
+	@Override
+	public ParameterizedQuery buildPaginatedIdsParameterizedQuery(QueryCriteria criteria, boolean useNamedParams) {
+		Assert.assertNotNull(criteria, "criteria");
+		
+		long t0 = 0;
+		if (log.isTraceEnabled()) {
+			t0 = System.nanoTime(); 
+		}
+		Node<?> root = criteria.getQueryReadyNode();
+		Assert.assertNotNull(root, "root");
+		TreeBreakdown treeBreakdown = breakTree(root);
+		ParameterizedQuery sq = buildParameterizedQuery(treeBreakdown.getMainTree(), QueryType.IDS, 
+				combineAdditionalColumns(sqlTemplates, criteria));
+		StringBuilder sql = new StringBuilder(sq.getSql());
+		List<Object> params = appendOutsideJoins(sql, criteria, treeBreakdown);
+		sq.addMainParameters(params);
+		appendWhereClause(sql, criteria);
+		appendGroupByClause(sql, criteria, treeBreakdown);
+		appendHavingClause(sql, criteria);			
+		appendOrderByClause(sql, criteria);
+		String sqlTemplate = useNamedParams 
+				? sqlTemplates.getPaginationSqlOnlyAssociationsNamed() : sqlTemplates.getPaginationSqlOnlyAssociations();
+		String q = String.format(IDS_SQL, String.format(sqlTemplate, sql.toString(), ""));
+		if (log.isTraceEnabled()) {
+			long t1 = System.nanoTime();
+			log.trace("buildPaginatedIdsQuery - Query built in " + Utils.nanosToMillis(t1 - t0)  + " ms. Query string length: " + q.length());
+		}
+		sq.setSql(q);
+		return sq;
+	}
+	
+	
 	// descriptor id methods
 	
 	/**
@@ -885,4 +920,13 @@ public class DefaultSqlFactory implements SqlFactory {
 		}
 	}
 
+	
+	private enum QueryType {
+		/** all the columns of the tree */
+		STANDARD,
+		/** only the root id, without alias */
+		COUNT,
+		/** only the root id with alias and the additional columns */
+		IDS
+	}
 }
@@ -1,10 +1,16 @@
 package com.asentinel.common.orm.query;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 
 import com.asentinel.common.collections.tree.Node;
 import com.asentinel.common.collections.tree.SimpleNode;
 import com.asentinel.common.jdbc.SqlQuery;
+import com.asentinel.common.jdbc.arrays.Array;
 import com.asentinel.common.jdbc.flavors.SqlTemplates;
 import com.asentinel.common.orm.Entity;
 import com.asentinel.common.orm.EntityBuilder;
@@ -91,6 +97,58 @@ public interface SqlFactory {
 	 */
 	ParameterizedQuery buildParameterizedQuery(Node<?> root, String ... additionalColumns);
 
+	/**
+	 * Creates a sql query from a tree of {@link QueryReady} like {@link #buildParameterizedQuery(Node, String...)}
+	 * and restricts it to the rows where the specified column has one of the specified values. The values are
+	 * passed as a single array parameter if the {@link SqlTemplates} support arrays of their type (see 
+	 * {@link SqlTemplates#getSqlArrayTypeName(Class)}), otherwise as one parameter for each value. The {@code null}
+	 * values are ignored.
+	 * 
+	 * @param root the root of the tree.
+	 * @param column the column to restrict, qualified with its table alias.
+	 * @param values the values of the column, the caller should limit their number if the database
+	 * 			restricts the number of parameters of a statement.
+	 * @param additionalColumns columns that need to be added to the SELECT statement created
+	 * 			by this method, other than those found in the entities.
+	 * @return the {@link ParameterizedQuery} encapsulating the SQL string and the parameters, the
+	 * 			values parameters are the last main parameters.
+	 */
+	default ParameterizedQuery buildParameterizedInQuery(Node<?> root, String column, Collection<?> values, 
+			String ... additionalColumns) {
+		Assert.assertNotEmpty(column, "column");
+		Assert.assertNotNull(values, "values");
+		List<Object> params = new ArrayList<>(values.size());
+		Class<?> type = null;
+		for (Object value: values) {
+			if (value == null) {
+				continue;
+			}
+			if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+				value = ((Number) value).longValue();
+			}
+			type = type == null || type == value.getClass() ? value.getClass() : Object.class;
+			params.add(value);
+		}
+		ParameterizedQuery pq = buildParameterizedQuery(root, additionalColumns);
+		StringBuilder sql = new StringBuilder(pq.getSql()).append(" where ").append(column);
+		String arrayType = type != null ? getSqlTemplates().getSqlArrayTypeName(type) : null;
+		if (arrayType != null) {
+			sql.append(getSqlTemplates().getSqlForInArray());
+			params = Collections.singletonList(new Array(arrayType, params.toArray()));
+		} else if (params.isEmpty()) {
+			sql.append(" in (null)");
+		} else {
+			sql.append(" in (");
+			for (int i = 0; i < params.size(); i++) {
+				sql.append(i == 0 ? "?" : ", ?");
+			}
+			sql.append(")");
+		}
+		pq.setSql(sql.toString());
+		pq.addMainParameters(params);
+		return pq;
+	}
+
 	/**
 	 * @see #buildParameterizedQuery(QueryCriteria)
 	 */
@@ -300,5 +358,33 @@ public interface SqlFactory {
 	 * @see QueryCriteria
 	 */
 	ParameterizedQuery buildCountParameterizedQuery(QueryCriteria criteria);
+	
+	/**
+	 * Creates a paginated query that pulls only the root ids for a range of records, the first phase
+	 * of a two phase pagination. The collections in the {@link QueryCriteria} tree are joined only if 
+	 * the group by is enabled (see {@link QueryCriteria#isUseGroupByOnMainQuery()}), so the where, group by, having
+	 * and order by clauses are applied as in the {@link #buildPaginatedParameterizedQuery(QueryCriteria)} query.
+	 * The result set contains the root id column (aliased as in the other queries, so it can be read with the root 
+	 * {@link EntityDescriptor#getEntityIdRowMapper()}) and the row index column, and it is ordered by the row index column. 
+	 * The secondary where clause is ignored.
+	 * <br>
+	 * <b>When the user executes the query, he must REMEMBER to pass the pagination parameters as the last
+	 * parameters, just like for the {@link #buildPaginatedParameterizedQuery(QueryCriteria, boolean)} query.</b>
+	 * 
+	 * @param criteria the criteria object.
+	 * @param useNamedParams if true a named parameters pagination query will be used. If false
+	 * 			a query with question mark placeholders will be used.
+	 * @return the {@link ParameterizedQuery} encapsulating the SQL string and the parameters (if any).
+	 * 
+	 * @see #buildPaginatedParameterizedQuery(QueryCriteria, boolean)
+	 */
+	ParameterizedQuery buildPaginatedIdsParameterizedQuery(QueryCriteria criteria, boolean useNamedParams);
+	
+	/**
+	 * @see #buildPaginatedIdsParameterizedQuery(QueryCriteria, boolean)
+	 */
+	default ParameterizedQuery buildPaginatedIdsParameterizedQuery(QueryCriteria criteria) {
+		return buildPaginatedIdsParameterizedQuery(criteria, false);
+	}
 
 }
@@ -0,0 +1,143 @@
+package com.asentinel.common.orm.shard;
+
+import org.springframework.util.StringUtils;
+
+import com.asentinel.common.orm.ClassMetadataCache;
+import com.asentinel.common.orm.EntityUtils;
+import com.asentinel.common.orm.OrmMetadataRegistry;
+import com.asentinel.common.orm.TargetMember;
+import com.asentinel.common.orm.TargetMembers;
+import com.asentinel.common.orm.TargetMembersHolder;
+import com.asentinel.common.orm.mappers.Table;
+import com.asentinel.common.orm.persist.NewEntityDetector;
+import com.asentinel.common.orm.persist.SimpleNewEntityDetector;
+import com.asentinel.common.util.ClassValueCache;
+import com.asentinel.common.util.Assert;
+
+/**
+ * Utility methods for extracting the shard key of the entities, see {@link Table#shardKey()}.
+ *
+ * @see ShardingStrategy
+ * @see ShardedOrmTemplate
+ */
+public final class ShardKeys {
+
+	private static final NewEntityDetector newEntityDetector = new SimpleNewEntityDetector();
+
+	private ShardKeys() {}
+
+	/**
+	 * @param entityType the entity class.
+	 * @return the member mapped to the shard key column of the entity class.
+	 * @throws IllegalArgumentException if the class is not an entity or the shard key column is not mapped.
+	 */
+	public static TargetMember getShardKeyMember(Class<?> entityType) {
+		Assert.assertNotNull(entityType, "entityType");
+		return ShardKeyMembers.instance.getShardKeyMember(entityType);
+	}
+
+	private static TargetMember getShardKeyMemberInternal(Class<?> entityType) {
+		TargetMembers targetMembers = TargetMembersHolder.getInstance().getTargetMembers(entityType);
+		Table table = targetMembers.getTableAnnotation();
+		if (table == null) {
+			throw new IllegalArgumentException("Class " + entityType.getName() + " is not an annotated entity.");
+		}
+		String column = table.shardKey();
+		TargetMember pkMember = targetMembers.getPkColumnMember();
+		if (!StringUtils.hasText(column)) {
+			if (pkMember == null) {
+				throw new IllegalArgumentException("Class " + entityType.getName() + " has no id and no shard key.");
+			}
+			return pkMember;
+		}
+		if (pkMember != null && column.equalsIgnoreCase(pkMember.getPkColumnAnnotation().value())) {
+			return pkMember;
+		}
+		for (TargetMember member: targetMembers.getColumnMembers()) {
+			if (column.equalsIgnoreCase(member.getColumnAnnotation().value())) {
+				return member;
+			}
+		}
+		throw new IllegalArgumentException("The shard key column " + column + " is not mapped in class " + entityType.getName() + ".");
+	}
+
+	/**
+	 * @return {@code true} if the shard key of the entity class is its id.
+	 */
+	public static boolean isIdShardKey(Class<?> entityType) {
+		TargetMember member = getShardKeyMember(entityType);
+		return member == TargetMembersHolder.getInstance().getTargetMembers(entityType).getPkColumnMember();
+	}
+
+	/**
+	 * @param entity the entity.
+	 * @return the shard key value of the entity.
+	 * @throws IllegalArgumentException if the entity has no shard key, its value is {@code null} or
+	 * 			the shard key is the id and the id is not assigned.
+	 */
+	public static Object getShardKey(Object entity) {
+		Assert.assertNotNull(entity, "entity");
+		Class<?> entityType = entity.getClass();
+		Object key;
+		if (isIdShardKey(entityType)) {
+			key = checkAssignedId(EntityUtils.getEntityId(entity), entityType);
+		} else {
+			key = getShardKeyMember(entityType).getValue(entity);
+		}
+		if (key == null) {
+			throw new IllegalArgumentException("The shard key of the entity " + entity + " is null.");
+		}
+		return key;
+	}
+
+	/**
+	 * Validates an id used as shard key. The ids generated by the database on insert (see {@link SimpleNewEntityDetector})
+	 * can not select a shard, because the shard must be known before the insert.
+	 * 
+	 * @param id the id.
+	 * @param entityType the entity class, used only for the error message.
+	 * @return the id.
+	 * @throws IllegalArgumentException if the id is not assigned.
+	 */
+	public static Object checkAssignedId(Object id, Class<?> entityType) {
+		if (newEntityDetector.isNew(id)) {
+			throw new IllegalArgumentException("The id " + id + " of the " + entityType.getName() + " entity is its shard key, "
+					+ "so it must be assigned before the entity is routed to a shard.");
+		}
+		return id;
+	}
+
+
+	/**
+	 * Caches the shard key member of the entity classes.
+	 */
+	private static final class ShardKeyMembers implements ClassMetadataCache {
+
+		private static final ShardKeyMembers instance = new ShardKeyMembers();
+
+		private final ClassValueCache<TargetMember> cache = new ClassValueCache<>();
+
+		private ShardKeyMembers() {
+			OrmMetadataRegistry.register(this);
+		}
+
+		TargetMember getShardKeyMember(Class<?> entityType) {
+			return cache.get(entityType, () -> getShardKeyMemberInternal(entityType));
+		}
+
+		@Override
+		public void invalidate(Class<?> clazz) {
+			cache.remove(clazz);
+		}
+
+		@Override
+		public void invalidate(ClassLoader classLoader) {
+			cache.remove(classLoader);
+		}
+
+		@Override
+		public void invalidateAll() {
+			cache.clear();
+		}
+	}
+}
@@ -0,0 +1,280 @@
+package com.asentinel.common.orm.shard;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.asentinel.common.orm.OrmOperations;
+import com.asentinel.common.orm.jql.AsyncExecutors;
+import com.asentinel.common.orm.jql.Page;
+import com.asentinel.common.util.Assert;
+
+/**
+ * Entry point for entities distributed over multiple databases (shards). Each shard is accessed
+ * through its own {@link OrmOperations}, the shard of an entity is determined by applying the
+ * {@link ShardingStrategy} to its shard key (see {@link com.asentinel.common.orm.mappers.Table#shardKey()}).
+ * <ul>
+ * <li>the queries that target a known shard key are executed on a single shard, see {@link #forShardKey(Object)}.
+ * <li>the queries without a shard key are executed on all the shards in parallel and their results
+ * 		are merged, see {@link #scatter(Function, Comparator)} and {@link #scatterPage(long, long, PageQuery, Comparator)}.
+ * <li>the writes are routed to the shard of each entity, see {@link #getUpdater()}.
+ * </ul>
+ * Usage example:
+ * <pre>
+ * 	ShardedOrmTemplate sharded = new ShardedOrmTemplate(List.of(orm0, orm1), ShardingStrategy.hash());
+ * 	sharded.getUpdater().update(invoice);
+ * 	List&lt;Invoice&gt; invoices = sharded.forShardKey(tenantId)
+ * 		.newSqlBuilder(Invoice.class).select().where().column("tenant_id").eq(tenantId).exec();
+ * 	List&lt;Invoice&gt; all = sharded.scatter(
+ * 		orm -&gt; orm.newSqlBuilder(Invoice.class).select().orderBy().id().exec(),
+ * 		Comparator.comparing(Invoice::getId));
+ * </pre>
+ *
+ * The shard queries are executed in parallel using the executor returned by {@link #getExecutor()}, unless a
+ * transaction is active on the current thread, in which case they are executed one after the other
+ * on the current thread.
+ *
+ * @see ShardingStrategy
+ * @see ShardedUpdater
+ */
+public class ShardedOrmTemplate {
+
+	private final List<OrmOperations> shards;
+	private final ShardedUpdater updater;
+
+	private Executor executor;
+
+	/**
+	 * @param shards the {@code OrmOperations} of the shards, the shard index is the index in this list.
+	 * @param strategy the sharding strategy.
+	 */
+	public ShardedOrmTemplate(List<? extends OrmOperations> shards, ShardingStrategy strategy) {
+		Assert.assertNotNull(shards, "shards");
+		this.shards = List.copyOf(shards);
+		this.updater = new ShardedUpdater(this.shards, strategy);
+	}
+
+	public int getShardCount() {
+		return shards.size();
+	}
+
+	/**
+	 * @return the {@code OrmOperations} of the shard with the specified index.
+	 */
+	public OrmOperations getShard(int index) {
+		return shards.get(index);
+	}
+
+	/**
+	 * @return the {@code OrmOperations} of the shard holding the entities with the specified shard key.
+	 */
+	public OrmOperations forShardKey(Object shardKey) {
+		return shards.get(updater.getShard(shardKey));
+	}
+
+	/**
+	 * @return the {@code OrmOperations} of the shard holding the specified entity.
+	 */
+	public OrmOperations forEntity(Object entity) {
+		return shards.get(updater.getShardForEntity(entity));
+	}
+
+	/**
+	 * @return the {@code Updater} that routes the writes to the shard of each entity.
+	 */
+	public ShardedUpdater getUpdater() {
+		return updater;
+	}
+
+	/**
+	 * @return the executor for the parallel shard queries, if none is set the shared
+	 * 			executor returned by {@link AsyncExecutors#getDefault()} is used.
+	 */
+	public Executor getExecutor() {
+		return executor != null ? executor : AsyncExecutors.getDefault();
+	}
+
+	public void setExecutor(Executor executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * Loads an entity by id. If the id is the shard key the entity is loaded from its shard, otherwise
+	 * all the shards are queried.
+	 *
+	 * @throws EmptyResultDataAccessException if the entity is not found.
+	 */
+	public <T> T getEntity(Class<T> type, Object entityId) {
+		Assert.assertNotNull(type, "type");
+		Assert.assertNotNull(entityId, "entityId");
+		if (ShardKeys.isIdShardKey(type)) {
+			return forShardKey(ShardKeys.checkAssignedId(entityId, type)).getEntity(type, entityId);
+		}
+		List<T> entities = scatter(orm -> orm.getOptional(type, entityId)
+				.map(List::of)
+				.orElse(List.of()));
+		if (entities.isEmpty()) {
+			throw new EmptyResultDataAccessException(1);
+		}
+		if (entities.size() > 1) {
+			throw new IncorrectResultSizeDataAccessException(1, entities.size());
+		}
+		return entities.get(0);
+	}
+
+	/**
+	 * Executes a query on all the shards and concatenates the results in the shard order.
+	 *
+	 * @see #scatter(Function, Comparator)
+	 */
+	public <T> List<T> scatter(Function<? super OrmOperations, ? extends List<? extends T>> query) {
+		return scatter(query, null);
+	}
+
+	/**
+	 * Executes a query on all the shards and merges the results. The query must sort its results
+	 * in the order defined by the {@code order} comparator, the sorted results of the shards are merged
+	 * preserving that order.
+	 *
+	 * @param query the query to execute on each shard.
+	 * @param order the order of the results, if {@code null} the results are concatenated in the shard order.
+	 * @return the merged results.
+	 */
+	public <T> List<T> scatter(Function<? super OrmOperations, ? extends List<? extends T>> query, Comparator<? super T> order) {
+		Assert.assertNotNull(query, "query");
+		return merge(onAllShards(query), order);
+	}
+
+	/**
+	 * Executes a paginated query on all the shards and merges the results. The query is executed on
+	 * each shard for the indexes {@code [0, endIndex)}, since any of these rows could be in the requested page,
+	 * the merged results are then cut to {@code [beginIndex, endIndex)}. The count of the returned page is the sum
+	 * of the shard counts. Note that the number of rows fetched from each shard grows with the page index,
+	 * so deep pages are expensive.
+	 *
+	 * @param beginIndex the first item of the page (inclusive, 0-based).
+	 * @param endIndex the last item of the page (exclusive, 0-based).
+	 * @param query the paginated query, it must sort its results in the order defined by the {@code order} comparator.
+	 * @param order the order of the results.
+	 * @return the page.
+	 */
+	public <T> Page<T> scatterPage(long beginIndex, long endIndex, PageQuery<T> query, Comparator<? super T> order) {
+		Assert.assertTrue(beginIndex >= 0 && beginIndex <= endIndex, "Invalid page indexes.");
+		Assert.assertNotNull(query, "query");
+		Assert.assertNotNull(order, "order");
+		List<Page<T>> pages = onAllShards(shard -> query.query(shard, 0, endIndex));
+		long count = 0;
+		for (Page<T> page: pages) {
+			count += page.getCount();
+		}
+		List<T> items = merge(pages.stream().map(Page::getItems).collect(Collectors.toList()), order);
+		int from = (int) Math.min(beginIndex, items.size());
+		int to = (int) Math.min(endIndex, items.size());
+		return new Page<>(new ArrayList<>(items.subList(from, to)), count);
+	}
+
+	private <R> List<R> onAllShards(Function<? super OrmOperations, ? extends R> task) {
+		List<R> results = new ArrayList<>(shards.size());
+		if (shards.size() == 1 || TransactionSynchronizationManager.isActualTransactionActive()) {
+			for (OrmOperations shard: shards) {
+				results.add(task.apply(shard));
+			}
+			return results;
+		}
+		Executor executor = getExecutor();
+		List<CompletableFuture<? extends R>> futures = new ArrayList<>(shards.size());
+		for (OrmOperations shard: shards) {
+			futures.add(CompletableFuture.supplyAsync(() -> task.apply(shard), executor));
+		}
+		try {
+			for (CompletableFuture<? extends R> future: futures) {
+				results.add(future.join());
+			}
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw e;
+		}
+		return results;
+	}
+
+	private static <T> List<T> merge(List<? extends List<? extends T>> lists, Comparator<? super T> order) {
+		List<T> merged = new ArrayList<>();
+		if (order == null) {
+			for (List<? extends T> list: lists) {
+				merged.addAll(list);
+			}
+			return merged;
+		}
+		// k-way merge, the ties are resolved in the shard order
+		PriorityQueue<Head<T>> heads = new PriorityQueue<>(Math.max(1, lists.size()), (h1, h2) -> {
+			int c = order.compare(h1.value, h2.value);
+			return c != 0 ? c : Integer.compare(h1.shard, h2.shard);
+		});
+		for (int i = 0; i < lists.size(); i++) {
+			Iterator<? extends T> iterator = lists.get(i).iterator();
+			if (iterator.hasNext()) {
+				heads.add(new Head<>(i, iterator));
+			}
+		}
+		while (!heads.isEmpty()) {
+			Head<T> head = heads.poll();
+			merged.add(head.value);
+			if (head.advance()) {
+				heads.add(head);
+			}
+		}
+		return merged;
+	}
+
+	@Override
+	public String toString() {
+		return "ShardedOrmTemplate [shards=" + shards.size() + ", updater=" + updater + "]";
+	}
+
+
+	/**
+	 * Paginated query executed on each shard by {@link ShardedOrmTemplate#scatterPage(long, long, PageQuery, Comparator)}.
+	 */
+	@FunctionalInterface
+	public interface PageQuery<T> {
+
+		/**
+		 * @return the page {@code [beginIndex, endIndex)} from the specified shard, for example
+		 * 			{@code shard.newSqlBuilder(Invoice.class).pagedSelect(beginIndex, endIndex).pagedOrderBy().id().execForPage()}.
+		 */
+		Page<T> query(OrmOperations shard, long beginIndex, long endIndex);
+	}
+
+	private static final class Head<T> {
+		private final int shard;
+		private final Iterator<? extends T> iterator;
+		private T value;
+
+		Head(int shard, Iterator<? extends T> iterator) {
+			this.shard = shard;
+			this.iterator = iterator;
+			this.value = iterator.next();
+		}
+
+		boolean advance() {
+			if (!iterator.hasNext()) {
+				return false;
+			}
+			value = iterator.next();
+			return true;
+		}
+	}
+}
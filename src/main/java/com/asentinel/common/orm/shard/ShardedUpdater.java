@@ -0,0 +1,134 @@
+package com.asentinel.common.orm.shard;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.asentinel.common.orm.mappers.dynamic.DynamicColumn;
+import com.asentinel.common.orm.persist.UpdateSettings;
+import com.asentinel.common.orm.persist.Updater;
+import com.asentinel.common.util.Assert;
+
+/**
+ * {@link Updater} that routes each write to the {@code Updater} of the shard holding the entity. The
+ * shard is determined by applying the {@link ShardingStrategy} to the shard key of the entity, see
+ * {@link ShardKeys#getShardKey(Object)}. The collections are split by shard, each shard receives its
+ * entities in a single call, so the batching of the shard {@code Updater} is preserved.
+ * <br><br>
+ * The shard key must be set before the entity is written, so if the shard key is the id, the ids have to
+ * be assigned by the application (for example from a sequence or as {@code UUID}s) before the insert.
+ * The writes to different shards are not atomic, they are performed one after the other, each in the
+ * transaction (if any) of its shard.
+ *
+ * @see ShardedOrmTemplate
+ */
+public class ShardedUpdater implements Updater {
+
+	private final List<Updater> shards;
+	private final ShardingStrategy strategy;
+
+	/**
+	 * @param shards the {@code Updater}s of the shards, normally
+	 * 			{@link com.asentinel.common.orm.persist.SimpleUpdater}s each using the {@code SqlQuery} of its shard.
+	 * @param strategy the sharding strategy.
+	 */
+	public ShardedUpdater(List<? extends Updater> shards, ShardingStrategy strategy) {
+		Assert.assertNotNull(shards, "shards");
+		Assert.assertTrue(!shards.isEmpty(), "At least one shard is required.");
+		Assert.assertNotNull(strategy, "strategy");
+		this.shards = List.copyOf(shards);
+		this.strategy = strategy;
+	}
+
+	public int getShardCount() {
+		return shards.size();
+	}
+
+	/**
+	 * @return the index of the shard for the specified shard key.
+	 */
+	public int getShard(Object shardKey) {
+		Assert.assertNotNull(shardKey, "shardKey");
+		int shard = strategy.getShard(shardKey, shards.size());
+		if (shard < 0 || shard >= shards.size()) {
+			throw new IllegalStateException("The sharding strategy returned the invalid shard " + shard
+					+ " for the key " + shardKey + ".");
+		}
+		return shard;
+	}
+
+	/**
+	 * @return the index of the shard for the specified entity.
+	 */
+	public int getShardForEntity(Object entity) {
+		return getShard(ShardKeys.getShardKey(entity));
+	}
+
+	private <E> Map<Integer, List<E>> groupByShard(Collection<E> entities) {
+		Map<Integer, List<E>> groups = new LinkedHashMap<>();
+		for (E entity: entities) {
+			groups.computeIfAbsent(getShardForEntity(entity), k -> new ArrayList<>()).add(entity);
+		}
+		return groups;
+	}
+
+	@Override
+	public int update(Object entity, UpdateSettings<? extends DynamicColumn> settings) {
+		return shards.get(getShardForEntity(entity)).update(entity, settings);
+	}
+
+	@Override
+	public int upsert(Object entity, UpdateSettings<? extends DynamicColumn> settings, Object... hints) {
+		return shards.get(getShardForEntity(entity)).upsert(entity, settings, hints);
+	}
+
+	@Override
+	public <E> void update(Collection<E> entities, UpdateSettings<? extends DynamicColumn> settings) {
+		if (entities == null || entities.isEmpty()) {
+			return;
+		}
+		groupByShard(entities).forEach((shard, group) -> shards.get(shard).update(group, settings));
+	}
+
+	@Override
+	public <E> void upsert(Collection<E> entities, UpdateSettings<? extends DynamicColumn> settings, Object... hints) {
+		if (entities == null || entities.isEmpty()) {
+			return;
+		}
+		groupByShard(entities).forEach((shard, group) -> shards.get(shard).upsert(group, settings, hints));
+	}
+
+	/**
+	 * If the shard key of the entity type is its id, each id is deleted from its shard. Otherwise
+	 * the delete is performed on all the shards.
+	 */
+	@Override
+	public int delete(Class<?> entityType, Object... ids) {
+		Assert.assertNotNull(entityType, "entityType");
+		if (ids == null || ids.length == 0) {
+			return 0;
+		}
+		int count = 0;
+		if (ShardKeys.isIdShardKey(entityType)) {
+			Map<Integer, List<Object>> groups = new LinkedHashMap<>();
+			for (Object id: ids) {
+				groups.computeIfAbsent(getShard(ShardKeys.checkAssignedId(id, entityType)), k -> new ArrayList<>()).add(id);
+			}
+			for (Map.Entry<Integer, List<Object>> e: groups.entrySet()) {
+				count += shards.get(e.getKey()).delete(entityType, e.getValue().toArray());
+			}
+		} else {
+			for (Updater shard: shards) {
+				count += shard.delete(entityType, ids);
+			}
+		}
+		return count;
+	}
+
+	@Override
+	public String toString() {
+		return "ShardedUpdater [shards=" + shards.size() + ", strategy=" + strategy + "]";
+	}
+}
@@ -0,0 +1,73 @@
+package com.asentinel.common.orm.shard;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+import com.asentinel.common.util.Assert;
+
+/**
+ * Maps a shard key value to the index of the database shard that holds the entity.
+ * Implementations must be deterministic, the same key must always be mapped to the
+ * same shard for the same number of shards.
+ *
+ * @see ShardedOrmTemplate
+ * @see ShardKeys
+ */
+@FunctionalInterface
+public interface ShardingStrategy {
+
+	/**
+	 * @param shardKey the shard key value, never {@code null}.
+	 * @param shardCount the number of shards.
+	 * @return the index of the shard, between {@code 0} and {@code shardCount - 1}.
+	 */
+	int getShard(Object shardKey, int shardCount);
+
+	/**
+	 * Hash based strategy, it distributes the keys evenly. The supported keys are the
+	 * integral numbers, the {@code String}s, the {@code UUID}s and the {@code Enum}s, these
+	 * have a hash code that does not change between JVM runs.
+	 */
+	static ShardingStrategy hash() {
+		return (shardKey, shardCount) -> {
+			int hash;
+			if (shardKey instanceof Long || shardKey instanceof Integer
+					|| shardKey instanceof Short || shardKey instanceof Byte) {
+				hash = Long.hashCode(((Number) shardKey).longValue());
+			} else if (shardKey instanceof String || shardKey instanceof UUID) {
+				hash = shardKey.hashCode();
+			} else if (shardKey instanceof Enum) {
+				hash = ((Enum<?>) shardKey).name().hashCode();
+			} else {
+				throw new IllegalArgumentException("Unsupported shard key type " + shardKey.getClass().getName() + ".");
+			}
+			return Math.floorMod(hash, shardCount);
+		};
+	}
+
+	/**
+	 * Range based strategy for numeric keys. The shard {@code i} holds the keys lower than
+	 * {@code upperBounds[i]} and greater than or equal to {@code upperBounds[i - 1]}, the last shard
+	 * holds the keys greater than or equal to the last bound. The number of shards must be
+	 * {@code upperBounds.length + 1}.
+	 *
+	 * @param upperBounds the exclusive upper bounds of the shards except the last one, in ascending order.
+	 */
+	static ShardingStrategy ranges(long ... upperBounds) {
+		Assert.assertNotNull(upperBounds, "upperBounds");
+		long[] bounds = upperBounds.clone();
+		for (int i = 1; i < bounds.length; i++) {
+			Assert.assertTrue(bounds[i - 1] < bounds[i], "The upper bounds must be in ascending order.");
+		}
+		return (shardKey, shardCount) -> {
+			Assert.assertTrue(shardCount == bounds.length + 1,
+					"Expected " + (bounds.length + 1) + " shards for the bounds " + Arrays.toString(bounds) + ".");
+			if (!(shardKey instanceof Number)) {
+				throw new IllegalArgumentException("Unsupported shard key type " + shardKey.getClass().getName() + ".");
+			}
+			int index = Arrays.binarySearch(bounds, ((Number) shardKey).longValue());
+			// an exact match belongs to the next shard, the bound is exclusive
+			return index >= 0 ? index + 1 : -index - 1;
+		};
+	}
+}
@@ -0,0 +1,222 @@
+package com.asentinel.common.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache implementation for values calculated for a {@link Class}. It is based on
+ * {@link ClassValue}, so the values are stored with the key class and not in a map
+ * held by this cache. This has 2 benefits compared to a {@link ConcurrentCache} keyed
+ * by class or class name:
+ * <li> the lookup does not need to hash the key;
+ * <li> the cache does not prevent the key class and its class loader from being unloaded,
+ * as long as the values do not reference this cache.
+ * <br><br>
+ * Like the {@link ConcurrentCache} it ensures that the value for a class will be calculated
+ * exactly once under concurrent conditions. Unlike the {@code ConcurrentCache} a failed calculation
+ * is not cached, it will be retried on the next call. A value whose calculation overlaps a removal
+ * is not cached either, it is calculated again so that a removal can not be undone by a stale value.
+ * <br>
+ * Entries can be explicitly removed for a class, for all the classes loaded by a class loader or all
+ * at once. The cache is bounded by the number of classes, so it has no maximum size, but it can record
+ * the hits and misses (see {@link #getStats()}).
+ *
+ * @see ConcurrentCache
+ */
+public class ClassValueCache<V> {
+
+	private volatile ClassValue<Slot<V>> classValue = newClassValue();
+
+	// tracks the classes with a calculated value, the keys are weak so this
+	// does not prevent the classes from being unloaded
+	private final Map<Class<?>, Boolean> classes = Collections.synchronizedMap(new WeakHashMap<>());
+
+	// incremented by every removal, guarded by the classes lock; a value calculated
+	// while a removal happened is not stored because it may be stale
+	private volatile long generation;
+
+	private final boolean recordStats;
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * Creates a cache that does not record statistics.
+	 */
+	public ClassValueCache() {
+		this(false);
+	}
+
+	/**
+	 * @param recordStats whether the hits and misses are counted. If {@code false}
+	 * 			the {@link #getStats()} counters are always {@code 0}.
+	 */
+	public ClassValueCache(boolean recordStats) {
+		this.recordStats = recordStats;
+	}
+
+	private static <V> ClassValue<Slot<V>> newClassValue() {
+		return new ClassValue<Slot<V>>() {
+
+			@Override
+			protected Slot<V> computeValue(Class<?> type) {
+				return new Slot<>();
+			}
+		};
+	}
+
+	/**
+	 * If there is no value for the {@code key} in the cache, this method calculates the value for
+	 * the {@code key} using the {@code supplier} {@link Callable} implementation.
+	 * Otherwise gets the value from the cache.
+	 *
+	 * @param key the class for which the value is requested.
+	 * @param supplier a {@link Callable} implementation used to calculate the value for the
+	 * 			specified key if that key is not yet present in the cache. The {@code supplier} can not
+	 * 			be {@code null}.
+	 * @return the value for the specified {@code key}.
+	 */
+	public final V get(Class<?> key, Callable<V> supplier) {
+		Assert.assertNotNull(key, "key");
+		Assert.assertNotNull(supplier, "supplier");
+		while (true) {
+			long startGeneration = generation;
+			Slot<V> slot = classValue.get(key);
+			if (slot.computed) {
+				hit();
+				return slot.value;
+			}
+			synchronized (slot) {
+				if (slot.computed) {
+					hit();
+					return slot.value;
+				}
+				V value;
+				try {
+					value = supplier.call();
+				} catch (RuntimeException e) {
+					throw e;
+				} catch (Exception e) {
+					throw new RuntimeException(e);
+				}
+				synchronized (classes) {
+					if (generation == startGeneration) {
+						slot.value = value;
+						slot.computed = true;
+						classes.put(key, Boolean.TRUE);
+						if (recordStats) {
+							misses.increment();
+						}
+						return value;
+					}
+				}
+				// a removal happened while the value was calculated, so the value
+				// may have been calculated from invalidated state, calculate it again
+			}
+		}
+	}
+
+	private void hit() {
+		if (recordStats) {
+			hits.increment();
+		}
+	}
+
+	/**
+	 * Removes the value for the specified class.
+	 */
+	public void remove(Class<?> key) {
+		Assert.assertNotNull(key, "key");
+		synchronized (classes) {
+			generation++;
+			classValue.remove(key);
+			classes.remove(key);
+		}
+	}
+
+	/**
+	 * Removes the values for all the classes loaded by the specified class loader
+	 * or by any of its descendants.
+	 */
+	public void remove(ClassLoader classLoader) {
+		Assert.assertNotNull(classLoader, "classLoader");
+		List<Class<?>> keys;
+		synchronized (classes) {
+			keys = new ArrayList<>(classes.keySet());
+		}
+		for (Class<?> key: keys) {
+			if (isLoadedBy(key, classLoader)) {
+				remove(key);
+			}
+		}
+	}
+
+	private static boolean isLoadedBy(Class<?> clazz, ClassLoader classLoader) {
+		ClassLoader cl = clazz.getClassLoader();
+		while (cl != null) {
+			if (cl == classLoader) {
+				return true;
+			}
+			cl = cl.getParent();
+		}
+		return false;
+	}
+
+	/**
+	 * Removes all the values.
+	 */
+	public void clear() {
+		// the values held by the previous ClassValue are released once it becomes unreachable
+		synchronized (classes) {
+			generation++;
+			classValue = newClassValue();
+			classes.clear();
+		}
+	}
+
+	/**
+	 * @return the number of classes with a value in the cache.
+	 */
+	public int getSize() {
+		return classes.size();
+	}
+
+	/**
+	 * @return a snapshot of the values in the cache.
+	 */
+	public List<V> getValues() {
+		List<Class<?>> keys;
+		ClassValue<Slot<V>> classValue;
+		synchronized (classes) {
+			keys = new ArrayList<>(classes.keySet());
+			classValue = this.classValue;
+		}
+		List<V> values = new ArrayList<>(keys.size());
+		for (Class<?> key: keys) {
+			Slot<V> slot = classValue.get(key);
+			if (slot.computed) {
+				values.add(slot.value);
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * @return a snapshot of the statistics of this cache. The eviction and expiration counters
+	 * 			are always {@code 0}, the other counters are {@code 0} if the cache does not
+	 * 			record statistics.
+	 */
+	public ConcurrentCache.Stats getStats() {
+		return new ConcurrentCache.Stats(hits.sum(), misses.sum(), 0, 0, getSize());
+	}
+
+	private static final class Slot<V> {
+		// the value is published by the write to the volatile computed flag
+		V value;
+		volatile boolean computed;
+	}
+}
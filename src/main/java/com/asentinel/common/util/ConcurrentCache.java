@@ -1,11 +1,16 @@
 package com.asentinel.common.util;
 
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
 import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Cache implementation that ensures that the value for a key will be calculated
@@ -14,18 +19,92 @@ import java.util.concurrent.FutureTask;
  * The caching algorithm implemented in this class can be found
  * in the book <b>"Java Concurrency in Practice"</b> by Doug Lea. As mentioned above, it ensures
  * that a cached value will be calculated only once even if 2 or more client threads
- * call the {@link #get(Object, Callable)} method simultaneously for the same key and the value 
- * for that key is not yet cached. 
+ * call the {@link #get(Object, Callable)} method simultaneously for the same key and the value
+ * for that key is not yet cached.
+ * <br><br>
+ * By default the cache is unbounded and the entries never expire. A maximum size and/or an expiration
+ * time after the value was calculated can be configured using the {@link #ConcurrentCache(int, Duration)} constructor.
+ * When the maximum size is exceeded the least recently used entries are evicted. The recency is approximated
+ * by the {@link System#nanoTime()} of the last access stored in each entry, so the hits do not contend on
+ * shared state. The eviction is performed in batches by the thread that exceeded the size, so the size
+ * may briefly be greater than the maximum.
+ * <br>
+ * Hit/miss/eviction counters are available through {@link #getStats()} if the cache was created with
+ * statistics enabled, see {@link #ConcurrentCache(int, Duration, boolean)}. The caches created with a
+ * maximum size record statistics by default, the unbounded cache created with the no-arguments
+ * constructor does not.
  */
 public class ConcurrentCache<K, V> {
 
-	private final ConcurrentMap<K, Future<V>> cache = new ConcurrentHashMap<>();
-	
 	/**
-	 * If there is no value for the {@code key} in the cache, this method calculates the value for 
-	 * the {@code key} using the {@code supplier} {@link Callable} implementation. 
+	 * Value for the maximum size meaning that the cache is unbounded.
+	 */
+	public static final int UNBOUNDED = -1;
+
+	private final ConcurrentMap<K, Entry<V>> cache = new ConcurrentHashMap<>();
+
+	private final int maximumSize;
+	private final long expireAfterWriteNanos;
+
+	private final boolean recordStats;
+	private final ReentrantLock evictionLock = new ReentrantLock();
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private final LongAdder expirations = new LongAdder();
+
+	/**
+	 * Creates an unbounded cache, the entries never expire and no statistics are recorded.
+	 */
+	public ConcurrentCache() {
+		this(UNBOUNDED, null, false);
+	}
+
+	/**
+	 * Creates a cache with the specified maximum size, the entries never expire.
+	 *
+	 * @see #ConcurrentCache(int, Duration)
+	 */
+	public ConcurrentCache(int maximumSize) {
+		this(maximumSize, null);
+	}
+
+	/**
+	 * Creates a cache that records statistics.
+	 *
+	 * @see #ConcurrentCache(int, Duration, boolean)
+	 */
+	public ConcurrentCache(int maximumSize, Duration expireAfterWrite) {
+		this(maximumSize, expireAfterWrite, true);
+	}
+
+	/**
+	 * @param maximumSize the maximum number of entries, when exceeded the least recently used entries
+	 * 			are evicted. Use {@link #UNBOUNDED} for an unbounded cache.
+	 * @param expireAfterWrite the time after which an entry expires, measured from the moment
+	 * 			it was added to the cache. If {@code null} the entries never expire.
+	 * @param recordStats whether the hits, misses, evictions and expirations are counted. If
+	 * 			{@code false} the {@link #getStats()} counters are always {@code 0}.
+	 */
+	public ConcurrentCache(int maximumSize, Duration expireAfterWrite, boolean recordStats) {
+		if (maximumSize != UNBOUNDED) {
+			Assert.assertStrictPositive(maximumSize, "maximumSize");
+		}
+		if (expireAfterWrite != null) {
+			Assert.assertTrue(!expireAfterWrite.isNegative() && !expireAfterWrite.isZero(),
+					"The expireAfterWrite duration must be positive.");
+		}
+		this.maximumSize = maximumSize;
+		this.expireAfterWriteNanos = expireAfterWrite != null ? expireAfterWrite.toNanos() : 0;
+		this.recordStats = recordStats;
+	}
+
+	/**
+	 * If there is no value for the {@code key} in the cache, this method calculates the value for
+	 * the {@code key} using the {@code supplier} {@link Callable} implementation.
 	 * Otherwise gets the value from the cache.
-	 * 
+	 *
 	 * @param key the key that is used to get the value from the cache.
 	 * @param supplier a {@link Callable} implementation used to calculate the value for the
 	 * 			specified key if that key is not yet present in the cache. The {@code supplier} can not
@@ -35,14 +114,28 @@ public class ConcurrentCache<K, V> {
 	public final V get(K key, Callable<V> supplier) {
 		Assert.assertNotNull(key, "key");
 		Assert.assertNotNull(supplier, "supplier");
-		Future<V> future = cache.get(key);
+		Entry<V> future = cache.get(key);
+		if (future != null && isExpired(future)) {
+			if (cache.remove(key, future) && recordStats) {
+				expirations.increment();
+			}
+			future = null;
+		}
 		if (future == null) {
-			FutureTask<V> future0 = new FutureTask<V>(supplier);
+			Entry<V> future0 = new Entry<V>(supplier, System.nanoTime());
 			future = cache.putIfAbsent(key, future0);
 			if (future == null) {
+				if (recordStats) {
+					misses.increment();
+				}
 				future = future0;
 				future0.run();
+				evictIfNecessary();
+			} else {
+				hit(future);
 			}
+		} else {
+			hit(future);
 		}
 		try {
 			return future.get();
@@ -57,11 +150,238 @@ public class ConcurrentCache<K, V> {
 			}
 		}
 	}
-	
+
+	private void hit(Entry<V> entry) {
+		if (recordStats) {
+			hits.increment();
+		}
+		if (maximumSize != UNBOUNDED) {
+			entry.accessed = System.nanoTime();
+		}
+	}
+
+	private boolean isExpired(Entry<V> entry) {
+		return expireAfterWriteNanos > 0
+				&& System.nanoTime() - entry.created >= expireAfterWriteNanos;
+	}
+
+	private void evictIfNecessary() {
+		if (maximumSize == UNBOUNDED || cache.size() <= maximumSize) {
+			return;
+		}
+		// only one thread evicts, the others will find the cache trimmed
+		if (!evictionLock.tryLock()) {
+			return;
+		}
+		try {
+			int excess = cache.size() - maximumSize;
+			if (excess <= 0) {
+				return;
+			}
+			// evict a few more entries than necessary, so that we do not
+			// scan the entries on each insert once the cache is full
+			int toEvict = Math.min(cache.size(), excess + maximumSize / 16);
+			// single pass keeping the toEvict least recently used entries in a bounded heap,
+			// the access times are copied because they may change while we scan
+			PriorityQueue<Candidate<K, V>> candidates = new PriorityQueue<>(toEvict,
+					Comparator.comparingLong((Candidate<K, V> c) -> c.accessed).reversed());
+			for (Map.Entry<K, Entry<V>> e: cache.entrySet()) {
+				long accessed = e.getValue().accessed;
+				if (candidates.size() < toEvict) {
+					candidates.add(new Candidate<>(e.getKey(), e.getValue(), accessed));
+				} else if (accessed < candidates.peek().accessed) {
+					candidates.poll();
+					candidates.add(new Candidate<>(e.getKey(), e.getValue(), accessed));
+				}
+			}
+			for (Candidate<K, V> c: candidates) {
+				if (cache.remove(c.key, c.entry) && recordStats) {
+					evictions.increment();
+				}
+			}
+		} finally {
+			evictionLock.unlock();
+		}
+	}
+
+	/**
+	 * Removes the value for the specified key. If the value is being calculated the
+	 * threads waiting for it will still get it, but it will not be cached.
+	 */
+	public void remove(K key) {
+		Assert.assertNotNull(key, "key");
+		cache.remove(key);
+	}
+
+	/**
+	 * Removes the value for the specified key only if the entry for the key finished calculating
+	 * exactly the specified {@code value} (compared by identity). Unlike {@link #remove(Object)}
+	 * this does not remove an entry that replaced the one that produced the {@code value}.
+	 *
+	 * @return {@code true} if the entry was removed.
+	 */
+	public boolean remove(K key, V value) {
+		Assert.assertNotNull(key, "key");
+		Entry<V> entry = cache.get(key);
+		return entry != null && entry.completed && entry.value == value
+				&& cache.remove(key, entry);
+	}
+
+	/**
+	 * Removes all the values.
+	 */
+	public void clear() {
+		cache.clear();
+	}
+
 	/**
 	 * @return the number of entries in the cache.
 	 */
 	public int getSize() {
 		return cache.size();
 	}
+
+	/**
+	 * @return the maximum number of entries or {@link #UNBOUNDED}.
+	 */
+	public int getMaximumSize() {
+		return maximumSize;
+	}
+
+	/**
+	 * @return a snapshot of the statistics of this cache. The counters are {@code 0}
+	 * 			if the cache does not record statistics.
+	 */
+	public Stats getStats() {
+		return new Stats(hits.sum(), misses.sum(), evictions.sum(), expirations.sum(), cache.size());
+	}
+
+	@Override
+	public String toString() {
+		return "ConcurrentCache [maximumSize=" + maximumSize
+				+ ", expireAfterWrite=" + Duration.ofNanos(expireAfterWriteNanos)
+				+ ", stats=" + getStats() + "]";
+	}
+
+
+	private static final class Entry<V> extends FutureTask<V> {
+		final long created;
+		volatile long accessed;
+
+		// the value is published by the write to the volatile completed flag
+		V value;
+		volatile boolean completed;
+
+		Entry(Callable<V> callable, long created) {
+			super(callable);
+			this.created = created;
+			this.accessed = created;
+		}
+
+		@Override
+		protected void set(V v) {
+			value = v;
+			completed = true;
+			super.set(v);
+		}
+	}
+
+	private static final class Candidate<K, V> {
+		final K key;
+		final Entry<V> entry;
+		final long accessed;
+
+		Candidate(K key, Entry<V> entry, long accessed) {
+			this.key = key;
+			this.entry = entry;
+			this.accessed = accessed;
+		}
+	}
+
+	/**
+	 * Immutable snapshot of the {@link ConcurrentCache} statistics.
+	 */
+	public static final class Stats {
+		
+		/**
+		 * Snapshot with all the counters and the size {@code 0}.
+		 */
+		public static final Stats EMPTY = new Stats(0, 0, 0, 0, 0);
+		
+		private final long hitCount;
+		private final long missCount;
+		private final long evictionCount;
+		private final long expirationCount;
+		private final int size;
+
+		Stats(long hitCount, long missCount, long evictionCount, long expirationCount, int size) {
+			this.hitCount = hitCount;
+			this.missCount = missCount;
+			this.evictionCount = evictionCount;
+			this.expirationCount = expirationCount;
+			this.size = size;
+		}
+
+		/**
+		 * @return the number of {@code get} calls that found the value in the cache
+		 * 			or already being calculated by another thread.
+		 */
+		public long getHitCount() {
+			return hitCount;
+		}
+
+		/**
+		 * @return the number of {@code get} calls that calculated the value.
+		 */
+		public long getMissCount() {
+			return missCount;
+		}
+
+		/**
+		 * @return the ratio of hits to the total number of {@code get} calls,
+		 * 			{@code 1.0} if there were no calls.
+		 */
+		public double getHitRate() {
+			long total = hitCount + missCount;
+			return total == 0 ? 1.0 : (double) hitCount / total;
+		}
+
+		/**
+		 * @return the number of entries evicted because the maximum size was exceeded.
+		 */
+		public long getEvictionCount() {
+			return evictionCount;
+		}
+
+		/**
+		 * @return the number of entries removed because they expired.
+		 */
+		public long getExpirationCount() {
+			return expirationCount;
+		}
+
+		/**
+		 * @return the number of entries at the moment the snapshot was taken.
+		 */
+		public int getSize() {
+			return size;
+		}
+
+		/**
+		 * @return a snapshot with the counters and the size of this snapshot added to those
+		 * 			of the {@code other} snapshot, used to aggregate the statistics of several caches.
+		 */
+		public Stats plus(Stats other) {
+			Assert.assertNotNull(other, "other");
+			return new Stats(hitCount + other.hitCount, missCount + other.missCount,
+					evictionCount + other.evictionCount, expirationCount + other.expirationCount,
+					size + other.size);
+		}
+
+		@Override
+		public String toString() {
+			return "Stats [hitCount=" + hitCount + ", missCount=" + missCount + ", evictionCount=" + evictionCount
+					+ ", expirationCount=" + expirationCount + ", size=" + size + "]";
+		}
+	}
 }
@@ -0,0 +1,127 @@
+package com.asentinel.common.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.asentinel.common.orm.H2DatabaseTSupport;
+import com.asentinel.common.orm.OrmTemplate;
+import com.asentinel.common.orm.mappers.Column;
+import com.asentinel.common.orm.mappers.PkColumn;
+import com.asentinel.common.orm.mappers.Table;
+import com.asentinel.common.orm.persist.SimpleUpdater;
+
+/**
+ * Uses 2 H2 databases, the replica is not actually replicated, so the test
+ * can tell from the results which database answered.
+ */
+public class ReplicaRoutingSqlQueryTestCase {
+
+	private static final String SQL = "select name from replica_item where id = ?";
+
+	@Rule
+	public final H2DatabaseTSupport primaryDb = new H2DatabaseTSupport("replica_primary");
+
+	@Rule
+	public final H2DatabaseTSupport replicaDb = new H2DatabaseTSupport("replica_replica");
+
+	private final JdbcTemplate primaryJdbc = primaryDb.getJdbcTemplate();
+	private final JdbcTemplate replicaJdbc = replicaDb.getJdbcTemplate();
+
+	private final SqlQuery primary = primaryDb.getSqlQuery();
+	private final ReplicaRoutingSqlQuery routing = new ReplicaRoutingSqlQuery(primary, replicaDb.getSqlQuery());
+
+	@Before
+	public void setup() {
+		primaryDb.createTable("replica_item(id int primary key, name varchar(20))");
+		primaryDb.execute("insert into replica_item values (1, 'primary')");
+		replicaDb.createTable("replica_item(id int primary key, name varchar(20))");
+		replicaDb.execute("insert into replica_item values (1, 'replica')");
+	}
+
+	@Test
+	public void readsGoToTheReplica() {
+		assertEquals("replica", routing.queryForString(SQL, 1));
+		assertEquals("replica", routing.queryForObject(SQL, String.class, 1));
+	}
+
+	@Test
+	public void readYourWrites() {
+		routing.update("update replica_item set name = ? where id = ?", "updated", 1);
+		assertEquals("updated", routing.queryForString(SQL, 1));
+		assertEquals("replica", replicaJdbc.queryForObject(SQL, String.class, 1));
+	}
+
+	@Test
+	public void readYourWritesDisabled() {
+		routing.setReadYourWritesWindow(0);
+		routing.update("update replica_item set name = ? where id = ?", "updated", 1);
+		assertEquals("replica", routing.queryForString(SQL, 1));
+	}
+
+	@Test
+	public void readYourWritesPerSession() {
+		AtomicReference<String> session = new AtomicReference<>("a");
+		routing.setSessionResolver(session::get);
+		routing.update("update replica_item set name = ? where id = ?", "updated", 1);
+		session.set("b");
+		assertEquals("replica", routing.queryForString(SQL, 1));
+		session.set("a");
+		assertEquals("updated", routing.queryForString(SQL, 1));
+	}
+
+	@Test
+	public void transactionalReadsGoToThePrimary() {
+		TransactionTemplate tt = new TransactionTemplate(new DataSourceTransactionManager(primaryDb.getDataSource()));
+		tt.setReadOnly(true);
+		assertEquals("primary", tt.execute(status -> routing.queryForString(SQL, 1)));
+	}
+
+	@Test
+	public void jdbcOperationsArePrimaryAndDoNotMarkWrite() {
+		assertSame(primary.getJdbcOperations(), routing.getJdbcOperations());
+		assertEquals("replica", routing.queryForString(SQL, 1));
+	}
+
+	@Test
+	public void batchUpdateMarksWrite() {
+		Item item = new Item();
+		item.id = 1;
+		item.name = "batch";
+		new SimpleUpdater(H2DatabaseTSupport.FLAVOR, routing).update(Collections.singletonList(item));
+		assertEquals("batch", routing.queryForString(SQL, 1));
+	}
+
+	@Test
+	public void ormReadsAndWrites() {
+		OrmTemplate orm = H2DatabaseTSupport.newOrmTemplate(H2DatabaseTSupport.newSqlBuilderFactory(routing));
+
+		Item item = orm.getEntity(Item.class, 1);
+		assertEquals("replica", item.name);
+
+		item.name = "updated";
+		orm.update(item);
+		assertEquals("updated", primaryJdbc.queryForObject(SQL, String.class, 1));
+		assertEquals("updated", orm.getEntity(Item.class, 1).name);
+	}
+
+
+	@Table("replica_item")
+	public static class Item {
+
+		@PkColumn("id")
+		int id;
+
+		@Column("name")
+		String name;
+	}
+}
@@ -0,0 +1,97 @@
+package com.asentinel.common.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import com.asentinel.common.jdbc.flavors.h2.H2JdbcFlavor;
+import com.asentinel.common.jdbc.flavors.postgres.PostgresJdbcFlavor;
+
+public class SqlQueryTemplateQueryMultipleTestCase {
+
+	private final DataSource ds = mock(DataSource.class);
+	private final Connection con = mock(Connection.class);
+	private final PreparedStatement ps = mock(PreparedStatement.class);
+	private final ResultSet rs1 = mock(ResultSet.class);
+	private final ResultSet rs2 = mock(ResultSet.class);
+
+	private final List<Integer> rows1 = new ArrayList<>();
+	private final List<Integer> rows2 = new ArrayList<>();
+	private final RowCallbackHandler[] handlers = {
+			rs -> rows1.add(rs.getInt(1)),
+			rs -> rows2.add(rs.getInt(1))
+	};
+
+	@Before
+	public void setup() throws SQLException {
+		when(ds.getConnection()).thenReturn(con);
+		when(con.prepareStatement(anyString())).thenReturn(ps);
+		when(ps.execute()).thenReturn(true);
+		when(ps.getResultSet()).thenReturn(rs1, rs2);
+		when(ps.getMoreResults()).thenReturn(true, false);
+		when(ps.getUpdateCount()).thenReturn(-1);
+		when(rs1.next()).thenReturn(true, true, false);
+		when(rs1.getInt(1)).thenReturn(1, 2);
+		when(rs2.next()).thenReturn(true, false);
+		when(rs2.getInt(1)).thenReturn(3);
+	}
+
+	@Test
+	public void singleRoundTrip() throws SQLException {
+		SqlQueryTemplate sqlQuery = new SqlQueryTemplate(new PostgresJdbcFlavor(), ds);
+		sqlQuery.queryMultiple(
+				new String[] {"select a from t where a > ?", "select b from u where b = ?"},
+				handlers,
+				new Object[][] {{0}, {3}});
+		verify(con).prepareStatement("select a from t where a > ?;\nselect b from u where b = ?");
+		verify(ps).setObject(1, 0);
+		verify(ps).setObject(2, 3);
+		verify(ps).execute();
+		verify(rs1).close();
+		verify(rs2).close();
+		assertEquals(List.of(1, 2), rows1);
+		assertEquals(List.of(3), rows2);
+	}
+
+	@Test(expected = InvalidDataAccessApiUsageException.class)
+	public void tooFewResultSets() throws SQLException {
+		when(ps.getMoreResults()).thenReturn(false);
+		SqlQueryTemplate sqlQuery = new SqlQueryTemplate(new PostgresJdbcFlavor(), ds);
+		sqlQuery.queryMultiple(
+				new String[] {"select a from t", "select b from u"},
+				handlers,
+				new Object[][] {{}, {}});
+	}
+
+	@Test
+	public void sequentialFallback() throws SQLException {
+		SqlQueryTemplate sqlQuery = new SqlQueryTemplate(new H2JdbcFlavor(), ds);
+		when(ps.executeQuery()).thenReturn(rs1, rs2);
+		sqlQuery.queryMultiple(
+				new String[] {"select a from t", "select b from u"},
+				handlers,
+				new Object[][] {{}, {}});
+		verify(con).prepareStatement("select a from t");
+		verify(con).prepareStatement("select b from u");
+		verify(ps, never()).execute();
+		assertEquals(List.of(1, 2), rows1);
+		assertEquals(List.of(3), rows2);
+	}
+}
@@ -0,0 +1,187 @@
+package com.asentinel.common.jdbc.flavors.postgres;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.asentinel.common.orm.H2DatabaseTSupport;
+import com.asentinel.common.orm.jfr.QueryEvent;
+import com.asentinel.common.orm.metrics.OrmMetrics;
+import com.asentinel.common.orm.metrics.OrmMetricsRegistry;
+import com.asentinel.common.orm.metrics.SlowQuery;
+
+/**
+ * Runs against H2, the {@code EXPLAIN} statement is adapted to the H2 syntax.
+ */
+public class PgEchoingJdbcTemplateSlowQueryTestCase {
+	
+	private static final String SQL = "select name from slow_item where id = ? and name <> ?";
+	
+	@Rule
+	public final H2DatabaseTSupport db = new H2DatabaseTSupport("slowquery");
+	
+	private String explainPrefix = "EXPLAIN ";
+	
+	private final PgEchoingJdbcTemplate t = new PgEchoingJdbcTemplate(db.getDataSource()) {
+		@Override
+		protected String getExplainSql(String sql) {
+			return explainPrefix + sql;
+		}
+	};
+	
+	private final List<SlowQuery> slowQueries = new CopyOnWriteArrayList<>();
+	private final List<String> captureThreads = new CopyOnWriteArrayList<>();
+	private final OrmMetrics metrics = new OrmMetrics() {
+		@Override
+		public void onSlowQuery(SlowQuery slowQuery) {
+			captureThreads.add(Thread.currentThread().getName());
+			slowQueries.add(slowQuery);
+		}
+	};
+	
+	@Before
+	public void setup() {
+		t.setJdbcFlavor(H2DatabaseTSupport.FLAVOR);
+		db.createTable("slow_item(id int primary key, name varchar(20))");
+		db.execute("insert into slow_item values (1, 'a'), (2, 'b')");
+		t.setSlowQueryThreshold(0);
+		// the captures run in the test thread
+		t.setSlowQueryExecutor(Runnable::run);
+		OrmMetricsRegistry.register(metrics);
+	}
+	
+	@After
+	public void tearDown() {
+		OrmMetricsRegistry.unregister(metrics);
+		t.setSlowQueryThreshold(-1);
+	}
+	
+	@Test
+	public void captureWithPlan() {
+		assertEquals(List.of("a"), t.queryForList(SQL, String.class, 1, "x"));
+		assertEquals(1, slowQueries.size());
+		SlowQuery slowQuery = slowQueries.get(0);
+		assertEquals(SQL, slowQuery.getSql());
+		assertEquals(QueryEvent.fingerprint(SQL), slowQuery.getFingerprint());
+		assertEquals(List.of("?", "?"), slowQuery.getBindValues());
+		assertNotNull(slowQuery.getPlan());
+		assertTrue(slowQuery.getPlan(), slowQuery.getPlan().toLowerCase().contains("slow_item"));
+	}
+
+	@Test
+	public void bindValuesRedaction() {
+		t.setBindValueRedactor(PgEchoingJdbcTemplate.REDACT_VALUES);
+		t.queryForList(SQL, String.class, 1, "x");
+		t.setBindValueRedactor(PgEchoingJdbcTemplate.NO_REDACTION);
+		t.setSlowQueryCaptureInterval(0);
+		t.queryForList(SQL, String.class, 2, "y");
+		assertEquals(2, slowQueries.size());
+		assertEquals(List.of("Integer", "String"), slowQueries.get(0).getBindValues());
+		assertEquals(List.of("2", "y"), slowQueries.get(1).getBindValues());
+	}
+	
+	@Test
+	public void rateLimitedPerFingerprint() {
+		t.queryForList(SQL, String.class, 1, "x");
+		t.queryForList(SQL, String.class, 2, "y");
+		t.queryForList("select id from slow_item", Integer.class);
+		assertEquals(2, slowQueries.size());
+		assertEquals(SQL, slowQueries.get(0).getSql());
+		assertEquals("select id from slow_item", slowQueries.get(1).getSql());
+	}
+	
+	@Test
+	public void recentlySeenFingerprintsAreKept() {
+		t.setSlowQueryExplain(false);
+		t.queryForList(SQL, String.class, 1, "x");
+		for (int i = 0; i < PgEchoingJdbcTemplate.MAX_TRACKED_FINGERPRINTS + 10; i++) {
+			t.queryForList("select id " + alias(i) + " from slow_item", Integer.class);
+			if (i % 100 == 0) {
+				t.queryForList(SQL, String.class, 1, "x");
+			}
+		}
+		// the first query was seen recently, so it was not dropped and it is still rate limited
+		t.queryForList(SQL, String.class, 1, "x");
+		assertEquals(1, slowQueries.stream().filter(q -> SQL.equals(q.getSql())).count());
+		assertEquals(PgEchoingJdbcTemplate.MAX_TRACKED_FINGERPRINTS + 11, slowQueries.size());
+		// the oldest aliases were dropped and they are captured again
+		t.queryForList("select id " + alias(0) + " from slow_item", Integer.class);
+		assertEquals(PgEchoingJdbcTemplate.MAX_TRACKED_FINGERPRINTS + 12, slowQueries.size());
+	}
+	
+	private static String alias(int i) {
+		StringBuilder alias = new StringBuilder("c");
+		do {
+			alias.append((char) ('a' + i % 26));
+			i /= 26;
+		} while (i > 0);
+		return alias.toString();
+	}
+	
+	@Test
+	public void argumentsCopiedForAsyncCapture() {
+		List<Runnable> tasks = new CopyOnWriteArrayList<>();
+		t.setSlowQueryExecutor(tasks::add);
+		t.setBindValueRedactor(PgEchoingJdbcTemplate.NO_REDACTION);
+		Object[] args = {1, "x"};
+		t.queryForList(SQL, String.class, args);
+		args[0] = "changed";
+		args[1] = null;
+		tasks.get(0).run();
+		assertEquals(1, slowQueries.size());
+		assertEquals(List.of("1", "x"), slowQueries.get(0).getBindValues());
+		assertNotNull(slowQueries.get(0).getPlan());
+	}
+	
+	@Test
+	public void belowThreshold() {
+		t.setSlowQueryThreshold(60_000);
+		t.queryForList(SQL, String.class, 1, "x");
+		assertTrue(slowQueries.isEmpty());
+	}
+	
+	@Test
+	public void explainFailureStillReported() {
+		explainPrefix = "NOT A STATEMENT ";
+		assertEquals(List.of("a"), t.queryForList(SQL, String.class, 1, "x"));
+		assertEquals(1, slowQueries.size());
+		assertNull(slowQueries.get(0).getPlan());
+	}
+	
+	@Test
+	public void asyncCapture() {
+		List<Runnable> tasks = new CopyOnWriteArrayList<>();
+		t.setSlowQueryExecutor(tasks::add);
+		t.setSlowQueryExplain(false);
+		t.queryForList(SQL, String.class, 1, "x");
+		assertTrue(slowQueries.isEmpty());
+		assertEquals(1, tasks.size());
+		tasks.get(0).run();
+		assertEquals(1, slowQueries.size());
+		assertNull(slowQueries.get(0).getPlan());
+	}
+
+	@Test
+	public void defaultExecutorIsAsync() throws InterruptedException {
+		PgEchoingJdbcTemplate t = new PgEchoingJdbcTemplate(db.getDataSource());
+		t.setJdbcFlavor(H2DatabaseTSupport.FLAVOR);
+		t.setSlowQueryThreshold(0);
+		t.setSlowQueryExplain(false);
+		t.queryForList(SQL, String.class, 1, "x");
+		for (int i = 0; i < 100 && slowQueries.isEmpty(); i++) {
+			Thread.sleep(50);
+		}
+		assertEquals(1, slowQueries.size());
+		assertNotEquals(Thread.currentThread().getName(), captureThreads.get(0));
+	}
+}
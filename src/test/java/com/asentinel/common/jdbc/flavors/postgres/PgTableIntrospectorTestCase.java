@@ -1,6 +1,7 @@
 package com.asentinel.common.jdbc.flavors.postgres;
 
 import static com.asentinel.common.jdbc.flavors.postgres.PgTableIntrospector.SELECT_META;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
@@ -14,6 +15,7 @@ import org.junit.Test;
 
 import com.asentinel.common.jdbc.ReusableRowMappers;
 import com.asentinel.common.jdbc.SqlQuery;
+import com.asentinel.common.util.ConcurrentCache;
 
 public class PgTableIntrospectorTestCase {
 
@@ -33,4 +35,18 @@ public class PgTableIntrospectorTestCase {
 		
 		verify(q, times(1)).query(SELECT_META, ReusableRowMappers.ROW_MAPPER_STRING, "testtable");
 	}
+	
+	@Test
+	public void testInvalidate() {
+		when(q.query(SELECT_META, ReusableRowMappers.ROW_MAPPER_STRING, "testtable"))
+			.thenReturn(List.of("test0"));
+		PgTableIntrospector bounded = new PgTableIntrospector(q, new ConcurrentCache<>(10));
+		
+		assertTrue(bounded.supports("TestTable", "test0"));
+		bounded.invalidate("TESTTABLE");
+		assertTrue(bounded.supports("TestTable", "test0"));
+		
+		verify(q, times(2)).query(SELECT_META, ReusableRowMappers.ROW_MAPPER_STRING, "testtable");
+		assertEquals(2, bounded.getCacheStats().getMissCount());
+	}
 }
@@ -42,6 +42,7 @@ public class AutoLazyLoaderTestCaseSqlBuilderFactoryFocusedTestCase {
 		Bill bill = (Bill) rm.mapRow(rs, 1);
 		
 		when(sbf.newSqlBuilder(Bill.class)).thenReturn(sb);
+		when(sb.fillIdentityMap()).thenReturn(sb);
 		when(sb.select()).thenReturn(sb);
 		when(sb.where()).thenReturn(sb);
 		when(sb.id()).thenReturn(sb);
@@ -10,7 +10,9 @@ import static org.junit.Assert.assertSame;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -20,6 +22,7 @@ import org.junit.Test;
 import com.asentinel.common.collections.tree.Node;
 import com.asentinel.common.collections.tree.SimpleNode;
 import com.asentinel.common.jdbc.ResultSetUtils;
+import com.asentinel.common.orm.cache.ReferenceDataIndex;
 
 public class CacheEntityDescriptorTestCase {
 	
@@ -98,4 +101,23 @@ public class CacheEntityDescriptorTestCase {
 		assertEquals("bill_3", bills.get(2).itemNumber);
 		assertSame(st1, bills.get(2).serviceType);
 	}
+
+	@Test
+	public void testReferenceData() throws SQLException {
+		AtomicReference<ReferenceDataIndex<ServiceType>> index = new AtomicReference<>(
+				ReferenceDataIndex.of(serviceTypes));
+		CacheEntityDescriptor descriptor = CacheEntityDescriptor.forReferenceData(ServiceType.class, "ServiceTypeId", index::get);
+		
+		ResultSet rs = createMock(ResultSet.class);
+		expect(rs.getObject("ServiceTypeId")).andReturn(2L).times(2);
+		replay(rs);
+		
+		assertSame(st2, descriptor.getEntityRowMapper().mapRow(rs, 1));
+		
+		// the descriptor sees the new index
+		ServiceType newSt2 = new ServiceType(2, "Local 2");
+		index.set(ReferenceDataIndex.of(Arrays.asList(st1, newSt2)));
+		assertSame(newSt2, descriptor.getEntityRowMapper().mapRow(rs, 2));
+		verify(rs);
+	}
 }
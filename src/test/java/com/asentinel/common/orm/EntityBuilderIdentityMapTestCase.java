@@ -0,0 +1,213 @@
+package com.asentinel.common.orm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.asentinel.common.collections.tree.Node;
+import com.asentinel.common.collections.tree.SimpleNode;
+import com.asentinel.common.orm.cache.TransactionalIdentityMap;
+import com.asentinel.common.orm.jql.DefaultSqlBuilderFactory;
+import com.asentinel.common.orm.mappers.Child;
+import com.asentinel.common.orm.mappers.Column;
+import com.asentinel.common.orm.mappers.PkColumn;
+import com.asentinel.common.orm.mappers.Table;
+
+public class EntityBuilderIdentityMapTestCase {
+	
+	@Rule
+	public final H2DatabaseTSupport db = new H2DatabaseTSupport("idm");
+	
+	private final AtomicInteger invoices = new AtomicInteger();
+	
+	private final ResultSet rs = mock(ResultSet.class);
+	
+	@Before
+	public void setup() {
+		TransactionSynchronizationManager.initSynchronization();
+	}
+	
+	@After
+	public void teardown() {
+		TransactionSynchronizationManager.getSynchronizations()
+			.forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+		TransactionSynchronizationManager.clearSynchronization();
+	}
+	
+	private Node<EntityDescriptor> invoiceNode() {
+		return new SimpleNode<>(new SimpleEntityDescriptor.Builder(Invoice.class)
+				.entityIdRowMapper((rs, n) -> 10)
+				.entityFactory(() -> {
+					invoices.incrementAndGet();
+					return new Invoice();
+				})
+				.build());
+	}
+	
+	private Invoice build(Node<EntityDescriptor> root) throws SQLException {
+		return build(root, true);
+	}
+	
+	private Invoice build(Node<EntityDescriptor> root, boolean fillIdentityMap) throws SQLException {
+		EntityBuilder<Invoice> eb = new EntityBuilder<>(root);
+		eb.setFillIdentityMap(fillIdentityMap);
+		invoices.set(0);
+		eb.processRow(rs);
+		return eb.getEntity();
+	}
+	
+	@Test
+	public void notBound() throws SQLException {
+		Invoice i1 = build(invoiceNode());
+		Invoice i2 = build(invoiceNode());
+		assertNotSame(i1, i2);
+		assertEquals(1, invoices.get());
+	}
+
+	private Node<EntityDescriptor> completeTree() throws Exception {
+		Node<EntityDescriptor> root = invoiceNode();
+		Node<EntityDescriptor> bill = new SimpleNode<>(new SimpleEntityDescriptor.Builder(Bill.class)
+				.entityIdRowMapper((rs, n) -> 20)
+				.targetMember(Invoice.class.getDeclaredField("bills"))
+				.build());
+		bill.addChild(new SimpleNode<>(new SimpleEntityDescriptor.Builder(Charge.class)
+				.entityIdRowMapper((rs, n) -> 30)
+				.targetMember(Bill.class.getDeclaredMethod("addCharge", Charge.class))
+				.build()));
+		root.addChild(bill);
+		return root;
+	}
+	
+	@Test
+	public void leafReused() throws Exception {
+		TransactionalIdentityMap identityMap = TransactionalIdentityMap.bind();
+		Invoice i1 = build(completeTree());
+		Invoice i2 = build(invoiceNode());
+		assertSame(i1, i2);
+		assertSame(i1, identityMap.get(Invoice.class, 10L));
+		assertEquals(0, invoices.get());
+	}
+
+	@Test
+	public void nodeWithChildrenNotReused() throws Exception {
+		TransactionalIdentityMap identityMap = TransactionalIdentityMap.bind();
+		Invoice i1 = build(completeTree());
+		Invoice i2 = build(completeTree());
+		assertNotSame(i1, i2);
+		assertEquals(1, i2.getBills().size());
+		// the first instance remains in the map
+		assertSame(i1, identityMap.get(Invoice.class, 10));
+		assertEquals(3, identityMap.getSize());
+	}
+
+	@Test
+	public void partialTreeNotAdded() throws Exception {
+		TransactionalIdentityMap identityMap = TransactionalIdentityMap.bind();
+		build(invoiceNode());
+		assertNull(identityMap.get(Invoice.class, 10));
+		
+		// the bills are loaded without their charges
+		Node<EntityDescriptor> root = invoiceNode();
+		root.addChild(new SimpleNode<>(new SimpleEntityDescriptor.Builder(Bill.class)
+				.entityIdRowMapper((rs, n) -> 20)
+				.targetMember(Invoice.class.getDeclaredField("bills"))
+				.build()));
+		build(root);
+		assertEquals(0, identityMap.getSize());
+	}
+
+	@Test
+	public void notMarkedNotAdded() throws Exception {
+		TransactionalIdentityMap identityMap = TransactionalIdentityMap.bind();
+		build(completeTree(), false);
+		assertEquals(0, identityMap.getSize());
+	}
+
+	@Test
+	public void leafNotReturnedByGetEntity() throws Exception {
+		DefaultSqlBuilderFactory sbf = db.getSqlBuilderFactory();
+		OrmOperations orm = db.newOrmTemplate();
+		db.createTable("idm_customer(id int primary key, name varchar(20))");
+		db.createTable("idm_address(id int primary key, customer_id int, city varchar(20))");
+		db.createTable("idm_order(id int primary key, customer_id int)");
+		db.execute("insert into idm_customer values (1, 'c1')",
+				"insert into idm_address values (100, 1, 'a'), (101, 1, 'b')",
+				"insert into idm_order values (10, 1)");
+		TransactionalIdentityMap identityMap = TransactionalIdentityMap.bind();
+		
+		// the customer is a leaf, its addresses are not loaded
+		Node<EntityDescriptor> root = new SimpleNode<>(new SimpleEntityDescriptor.Builder(IdmOrder.class)
+				.tableAlias("o")
+				.build());
+		root.addChild(new SimpleNode<>(new SimpleEntityDescriptor.Builder(IdmCustomer.class)
+				.tableAlias("c")
+				.fkName("customer_id")
+				.targetMember(IdmOrder.class.getDeclaredField("customer"))
+				.build()));
+		IdmOrder order = sbf.newSqlBuilder(IdmOrder.class).select(root).execForEntity();
+		assertEquals(0, order.customer.addresses.size());
+		assertNull(identityMap.get(IdmCustomer.class, 1));
+		
+		// the addresses are restricted by the where clause
+		IdmCustomer filtered = sbf.newSqlBuilder(IdmCustomer.class).select()
+				.where().sql("city = ?", "a")
+				.execForEntity();
+		assertEquals(1, filtered.addresses.size());
+		assertNull(identityMap.get(IdmCustomer.class, 1));
+		
+		IdmCustomer customer = orm.getEntity(IdmCustomer.class, 1);
+		assertNotSame(order.customer, customer);
+		assertEquals(2, customer.addresses.size());
+		assertSame(customer, identityMap.get(IdmCustomer.class, 1));
+		assertSame(customer, orm.getEntity(IdmCustomer.class, 1));
+	}
+	
+	
+	@Table("idm_order")
+	public static class IdmOrder {
+		
+		@PkColumn("id")
+		int id;
+		
+		@Child(fkName = "customer_id")
+		IdmCustomer customer;
+	}
+
+	@Table("idm_customer")
+	public static class IdmCustomer {
+		
+		@PkColumn("id")
+		int id;
+		
+		@Column("name")
+		String name;
+		
+		@Child(fkName = "customer_id", parentRelationType = RelationType.MANY_TO_ONE)
+		List<IdmAddress> addresses = new ArrayList<>();
+	}
+	
+	@Table("idm_address")
+	public static class IdmAddress {
+		
+		@PkColumn("id")
+		int id;
+		
+		@Column("city")
+		String city;
+	}
+}
@@ -0,0 +1,128 @@
+package com.asentinel.common.orm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.util.ReflectionUtils;
+
+import com.asentinel.common.collections.tree.Node;
+import com.asentinel.common.collections.tree.SimpleNode;
+import com.asentinel.common.orm.EntityBuilderStatistics.DescriptorStatistics;
+import com.asentinel.common.orm.mappers.Child;
+import com.asentinel.common.orm.mappers.PkColumn;
+import com.asentinel.common.orm.mappers.Table;
+
+public class EntityBuilderStatisticsTestCase {
+
+	private final ResultSet rs = mock(ResultSet.class);
+	private Node<EntityDescriptor> root;
+
+	@Before
+	public void setup() throws SQLException {
+		// 1 parent with 2 kids and 2 toys, the joined result set has 4 rows
+		when(rs.getInt("t_ParentId")).thenReturn(10);
+		when(rs.getInt("t1_KidId")).thenReturn(20, 20, 21, 21);
+		when(rs.getInt("t2_ToyId")).thenReturn(30, 31, 30, 31);
+
+		root = new SimpleNode<>(new SimpleEntityDescriptor.Builder(Parent.class).tableAlias("t").build());
+		root.addChild(new SimpleNode<>(new SimpleEntityDescriptor.Builder(Kid.class)
+				.tableAlias("t1")
+				.targetMember(ReflectionUtils.findField(Parent.class, "kids"))
+				.build()));
+		root.addChild(new SimpleNode<>(new SimpleEntityDescriptor.Builder(Toy.class)
+				.tableAlias("t2")
+				.targetMember(ReflectionUtils.findField(Parent.class, "toys"))
+				.build()));
+	}
+
+	private static void assertStatistics(DescriptorStatistics ds, long rows, long created, long cacheHits) {
+		assertEquals(rows, ds.getRows());
+		assertEquals(created, ds.getEntitiesCreated());
+		assertEquals(cacheHits, ds.getCacheHits());
+		assertEquals(0, ds.getIdentityMapHits());
+		assertEquals(0, ds.getProxiesUpgraded());
+	}
+
+	@Test
+	public void statistics() throws SQLException {
+		EntityBuilder<Parent> eb = new EntityBuilder<>(root);
+		for (int i = 0; i < 4; i++) {
+			eb.processRow(rs);
+		}
+		Parent parent = eb.getEntity();
+		assertEquals(2, parent.kids.size());
+		assertEquals(2, parent.toys.size());
+
+		EntityBuilderStatistics statistics = eb.getStatistics();
+		assertEquals(4, statistics.getRowCount());
+		assertEquals(1, statistics.getRootCount());
+		assertEquals(2, statistics.getMaxDistinctEntities());
+		assertEquals(2.0, statistics.getAmplification(), 0.001);
+		List<DescriptorStatistics> list = statistics.getDescriptorStatistics();
+		assertEquals(3, list.size());
+		assertStatistics(list.get(0), 4, 1, 3);
+		assertStatistics(list.get(1), 4, 2, 2);
+		assertStatistics(list.get(2), 4, 2, 2);
+		assertSame(Kid.class, list.get(1).getDescriptor().getEntityClass());
+	}
+
+	@Test
+	public void listener() throws SQLException {
+		List<EntityBuilderStatistics> reported = new ArrayList<>();
+		EntityBuilderListener listener = reported::add;
+		EntityBuilder.addListener(listener);
+		try {
+			EntityBuilder<Parent> eb = new EntityBuilder<>(root);
+			for (int i = 0; i < 4; i++) {
+				eb.processRow(rs);
+			}
+			eb.getEntityList();
+			eb.getEntityList();
+			assertEquals(1, reported.size());
+			assertEquals(4, reported.get(0).getRowCount());
+
+			// no rows, no notification
+			new EntityBuilder<Parent>(root).getEntityList();
+			assertEquals(1, reported.size());
+		} finally {
+			EntityBuilder.removeListener(listener);
+		}
+	}
+
+
+	@Table("parent")
+	public static class Parent {
+
+		@PkColumn("ParentId")
+		int id;
+
+		@Child(parentRelationType = RelationType.MANY_TO_ONE)
+		List<Kid> kids;
+
+		@Child(parentRelationType = RelationType.MANY_TO_ONE)
+		List<Toy> toys;
+	}
+
+	@Table("kid")
+	public static class Kid {
+
+		@PkColumn("KidId")
+		int id;
+	}
+
+	@Table("toy")
+	public static class Toy {
+
+		@PkColumn("ToyId")
+		int id;
+	}
+}
@@ -0,0 +1,125 @@
+package com.asentinel.common.orm;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.UnaryOperator;
+
+import javax.sql.DataSource;
+
+import org.junit.rules.ExternalResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import com.asentinel.common.jdbc.SqlQuery;
+import com.asentinel.common.jdbc.SqlQueryTemplate;
+import com.asentinel.common.jdbc.flavors.JdbcFlavor;
+import com.asentinel.common.jdbc.flavors.h2.H2JdbcFlavor;
+import com.asentinel.common.orm.ed.tree.DefaultEntityDescriptorTreeRepository;
+import com.asentinel.common.orm.jql.DefaultSqlBuilderFactory;
+import com.asentinel.common.orm.persist.SimpleUpdater;
+import com.asentinel.common.orm.query.DefaultSqlFactory;
+
+/**
+ * Support rule for the tests that run real queries against an in-memory H2
+ * database. It provides the {@code DataSource}, a {@code JdbcTemplate}, the
+ * {@code SqlQuery} and a {@code DefaultSqlBuilderFactory} wired to the database.
+ * The tables created with {@link #createTable(String)} are dropped after each test.
+ */
+public class H2DatabaseTSupport extends ExternalResource {
+
+	public final static JdbcFlavor FLAVOR = new H2JdbcFlavor();
+
+	private final DriverManagerDataSource dataSource;
+	private final JdbcTemplate jdbcTemplate;
+	private final SqlQuery queryEx;
+	private final DefaultSqlBuilderFactory sqlBuilderFactory;
+
+	private final Deque<String> tables = new ArrayDeque<>();
+
+	/**
+	 * @param name the database name, it should be unique for each test class.
+	 */
+	public H2DatabaseTSupport(String name) {
+		this(name, UnaryOperator.identity());
+	}
+
+	/**
+	 * @param name the database name, it should be unique for each test class.
+	 * @param queryExDecorator function applied to the {@code SqlQuery} before it
+	 * 			is used, for example to wrap it in a Mockito spy.
+	 */
+	public H2DatabaseTSupport(String name, UnaryOperator<SqlQuery> queryExDecorator) {
+		dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+		jdbcTemplate = new JdbcTemplate(dataSource);
+		queryEx = queryExDecorator.apply(new SqlQueryTemplate(FLAVOR, dataSource));
+		sqlBuilderFactory = newSqlBuilderFactory(queryEx);
+	}
+
+	/**
+	 * @return a {@code DefaultSqlBuilderFactory} with its own tree repository
+	 * 			that runs the queries through the {@code queryEx} parameter.
+	 */
+	public static DefaultSqlBuilderFactory newSqlBuilderFactory(SqlQuery queryEx) {
+		DefaultEntityDescriptorTreeRepository treeRepository = new DefaultEntityDescriptorTreeRepository();
+		DefaultSqlBuilderFactory sbf = new DefaultSqlBuilderFactory(treeRepository, new DefaultSqlFactory(FLAVOR), queryEx);
+		treeRepository.setSqlBuilderFactory(sbf);
+		return sbf;
+	}
+
+	/**
+	 * @return a new {@code OrmTemplate} that reads using the {@code sbf} parameter
+	 * 			and writes with a {@code SimpleUpdater} through its {@code SqlQuery}.
+	 */
+	public static OrmTemplate newOrmTemplate(DefaultSqlBuilderFactory sbf) {
+		return new OrmTemplate(sbf, new SimpleUpdater(FLAVOR, sbf.getSqlQuery()));
+	}
+
+	/**
+	 * @return a new {@code OrmTemplate} using the {@link #getSqlBuilderFactory()} of this database.
+	 */
+	public OrmTemplate newOrmTemplate() {
+		return newOrmTemplate(sqlBuilderFactory);
+	}
+
+	/**
+	 * Creates a table that will be dropped after the test.
+	 * @param definition the table definition as it follows the {@code create table} keywords,
+	 * 			for example {@code "item(id int primary key, name varchar(20))"}.
+	 */
+	public void createTable(String definition) {
+		jdbcTemplate.execute("create table " + definition);
+		tables.push(definition.substring(0, definition.indexOf('(')).trim());
+	}
+
+	/**
+	 * Executes each of the sql statements.
+	 */
+	public void execute(String ... sqls) {
+		for (String sql: sqls) {
+			jdbcTemplate.execute(sql);
+		}
+	}
+
+	@Override
+	protected void after() {
+		while (!tables.isEmpty()) {
+			jdbcTemplate.execute("drop table " + tables.pop());
+		}
+	}
+
+	public DataSource getDataSource() {
+		return dataSource;
+	}
+
+	public JdbcTemplate getJdbcTemplate() {
+		return jdbcTemplate;
+	}
+
+	public SqlQuery getSqlQuery() {
+		return queryEx;
+	}
+
+	public DefaultSqlBuilderFactory getSqlBuilderFactory() {
+		return sqlBuilderFactory;
+	}
+}
@@ -0,0 +1,68 @@
+package com.asentinel.common.orm;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.asentinel.common.jdbc.DefaultObjectFactory;
+import com.asentinel.common.orm.mappers.PkColumn;
+import com.asentinel.common.orm.mappers.Table;
+import com.asentinel.common.orm.proxy.entity.ProxyFactory;
+
+public class OrmMetadataRegistryTestCase {
+	
+	@Test
+	public void testSingletonsRegistered() {
+		assertTrue(OrmMetadataRegistry.getCaches().contains(TargetMembersHolder.getInstance()));
+		assertTrue(OrmMetadataRegistry.getCaches().contains(ProxyFactory.getInstance()));
+	}
+	
+	@Test
+	public void testTargetMembersInvalidated() {
+		TargetMembers tm1 = TargetMembersHolder.getInstance().getTargetMembers(RegistryEntity.class);
+		assertSame(tm1, TargetMembersHolder.getInstance().getTargetMembers(RegistryEntity.class));
+
+		OrmMetadataRegistry.invalidate(RegistryEntity.class);
+		TargetMembers tm2 = TargetMembersHolder.getInstance().getTargetMembers(RegistryEntity.class);
+		assertNotSame(tm1, tm2);
+		assertEquals(tm1.getPkColumnMember().getAnnotatedElement(), tm2.getPkColumnMember().getAnnotatedElement());
+		
+		OrmMetadataRegistry.invalidate(RegistryEntity.class.getClassLoader());
+		assertNotSame(tm2, TargetMembersHolder.getInstance().getTargetMembers(RegistryEntity.class));
+	}
+
+	@Test
+	public void testProxyClassReusedAfterInvalidation() {
+		DefaultObjectFactory<? extends RegistryEntity> of1 = ProxyFactory.getInstance().getProxyObjectFactory(RegistryEntity.class);
+		
+		OrmMetadataRegistry.invalidateAll();
+		DefaultObjectFactory<? extends RegistryEntity> of2 = ProxyFactory.getInstance().getProxyObjectFactory(RegistryEntity.class);
+		assertNotSame(of1, of2);
+		assertSame(of1.getType(), of2.getType());
+		
+		RegistryEntity proxy = ProxyFactory.getInstance().newProxy(RegistryEntity.class, id -> {
+			RegistryEntity e = new RegistryEntity();
+			e.id = (Integer) id;
+			e.name = "loaded";
+			return e;
+		});
+		proxy.id = 5;
+		assertEquals("loaded", proxy.getName());
+	}
+	
+	@Table("RegistryEntity")
+	public static class RegistryEntity {
+		@PkColumn("id")
+		int id;
+		
+		String name;
+		
+		public int getId() {
+			return id;
+		}
+		
+		public String getName() {
+			return name;
+		}
+	}
+}
@@ -0,0 +1,66 @@
+package com.asentinel.common.orm;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+
+import org.junit.Test;
+
+import com.asentinel.common.orm.ed.tree.EntityDescriptorTreeRepository;
+import com.asentinel.common.orm.proxy.collection.CollectionProxyFactory;
+import com.asentinel.common.orm.proxy.entity.ProxyFactory;
+import com.asentinel.common.orm.warmup.WarmUpChild;
+import com.asentinel.common.orm.warmup.WarmUpParent;
+
+public class OrmWarmUpTestCase {
+	
+	private static final String PACKAGE = WarmUpParent.class.getPackage().getName();
+	
+	private final EntityDescriptorTreeRepository treeRepo = mock(EntityDescriptorTreeRepository.class);
+	
+	@Test
+	public void testNoPackages() {
+		OrmWarmUp warmUp = new OrmWarmUp(treeRepo);
+		assertEquals(0, warmUp.warmUp());
+		verifyNoInteractions(treeRepo);
+	}
+
+	@Test
+	public void testWarmUp() {
+		OrmWarmUp warmUp = new OrmWarmUp(treeRepo, PACKAGE);
+		warmUp.setParallelism(2);
+		ProxyFactory.getInstance().invalidate(WarmUpParent.class);
+		ProxyFactory.getInstance().invalidate(WarmUpChild.class);
+		int proxyCount0 = ProxyFactory.getInstance().getCacheSize();
+		
+		assertEquals(2, warmUp.warmUp());
+		
+		verify(treeRepo).getEntityDescriptorTree(WarmUpParent.class);
+		verify(treeRepo).getEntityDescriptorTree(WarmUpChild.class);
+		verifyNoMoreInteractions(treeRepo);
+		// both entity classes are proxiable
+		assertEquals(proxyCount0 + 2, ProxyFactory.getInstance().getCacheSize());
+		// the proxy classes are already cached, so a second call does not change the cache size
+		int proxyCount1 = ProxyFactory.getInstance().getCacheSize();
+		long proxyHits = ProxyFactory.getInstance().getCacheStats().getHitCount();
+		ProxyFactory.getInstance().getProxyObjectFactory(WarmUpParent.class);
+		ProxyFactory.getInstance().getProxyObjectFactory(WarmUpChild.class);
+		assertEquals(proxyCount1, ProxyFactory.getInstance().getCacheSize());
+		assertTrue(ProxyFactory.getInstance().getCacheStats().getHitCount() >= proxyHits + 2);
+		
+		int collectionProxyCount = CollectionProxyFactory.getInstance().getCacheSize();
+		CollectionProxyFactory.getInstance().getProxyObjectFactory(ArrayList.class);
+		assertEquals(collectionProxyCount, CollectionProxyFactory.getInstance().getCacheSize());
+	}
+	
+	@Test
+	public void testFailureDoesNotStopTheWarmUp() {
+		when(treeRepo.getEntityDescriptorTree(WarmUpParent.class)).thenThrow(new IllegalStateException("test"));
+		OrmWarmUp warmUp = new OrmWarmUp(treeRepo, PACKAGE);
+		
+		assertEquals(1, warmUp.warmUp());
+		verify(treeRepo).getEntityDescriptorTree(WarmUpParent.class);
+		verify(treeRepo).getEntityDescriptorTree(WarmUpChild.class);
+	}
+}
@@ -0,0 +1,185 @@
+package com.asentinel.common.orm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import com.asentinel.common.jdbc.SqlQuery;
+import com.asentinel.common.orm.jql.DefaultSqlBuilderFactory;
+import com.asentinel.common.orm.mappers.AnnotationRowMapper;
+import com.asentinel.common.orm.mappers.Child;
+import com.asentinel.common.orm.mappers.Column;
+import com.asentinel.common.orm.mappers.PkColumn;
+import com.asentinel.common.orm.mappers.Table;
+
+public class ProjectionTestCase {
+
+	@Rule
+	public final H2DatabaseTSupport db = new H2DatabaseTSupport("projection", Mockito::spy);
+
+	private final SqlQuery ex = db.getSqlQuery();
+	private final DefaultSqlBuilderFactory sbf = db.getSqlBuilderFactory();
+
+	@Before
+	public void setup() {
+		db.createTable("prj_customer(id int primary key, name varchar(20), notes varchar(200))");
+		db.createTable("prj_invoice(id int primary key, number varchar(20), total int, description varchar(200), customer_id int)");
+		db.execute("insert into prj_customer values (1, 'c1', 'long notes')",
+				"insert into prj_invoice values (10, 'i10', 100, 'long description', 1), (11, 'i11', 110, 'another description', 1)");
+	}
+
+	private String capturedSql() {
+		ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+		verify(ex).query(sql.capture(), any(RowCallbackHandler.class), any());
+		return sql.getValue().toLowerCase();
+	}
+
+	@Test
+	public void rootProjection() {
+		List<Invoice> invoices = sbf.newSqlBuilder(Invoice.class)
+				.select(Projection.forPath(Invoice.class).columns("Number", "total"))
+				.orderBy().id().exec();
+		String sql = capturedSql();
+		assertFalse(sql.contains("description"));
+		assertTrue(sql.contains("notes"));
+
+		assertEquals(2, invoices.size());
+		Invoice invoice = invoices.get(0);
+		assertEquals(10, invoice.id);
+		assertEquals("i10", invoice.number);
+		assertEquals(100, invoice.total);
+		assertNull(invoice.description);
+		assertEquals("c1", invoice.customer.name);
+		assertEquals("long notes", invoice.customer.notes);
+	}
+
+	@Test
+	public void childProjection() {
+		List<Invoice> invoices = sbf.newSqlBuilder(Invoice.class)
+				.select(Projection.forPath(Invoice.class, Customer.class).columns("name"))
+				.orderBy().id().exec();
+		String sql = capturedSql();
+		assertTrue(sql.contains("description"));
+		assertFalse(sql.contains("notes"));
+
+		Invoice invoice = invoices.get(1);
+		assertEquals("another description", invoice.description);
+		assertEquals(1, invoice.customer.id);
+		assertEquals("c1", invoice.customer.name);
+		assertNull(invoice.customer.notes);
+		assertTrue(invoice.customer == invoices.get(0).customer);
+	}
+
+	@Test
+	public void emptyProjectionSelectsKeys() {
+		List<Invoice> invoices = sbf.newSqlBuilder(Invoice.class)
+				.select(Projection.forPath(Invoice.class).columns())
+				.orderBy().id().exec();
+		String sql = capturedSql();
+		assertFalse(sql.contains("number"));
+		assertEquals(11, invoices.get(1).id);
+		assertNull(invoices.get(1).number);
+		assertEquals(1, invoices.get(1).customer.id);
+	}
+
+	@Test
+	public void descriptorColumnNames() {
+		SimpleEntityDescriptor ed = new SimpleEntityDescriptor.Builder(Invoice.class)
+				.columns("NUMBER")
+				.build();
+		assertEquals(List.of("id", "number", "customer_id"), List.copyOf(ed.getColumnNames()));
+		assertEquals(Set.of("number"), ed.getProjection());
+		assertEquals(Set.of("number"), ((AnnotationRowMapper<?>) ed.getEntityRowMapper()).getProjection());
+	}
+
+	@Test
+	public void suppliedMapperNotModified() {
+		AnnotationRowMapper<Invoice> mapper = new AnnotationRowMapper<>(Invoice.class, true, "a0_");
+		SimpleEntityDescriptor.Builder builder = new SimpleEntityDescriptor.Builder(Invoice.class)
+				.mapper(mapper)
+				.columns("number");
+		SimpleEntityDescriptor ed = builder.build();
+		assertNull(mapper.getProjection());
+		assertEquals(Set.of("number"), ((AnnotationRowMapper<?>) ed.getEntityRowMapper()).getProjection());
+
+		SimpleEntityDescriptor edAll = builder.columns((String[]) null).build();
+		assertNull(edAll.getProjection());
+		assertSame(mapper, edAll.getEntityRowMapper());
+		assertNull(mapper.getProjection());
+	}
+
+	@Test
+	public void columnsNullClearsProjection() {
+		SimpleEntityDescriptor.Builder builder = new SimpleEntityDescriptor.Builder(Invoice.class)
+				.columns("number");
+		assertNotNull(builder.build().getProjection());
+		SimpleEntityDescriptor ed = builder.columns((Collection<String>) null).build();
+		assertNull(ed.getProjection());
+		assertNull(((AnnotationRowMapper<?>) ed.getEntityRowMapper()).getProjection());
+		assertEquals(List.of("id", "number", "total", "description", "customer_id"), List.copyOf(ed.getColumnNames()));
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void subclassWithoutProjectionSupport() {
+		AnnotationRowMapper<Invoice> mapper = new AnnotationRowMapper<>(Invoice.class, true, "a0_") {
+		};
+		new SimpleEntityDescriptor.Builder(Invoice.class)
+				.mapper(mapper)
+				.columns("number")
+				.build();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void emptyPath() {
+		Projection.forPath().columns("name");
+	}
+
+
+	@Table("prj_invoice")
+	public static class Invoice {
+
+		@PkColumn("id")
+		int id;
+
+		@Column("number")
+		String number;
+
+		@Column("total")
+		int total;
+
+		@Column("description")
+		String description;
+
+		@Child(fkName = "customer_id")
+		Customer customer;
+	}
+
+	@Table("prj_customer")
+	public static class Customer {
+
+		@PkColumn("id")
+		int id;
+
+		@Column("name")
+		String name;
+
+		@Column("notes")
+		String notes;
+	}
+}
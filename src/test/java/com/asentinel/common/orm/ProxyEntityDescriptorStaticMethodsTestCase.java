@@ -38,6 +38,7 @@ public class ProxyEntityDescriptorStaticMethodsTestCase {
 	@Test
 	public void testNoRootTable(){
 		when(sbFactory.newSqlBuilder(TestLl.class)).thenReturn(sb);
+		when(sb.fillIdentityMap()).thenReturn(sb);
 		when(sb.select()).thenReturn(sb);
 		when(sb.where()).thenReturn(sb);
 		when(sb.id()).thenReturn(sb);
@@ -55,6 +56,7 @@ public class ProxyEntityDescriptorStaticMethodsTestCase {
 	@Test
 	public void testRootTableSame(){
 		when(sbFactory.newSqlBuilder(TestLl.class)).thenReturn(sb);
+		when(sb.fillIdentityMap()).thenReturn(sb);
 		when(sb.select()).thenReturn(sb);
 		when(sb.where()).thenReturn(sb);
 		when(sb.id()).thenReturn(sb);
@@ -0,0 +1,57 @@
+package com.asentinel.common.orm;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import com.asentinel.common.orm.mappers.Column;
+
+public class TargetMemberTestCase {
+
+	private static Column column(String name) throws Exception {
+		return Bean.class.getDeclaredField(name).getAnnotation(Column.class);
+	}
+
+	@Test
+	public void fieldValue() throws Exception {
+		TargetMember tm = new TargetMember(Bean.class.getDeclaredField("field"), column("field"));
+		assertEquals(1, tm.getValue(new Bean()));
+	}
+
+	@Test
+	public void getterValue() throws Exception {
+		TargetMember tm = new TargetMember(Bean.class.getDeclaredMethod("setProperty", int.class), column("field"),
+				Bean.class.getDeclaredMethod("getProperty"), null);
+		assertEquals(2, tm.getValue(new Bean()));
+	}
+
+	@Test
+	public void readerValue() throws Exception {
+		TargetMember tm = new TargetMember(Bean.class.getDeclaredField("field"), column("field"));
+		tm.setAccessors(entity -> 3, null);
+		assertEquals(3, tm.getValue(new Bean()));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void noGetter() throws Exception {
+		TargetMember tm = new TargetMember(Bean.class.getDeclaredMethod("setProperty", int.class), column("field"));
+		tm.getValue(new Bean());
+	}
+
+
+	private static class Bean {
+
+		@Column("field")
+		int field = 1;
+
+		int property = 2;
+
+		int getProperty() {
+			return property;
+		}
+
+		void setProperty(int property) {
+			this.property = property;
+		}
+	}
+}
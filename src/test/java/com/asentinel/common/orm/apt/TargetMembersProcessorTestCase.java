@@ -0,0 +1,270 @@
+package com.asentinel.common.orm.apt;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.util.FileSystemUtils;
+
+import com.asentinel.common.orm.EntityUtils;
+import com.asentinel.common.orm.GeneratedTargetMembers;
+import com.asentinel.common.orm.TargetMember;
+import com.asentinel.common.orm.TargetMembers;
+import com.asentinel.common.orm.TargetMembersHolder;
+import com.asentinel.common.orm.mappers.AnnotationRowMapper;
+import com.asentinel.common.orm.mappers.Table;
+
+/**
+ * Compiles the same sources with and without the {@link TargetMembersProcessor} and
+ * checks that the {@link TargetMembers} are the same.
+ */
+public class TargetMembersProcessorTestCase {
+
+	private static final String GENERATED_PACKAGE = "aptgenerated";
+	private static final String REFLECTION_PACKAGE = "aptreflection";
+
+	private static File root;
+	private static ClassLoader generatedClassLoader;
+	private static ClassLoader reflectionClassLoader;
+
+	private static String[][] sources(String pkg) {
+		return new String[][] {
+			{"BaseEntity", "package " + pkg + ";\n"
+				+ "import com.asentinel.common.orm.mappers.*;\n"
+				+ "public abstract class BaseEntity {\n"
+				+ "	@PkColumn(\"id\") int id;\n"
+				+ "	public int getId() { return id; }\n"
+				+ "	public void setId(int id) { this.id = id; }\n"
+				+ "}\n"},
+			{"Invoice", "package " + pkg + ";\n"
+				+ "import com.asentinel.common.orm.mappers.*;\n"
+				+ "import java.util.List;\n"
+				+ "@Table(\"Invoice\")\n"
+				+ "public class Invoice extends BaseEntity {\n"
+				+ "	@Column(\"number\") String number;\n"
+				+ "	@Column(\"amount\") private double amount;\n"
+				+ "	@Column(\"paid\") private final boolean paid = false;\n"
+				+ "	private String description;\n"
+				+ "	@Child List<Object> items;\n"
+				+ "	public boolean isPaid() { return paid; }\n"
+				+ "	public double getAmount() { return amount; }\n"
+				+ "	public void setAmount(double amount) { this.amount = amount; }\n"
+				+ "	public String getDescription() { return description; }\n"
+				+ "	@Column(\"description\") public void setDescription(String description) { this.description = description; }\n"
+				+ "	@Column(\"code\") void setCode(Integer code) { }\n"
+				+ "	@Table(\"InvoiceLine\") public static class Line {\n"
+				+ "		@PkColumn(\"id\") private long id;\n"
+				+ "		public long getId() { return id; }\n"
+				+ "	}\n"
+				+ "}\n"},
+			{"GenericBase", "package " + pkg + ";\n"
+				+ "import com.asentinel.common.orm.mappers.*;\n"
+				+ "public abstract class GenericBase<T> {\n"
+				+ "	@Column(\"value\") public abstract void setValue(T value);\n"
+				+ "}\n"},
+			{"Bridged", "package " + pkg + ";\n"
+				+ "import com.asentinel.common.orm.mappers.*;\n"
+				+ "@Table(\"Bridged\")\n"
+				+ "public class Bridged extends GenericBase<String> {\n"
+				+ "	@PkColumn(\"id\") int id;\n"
+				+ "	@Override public void setValue(String value) { }\n"
+				+ "}\n"},
+		};
+	}
+
+	@BeforeClass
+	public static void setup() throws IOException {
+		root = Files.createTempDirectory("apt").toFile();
+		generatedClassLoader = compile(GENERATED_PACKAGE, true);
+		reflectionClassLoader = compile(REFLECTION_PACKAGE, false);
+	}
+
+	@AfterClass
+	public static void tearDown() {
+		FileSystemUtils.deleteRecursively(root);
+	}
+
+	private static ClassLoader compile(String pkg, boolean withProcessor) throws IOException {
+		File src = new File(root, pkg + "/src/" + pkg);
+		File out = new File(root, pkg + "/classes");
+		assertTrue(src.mkdirs());
+		assertTrue(out.mkdirs());
+		List<File> files = new ArrayList<>();
+		for (String[] source: sources(pkg)) {
+			File file = new File(src, source[0] + ".java");
+			Files.write(file.toPath(), source[1].getBytes(StandardCharsets.UTF_8));
+			files.add(file);
+		}
+
+		String classpath = new File(Table.class.getProtectionDomain().getCodeSource().getLocation().getPath()).getPath();
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, StandardCharsets.UTF_8)) {
+			List<String> options = new ArrayList<>(Arrays.asList(
+					"-classpath", classpath,
+					"-d", out.getPath(),
+					"-s", out.getPath()));
+			if (!withProcessor) {
+				options.add("-proc:none");
+			}
+			JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, null, options, null,
+					fileManager.getJavaFileObjectsFromFiles(files));
+			if (withProcessor) {
+				task.setProcessors(Collections.singletonList(new TargetMembersProcessor()));
+			}
+			assertTrue("Compilation failed.", task.call());
+		}
+		return new URLClassLoader(new URL[] {out.toURI().toURL()}, TargetMembersProcessorTestCase.class.getClassLoader());
+	}
+
+	private static Class<?> load(ClassLoader classLoader, String className) throws ClassNotFoundException {
+		return Class.forName(className, true, classLoader);
+	}
+
+	@Test
+	public void testGeneratedClasses() throws ClassNotFoundException {
+		Class<?> generated = load(generatedClassLoader, GENERATED_PACKAGE + ".Invoice" + GeneratedTargetMembers.CLASS_NAME_SUFFIX);
+		assertTrue(GeneratedTargetMembers.class.isAssignableFrom(generated));
+		load(generatedClassLoader, GENERATED_PACKAGE + ".Invoice$Line" + GeneratedTargetMembers.CLASS_NAME_SUFFIX);
+	}
+
+	@Test(expected = ClassNotFoundException.class)
+	public void testNothingGeneratedForBridgeMethods() throws ClassNotFoundException {
+		load(generatedClassLoader, GENERATED_PACKAGE + ".Bridged" + GeneratedTargetMembers.CLASS_NAME_SUFFIX);
+	}
+
+	@Test
+	public void testSameMembersAsReflection() throws ClassNotFoundException {
+		for (String className: Arrays.asList("Invoice", "Invoice$Line", "Bridged")) {
+			TargetMembers generated = TargetMembersHolder.getInstance()
+					.getTargetMembers(load(generatedClassLoader, GENERATED_PACKAGE + "." + className));
+			TargetMembers reflection = TargetMembersHolder.getInstance()
+					.getTargetMembers(load(reflectionClassLoader, REFLECTION_PACKAGE + "." + className));
+			assertEquals(describe(reflection), describe(generated));
+		}
+	}
+
+	@Test
+	public void testAccessors() throws Exception {
+		Class<?> invoiceClass = load(generatedClassLoader, GENERATED_PACKAGE + ".Invoice");
+		TargetMembers members = TargetMembersHolder.getInstance().getTargetMembers(invoiceClass);
+		Object invoice = invoiceClass.getDeclaredConstructor().newInstance();
+
+		TargetMember pk = members.getPkColumnMember();
+		assertNotNull(pk.getReader());
+		assertNotNull(pk.getWriter());
+		pk.getWriter().accept(invoice, 10);
+		assertEquals(10, EntityUtils.getEntityId(invoice));
+		// null is converted to the primitive default, like the reflection does
+		pk.getWriter().accept(invoice, null);
+		assertEquals(0, EntityUtils.getEntityId(invoice));
+		pk.getWriter().accept(invoice, 10);
+
+		TargetMember number = findColumnMember(members, "number");
+		number.getWriter().accept(invoice, "123");
+		assertEquals("123", number.getReader().apply(invoice));
+
+		TargetMember description = findColumnMember(members, "description");
+		description.getWriter().accept(invoice, "test");
+		assertEquals("test", description.getReader().apply(invoice));
+
+		// private field, reflection is used
+		TargetMember amount = findColumnMember(members, "amount");
+		assertNull(amount.getReader());
+		assertNull(amount.getWriter());
+
+		// package private method without getter
+		TargetMember code = findColumnMember(members, "code");
+		assertNull(code.getReader());
+		assertNotNull(code.getWriter());
+
+		assertNotNull(members.getChildMembers().get(0).getReader());
+	}
+
+	@Test
+	public void testMapperSetValueOverridesAreNotBypassed() throws Exception {
+		Class<?> invoiceClass = load(generatedClassLoader, GENERATED_PACKAGE + ".Invoice");
+		TargetMember number = findColumnMember(TargetMembersHolder.getInstance().getTargetMembers(invoiceClass), "number");
+		assertNotNull(number.getWriter());
+		Object invoice = invoiceClass.getDeclaredConstructor().newInstance();
+
+		FieldTrackingMapper mapper = new FieldTrackingMapper(invoiceClass);
+		mapper.set(invoice, number, "123");
+		assertEquals(List.of(number.getAnnotatedElement()), mapper.fields);
+		assertEquals("123", number.getReader().apply(invoice));
+	}
+
+	private static TargetMember findColumnMember(TargetMembers members, String column) {
+		for (TargetMember member: members.getColumnMembers()) {
+			if (column.equals(((com.asentinel.common.orm.mappers.Column) member.getAnnotation()).value())) {
+				return member;
+			}
+		}
+		throw new AssertionError("Column member " + column + " not found.");
+	}
+
+	private static List<String> describe(TargetMembers members) {
+		List<String> list = new ArrayList<>();
+		list.add(String.valueOf(members.getTableAnnotation()));
+		if (members.getPkColumnMember() != null) {
+			list.add(describe(members.getPkColumnMember()));
+		}
+		for (TargetMember member: members.getColumnMembers()) {
+			list.add(describe(member));
+		}
+		for (TargetMember member: members.getChildMembers()) {
+			list.add(describe(member));
+		}
+		return list;
+	}
+
+	private static String describe(TargetMember member) {
+		return ((Member) member.getAnnotatedElement()).getName()
+				+ "|" + member.getAnnotation()
+				+ "|" + describe(member.getGetMethod())
+				+ "|" + describe(member.getSetMethod());
+	}
+
+	private static String describe(Method method) {
+		return method == null ? "null" : method.getDeclaringClass().getSimpleName() + "." + method.getName();
+	}
+
+
+	private static class FieldTrackingMapper extends AnnotationRowMapper<Object> {
+		final List<Field> fields = new ArrayList<>();
+
+		@SuppressWarnings("unchecked")
+		FieldTrackingMapper(Class<?> clazz) {
+			super((Class<Object>) clazz);
+		}
+
+		void set(Object object, TargetMember targetMember, Object value) throws SQLException {
+			setValue(object, targetMember, value);
+		}
+
+		@Override
+		protected void setValue(Object object, Field field, Object value) throws SQLException {
+			fields.add(field);
+			super.setValue(object, field, value);
+		}
+	}
+}
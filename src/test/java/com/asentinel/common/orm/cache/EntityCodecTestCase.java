@@ -0,0 +1,186 @@
+package com.asentinel.common.orm.cache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import org.junit.Test;
+
+import com.asentinel.common.orm.mappers.Child;
+import com.asentinel.common.orm.mappers.Column;
+import com.asentinel.common.orm.mappers.PkColumn;
+import com.asentinel.common.orm.mappers.Table;
+
+public class EntityCodecTestCase {
+	
+	private final EntityCodec<Snapshot> codec = new EntityCodec<>(Snapshot.class);
+	
+	static Snapshot newSnapshot(int id) {
+		Snapshot s = new Snapshot();
+		s.id = id;
+		s.name = "name_" + id + "_ă";
+		s.active = true;
+		s.amount = new BigDecimal("-12345678901234567890.125");
+		s.count = 7L;
+		s.ratio = 0.5;
+		s.date = LocalDate.of(2020, 2, 29);
+		s.dateTime = LocalDateTime.of(2021, 1, 1, 10, 30, 15, 123456789);
+		s.instant = Instant.ofEpochSecond(1000, 1);
+		s.timestamp = new Timestamp(1000);
+		s.timestamp.setNanos(123456789);
+		s.uuid = UUID.randomUUID();
+		s.data = new byte[] {1, 2, 3};
+		s.status = Status.CLOSED;
+		return s;
+	}
+
+	@Test
+	public void roundTrip() {
+		Snapshot s = newSnapshot(10);
+		Snapshot d = codec.decode(codec.encode(s));
+		assertNotSame(s, d);
+		assertEquals(s.id, d.id);
+		assertEquals(s.name, d.name);
+		assertEquals(s.active, d.active);
+		assertEquals(s.amount, d.amount);
+		assertEquals(s.count, d.count);
+		assertEquals(s.ratio, d.ratio, 0);
+		assertEquals(s.date, d.date);
+		assertEquals(s.dateTime, d.dateTime);
+		assertEquals(s.instant, d.instant);
+		assertEquals(s.timestamp, d.timestamp);
+		assertEquals(s.uuid, d.uuid);
+		assertArrayEquals(s.data, d.data);
+		assertEquals(s.status, d.status);
+	}
+
+	@Test
+	public void nulls() {
+		Snapshot s = new Snapshot();
+		s.id = 1;
+		byte[] bytes = codec.encode(s);
+		// bitmap and the primitives only
+		assertEquals(2 + 4 + 1 + 8, bytes.length);
+		Snapshot d = codec.decode(bytes);
+		assertEquals(1, d.id);
+		assertNull(d.name);
+		assertNull(d.amount);
+		assertNull(d.status);
+		assertFalse(d.active);
+	}
+
+	@Test
+	public void decodeMovesPosition() {
+		byte[] b1 = codec.encode(newSnapshot(1));
+		byte[] b2 = codec.encode(newSnapshot(2));
+		ByteBuffer buffer = ByteBuffer.allocate(b1.length + b2.length);
+		buffer.put(b1).put(b2).flip();
+		assertEquals(1, codec.decode(buffer).id);
+		assertEquals(2, codec.decode(buffer).id);
+		assertFalse(buffer.hasRemaining());
+	}
+
+	@Test
+	public void unsupported() {
+		assertTrue(EntityCodec.isSupported(Snapshot.class));
+		assertFalse(EntityCodec.isSupported(Unsupported.class));
+		try {
+			new EntityCodec<>(Unsupported.class);
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage().contains("java.lang.Object"));
+			return;
+		}
+		throw new AssertionError("Expected exception.");
+	}
+	
+	
+	@Test
+	public void childrenAndImmutableNotSupported() {
+		assertFalse(EntityCodec.isSupported(WithChild.class));
+		assertFalse(EntityCodec.isSupported(Immutable.class));
+		try {
+			new EntityCodec<>(WithChild.class);
+			throw new AssertionError("Expected exception.");
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage().contains("@Child"));
+		}
+		try {
+			new EntityCodec<>(Immutable.class);
+			throw new AssertionError("Expected exception.");
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage().contains("immutable"));
+		}
+	}
+	
+	
+	enum Status {
+		OPEN, CLOSED
+	}
+	
+	@Table("Snapshot")
+	static class Snapshot {
+		@PkColumn("id")
+		int id;
+		@Column("name")
+		String name;
+		@Column("active")
+		boolean active;
+		@Column("amount")
+		BigDecimal amount;
+		@Column("count")
+		Long count;
+		@Column("ratio")
+		double ratio;
+		@Column("date")
+		LocalDate date;
+		@Column("dateTime")
+		LocalDateTime dateTime;
+		@Column("instant")
+		Instant instant;
+		@Column("timestamp")
+		Timestamp timestamp;
+		@Column("uuid")
+		UUID uuid;
+		@Column("data")
+		byte[] data;
+		@Column("status")
+		Status status;
+	}
+	
+	@Table("WithChild")
+	static class WithChild {
+		@PkColumn("id")
+		int id;
+		@Child
+		Snapshot snapshot;
+	}
+	
+	@Table("Immutable")
+	static class Immutable {
+		@PkColumn("id")
+		final int id;
+		
+		Immutable(@PkColumn("id") int id) {
+			this.id = id;
+		}
+	}
+	
+	@Table("Unsupported")
+	static class Unsupported {
+		@PkColumn("id")
+		int id;
+		@Column("value")
+		Object value;
+	}
+}
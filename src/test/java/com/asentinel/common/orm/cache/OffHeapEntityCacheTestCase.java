@@ -0,0 +1,138 @@
+package com.asentinel.common.orm.cache;
+
+import static com.asentinel.common.orm.cache.EntityCodecTestCase.newSnapshot;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.junit.Test;
+
+import com.asentinel.common.orm.cache.EntityCodecTestCase.Snapshot;
+
+public class OffHeapEntityCacheTestCase {
+	
+	private final OffHeapEntityCache cache = new OffHeapEntityCache(64 * 1024, Snapshot.class);
+	
+	private final AtomicInteger loads = new AtomicInteger();
+	
+	private Function<Object, Snapshot> loader(Snapshot entity) {
+		return id -> {
+			loads.incrementAndGet();
+			return entity;
+		};
+	}
+
+	@Test
+	public void cached() {
+		assertTrue(cache.isCacheable(Snapshot.class));
+		assertFalse(cache.isCacheable(String.class));
+		Snapshot s = newSnapshot(1);
+		assertEquals(s, cache.get(Snapshot.class, 1, loader(s)));
+		Snapshot cached = cache.get(Snapshot.class, 1L, loader(s));
+		assertNotSame(s, cached);
+		assertEquals(s.name, cached.name);
+		assertEquals(1, loads.get());
+	}
+
+	@Test
+	public void nullNotCached() {
+		assertNull(cache.get(Snapshot.class, 1, loader(null)));
+		assertNull(cache.get(Snapshot.class, 1, loader(null)));
+		assertEquals(2, loads.get());
+	}
+
+	@Test
+	public void evict() {
+		cache.get(Snapshot.class, 1, loader(newSnapshot(1)));
+		cache.evict(Snapshot.class, 1);
+		cache.get(Snapshot.class, 1, loader(newSnapshot(1)));
+		cache.clear();
+		cache.get(Snapshot.class, 1, loader(newSnapshot(1)));
+		assertEquals(3, loads.get());
+	}
+
+	@Test
+	public void evictedWhileLoadingNotCached() {
+		Snapshot stale = newSnapshot(1);
+		assertEquals(stale, cache.get(Snapshot.class, 1, id -> {
+			loads.incrementAndGet();
+			// the entity is changed and evicted after it was read
+			cache.evict(Snapshot.class, 1);
+			return stale;
+		}));
+		assertFalse(cache.getStore(Snapshot.class).contains(1));
+		cache.get(Snapshot.class, 1, loader(newSnapshot(1)));
+		cache.get(Snapshot.class, 1, loader(newSnapshot(1)));
+		assertEquals(2, loads.get());
+	}
+
+	@Test
+	public void full() {
+		int recordSize = 12 + new EntityCodec<>(Snapshot.class).encode(newSnapshot(1)).length;
+		OffHeapEntityCache cache = new OffHeapEntityCache(recordSize * 2, Snapshot.class);
+		for (int i = 0; i < 3; i++) {
+			cache.get(Snapshot.class, i, loader(newSnapshot(i)));
+		}
+		// only the oldest entity was evicted when full
+		assertEquals(2, cache.getStore(Snapshot.class).size());
+		assertEquals(1, cache.getStore(Snapshot.class).getEvictionCount());
+		assertEquals(1, cache.get(Snapshot.class, 1, loader(null)).id);
+		assertEquals(2, cache.get(Snapshot.class, 2, loader(null)).id);
+		assertNull(cache.get(Snapshot.class, 0, loader(null)));
+	}
+
+	@Test
+	public void singleLoad() throws Exception {
+		int clients = 10;
+		CountDownLatch loading = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		Snapshot s = newSnapshot(1);
+		ExecutorService pool = Executors.newFixedThreadPool(clients);
+		try {
+			List<Future<Snapshot>> results = new ArrayList<>();
+			results.add(pool.submit(() -> cache.get(Snapshot.class, 1, id -> {
+				loads.incrementAndGet();
+				loading.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					throw new IllegalStateException(e);
+				}
+				return s;
+			})));
+			loading.await();
+			for (int i = 1; i < clients; i++) {
+				results.add(pool.submit(() -> cache.get(Snapshot.class, 1, loader(s))));
+			}
+			// give the other clients the chance to wait for the first load
+			Thread.sleep(100);
+			release.countDown();
+			Set<Snapshot> instances = Collections.newSetFromMap(new IdentityHashMap<>());
+			for (Future<Snapshot> result: results) {
+				Snapshot r = result.get(10, TimeUnit.SECONDS);
+				assertEquals(s.name, r.name);
+				instances.add(r);
+			}
+			assertEquals(1, loads.get());
+			// the callers do not share instances
+			assertEquals(clients, instances.size());
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,145 @@
+package com.asentinel.common.orm.cache;
+
+import static com.asentinel.common.orm.cache.EntityCodecTestCase.newSnapshot;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.asentinel.common.orm.cache.EntityCodecTestCase.Snapshot;
+
+public class OffHeapEntityStoreTestCase {
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	private final EntityCodec<Snapshot> codec = new EntityCodec<>(Snapshot.class);
+	
+	private final OffHeapEntityStore<Snapshot> store = new OffHeapEntityStore<>(codec, 64 * 1024);
+
+	@Test
+	public void putAndGet() {
+		Snapshot s = newSnapshot(1);
+		assertTrue(store.put(s));
+		Snapshot d = store.get(1L);
+		assertNotSame(s, d);
+		assertEquals(s.name, d.name);
+		assertEquals(s.name, store.get((Object) 1).name);
+		assertEquals(s.name, store.get(BigDecimal.ONE).name);
+		assertNull(store.get(2L));
+		assertNull(store.get("1"));
+		assertEquals(1, store.size());
+	}
+
+	@Test
+	public void replaceAndRemove() {
+		store.put(newSnapshot(1));
+		Snapshot s = newSnapshot(1);
+		s.name = "other";
+		store.put(s);
+		assertEquals(1, store.size());
+		assertEquals("other", store.get(1L).name);
+		assertTrue(store.getGarbageBytes() > 0);
+		
+		assertTrue(store.remove(1L));
+		assertFalse(store.remove(1L));
+		assertNull(store.get(1L));
+		assertEquals(0, store.size());
+		
+		store.compact();
+		assertEquals(0, store.getUsedBytes());
+		assertEquals(0, store.getGarbageBytes());
+	}
+	
+	@Test
+	public void compactWhenFull() {
+		// the ids have the same number of digits, so the records have the same size
+		int recordSize = 12 + codec.encode(newSnapshot(10)).length;
+		OffHeapEntityStore<Snapshot> store = new OffHeapEntityStore<>(codec, recordSize * 10);
+		for (int i = 10; i < 20; i++) {
+			assertTrue(store.put(newSnapshot(i)));
+		}
+		assertFalse(store.put(newSnapshot(20)));
+		store.remove(10);
+		store.remove(15);
+		// the space of the removed entities is reclaimed
+		assertTrue(store.put(newSnapshot(20)));
+		assertTrue(store.put(newSnapshot(21)));
+		assertEquals(10, store.size());
+		for (int i = 11; i < 22; i++) {
+			if (i != 15) {
+				assertEquals(i, store.get(i).id);
+			}
+		}
+		// replacing works when full
+		assertTrue(store.put(newSnapshot(11)));
+		assertEquals(11, store.get(11).id);
+	}
+	
+	@Test
+	public void putEvictingWhenFull() {
+		int recordSize = 12 + codec.encode(newSnapshot(10)).length;
+		OffHeapEntityStore<Snapshot> store = new OffHeapEntityStore<>(codec, recordSize * 3);
+		for (int i = 10; i < 13; i++) {
+			assertTrue(store.putEvicting(newSnapshot(i)));
+		}
+		assertEquals(0, store.getEvictionCount());
+		// only the oldest entity is evicted
+		assertTrue(store.putEvicting(newSnapshot(13)));
+		assertEquals(1, store.getEvictionCount());
+		assertNull(store.get(10));
+		for (int i = 11; i < 14; i++) {
+			assertEquals(i, store.get(i).id);
+		}
+		// an entity larger than the store is rejected
+		OffHeapEntityStore<Snapshot> small = new OffHeapEntityStore<>(codec, recordSize - 1);
+		assertFalse(small.putEvicting(newSnapshot(10)));
+		assertEquals(0, small.size());
+	}
+	
+	@Test
+	public void manyEntities() {
+		Random random = new Random(1);
+		OffHeapEntityStore<Snapshot> store = new OffHeapEntityStore<>(codec, 8 * 1024 * 1024);
+		int n = 20_000;
+		for (int i = 0; i < n; i++) {
+			assertTrue(store.put(newSnapshot(i * 7)));
+		}
+		for (int i = 0; i < n; i += 2) {
+			store.remove(i * 7);
+		}
+		store.compact();
+		assertEquals(n / 2, store.size());
+		for (int k = 0; k < 1000; k++) {
+			int i = random.nextInt(n);
+			Snapshot s = store.get(i * 7L);
+			if (i % 2 == 0) {
+				assertNull(s);
+			} else {
+				assertEquals(i * 7, s.id);
+			}
+		}
+	}
+	
+	@Test
+	public void mapped() throws IOException {
+		OffHeapEntityStore<Snapshot> store = OffHeapEntityStore.mapped(codec, 
+				folder.newFile().toPath(), 64 * 1024);
+		store.put(newSnapshot(3));
+		assertEquals(3, store.get(3L).id);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void nonIntegralId() {
+		OffHeapEntityStore.toLongId("a");
+	}
+}
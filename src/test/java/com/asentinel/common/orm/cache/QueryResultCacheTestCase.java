@@ -0,0 +1,100 @@
+package com.asentinel.common.orm.cache;
+
+import static java.util.Collections.singleton;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.asentinel.common.orm.Invoice;
+import com.asentinel.common.orm.ed.tree.DefaultEntityDescriptorTreeRepository;
+
+public class QueryResultCacheTestCase {
+	
+	private final QueryResultCache cache = new QueryResultCache(100);
+	
+	private final AtomicInteger loads = new AtomicInteger();
+	
+	private final Supplier<Integer> loader = () -> loads.incrementAndGet();
+	
+	private int get(String table, Object ... params) {
+		return cache.get("kind", "select * from " + table, params, singleton(table), Duration.ofMinutes(1), loader);
+	}
+
+	@Test
+	public void cachedByKindSqlAndParams() {
+		assertEquals(1, get("t", 1));
+		assertEquals(1, get("t", 1));
+		assertEquals(2, get("t", 2));
+		assertEquals(3, cache.get("other", "select * from t", new Object[] {1}, singleton("t"), Duration.ofMinutes(1), loader).intValue());
+		assertEquals(4, get("t", (Object) new int[] {1, 2}));
+		assertEquals(4, get("t", (Object) new int[] {1, 2}));
+	}
+	
+	@Test
+	public void invalidate() {
+		get("t", 1);
+		get("u", 1);
+		cache.invalidate("T");
+		assertEquals(3, get("t", 1));
+		assertEquals(2, get("u", 1));
+		
+		cache.invalidateAll();
+		assertEquals(4, get("u", 1));
+	}
+
+	@Test
+	public void expired() throws InterruptedException {
+		cache.get("kind", "sql", null, singleton("t"), Duration.ofMillis(1), loader);
+		Thread.sleep(5);
+		assertEquals(2, cache.get("kind", "sql", null, singleton("t"), Duration.ofMillis(1), loader).intValue());
+	}
+
+	@Test
+	public void failureNotCached() {
+		try {
+			cache.get("kind", "sql", null, singleton("t"), Duration.ofMinutes(1), () -> {
+				throw new IllegalStateException();
+			});
+			fail("Exception expected.");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+		assertEquals(1, cache.get("kind", "sql", null, singleton("t"), Duration.ofMinutes(1), loader).intValue());
+	}
+	
+	@Test
+	public void bypassedInTransactionAfterWrite() {
+		get("t", 1);
+		TransactionSynchronizationManager.initSynchronization();
+		try {
+			cache.invalidateForWrite("t");
+			assertEquals(2, get("t", 1));
+			assertEquals(3, get("t", 1));
+			// not written in this transaction
+			assertEquals(4, get("u", 1));
+			assertEquals(4, get("u", 1));
+			
+			TransactionSynchronizationManager.getSynchronizations()
+				.forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+		} finally {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+		assertEquals(5, get("t", 1));
+		assertEquals(5, get("t", 1));
+	}
+	
+	@Test
+	public void getTables() {
+		Set<String> tables = QueryResultCache.getTables(
+				new DefaultEntityDescriptorTreeRepository().getEntityDescriptorTree(Invoice.class));
+		assertEquals(Set.of("invoices", "bills", "charges"), tables);
+	}
+}
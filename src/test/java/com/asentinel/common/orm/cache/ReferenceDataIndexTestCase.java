@@ -0,0 +1,119 @@
+package com.asentinel.common.orm.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.asentinel.common.orm.ServiceType;
+
+public class ReferenceDataIndexTestCase {
+	
+	private final ServiceType st1 = new ServiceType(1, "Wireless");
+	private final ServiceType st2 = new ServiceType(2, "Local");
+	private final ServiceType st1000 = new ServiceType(1000, "Long Distance");
+	
+	@Test
+	public void dense() {
+		ReferenceDataIndex<ServiceType> index = ReferenceDataIndex.of(Arrays.asList(st2, st1));
+		assertTrue(index.toString().contains("dense"));
+		assertSame(st1, index.get(1));
+		assertSame(st1, index.get(1L));
+		assertSame(st2, index.get((short) 2));
+		assertNull(index.get(0));
+		assertNull(index.get(3));
+		assertNull(index.get(-1L));
+		assertEquals(Arrays.asList(st2, st1), index.getEntities());
+	}
+
+	@Test
+	public void sorted() {
+		ReferenceDataIndex<ServiceType> index = ReferenceDataIndex.of(Arrays.asList(st1000, st2, st1));
+		assertTrue(index.toString().contains("sorted"));
+		assertSame(st1, index.get(1));
+		assertSame(st2, index.get(2L));
+		assertSame(st1000, index.get(1000));
+		assertNull(index.get(3));
+		assertEquals(3, index.size());
+	}
+
+	@Test
+	public void bigNumbers() {
+		ReferenceDataIndex<ServiceType> index = ReferenceDataIndex.of(Arrays.asList(st1, st2));
+		assertSame(st1, index.get(BigDecimal.ONE));
+		assertSame(st2, index.get(BigInteger.valueOf(2)));
+		assertNull(index.get(new BigDecimal("1.5")));
+		assertNull(index.get("1"));
+	}
+
+	@Test
+	public void hash() {
+		Item a = new Item("a");
+		Item b = new Item("b");
+		ReferenceDataIndex<Item> index = ReferenceDataIndex.of(Arrays.asList(a, b));
+		assertTrue(index.toString().contains("hash"));
+		assertSame(a, index.get("a"));
+		assertSame(b, index.get("b"));
+		assertNull(index.get("c"));
+		assertNull(index.get(1L));
+	}
+
+	@Test
+	public void empty() {
+		assertEquals(0, ReferenceDataIndex.empty().size());
+		assertNull(ReferenceDataIndex.empty().get(1));
+		assertNull(ReferenceDataIndex.of(Collections.emptyList()).get(1L));
+	}
+
+	private static void assertDuplicateId(List<?> entities, String id) {
+		try {
+			ReferenceDataIndex.of(entities);
+			fail("Exception expected.");
+		} catch (IllegalStateException e) {
+			assertTrue(e.getMessage().contains("Duplicate id " + id));
+		}
+	}
+
+	@Test
+	public void duplicateIds() {
+		// dense
+		assertDuplicateId(Arrays.asList(st1, st2, new ServiceType(2, "Other")), "2");
+		// sorted
+		assertDuplicateId(Arrays.asList(st1000, st1, new ServiceType(1000, "Other")), "1000");
+		// hash
+		assertDuplicateId(Arrays.asList(new Item("a"), new Item("a")), "a");
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void immutable() {
+		ReferenceDataIndex.of(Arrays.asList(st1)).getEntities().clear();
+	}
+	
+	
+	private static class Item implements com.asentinel.common.orm.Entity {
+		private Object id;
+		
+		Item(Object id) {
+			this.id = id;
+		}
+
+		@Override
+		public Object getEntityId() {
+			return id;
+		}
+
+		@Override
+		public void setEntityId(Object entityId) {
+			this.id = entityId;
+		}
+	}
+}
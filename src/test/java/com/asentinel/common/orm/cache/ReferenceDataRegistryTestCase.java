@@ -0,0 +1,110 @@
+package com.asentinel.common.orm.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.asentinel.common.orm.ServiceType;
+import com.asentinel.common.orm.cache.ReferenceDataRegistry.ReferenceData;
+import com.asentinel.common.orm.jql.SqlBuilderFactory;
+
+public class ReferenceDataRegistryTestCase {
+	
+	private final AtomicInteger loads = new AtomicInteger();
+	private List<ServiceType> serviceTypes = Arrays.asList(new ServiceType(1, "Wireless"));
+	private Object version = 1;
+	private boolean failLoad;
+	
+	private final ReferenceDataRegistry registry = new ReferenceDataRegistry(mock(SqlBuilderFactory.class)) {
+		@SuppressWarnings("unchecked")
+		@Override
+		<T> ReferenceDataIndex<T> load(Class<T> type) {
+			loads.incrementAndGet();
+			if (failLoad) {
+				throw new IllegalStateException("Test");
+			}
+			return (ReferenceDataIndex<T>) ReferenceDataIndex.of(serviceTypes);
+		}
+		
+		@Override
+		Object loadVersion(String versionSql) {
+			return version;
+		}
+	};
+
+	@Test
+	public void loadedOnRegister() {
+		ReferenceData<ServiceType> data = registry.register(ServiceType.class, "select 1");
+		assertEquals(1, loads.get());
+		assertSame(data, registry.register(ServiceType.class));
+		assertSame(data, registry.get(ServiceType.class));
+		assertSame(serviceTypes.get(0), data.get(1));
+		assertSame(serviceTypes.get(0), data.get(1L));
+		assertEquals(1, loads.get());
+	}
+
+	@Test
+	public void failedLoadNotRegistered() {
+		failLoad = true;
+		try {
+			registry.register(ServiceType.class);
+			fail("Exception expected.");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+		failLoad = false;
+		try {
+			registry.get(ServiceType.class);
+			fail("Exception expected.");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		registry.register(ServiceType.class);
+		assertEquals(2, loads.get());
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void notRegistered() {
+		registry.get(ServiceType.class);
+	}
+
+	@Test
+	public void refreshIfChanged() {
+		ReferenceData<ServiceType> data = registry.register(ServiceType.class, "select 1");
+		
+		ReferenceDataIndex<ServiceType> index = data.get();
+		registry.refreshIfChanged();
+		assertEquals(1, loads.get());
+		assertSame(index, data.get());
+		
+		serviceTypes = Arrays.asList(new ServiceType(1, "Wireless 5G"));
+		version = 2;
+		registry.refreshIfChanged();
+		assertEquals(2, loads.get());
+		assertEquals(serviceTypes, data.get().getEntities());
+	}
+
+	@Test
+	public void refreshWithoutVersion() {
+		registry.register(ServiceType.class);
+		registry.refreshIfChanged();
+		registry.refresh(ServiceType.class);
+		assertEquals(3, loads.get());
+	}
+
+	@Test
+	public void failedRefreshKeepsData() {
+		ReferenceData<ServiceType> data = registry.register(ServiceType.class);
+		ReferenceDataIndex<ServiceType> index = data.get();
+		failLoad = true;
+		registry.refreshIfChanged();
+		assertSame(index, data.get());
+	}
+}
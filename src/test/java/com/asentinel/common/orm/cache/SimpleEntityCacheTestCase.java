@@ -0,0 +1,128 @@
+package com.asentinel.common.orm.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.junit.Test;
+
+public class SimpleEntityCacheTestCase {
+	
+	private final SimpleEntityCache cache = new SimpleEntityCache(100, null, Base.class, Other.class);
+	
+	private final AtomicInteger loads = new AtomicInteger();
+	
+	private <T> Function<Object, T> loader(T entity) {
+		return id -> {
+			loads.incrementAndGet();
+			return entity;
+		};
+	}
+
+	@Test
+	public void isCacheable() {
+		assertTrue(cache.isCacheable(Base.class));
+		assertFalse(cache.isCacheable(Derived.class));
+		assertFalse(cache.isCacheable(String.class));
+	}
+	
+	@Test
+	public void cached() {
+		Base b = new Base();
+		assertSame(b, cache.get(Base.class, 1, loader(b)));
+		assertSame(b, cache.get(Base.class, 1L, loader(new Base())));
+		assertEquals(1, loads.get());
+		assertEquals(1, cache.getStats(Base.class).getHitCount());
+	}
+
+	@Test
+	public void notCacheableType() {
+		cache.get(Derived.class, 1, loader(new Derived()));
+		cache.get(Derived.class, 1, loader(new Derived()));
+		assertEquals(2, loads.get());
+		assertNull(cache.getStats(Derived.class));
+	}
+	
+	@Test
+	public void nullNotCached() {
+		assertNull(cache.get(Base.class, 1, loader(null)));
+		Base b = new Base();
+		assertSame(b, cache.get(Base.class, 1, loader(b)));
+		assertEquals(2, loads.get());
+	}
+
+	@Test
+	public void failureNotCached() {
+		try {
+			cache.get(Base.class, 1, id -> {
+				throw new IllegalStateException();
+			});
+			fail("Exception expected.");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+		Base b = new Base();
+		assertSame(b, cache.get(Base.class, 1, loader(b)));
+		assertEquals(1, loads.get());
+	}
+	
+	@Test
+	public void evictedWhileLoadingNotCached() {
+		Base stale = new Base();
+		assertSame(stale, cache.get(Base.class, 1, id -> {
+			loads.incrementAndGet();
+			// the entity is changed and evicted after it was read
+			cache.evict(Base.class, 1);
+			return stale;
+		}));
+		Base b = new Base();
+		assertSame(b, cache.get(Base.class, 1, loader(b)));
+		assertSame(b, cache.get(Base.class, 1, loader(new Base())));
+		assertEquals(2, loads.get());
+	}
+
+	@Test
+	public void evictIncludesSuperclasses() {
+		cache.get(Base.class, 1, loader(new Base()));
+		cache.get(Other.class, 1, loader(new Other()));
+		
+		cache.evict(Derived.class, 1L);
+		
+		cache.get(Base.class, 1, loader(new Base()));
+		cache.get(Other.class, 1, loader(new Other()));
+		assertEquals(3, loads.get());
+	}
+
+	@Test
+	public void evictType() {
+		cache.get(Base.class, 1, loader(new Base()));
+		cache.get(Base.class, 2, loader(new Base()));
+		cache.get(Other.class, 1, loader(new Other()));
+		
+		cache.evict(Base.class);
+		assertEquals(0, cache.getStats(Base.class).getSize());
+		assertEquals(1, cache.getStats(Other.class).getSize());
+		
+		cache.clear();
+		assertEquals(0, cache.getStats(Other.class).getSize());
+	}
+
+	
+	private static class Base {
+		
+	}
+	
+	private static class Derived extends Base {
+		
+	}
+
+	private static class Other {
+		
+	}
+}
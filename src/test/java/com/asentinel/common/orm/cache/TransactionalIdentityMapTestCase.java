@@ -0,0 +1,89 @@
+package com.asentinel.common.orm.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.function.Function;
+
+import org.junit.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+public class TransactionalIdentityMapTestCase {
+	
+	private static <T> T inTransaction(Function<TransactionalIdentityMap, T> callback) {
+		TransactionSynchronizationManager.initSynchronization();
+		try {
+			return callback.apply(TransactionalIdentityMap.bind());
+		} finally {
+			TransactionSynchronizationManager.getSynchronizations()
+				.forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void bindOutsideTransaction() {
+		TransactionalIdentityMap.bind();
+	}
+	
+	@Test
+	public void boundUntilCompletion() {
+		inTransaction(map -> {
+			assertSame(map, TransactionalIdentityMap.getCurrent());
+			assertSame(map, TransactionalIdentityMap.bind());
+			return null;
+		});
+		assertNull(TransactionalIdentityMap.getCurrent());
+	}
+	
+	@Test
+	public void putGetRemove() {
+		inTransaction(map -> {
+			Base b = new Base();
+			Derived d = new Derived();
+			assertSame(b, map.putIfAbsent(Base.class, 1, b));
+			assertSame(b, map.putIfAbsent(Base.class, 1L, new Base()));
+			assertSame(d, map.putIfAbsent(Derived.class, 1, d));
+			assertEquals(2, map.getSize());
+			
+			assertSame(b, map.get(Base.class, 1L));
+			assertSame(d, map.get(Derived.class, 1));
+			assertNull(map.get(Base.class, 2));
+			
+			map.remove(Derived.class, 1);
+			assertNull(map.get(Base.class, 1));
+			assertNull(map.get(Derived.class, 1));
+			assertEquals(0, map.getSize());
+			return null;
+		});
+	}
+
+	@Test
+	public void removeOther() {
+		inTransaction(map -> {
+			Base b = new Base();
+			Derived d = new Derived();
+			map.putIfAbsent(Base.class, 1, b);
+			map.putIfAbsent(Derived.class, 1, d);
+			
+			map.removeOther(Derived.class, 1L, d);
+			assertNull(map.get(Base.class, 1));
+			assertSame(d, map.get(Derived.class, 1));
+			
+			map.removeOther(Derived.class, 1, new Derived());
+			assertEquals(0, map.getSize());
+			return null;
+		});
+	}
+
+	
+	private static class Base {
+		
+	}
+	
+	private static class Derived extends Base {
+		
+	}
+}
@@ -1,5 +1,6 @@
 package com.asentinel.common.orm.ed.tree;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertSame;
@@ -13,10 +14,13 @@ import org.junit.Test;
 import org.springframework.jdbc.support.lob.LobHandler;
 
 import com.asentinel.common.collections.tree.Node;
+import com.asentinel.common.orm.Bill;
 import com.asentinel.common.orm.EntityDescriptor;
 import com.asentinel.common.orm.EntityDescriptorNodeCallback;
 import com.asentinel.common.orm.Invoice;
+import com.asentinel.common.orm.OrmMetadataRegistry;
 import com.asentinel.common.orm.mappers.AnnotationRowMapper;
+import com.asentinel.common.util.ConcurrentCache;
 
 public class EDTRCacheTestCase {
 	
@@ -57,6 +61,34 @@ public class EDTRCacheTestCase {
 		assertFalse(equalTrees(t1, t2));
 	}
 	
+	@Test
+	public void testInvalidated() {
+		Node<EntityDescriptor> t1 = edtrRepo.getEntityDescriptorTree(Invoice.class);
+		OrmMetadataRegistry.invalidate(Invoice.class);
+		Node<EntityDescriptor> t2 = edtrRepo.getEntityDescriptorTree(Invoice.class);
+		assertFalse(equalTrees(t1, t2));
+		assertTrue(equalTrees(t2, edtrRepo.getEntityDescriptorTree(Invoice.class)));
+	}
+	
+	@Test
+	public void testMaximumTreesPerClassAndStats() {
+		edtrRepo.setMaximumTreesPerClass(1);
+		edtrRepo.getEntityDescriptorTree(Invoice.class, "a");
+		edtrRepo.getEntityDescriptorTree(Invoice.class, "a");
+		edtrRepo.getEntityDescriptorTree(Invoice.class, "b");
+		edtrRepo.getEntityDescriptorTree(Bill.class);
+		ConcurrentCache.Stats stats = edtrRepo.getCacheStats();
+		assertEquals(1, stats.getHitCount());
+		assertEquals(3, stats.getMissCount());
+		assertEquals(1, stats.getEvictionCount());
+		assertEquals(2, stats.getSize());
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidMaximumTreesPerClass() {
+		edtrRepo.setMaximumTreesPerClass(0);
+	}
+	
 	// not related to caching
 	@Test
 	public void testLobHandlerSet() {
@@ -0,0 +1,162 @@
+package com.asentinel.common.orm.jfr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.asentinel.common.orm.FetchType;
+import com.asentinel.common.orm.H2DatabaseTSupport;
+import com.asentinel.common.orm.OrmTemplate;
+import com.asentinel.common.orm.mappers.Child;
+import com.asentinel.common.orm.mappers.Column;
+import com.asentinel.common.orm.mappers.PkColumn;
+import com.asentinel.common.orm.mappers.Table;
+import com.asentinel.common.orm.persist.UpdateType;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+public class OrmEventsTestCase {
+
+	@Rule
+	public final H2DatabaseTSupport db = new H2DatabaseTSupport("jfr");
+
+	private final OrmTemplate orm = db.newOrmTemplate();
+
+	@Before
+	public void setup() {
+		db.createTable("jfr_category(id int primary key, name varchar(20))");
+		db.createTable("jfr_item(id int primary key, name varchar(20), category_id int)");
+		db.execute("insert into jfr_category values (1, 'c1'), (2, 'c2')",
+				"insert into jfr_item values (1, 'a', 1), (2, 'b', 1), (3, 'c', 2)");
+	}
+
+	private static List<RecordedEvent> record(Runnable action) throws IOException {
+		Path file = Files.createTempFile("orm-events", ".jfr");
+		try (Recording recording = new Recording()) {
+			recording.enable(QueryEvent.NAME);
+			recording.enable(EntitiesBuiltEvent.NAME);
+			recording.enable(ProxyLoadEvent.NAME);
+			recording.enable(BatchFlushEvent.NAME);
+			recording.start();
+			action.run();
+			recording.stop();
+			recording.dump(file);
+			return RecordingFile.readAllEvents(file).stream()
+					.filter(e -> e.getEventType().getName().startsWith(OrmEvents.PREFIX))
+					.collect(Collectors.toList());
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	private static List<RecordedEvent> filter(List<RecordedEvent> events, String name) {
+		return events.stream()
+				.filter(e -> e.getEventType().getName().equals(name))
+				.collect(Collectors.toList());
+	}
+
+	@Test
+	public void entitiesBuiltEventCreatedOnlyIfEnabled() throws IOException {
+		assertFalse(EntitiesBuiltEvent.isTypeEnabled());
+		boolean[] enabled = new boolean[1];
+		record(() -> enabled[0] = EntitiesBuiltEvent.isTypeEnabled());
+		assertTrue(enabled[0]);
+	}
+
+	@Test
+	public void queryAndMappingEvents() throws IOException {
+		List<RecordedEvent> events = record(() -> {
+			orm.newSqlBuilder(Item.class).select().where().id().gt(0).exec();
+		});
+		List<RecordedEvent> queries = filter(events, QueryEvent.NAME);
+		assertEquals(1, queries.size());
+		RecordedEvent query = queries.get(0);
+		assertTrue(query.getString("sql").contains("jfr_item"));
+		assertEquals(1, query.getInt("parameterCount"));
+		assertEquals(3, query.getLong("rows"));
+		assertEquals(16, query.getString("fingerprint").length());
+
+		List<RecordedEvent> built = filter(events, EntitiesBuiltEvent.NAME);
+		assertEquals(1, built.size());
+		assertEquals(Item.class.getName(), built.get(0).getClass("entityType").getName());
+		assertEquals(3, built.get(0).getLong("rows"));
+		assertEquals(3, built.get(0).getInt("rootEntities"));
+	}
+
+	@Test
+	public void proxyLoadEvents() throws IOException {
+		List<RecordedEvent> events = record(() -> {
+			orm.getEntity(Item.class, 3).category.getName();
+		});
+		List<RecordedEvent> loads = filter(events, ProxyLoadEvent.NAME);
+		assertEquals(1, loads.size());
+		assertEquals(Category.class.getName(), loads.get(0).getClass("type").getName());
+		assertEquals("2", loads.get(0).getString("id"));
+		assertEquals(2, filter(events, QueryEvent.NAME).size());
+	}
+
+	@Test
+	public void batchFlushEvents() throws IOException {
+		List<RecordedEvent> events = record(() -> {
+			List<Item> items = orm.newSqlBuilder(Item.class).select().exec();
+			orm.update(items, UpdateType.UPDATE);
+		});
+		List<RecordedEvent> flushes = filter(events, BatchFlushEvent.NAME);
+		assertEquals(1, flushes.size());
+		assertEquals("jfr_item", flushes.get(0).getString("table"));
+		assertEquals("UPDATE", flushes.get(0).getString("operation"));
+		assertEquals(3, flushes.get(0).getInt("batchSize"));
+		assertEquals(3, flushes.get(0).getLong("rows"));
+	}
+
+	@Test
+	public void fingerprint() {
+		assertEquals(QueryEvent.fingerprint("select * from t where id in (?, ?, ?) and name = 'x'"),
+				QueryEvent.fingerprint("SELECT *  FROM t\nWHERE id IN (?) AND name = 'it''s'"));
+		assertEquals(QueryEvent.fingerprint("select * from t1 where id = 10"),
+				QueryEvent.fingerprint("select * from t1 where id = ?"));
+		assertNotEquals(QueryEvent.fingerprint("select * from t1 where id = ?"),
+				QueryEvent.fingerprint("select * from t2 where id = ?"));
+	}
+
+
+	@Table("jfr_category")
+	public static class Category {
+
+		@PkColumn("id")
+		int id;
+
+		@Column("name")
+		String name;
+
+		public String getName() {
+			return name;
+		}
+	}
+
+	@Table("jfr_item")
+	public static class Item {
+
+		@PkColumn("id")
+		int id;
+
+		@Column("name")
+		String name;
+
+		@Child(fkName = "category_id", fetchType = FetchType.LAZY)
+		Category category;
+	}
+}
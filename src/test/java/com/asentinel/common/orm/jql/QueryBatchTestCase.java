@@ -0,0 +1,88 @@
+package com.asentinel.common.orm.jql;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.asentinel.common.orm.H2DatabaseTSupport;
+import com.asentinel.common.orm.OrmTemplate;
+import com.asentinel.common.orm.mappers.Column;
+import com.asentinel.common.orm.mappers.PkColumn;
+import com.asentinel.common.orm.mappers.Table;
+
+public class QueryBatchTestCase {
+
+	@Rule
+	public final H2DatabaseTSupport db = new H2DatabaseTSupport("qb");
+
+	private final OrmTemplate orm = db.newOrmTemplate();
+
+	@Before
+	public void setup() {
+		db.createTable("qb_customer(id int primary key, name varchar(20))");
+		db.createTable("qb_product(id int primary key, code varchar(20))");
+		db.execute("insert into qb_customer values (1, 'c1'), (2, 'c2'), (3, 'c3')",
+				"insert into qb_product values (10, 'p10'), (20, 'p20')");
+	}
+
+	@Test
+	public void batch() {
+		QueryBatch batch = orm.newQueryBatch();
+		Supplier<List<Customer>> customers = batch.add(orm.newSqlBuilder(Customer.class)
+				.select().where().id().gt(1).orderBy().id());
+		Supplier<List<Product>> products = batch.add(orm.newSqlBuilder(Product.class)
+				.select().orderBy().id().desc());
+		assertEquals(2, batch.size());
+		batch.exec();
+		assertEquals(List.of(2, 3), customers.get().stream().map(c -> c.id).collect(Collectors.toList()));
+		assertEquals(List.of("p20", "p10"), products.get().stream().map(p -> p.code).collect(Collectors.toList()));
+	}
+
+	@Test
+	public void batchQueries() {
+		List<List<?>> results = orm.batchQueries(
+				orm.newSqlBuilder(Customer.class).select().where().id().eq(3),
+				orm.newSqlBuilder(Product.class).select());
+		assertEquals(2, results.size());
+		assertEquals("c3", ((Customer) results.get(0).get(0)).name);
+		assertEquals(2, results.get(1).size());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void resultsBeforeExec() {
+		QueryBatch batch = orm.newQueryBatch();
+		batch.add(orm.newSqlBuilder(Customer.class).select()).get();
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void separateCollectionsNotSupported() {
+		orm.newQueryBatch().add(orm.newSqlBuilder(Customer.class).fetchCollectionsSeparately().select());
+	}
+
+
+	@Table("qb_customer")
+	public static class Customer {
+
+		@PkColumn("id")
+		int id;
+
+		@Column("name")
+		String name;
+	}
+
+	@Table("qb_product")
+	public static class Product {
+
+		@PkColumn("id")
+		int id;
+
+		@Column("code")
+		String code;
+	}
+}
@@ -0,0 +1,102 @@
+package com.asentinel.common.orm.jql;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.asentinel.common.orm.H2DatabaseTSupport;
+import com.asentinel.common.orm.mappers.Column;
+import com.asentinel.common.orm.mappers.PkColumn;
+import com.asentinel.common.orm.mappers.Table;
+
+public class SqlBuilderAsyncTestCase {
+
+	@Rule
+	public final H2DatabaseTSupport db = new H2DatabaseTSupport("async");
+
+	private final DefaultSqlBuilderFactory sbf = db.getSqlBuilderFactory();
+	private final ExecutorService executor = AsyncExecutors.newBoundedExecutor(2);
+
+	@Before
+	public void setup() {
+		sbf.setAsyncExecutor(executor);
+		db.createTable("asy_item(id int primary key, name varchar(20))");
+		db.execute("insert into asy_item values (1, 'a'), (2, 'b'), (3, 'c'), (4, 'd')");
+	}
+
+	@After
+	public void tearDown() {
+		executor.shutdown();
+	}
+
+	@Test
+	public void execAsync() throws Exception {
+		Thread caller = Thread.currentThread();
+		List<Item> items = sbf.newSqlBuilder(Item.class)
+				.select().orderBy().id()
+				.execAsync()
+				.get();
+		assertEquals(List.of(1, 2, 3, 4), items.stream().map(i -> i.id).collect(Collectors.toList()));
+		assertNotEquals(caller, items.get(0).thread);
+	}
+
+	@Test
+	public void execForPageAsync() throws Exception {
+		Page<Item> page = sbf.newSqlBuilder(Item.class)
+				.pagedSelect(1, 3)
+				.pagedOrderBy().column("name").desc()
+				.execForPageAsync()
+				.get();
+		assertEquals(4, page.getCount());
+		assertEquals(List.of(3, 2), page.getItems().stream().map(i -> i.id).collect(Collectors.toList()));
+	}
+
+	@Test
+	public void execForEntityAsyncFailure() throws Exception {
+		try {
+			sbf.newSqlBuilder(Item.class)
+				.select().where().id().eq(100)
+				.execForEntityAsync()
+				.get();
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof EmptyResultDataAccessException);
+			return;
+		}
+		throw new AssertionError("ExecutionException expected.");
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void notAllowedInTransaction() {
+		TransactionSynchronizationManager.setActualTransactionActive(true);
+		try {
+			sbf.newSqlBuilder(Item.class).select().execAsync();
+		} finally {
+			TransactionSynchronizationManager.setActualTransactionActive(false);
+		}
+	}
+
+
+	@Table("asy_item")
+	public static class Item {
+
+		@PkColumn("id")
+		int id;
+
+		@Column("name")
+		String name;
+
+		final Thread thread = Thread.currentThread();
+	}
+}
@@ -0,0 +1,90 @@
+package com.asentinel.common.orm.jql;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.matches;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.time.Duration;
+
+import org.junit.Test;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import com.asentinel.common.jdbc.SqlQuery;
+import com.asentinel.common.jdbc.flavors.postgres.PostgresJdbcFlavor;
+import com.asentinel.common.orm.cache.QueryResultCache;
+import com.asentinel.common.orm.ed.tree.DefaultEntityDescriptorTreeRepository;
+import com.asentinel.common.orm.jql.data.Bill;
+import com.asentinel.common.orm.jql.data.Invoice;
+import com.asentinel.common.orm.query.DefaultSqlFactory;
+
+public class SqlBuilderCachedTestCase {
+	
+	private final SqlQuery ex = mock(SqlQuery.class);
+	private final QueryResultCache cache = new QueryResultCache(100);
+	private final DefaultSqlBuilderFactory sbf = new DefaultSqlBuilderFactory(
+			new DefaultEntityDescriptorTreeRepository(), new DefaultSqlFactory(new PostgresJdbcFlavor()), ex);
+	{
+		sbf.setQueryResultCache(cache);
+	}
+	
+	private void execInvoiceQuery(int id) {
+		sbf.newSqlBuilder(Invoice.class).cached(Duration.ofMinutes(1))
+			.select().where().id().eq(id)
+			.exec();
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void noCacheConfigured() {
+		sbf.setQueryResultCache(null);
+		sbf.newSqlBuilder(Invoice.class).cached(Duration.ofMinutes(1));
+	}
+
+	@Test
+	public void notCached() {
+		sbf.newSqlBuilder(Invoice.class).select().where().id().eq(1).exec();
+		sbf.newSqlBuilder(Invoice.class).select().where().id().eq(1).exec();
+		verify(ex, times(2)).query(anyString(), any(RowCallbackHandler.class), any());
+	}
+
+	@Test
+	public void cached() {
+		execInvoiceQuery(1);
+		execInvoiceQuery(1);
+		verify(ex, times(1)).query(anyString(), any(RowCallbackHandler.class), eq(1));
+		
+		execInvoiceQuery(2);
+		verify(ex, times(1)).query(anyString(), any(RowCallbackHandler.class), eq(2));
+		assertEquals(1, cache.getStats().getHitCount());
+	}
+
+	@Test
+	public void invalidatedByTableWrite() {
+		execInvoiceQuery(1);
+		cache.invalidate("bill");
+		execInvoiceQuery(1);
+		verify(ex, times(1)).query(anyString(), any(RowCallbackHandler.class), any());
+
+		cache.invalidate("INVOICE");
+		execInvoiceQuery(1);
+		verify(ex, times(2)).query(anyString(), any(RowCallbackHandler.class), any());
+	}
+	
+	@Test
+	public void invalidatedByExecUpdate() {
+		execInvoiceQuery(1);
+		
+		sbf.newSqlBuilder(Bill.class).delete().fromK().table().sql("b").where().id().eq(1).execUpdate("b");
+		execInvoiceQuery(1);
+		verify(ex, times(1)).query(anyString(), any(RowCallbackHandler.class), any());
+		
+		sbf.newSqlBuilder(Invoice.class).delete().fromK().table().sql("i").where().id().eq(1).execUpdate("i");
+		verify(ex).update(matches("delete\\s+from\\s+invoice\\s+i\\s+where\\s+i.id\\s*=\\s*\\?"), eq(1));
+		execInvoiceQuery(1);
+		verify(ex, times(2)).query(anyString(), any(RowCallbackHandler.class), any());
+	}
+}
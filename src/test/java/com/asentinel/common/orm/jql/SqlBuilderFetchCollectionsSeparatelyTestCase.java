@@ -0,0 +1,198 @@
+package com.asentinel.common.orm.jql;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import com.asentinel.common.jdbc.SqlQuery;
+import com.asentinel.common.orm.H2DatabaseTSupport;
+import com.asentinel.common.orm.RelationType;
+import com.asentinel.common.orm.mappers.Child;
+import com.asentinel.common.orm.mappers.Column;
+import com.asentinel.common.orm.mappers.PkColumn;
+import com.asentinel.common.orm.mappers.Table;
+
+public class SqlBuilderFetchCollectionsSeparatelyTestCase {
+
+	@Rule
+	public final H2DatabaseTSupport db = new H2DatabaseTSupport("fcs", Mockito::spy);
+
+	private final SqlQuery ex = db.getSqlQuery();
+	private final DefaultSqlBuilderFactory sbf = db.getSqlBuilderFactory();
+
+	@Before
+	public void setup() {
+		db.createTable("fcs_order(id int primary key, name varchar(20))");
+		db.createTable("fcs_tag(id int primary key, name varchar(20))");
+		db.createTable("fcs_line(id int primary key, order_id int, amount int, tag_id int)");
+		db.createTable("fcs_note(id int primary key, order_id int, text varchar(20), tag_id int)");
+		db.createTable("fcs_doc(code varchar(20) primary key)");
+		db.createTable("fcs_page(id int primary key, doc_code varchar(20))");
+		db.execute("insert into fcs_order values (1, 'o1'), (2, 'o2'), (3, 'o3')",
+				"insert into fcs_tag values (1000, 't1')",
+				"insert into fcs_line values (10, 1, 100, 1000), (11, 1, 110, 1000), (12, 1, 120, 1000), (20, 2, 200, 1000)",
+				"insert into fcs_note values (100, 1, 'n1', 1000), (101, 1, 'n2', 1000)",
+				"insert into fcs_doc values ('d1'), ('d2')",
+				"insert into fcs_page values (1, 'd1'), (2, 'd1'), (3, 'd2')");
+	}
+
+	private static void assertOrders(List<Order> orders) {
+		assertEquals(3, orders.size());
+		assertEquals(1, orders.get(0).id);
+		assertEquals(3, orders.get(0).lines.size());
+		assertEquals(2, orders.get(0).notes.size());
+		assertEquals(110, orders.get(0).lines.get(1).amount);
+		assertEquals(2, orders.get(1).id);
+		assertEquals(1, orders.get(1).lines.size());
+		assertTrue(orders.get(1).notes == null || orders.get(1).notes.isEmpty());
+		assertEquals(3, orders.get(2).id);
+		assertTrue(orders.get(2).lines == null || orders.get(2).lines.isEmpty());
+	}
+
+	@Test
+	public void joined() {
+		List<Order> orders = sbf.newSqlBuilder(Order.class).select().orderBy().id().exec();
+		assertOrders(orders);
+		verify(ex, times(1)).query(anyString(), any(RowCallbackHandler.class), any());
+	}
+
+	@Test
+	public void separately() {
+		List<Order> orders = sbf.newSqlBuilder(Order.class).fetchCollectionsSeparately()
+				.select().orderBy().id().exec();
+		assertOrders(orders);
+		ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+		verify(ex, times(3)).query(sql.capture(), any(RowCallbackHandler.class), any());
+		assertFalse(sql.getAllValues().get(0).contains("fcs_line"));
+		assertFalse(sql.getAllValues().get(0).contains("fcs_note"));
+		assertTrue(sql.getAllValues().get(1).contains("in (?, ?, ?)"));
+	}
+
+	@Test
+	public void separatelyWithWhere() {
+		Order order = sbf.newSqlBuilder(Order.class).fetchCollectionsSeparately()
+				.select().where().id().eq(1).execForEntity();
+		assertEquals(3, order.lines.size());
+		assertEquals(2, order.notes.size());
+	}
+
+	@Test
+	public void separatelyNoResults() {
+		List<Order> orders = sbf.newSqlBuilder(Order.class).fetchCollectionsSeparately()
+				.select().where().id().eq(100).exec();
+		assertTrue(orders.isEmpty());
+		verify(ex, times(1)).query(anyString(), any(RowCallbackHandler.class), any());
+	}
+
+	@Test
+	public void separatelyConcurrent() {
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			List<Order> orders = sbf.newSqlBuilder(Order.class).fetchCollectionsSeparately(executor)
+					.select().orderBy().id().exec();
+			assertOrders(orders);
+			// the entity caches are shared by the concurrent queries
+			Tag tag = orders.get(0).lines.get(0).tag;
+			assertEquals("t1", tag.name);
+			assertTrue(tag == orders.get(0).notes.get(0).tag);
+			assertTrue(tag == orders.get(1).lines.get(0).tag);
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void separatelyStringIds() {
+		List<Doc> docs = sbf.newSqlBuilder(Doc.class).fetchCollectionsSeparately()
+				.select().orderBy().id().exec();
+		assertEquals(2, docs.size());
+		assertEquals(2, docs.get(0).pages.size());
+		assertEquals(1, docs.get(1).pages.size());
+		assertEquals(3, docs.get(1).pages.get(0).id);
+	}
+
+
+	@Table("fcs_order")
+	public static class Order {
+
+		@PkColumn("id")
+		int id;
+
+		@Column("name")
+		String name;
+
+		@Child(parentRelationType = RelationType.MANY_TO_ONE, fkName = "order_id")
+		List<Line> lines;
+
+		@Child(parentRelationType = RelationType.MANY_TO_ONE, fkName = "order_id")
+		List<Note> notes;
+	}
+
+	@Table("fcs_line")
+	public static class Line {
+
+		@PkColumn("id")
+		int id;
+
+		@Column("amount")
+		int amount;
+
+		@Child(fkName = "tag_id")
+		Tag tag;
+	}
+
+	@Table("fcs_note")
+	public static class Note {
+
+		@PkColumn("id")
+		int id;
+
+		@Column("text")
+		String text;
+
+		@Child(fkName = "tag_id")
+		Tag tag;
+	}
+
+	@Table("fcs_tag")
+	public static class Tag {
+
+		@PkColumn("id")
+		int id;
+
+		@Column("name")
+		String name;
+	}
+
+	@Table("fcs_doc")
+	public static class Doc {
+
+		@PkColumn("code")
+		String code;
+
+		@Child(parentRelationType = RelationType.MANY_TO_ONE, fkName = "doc_code")
+		List<Page> pages;
+	}
+
+	@Table("fcs_page")
+	public static class Page {
+
+		@PkColumn("id")
+		int id;
+	}
+}
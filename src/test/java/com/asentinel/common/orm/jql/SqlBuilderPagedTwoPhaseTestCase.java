@@ -0,0 +1,184 @@
+package com.asentinel.common.orm.jql;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.jdbc.core.RowMapper;
+
+import com.asentinel.common.jdbc.SqlQuery;
+import com.asentinel.common.orm.EntityDescriptorNodeCallback;
+import com.asentinel.common.orm.H2DatabaseTSupport;
+import com.asentinel.common.orm.RelationType;
+import com.asentinel.common.orm.mappers.Child;
+import com.asentinel.common.orm.mappers.Column;
+import com.asentinel.common.orm.mappers.PkColumn;
+import com.asentinel.common.orm.mappers.Table;
+
+public class SqlBuilderPagedTwoPhaseTestCase {
+
+	@Rule
+	public final H2DatabaseTSupport db = new H2DatabaseTSupport("tpp", Mockito::spy);
+
+	private final SqlQuery ex = db.getSqlQuery();
+	private final DefaultSqlBuilderFactory sbf = db.getSqlBuilderFactory();
+
+	@Before
+	public void setup() {
+		db.createTable("tpp_invoice(id int primary key, number varchar(20))");
+		db.createTable("tpp_line(id int primary key, invoice_id int, amount int)");
+		db.execute("insert into tpp_invoice values (1, 'i1'), (2, 'i2'), (3, 'i3'), (4, 'i4'), (5, 'i5')",
+				"insert into tpp_line values (10, 1, 100), (11, 1, 110), (20, 2, 200), "
+				+ "(30, 3, 300), (31, 3, 310), (32, 3, 320), (50, 5, 500)");
+	}
+
+	private static List<Integer> ids(List<Invoice> invoices) {
+		return invoices.stream().map(i -> i.id).collect(Collectors.toList());
+	}
+
+	@Test
+	public void sameResultsAsSinglePhase() {
+		Page<Invoice> expected = sbf.newSqlBuilder(Invoice.class)
+				.pagedSelect(1, 4)
+				.pagedOrderBy().column("number").desc()
+				.execForPage();
+		Page<Invoice> page = sbf.newSqlBuilder(Invoice.class)
+				.pagedSelect(1, 4)
+				.pagedTwoPhase()
+				.pagedOrderBy().column("number").desc()
+				.execForPage();
+		assertEquals(5, page.getCount());
+		assertEquals(ids(expected.getItems()), ids(page.getItems()));
+		assertEquals(List.of(4, 3, 2), ids(page.getItems()));
+		assertTrue(page.getItems().get(0).lines == null || page.getItems().get(0).lines.isEmpty());
+		assertEquals(3, page.getItems().get(1).lines.size());
+		assertEquals(1, page.getItems().get(2).lines.size());
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void idsQueryDoesNotJoinCollections() {
+		sbf.newSqlBuilder(Invoice.class)
+				.pagedSelect(0, 2)
+				.pagedTwoPhase()
+				.pagedWhere().id().gt(1)
+				.pagedOrderBy().id()
+				.execForPage();
+		ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+		// the count query and the ids query
+		verify(ex, times(2)).query(sql.capture(), any(RowMapper.class), any());
+		assertFalse(sql.getValue().contains("tpp_line"));
+	}
+
+	@Test
+	public void groupBy() {
+		Page<Invoice> page = sbf.newSqlBuilder(Invoice.class)
+				.pagedSelect(0, 10)
+				.pagedTwoPhase()
+				.pagedEnableGroupBy()
+				.pagedHaving().sql("count(*) > ").param(1)
+				.pagedOrderBy().id()
+				.execForPage();
+		assertEquals(2, page.getCount());
+		assertEquals(List.of(1, 3), ids(page.getItems()));
+		assertEquals(2, page.getItems().get(0).lines.size());
+		assertEquals(3, page.getItems().get(1).lines.size());
+	}
+
+	private static List<Integer> amounts(Invoice invoice) {
+		return invoice.lines.stream().map(l -> l.amount).collect(Collectors.toList());
+	}
+
+	@Test
+	public void whereAndOrderByAppliedToForcedCollection() {
+		EntityDescriptorNodeCallback forceLines = (node, builder) -> {
+			builder.forceManyAsOneInPaginatedQueries(true);
+			return true;
+		};
+		Page<Invoice> expected = sbf.newSqlBuilder(Invoice.class)
+				.pagedSelect(0, 10, forceLines)
+				.pagedWhere().alias(Invoice.class, Line.class).column("amount").gt(150)
+				.pagedOrderBy().id().comma().alias(Invoice.class, Line.class).column("amount").desc()
+				.execForPage();
+		Page<Invoice> page = sbf.newSqlBuilder(Invoice.class)
+				.pagedSelect(0, 10, forceLines)
+				.pagedTwoPhase()
+				.pagedWhere().alias(Invoice.class, Line.class).column("amount").gt(150)
+				.pagedOrderBy().id().comma().alias(Invoice.class, Line.class).column("amount").desc()
+				.execForPage();
+		assertEquals(ids(expected.getItems()), ids(page.getItems()));
+		assertEquals(List.of(2, 3, 5), ids(page.getItems()));
+		assertEquals(amounts(expected.getItems().get(1)), amounts(page.getItems().get(1)));
+		assertEquals(List.of(320, 310, 300), amounts(page.getItems().get(1)));
+	}
+
+	@Test
+	public void outsideCollectionReferencedFallsBackToSinglePhase() {
+		SqlBuilder<Invoice> sb = sbf.newSqlBuilder(Invoice.class)
+				.pagedSelect(0, 10)
+				.pagedTwoPhase()
+				.pagedEnableGroupBy()
+				.pagedWhere().alias(Invoice.class, Line.class).column("amount").gt(150)
+				.pagedOrderBy().id();
+		assertFalse(sb.pagedCompile().isTwoPhase());
+		Page<Invoice> page = sb.execForPage();
+		assertEquals(List.of(2, 3, 5), ids(page.getItems()));
+		assertEquals(3, page.getItems().get(1).lines.size());
+	}
+
+	@Test
+	public void emptyPage() {
+		Page<Invoice> page = sbf.newSqlBuilder(Invoice.class)
+				.pagedSelect(10, 20)
+				.pagedTwoPhase()
+				.pagedOrderBy().id()
+				.execForPage();
+		assertEquals(5, page.getCount());
+		assertTrue(page.getItems().isEmpty());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void secondaryWhereNotSupported() {
+		sbf.newSqlBuilder(Invoice.class)
+				.pagedSelect(0, 10)
+				.pagedTwoPhase()
+				.pagedOrderBy().id()
+				.pagedSecondaryWhere().sql("1 = 1")
+				.pagedCompile();
+	}
+
+
+	@Table("tpp_invoice")
+	public static class Invoice {
+
+		@PkColumn("id")
+		int id;
+
+		@Column("number")
+		String number;
+
+		@Child(parentRelationType = RelationType.MANY_TO_ONE, fkName = "invoice_id")
+		List<Line> lines;
+	}
+
+	@Table("tpp_line")
+	public static class Line {
+
+		@PkColumn("id")
+		int id;
+
+		@Column("amount")
+		int amount;
+	}
+}
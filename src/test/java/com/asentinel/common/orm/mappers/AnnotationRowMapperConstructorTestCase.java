@@ -0,0 +1,238 @@
+package com.asentinel.common.orm.mappers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.asentinel.common.jdbc.SqlQuery;
+import com.asentinel.common.orm.FetchType;
+import com.asentinel.common.orm.H2DatabaseTSupport;
+import com.asentinel.common.orm.OrmMetadataRegistry;
+import com.asentinel.common.orm.Projection;
+import com.asentinel.common.orm.cache.OffHeapEntityCache;
+import com.asentinel.common.orm.jql.DefaultSqlBuilderFactory;
+import com.asentinel.common.orm.proxy.entity.ProxyFactory;
+
+public class AnnotationRowMapperConstructorTestCase {
+
+	@Rule
+	public final H2DatabaseTSupport db = new H2DatabaseTSupport("ctor");
+
+	private final SqlQuery queryTemplate = db.getSqlQuery();
+	private final DefaultSqlBuilderFactory sbf = db.getSqlBuilderFactory();
+
+	@Before
+	public void setup() {
+		db.createTable("ctor_currency(id int primary key, code varchar(3), rate decimal(10, 2))");
+		db.createTable("ctor_price(id int primary key, amount int, currency_id int)");
+		db.execute("insert into ctor_currency values (1, 'EUR', 1.10), (2, 'USD', null)",
+				"insert into ctor_price values (10, 100, 1), (11, 110, 1), (12, 120, 2)");
+	}
+
+	@Test
+	public void resolve() {
+		EntityConstructor<Currency> ec = EntityConstructor.forClass(Currency.class);
+		assertNotNull(ec);
+		assertSame(ec, EntityConstructor.forClass(Currency.class));
+		assertEquals(3, ec.getParameterCount());
+		assertEquals(true, ec.isPk(0));
+		assertEquals("code", ec.getColumnName(1));
+		assertEquals(true, ec.isAllowNull(2));
+		assertNull(EntityConstructor.forClass(Price.class));
+
+		Currency currency = ec.newObject(null, "RON", null);
+		assertEquals(0, currency.id);
+		assertEquals("RON", currency.code);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void ambiguousConstructors() {
+		EntityConstructor.forClass(Ambiguous.class);
+	}
+
+	@Test
+	public void mapper() {
+		AnnotationRowMapper<Currency> mapper = new AnnotationRowMapper<>(Currency.class);
+		assertNotNull(mapper.getEntityConstructor());
+		List<Currency> currencies = queryTemplate.query("select * from ctor_currency order by id", mapper);
+		assertEquals(2, currencies.size());
+		assertEquals(1, currencies.get(0).id);
+		assertEquals("EUR", currencies.get(0).code);
+		assertEquals(new BigDecimal("1.10"), currencies.get(0).rate);
+		assertNull(currencies.get(1).rate);
+	}
+
+	@Test
+	public void rootOnlyTree() {
+		List<Currency> currencies = sbf.newSqlBuilder(Currency.class)
+				.select().orderBy().id().exec();
+		assertEquals(2, currencies.size());
+		assertEquals(2, currencies.get(1).id);
+		assertEquals("USD", currencies.get(1).code);
+	}
+
+	@Test
+	public void immutableChild() {
+		List<Price> prices = sbf.newSqlBuilder(Price.class)
+				.select().orderBy().id().exec();
+		assertEquals(3, prices.size());
+		assertEquals("EUR", prices.get(0).currency.code);
+		assertSame(prices.get(0).currency, prices.get(1).currency);
+		assertEquals(2, prices.get(2).currency.id);
+	}
+
+	@Test
+	public void projection() {
+		List<Currency> currencies = sbf.newSqlBuilder(Currency.class)
+				.select(Projection.forPath(Currency.class).columns("code", "rate"))
+				.orderBy().id().exec();
+		assertEquals(1, currencies.get(0).id);
+		assertEquals("EUR", currencies.get(0).code);
+		assertEquals(new BigDecimal("1.10"), currencies.get(0).rate);
+	}
+
+	@Test
+	public void projectionWithoutConstructorColumn() {
+		try {
+			sbf.newSqlBuilder(Currency.class)
+					.select(Projection.forPath(Currency.class).columns("code"))
+					.exec();
+			fail("Projections without the constructor columns should not be accepted.");
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage().contains("rate"));
+		}
+	}
+
+	@Test
+	public void lazyImmutableChild() {
+		try {
+			sbf.newSqlBuilder(LazyPrice.class).select().exec();
+			fail("Immutable entities should not be lazy loaded.");
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage().contains("can not be lazy loaded"));
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void immutableProxy() {
+		ProxyFactory.getInstance().newProxy(NonFinalCurrency.class, id -> null);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void immutableOffHeap() {
+		new OffHeapEntityCache(1024, Currency.class);
+	}
+
+	@Test
+	public void invalidate() {
+		EntityConstructor<Currency> ec = EntityConstructor.forClass(Currency.class);
+		OrmMetadataRegistry.invalidate(Currency.class);
+		EntityConstructor<Currency> ec2 = EntityConstructor.forClass(Currency.class);
+		assertNotSame(ec, ec2);
+		assertSame(ec2, EntityConstructor.forClass(Currency.class));
+	}
+
+	@Test
+	public void immutableWithChildren() {
+		try {
+			sbf.newSqlBuilder(ImmutablePrice.class).select().exec();
+			fail("Immutable entities with children should not be accepted.");
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage().contains("can not have children"));
+		}
+	}
+
+
+	@Table("ctor_currency")
+	public static final class Currency {
+
+		@PkColumn("id")
+		private final int id;
+
+		@Column("code")
+		private final String code;
+
+		@Column(value = "rate", allowNull = true)
+		private final BigDecimal rate;
+
+		Currency(@PkColumn("id") int id, @Column("code") String code,
+				@Column(value = "rate", allowNull = true) BigDecimal rate) {
+			this.id = id;
+			this.code = code;
+			this.rate = rate;
+		}
+	}
+
+	@Table("ctor_price")
+	public static class Price {
+
+		@PkColumn("id")
+		int id;
+
+		@Column("amount")
+		int amount;
+
+		@Child(fkName = "currency_id")
+		Currency currency;
+	}
+
+	@Table("ctor_price")
+	public static class LazyPrice {
+
+		@PkColumn("id")
+		int id;
+
+		@Child(fkName = "currency_id", fetchType = FetchType.LAZY)
+		NonFinalCurrency currency;
+	}
+
+	@Table("ctor_currency")
+	public static class NonFinalCurrency {
+
+		@PkColumn("id")
+		private final int id;
+
+		NonFinalCurrency(@PkColumn("id") int id) {
+			this.id = id;
+		}
+
+		public int getId() {
+			return id;
+		}
+	}
+
+	@Table("ctor_price")
+	public static class ImmutablePrice {
+
+		@PkColumn("id")
+		private final int id;
+
+		@Child(fkName = "currency_id")
+		private Currency currency;
+
+		ImmutablePrice(@PkColumn("id") int id) {
+			this.id = id;
+		}
+	}
+
+	@Table("ctor_currency")
+	public static class Ambiguous {
+
+		Ambiguous(@PkColumn("id") int id) {
+		}
+
+		Ambiguous(@PkColumn("id") int id, @Column("code") String code) {
+		}
+	}
+}
@@ -0,0 +1,63 @@
+package com.asentinel.common.orm.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class HistogramTestCase {
+
+	@Test
+	public void bucketBoundaries() {
+		for (long v = 0; v < 100_000; v++) {
+			int index = Histogram.indexOf(v);
+			assertTrue(v <= Histogram.highestValueOf(index));
+			if (index > 0) {
+				assertTrue(v > Histogram.highestValueOf(index - 1));
+			}
+		}
+		assertEquals(Histogram.MAX_TRACKABLE_VALUE,
+				Histogram.highestValueOf(Histogram.indexOf(Histogram.MAX_TRACKABLE_VALUE)));
+	}
+
+	@Test
+	public void percentiles() {
+		Histogram h = new Histogram();
+		for (int i = 1; i <= 1000; i++) {
+			h.record(i);
+		}
+		assertEquals(1000, h.getCount());
+		assertEquals(1000, h.getMax());
+		assertEquals(500.5, h.getMean(), 0.001);
+		assertWithinError(500, h.getValueAtPercentile(50));
+		assertWithinError(990, h.getValueAtPercentile(99));
+		assertEquals(1000, h.getValueAtPercentile(100));
+		assertEquals(1, h.getValueAtPercentile(0));
+	}
+
+	@Test
+	public void outOfRangeValues() {
+		Histogram h = new Histogram();
+		h.record(-5);
+		h.record(Long.MAX_VALUE);
+		assertEquals(2, h.getCount());
+		assertEquals(0, h.getValueAtPercentile(50));
+		assertEquals(Long.MAX_VALUE, h.getMax());
+		assertEquals(Histogram.MAX_TRACKABLE_VALUE, h.getValueAtPercentile(100));
+	}
+
+	@Test
+	public void reset() {
+		Histogram h = new Histogram();
+		h.record(10);
+		h.reset();
+		assertEquals(0, h.getCount());
+		assertEquals(0, h.getMax());
+		assertEquals(0, h.getValueAtPercentile(99));
+	}
+
+	private static void assertWithinError(long expected, long actual) {
+		assertTrue(actual >= expected);
+		assertTrue(actual <= expected + expected / Histogram.SUB_BUCKETS);
+	}
+}
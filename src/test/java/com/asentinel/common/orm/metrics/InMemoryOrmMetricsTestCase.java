@@ -0,0 +1,161 @@
+package com.asentinel.common.orm.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.asentinel.common.orm.FetchType;
+import com.asentinel.common.orm.H2DatabaseTSupport;
+import com.asentinel.common.orm.OrmTemplate;
+import com.asentinel.common.orm.cache.SimpleEntityCache;
+import com.asentinel.common.orm.jql.DefaultSqlBuilderFactory;
+import com.asentinel.common.orm.mappers.Child;
+import com.asentinel.common.orm.mappers.Column;
+import com.asentinel.common.orm.mappers.PkColumn;
+import com.asentinel.common.orm.mappers.Table;
+import com.asentinel.common.orm.metrics.InMemoryOrmMetrics.QueryMetrics;
+import com.asentinel.common.orm.metrics.InMemoryOrmMetrics.UpdateMetrics;
+
+public class InMemoryOrmMetricsTestCase {
+
+	@Rule
+	public final H2DatabaseTSupport db = new H2DatabaseTSupport("metrics");
+
+	private final DefaultSqlBuilderFactory sbf = db.getSqlBuilderFactory();
+	private final OrmTemplate orm = db.newOrmTemplate();
+
+	private final InMemoryOrmMetrics metrics = new InMemoryOrmMetrics();
+
+	@Before
+	public void setup() {
+		db.createTable("mtr_category(id int primary key, name varchar(20))");
+		db.createTable("mtr_item(id int primary key, name varchar(20), category_id int)");
+		db.execute("insert into mtr_category values (1, 'c1'), (2, 'c2')",
+				"insert into mtr_item values (1, 'a', 1), (2, 'b', 1), (3, 'c', 2)");
+		OrmMetricsRegistry.register(metrics);
+	}
+
+	@After
+	public void tearDown() {
+		OrmMetricsRegistry.unregister(metrics);
+	}
+
+	@Test
+	public void queries() {
+		for (int i = 0; i < 3; i++) {
+			List<Item> items = orm.newSqlBuilder(Item.class).select().orderBy().id().exec();
+			assertEquals(3, items.size());
+		}
+		Map<String, QueryMetrics> queries = metrics.getQueryMetrics();
+		assertEquals(1, queries.size());
+		QueryMetrics query = queries.values().iterator().next();
+		assertEquals(3, query.getCompileTime().getCount());
+		assertEquals(3, query.getExecutionTime().getCount());
+		assertEquals(9, query.getRows().getSum());
+		assertEquals(3, query.getRows().getMax());
+		assertTrue(query.getExecutionTime().getValueAtPercentile(99) > 0);
+
+		InMemoryOrmMetrics.MappingMetrics mapping = metrics.getMappingMetrics().get(Item.class.getName());
+		assertEquals(3, mapping.getMappingTime().getCount());
+		assertEquals(9, mapping.getRows());
+	}
+
+	@Test
+	public void proxyLoads() {
+		Item item = orm.getEntity(Item.class, 1);
+		assertEquals("c1", item.category.getName());
+		assertNotNull(metrics.getProxyLoadMetrics().get(Category.class.getName()));
+		assertEquals(1, metrics.getProxyLoadMetrics().get(Category.class.getName()).getCount());
+	}
+
+	@Test
+	public void updates() {
+		List<Item> items = orm.newSqlBuilder(Item.class).select().exec();
+		orm.update(items);
+		orm.delete(Item.class, 1, 2);
+
+		UpdateMetrics update = metrics.getUpdateMetrics().get("mtr_item");
+		assertEquals(2, update.getExecutionTime().getCount());
+		assertEquals(3, update.getBatchSize().getMax());
+		assertEquals(5, update.getRows());
+	}
+
+	@Test
+	public void cache() {
+		sbf.setEntityCache(new SimpleEntityCache(10, Duration.ofMinutes(1), Category.class));
+		orm.getEntity(Category.class, 1);
+		orm.getEntity(Category.class, 1);
+		orm.getEntity(Category.class, 2);
+
+		InMemoryOrmMetrics.CacheMetrics cache = metrics.getCacheMetrics().get(OrmMetrics.ENTITY_CACHE);
+		assertEquals(1, cache.getHits());
+		assertEquals(2, cache.getMisses());
+	}
+
+	@Test
+	public void queryShapesAreBounded() {
+		InMemoryOrmMetrics bounded = new InMemoryOrmMetrics(2);
+		bounded.onQueryExecuted("select 1", 10, 1);
+		bounded.onQueryExecuted("select 2", 10, 1);
+		bounded.onQueryExecuted("select 3", 10, 1);
+		bounded.onQueryExecuted("select 4", 10, 1);
+		bounded.onQueryExecuted("select 1", 10, 1);
+		assertEquals(3, bounded.getQueryMetrics().size());
+		assertEquals(2, bounded.getQueryMetrics().get("select 1").getExecutionTime().getCount());
+		assertEquals(2, bounded.getQueryMetrics().get(InMemoryOrmMetrics.OTHER_QUERIES).getExecutionTime().getCount());
+	}
+
+	@Test
+	public void failingMetricsDoNotBreakQueries() {
+		OrmMetrics failing = new OrmMetrics() {
+			@Override
+			public void onQueryExecuted(String sql, long nanos, long rows) {
+				throw new IllegalStateException("test");
+			}
+		};
+		OrmMetricsRegistry.register(failing);
+		try {
+			assertEquals(3, orm.newSqlBuilder(Item.class).select().exec().size());
+			assertEquals(1, metrics.getQueryMetrics().size());
+		} finally {
+			OrmMetricsRegistry.unregister(failing);
+		}
+	}
+
+
+	@Table("mtr_category")
+	public static class Category {
+
+		@PkColumn("id")
+		int id;
+
+		@Column("name")
+		String name;
+
+		public String getName() {
+			return name;
+		}
+	}
+
+	@Table("mtr_item")
+	public static class Item {
+
+		@PkColumn("id")
+		int id;
+
+		@Column("name")
+		String name;
+
+		@Child(fkName = "category_id", fetchType = FetchType.LAZY)
+		Category category;
+	}
+}
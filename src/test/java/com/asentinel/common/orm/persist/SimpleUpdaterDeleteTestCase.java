@@ -4,13 +4,18 @@ import static org.junit.Assert.assertEquals;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.matches;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import org.junit.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import com.asentinel.common.jdbc.SqlQuery;
 import com.asentinel.common.jdbc.flavors.JdbcFlavor;
 import com.asentinel.common.jdbc.flavors.postgres.PostgresJdbcFlavor;
+import com.asentinel.common.orm.cache.EntityCache;
 import com.asentinel.common.orm.mappers.PkColumn;
 import com.asentinel.common.orm.mappers.Table;
 
@@ -22,7 +27,7 @@ public class SimpleUpdaterDeleteTestCase {
 	private final JdbcFlavor jdbcFlavor = new PostgresJdbcFlavor();
 	
 	private final SqlQuery ex = mock(SqlQuery.class);
-	private final Updater u = new SimpleUpdater(jdbcFlavor, ex);
+	private final SimpleUpdater u = new SimpleUpdater(jdbcFlavor, ex);
 	
 	@Test
 	public void deleteNoIds() {
@@ -43,6 +48,31 @@ public class SimpleUpdaterDeleteTestCase {
 		assertEquals(2, u.delete(DeleteTestEntity.class, 1, 2));
 	}
 
+	@Test
+	public void deleteEvictsFromEntityCache() {
+		EntityCache entityCache = mock(EntityCache.class);
+		u.setEntityCache(entityCache);
+		u.delete(DeleteTestEntity.class, 1, 2);
+		verify(entityCache).evict(DeleteTestEntity.class, 1);
+		verify(entityCache).evict(DeleteTestEntity.class, 2);
+	}
+
+	@Test
+	public void deleteEvictsFromEntityCacheAfterCompletion() {
+		EntityCache entityCache = mock(EntityCache.class);
+		u.setEntityCache(entityCache);
+		TransactionSynchronizationManager.initSynchronization();
+		try {
+			u.delete(DeleteTestEntity.class, 1);
+			verify(entityCache).evict(DeleteTestEntity.class, 1);
+			TransactionSynchronizationManager.getSynchronizations()
+				.forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+			verify(entityCache, times(2)).evict(DeleteTestEntity.class, 1);
+		} finally {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+	}
+
 	@Table("table")
 	private static class DeleteTestEntity {
 		
@@ -3,6 +3,7 @@ package com.asentinel.common.orm.persist;
 import com.asentinel.common.jdbc.SqlQuery;
 import com.asentinel.common.jdbc.flavors.JdbcFlavor;
 import com.asentinel.common.jdbc.flavors.postgres.PostgresJdbcFlavor;
+import com.asentinel.common.orm.cache.TransactionalIdentityMap;
 import com.asentinel.common.orm.mappers.Column;
 import com.asentinel.common.orm.mappers.PkColumn;
 import com.asentinel.common.orm.mappers.Table;
@@ -17,6 +18,8 @@ import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.util.ReflectionUtils;
 
 import java.io.ByteArrayInputStream;
@@ -29,6 +32,8 @@ import java.util.function.Function;
 
 import static java.util.Collections.singleton;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
@@ -184,6 +189,27 @@ public class SimpleUpdaterTestCase {
 				cSql.getValue().replaceAll("\\s", "").toLowerCase());
 	}
 	
+	@Test
+	public void testInsertRemovesOtherInstanceFromIdentityMap() {
+		Bean stale = new Bean(ID.intValue(), 0, 0, 0, 0, 0);
+		Bean b = new Bean(ID.intValue(), 20, 30, 40, 50, 60);
+		TransactionSynchronizationManager.initSynchronization();
+		try {
+			TransactionalIdentityMap identityMap = TransactionalIdentityMap.bind();
+			identityMap.putIfAbsent(Bean.class, ID, stale);
+			u.update(b, new UpdateSettings<>(UpdateType.INSERT, dynamicColumns));
+			assertNull(identityMap.get(Bean.class, ID));
+			
+			identityMap.putIfAbsent(Bean.class, ID, b);
+			u.update(b, new UpdateSettings<>(UpdateType.INSERT, dynamicColumns));
+			assertSame(b, identityMap.get(Bean.class, ID));
+		} finally {
+			TransactionSynchronizationManager.getSynchronizations()
+				.forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+	}
+	
 	@Test
 	public void testInsertForViewMappedBean() {
 		ExtBean b = new ExtBean(ID.intValue(), 20, 30, 40, 50, 60);
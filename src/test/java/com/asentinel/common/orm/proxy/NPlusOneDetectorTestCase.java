@@ -0,0 +1,184 @@
+package com.asentinel.common.orm.proxy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import com.asentinel.common.orm.AutoEagerLoader;
+import com.asentinel.common.orm.FetchType;
+import com.asentinel.common.orm.H2DatabaseTSupport;
+import com.asentinel.common.orm.OrmTemplate;
+import com.asentinel.common.orm.RelationType;
+import com.asentinel.common.orm.mappers.Child;
+import com.asentinel.common.orm.mappers.Column;
+import com.asentinel.common.orm.mappers.PkColumn;
+import com.asentinel.common.orm.mappers.Table;
+
+public class NPlusOneDetectorTestCase {
+
+	@Rule
+	public final H2DatabaseTSupport db = new H2DatabaseTSupport("nplusone");
+
+	private final OrmTemplate orm = db.newOrmTemplate();
+
+	private final NPlusOneDetector detector = new NPlusOneDetector(3);
+	private final List<NPlusOneDetector.Finding> findings = new ArrayList<>();
+
+	@Before
+	public void setup() {
+		db.createTable("npo_category(id int primary key, name varchar(20))");
+		db.createTable("npo_item(id int primary key, name varchar(20), category_id int)");
+		db.createTable("npo_tag(id int primary key, item_id int)");
+		db.execute("insert into npo_category values (1, 'c1'), (2, 'c2'), (3, 'c3')",
+				"insert into npo_item values (1, 'a', 1), (2, 'b', 2), (3, 'c', 3), (4, 'd', 1)",
+				"insert into npo_tag values (1, 1), (2, 2), (3, 3), (4, 3)");
+		detector.setFailOnDetection(true);
+		detector.addListener(findings::add);
+		NPlusOneDetector.install(detector);
+	}
+
+	@After
+	public void tearDown() {
+		NPlusOneDetector.uninstall();
+	}
+
+	private List<Item> loadItems() {
+		return orm.newSqlBuilder(Item.class).select().orderBy().id().exec();
+	}
+
+	@Test
+	public void repeatedEntityLoadsFail() {
+		try (NPlusOneDetector.Scope scope = detector.openScope()) {
+			for (Item item: loadItems()) {
+				item.category.getName();
+			}
+		} catch (NPlusOneException e) {
+			assertEquals(1, e.getFindings().size());
+			NPlusOneDetector.Finding finding = e.getFindings().get(0);
+			assertEquals(3, finding.getLoads());
+			assertEquals(Category.class, finding.getSite().getEntityType());
+			assertTrue(finding.getCallSite(), finding.getCallSite().startsWith(getClass().getName() + ".repeatedEntityLoadsFail"));
+			assertTrue(finding.getSuggestion().contains("AutoEagerLoader.forPath(Item.class, Category.class)"));
+			assertEquals(1, findings.size());
+			return;
+		}
+		fail("NPlusOneException expected.");
+	}
+
+	@Test
+	public void repeatedCollectionLoadsFail() {
+		try (NPlusOneDetector.Scope scope = detector.openScope()) {
+			for (Item item: loadItems()) {
+				item.tags.size();
+			}
+		} catch (NPlusOneException e) {
+			assertEquals(1, e.getFindings().size());
+			assertEquals(4, e.getFindings().get(0).getLoads());
+			assertTrue(e.getFindings().get(0).getSuggestion().contains("AutoEagerLoader.forPath(Item.class, Tag.class)"));
+			return;
+		}
+		fail("NPlusOneException expected.");
+	}
+
+	@Test
+	public void eagerLoadingFixesTheFinding() {
+		try (NPlusOneDetector.Scope scope = detector.openScope()) {
+			List<Item> items = orm.newSqlBuilder(Item.class)
+					.select(AutoEagerLoader.forPath(Item.class, Category.class))
+					.exec();
+			for (Item item: items) {
+				item.category.getName();
+			}
+		}
+		assertTrue(findings.isEmpty());
+	}
+
+	@Test
+	public void belowThreshold() {
+		try (NPlusOneDetector.Scope scope = detector.openScope()) {
+			List<Item> items = loadItems();
+			items.get(0).category.getName();
+			items.get(1).category.getName();
+			// same id as the first item
+			items.get(3).category.getName();
+		}
+		assertTrue(findings.isEmpty());
+	}
+
+	@Test
+	public void notSampled() {
+		detector.setSamplingRate(0);
+		try (NPlusOneDetector.Scope scope = detector.openScope()) {
+			for (Item item: loadItems()) {
+				item.category.getName();
+			}
+		}
+		assertTrue(findings.isEmpty());
+	}
+
+	@Test
+	public void transactionScopeReportsWithoutFailing() {
+		TransactionSynchronizationManager.initSynchronization();
+		try {
+			for (Item item: loadItems()) {
+				item.category.getName();
+			}
+			assertTrue(findings.isEmpty());
+			List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+			TransactionSynchronizationUtils.invokeAfterCompletion(synchronizations, TransactionSynchronization.STATUS_COMMITTED);
+		} finally {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+		assertEquals(1, findings.size());
+		assertEquals(3, findings.get(0).getLoads());
+	}
+
+
+	@Table("npo_category")
+	public static class Category {
+
+		@PkColumn("id")
+		int id;
+
+		@Column("name")
+		String name;
+
+		public String getName() {
+			return name;
+		}
+	}
+
+	@Table("npo_tag")
+	public static class Tag {
+
+		@PkColumn("id")
+		int id;
+	}
+
+	@Table("npo_item")
+	public static class Item {
+
+		@PkColumn("id")
+		int id;
+
+		@Column("name")
+		String name;
+
+		@Child(fkName = "category_id", fetchType = FetchType.LAZY)
+		Category category;
+
+		@Child(parentRelationType = RelationType.MANY_TO_ONE, fkName = "item_id", fetchType = FetchType.LAZY)
+		List<Tag> tags;
+	}
+}
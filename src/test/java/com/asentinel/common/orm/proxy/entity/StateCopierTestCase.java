@@ -0,0 +1,97 @@
+package com.asentinel.common.orm.proxy.entity;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.asentinel.common.orm.mappers.PkColumn;
+
+public class StateCopierTestCase {
+
+	public static class Parent {
+		@PkColumn("id")
+		private int id;
+
+		protected String parentName;
+	}
+
+	public static class Child extends Parent {
+		static String staticField = "static";
+
+		private final long finalField;
+		private Object ref;
+		private double number;
+
+		public Child() {
+			this(0);
+		}
+
+		public Child(long finalField) {
+			this.finalField = finalField;
+		}
+	}
+
+	@Test
+	public void testFieldCount() {
+		StateCopier copier = new StateCopier(Child.class);
+		assertEquals(5, copier.getFieldCount());
+	}
+
+	@Test
+	public void testCopy() {
+		Child source = new Child(100);
+		((Parent) source).id = 10;
+		source.parentName = "parent";
+		source.ref = new Object();
+		source.number = 1.5;
+
+		Child target = new Child();
+		new StateCopier(Child.class).copy(source, target);
+
+		assertEquals(10, ((Parent) target).id);
+		assertEquals("parent", target.parentName);
+		assertEquals(100, target.finalField);
+		assertSame(source.ref, target.ref);
+		assertEquals(1.5, target.number, 0);
+		assertEquals("static", Child.staticField);
+	}
+
+	@Test
+	public void testCopyFromSubclass() {
+		Child source = new Child(100);
+		((Parent) source).id = 10;
+		source.parentName = "parent";
+
+		Parent target = new Parent();
+		new StateCopier(Parent.class).copy(source, target);
+
+		assertEquals(10, target.id);
+		assertEquals("parent", target.parentName);
+	}
+
+	@Test
+	public void testCopierIsCreatedWithTheProxyClass() {
+		ProxyFactory factory = ProxyFactory.getInstance();
+		factory.getProxyObjectFactory(Child.class);
+		assertSame(factory.getStateCopier(Child.class), factory.getStateCopier(Child.class));
+	}
+
+	@Test
+	public void testProxyLoad() {
+		Child proxy = ProxyFactory.getInstance().newProxy(Child.class, id -> {
+			Child c = new Child(7);
+			((Parent) c).id = (Integer) id;
+			c.parentName = "loaded";
+			return c;
+		});
+		((Parent) proxy).id = 3;
+
+		// calling any non id method loads the proxy
+		proxy.toString();
+		proxy.hashCode();
+
+		assertEquals(3, ((Parent) proxy).id);
+		assertEquals("loaded", proxy.parentName);
+		assertEquals(7, proxy.finalField);
+	}
+}
@@ -87,6 +87,30 @@ public class SqlFactoryPaginationTestCase {
 	}
 
 	
+	@Test
+	public void testPaginationIds() {
+		Node<EntityDescriptor> node1 = new SimpleNode<>(new SimpleEntityDescriptor(BillParentEntity.class));
+		Node<EntityDescriptor> node2 = new SimpleNode<>(
+				new SimpleEntityDescriptor.Builder(InvoiceParentEntity.class).parentRelationType(RelationType.MANY_TO_ONE).build()
+		);
+		node1.addChild(node2);
+		QueryCriteria pagination  = new QueryCriteria.Builder(node1)
+			.mainWhereClause("a=1")
+			.mainOrderByClause("BillId")
+			.build();
+		
+		String q = sqlFactory.buildPaginatedIdsParameterizedQuery(pagination).getSql();
+		log.debug("testPaginationIds - q: {}", q);
+		assertTrue(q.contains("offset ? limit ?"));
+		assertFalse(q.contains("InvoiceId"));
+		assertTrue(q.trim().endsWith("order by " + DefaultSqlFactory.ROW_INDEX_COL));
+		
+		String qn = sqlFactory.buildPaginatedIdsParameterizedQuery(pagination, true).getSql();
+		assertTrue(qn.contains("offset :"));
+		assertFalse(qn.contains("?"));
+		assertTrue(qn.trim().endsWith("order by " + DefaultSqlFactory.ROW_INDEX_COL));
+	}
+	
 	@Test
 	public void testPaginationOnlyAssociations() {
 		Node<EntityDescriptor> node1 = new SimpleNode<>(new SimpleEntityDescriptor(BillParentEntity.class));
@@ -2,6 +2,8 @@ package com.asentinel.common.orm.query;
 
 import com.asentinel.common.collections.tree.Node;
 import com.asentinel.common.collections.tree.SimpleNode;
+import com.asentinel.common.jdbc.arrays.Array;
+import com.asentinel.common.jdbc.flavors.h2.H2JdbcFlavor;
 import com.asentinel.common.jdbc.flavors.postgres.PostgresJdbcFlavor;
 import com.asentinel.common.orm.Bill;
 import com.asentinel.common.orm.BillParentEntity;
@@ -620,6 +622,26 @@ public class SqlFactoryTestCase {
 		assertTrue(sql.replace(" ", "").endsWith("lnk.InvoiceId=i.InvoiceIdandlnk.TestColumnMiddle=?andi.TestColumnRight=?"));
 	}
 	
+	@Test
+	public void testInQuery_Array() {
+		Node<SimpleEntityDescriptor> node = new SimpleNode<>(new SimpleEntityDescriptor.Builder(Bill.class).tableAlias("b").build());
+		ParameterizedQuery sq = sqlFactory.buildParameterizedInQuery(node, "b.BillId", Arrays.asList(1, 2L, null));
+		assertTrue(sq.getSql().endsWith("where b.BillId = any(?)"));
+		assertEquals(1, sq.getMainParameters().size());
+		Array array = (Array) sq.getMainParameters().get(0);
+		assertEquals("int8", array.getSqlTypeName());
+		assertArrayEquals(new Object[] {1L, 2L}, array.getObjects());
+	}
+
+	@Test
+	public void testInQuery_Placeholders() {
+		Node<SimpleEntityDescriptor> node = new SimpleNode<>(new SimpleEntityDescriptor.Builder(Bill.class).tableAlias("b").build());
+		ParameterizedQuery sq = new DefaultSqlFactory(new H2JdbcFlavor())
+				.buildParameterizedInQuery(node, "b.BillId", Arrays.asList(1, 2));
+		assertTrue(sq.getSql().endsWith("where b.BillId in (?, ?)"));
+		assertEquals(Arrays.asList(1L, 2L), sq.getMainParameters());
+	}
+	
 	// TODO: add join conditions override tests for the method SqlFactory#buildParameterizedQuery(QueryCriteria)
 	// This is hardly used so I did not add the tests yet
 }
@@ -0,0 +1,193 @@
+package com.asentinel.common.orm.shard;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.asentinel.common.orm.H2DatabaseTSupport;
+import com.asentinel.common.orm.OrmMetadataRegistry;
+import com.asentinel.common.orm.OrmTemplate;
+import com.asentinel.common.orm.TargetMember;
+import com.asentinel.common.orm.TargetMembersHolder;
+import com.asentinel.common.orm.jql.Page;
+import com.asentinel.common.orm.mappers.Column;
+import com.asentinel.common.orm.mappers.PkColumn;
+import com.asentinel.common.orm.mappers.Table;
+import com.asentinel.common.orm.persist.UpdateType;
+
+/**
+ * Uses 2 H2 databases as shards, the invoices are sharded by tenant with
+ * tenant 1 on shard 0 and tenant 2 on shard 1.
+ */
+public class ShardedOrmTemplateTestCase {
+
+	@Rule
+	public final H2DatabaseTSupport shard0 = new H2DatabaseTSupport("shard0");
+
+	@Rule
+	public final H2DatabaseTSupport shard1 = new H2DatabaseTSupport("shard1");
+
+	private final JdbcTemplate[] jdbcTemplates = new JdbcTemplate[2];
+	private final OrmTemplate[] orms = new OrmTemplate[2];
+	private ShardedOrmTemplate sharded;
+
+	@Before
+	public void setup() {
+		H2DatabaseTSupport[] shards = {shard0, shard1};
+		for (int i = 0; i < 2; i++) {
+			orms[i] = shards[i].newOrmTemplate();
+			jdbcTemplates[i] = shards[i].getJdbcTemplate();
+			shards[i].createTable("shard_invoice(id int primary key, tenant_id int, amount int)");
+			shards[i].createTable("shard_tenant(id int primary key, name varchar(20))");
+		}
+		sharded = new ShardedOrmTemplate(Arrays.asList(orms), (key, count) -> ((Integer) key) - 1);
+		sharded.getUpdater().update(Arrays.asList(
+				new Invoice(1, 1, 10), new Invoice(2, 2, 20), new Invoice(3, 1, 30),
+				new Invoice(4, 2, 40), new Invoice(5, 2, 50)), UpdateType.INSERT);
+	}
+
+	private List<Integer> ids(int shard) {
+		return jdbcTemplates[shard].queryForList("select id from shard_invoice order by id", Integer.class);
+	}
+
+	@Test
+	public void writesAreRouted() {
+		assertEquals(List.of(1, 3), ids(0));
+		assertEquals(List.of(2, 4, 5), ids(1));
+
+		Invoice invoice = new Invoice(4, 2, 400);
+		sharded.getUpdater().update(invoice);
+		assertEquals(400, (int) jdbcTemplates[1].queryForObject("select amount from shard_invoice where id = 4", Integer.class));
+		assertSame(orms[1], sharded.forEntity(invoice));
+	}
+
+	@Test
+	public void singleShardQuery() {
+		List<Invoice> invoices = sharded.forShardKey(1).newSqlBuilder(Invoice.class)
+				.select().orderBy().id().exec();
+		assertEquals(List.of(1, 3), invoices.stream().map(i -> i.id).collect(toList()));
+	}
+
+	@Test
+	public void scatterOrdered() {
+		List<Invoice> invoices = sharded.scatter(
+				orm -> orm.newSqlBuilder(Invoice.class).select().orderBy().column("amount").desc().exec(),
+				Comparator.comparing((Invoice i) -> i.amount).reversed());
+		assertEquals(List.of(5, 4, 3, 2, 1), invoices.stream().map(i -> i.id).collect(toList()));
+	}
+
+	@Test
+	public void scatterPage() {
+		Page<Invoice> page = sharded.scatterPage(1, 3,
+				(orm, begin, end) -> orm.newSqlBuilder(Invoice.class)
+					.pagedSelect(begin, end).pagedOrderBy().id().execForPage(),
+				Comparator.comparing((Invoice i) -> i.id));
+		assertEquals(5, page.getCount());
+		assertEquals(List.of(2, 3), page.getItems().stream().map(i -> i.id).collect(toList()));
+
+		page = sharded.scatterPage(4, 10,
+				(orm, begin, end) -> orm.newSqlBuilder(Invoice.class)
+					.pagedSelect(begin, end).pagedOrderBy().id().execForPage(),
+				Comparator.comparing((Invoice i) -> i.id));
+		assertEquals(5, page.getCount());
+		assertEquals(List.of(5), page.getItems().stream().map(i -> i.id).collect(toList()));
+	}
+
+	@Test
+	public void getEntityScatter() {
+		assertEquals(40, sharded.getEntity(Invoice.class, 4).amount);
+	}
+
+	@Test
+	public void deleteBroadcast() {
+		assertEquals(2, sharded.getUpdater().delete(Invoice.class, 1, 4));
+		assertEquals(List.of(3), ids(0));
+		assertEquals(List.of(2, 5), ids(1));
+	}
+
+	@Test
+	public void idShardKey() {
+		Tenant t1 = new Tenant(1, "t1");
+		Tenant t2 = new Tenant(2, "t2");
+		sharded.getUpdater().update(List.of(t1, t2), UpdateType.INSERT);
+		assertEquals("t1", jdbcTemplates[0].queryForObject("select name from shard_tenant", String.class));
+		assertEquals("t2", jdbcTemplates[1].queryForObject("select name from shard_tenant", String.class));
+		assertEquals("t2", sharded.getEntity(Tenant.class, 2).name);
+		assertEquals(1, sharded.getUpdater().delete(Tenant.class, 2));
+		assertEquals(0, (int) jdbcTemplates[1].queryForObject("select count(*) from shard_tenant", Integer.class));
+	}
+
+
+	@Test(expected = IllegalArgumentException.class)
+	public void unassignedIdShardKeyInsert() {
+		sharded.getUpdater().update(new Tenant(0, "t0"), UpdateType.INSERT);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void unassignedIdShardKeyDelete() {
+		sharded.getUpdater().delete(Tenant.class, 0);
+	}
+
+	@Test
+	public void shardKeyMemberCached() {
+		TargetMember member = ShardKeys.getShardKeyMember(Invoice.class);
+		assertEquals("tenant_id", member.getColumnAnnotation().value());
+		assertSame(member, ShardKeys.getShardKeyMember(Invoice.class));
+		OrmMetadataRegistry.invalidate(Invoice.class);
+		TargetMember recalculated = ShardKeys.getShardKeyMember(Invoice.class);
+		assertNotSame(member, recalculated);
+		assertSame(TargetMembersHolder.getInstance().getTargetMembers(Invoice.class).getColumnMembers().stream()
+				.filter(m -> "tenant_id".equals(m.getColumnAnnotation().value())).findFirst().get(), recalculated);
+	}
+
+
+	@Table(value = "shard_invoice", shardKey = "tenant_id")
+	public static class Invoice {
+
+		@PkColumn("id")
+		int id;
+
+		@Column("tenant_id")
+		int tenantId;
+
+		@Column("amount")
+		int amount;
+
+		public Invoice() {
+		}
+
+		Invoice(int id, int tenantId, int amount) {
+			this.id = id;
+			this.tenantId = tenantId;
+			this.amount = amount;
+		}
+	}
+
+	@Table("shard_tenant")
+	public static class Tenant {
+
+		@PkColumn("id")
+		int id;
+
+		@Column("name")
+		String name;
+
+		public Tenant() {
+		}
+
+		Tenant(int id, String name) {
+			this.id = id;
+			this.name = name;
+		}
+	}
+}
@@ -0,0 +1,45 @@
+package com.asentinel.common.orm.shard;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.UUID;
+
+import org.junit.Test;
+
+public class ShardingStrategyTestCase {
+
+	@Test
+	public void hash() {
+		ShardingStrategy strategy = ShardingStrategy.hash();
+		assertEquals(strategy.getShard(5, 4), strategy.getShard(5L, 4));
+		assertEquals(1, strategy.getShard(5, 4));
+		assertEquals(Math.floorMod("tenant".hashCode(), 3), strategy.getShard("tenant", 3));
+		UUID uuid = UUID.randomUUID();
+		assertEquals(strategy.getShard(uuid, 7), strategy.getShard(UUID.fromString(uuid.toString()), 7));
+		for (int i = -100; i < 100; i++) {
+			int shard = strategy.getShard(i, 3);
+			assertEquals(true, shard >= 0 && shard < 3);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void hashUnsupportedKey() {
+		ShardingStrategy.hash().getShard(new Object(), 2);
+	}
+
+	@Test
+	public void ranges() {
+		ShardingStrategy strategy = ShardingStrategy.ranges(100, 200);
+		assertEquals(0, strategy.getShard(-5, 3));
+		assertEquals(0, strategy.getShard(99, 3));
+		assertEquals(1, strategy.getShard(100, 3));
+		assertEquals(1, strategy.getShard(199L, 3));
+		assertEquals(2, strategy.getShard(200, 3));
+		assertEquals(2, strategy.getShard(Long.MAX_VALUE, 3));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rangesWrongShardCount() {
+		ShardingStrategy.ranges(100, 200).getShard(1, 2);
+	}
+}
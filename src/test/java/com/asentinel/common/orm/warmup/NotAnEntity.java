@@ -0,0 +1,6 @@
+package com.asentinel.common.orm.warmup;
+
+// not annotated, must not be picked up by the warm-up
+public class NotAnEntity {
+
+}
@@ -0,0 +1,28 @@
+package com.asentinel.common.orm.warmup;
+
+import java.util.Set;
+
+import com.asentinel.common.orm.mappers.Child;
+import com.asentinel.common.orm.mappers.Column;
+import com.asentinel.common.orm.mappers.PkColumn;
+import com.asentinel.common.orm.mappers.Table;
+
+@Table("WarmUpChild")
+public class WarmUpChild {
+	@PkColumn("id")
+	int id;
+	
+	@Column("name")
+	String name;
+
+	@Child(parentAvailableFk = false)
+	Set<WarmUpChild> ignored;
+
+	public int getId() {
+		return id;
+	}
+	
+	public void setId(int id) {
+		this.id = id;
+	}
+}
@@ -0,0 +1,24 @@
+package com.asentinel.common.orm.warmup;
+
+import java.util.List;
+
+import com.asentinel.common.orm.mappers.Child;
+import com.asentinel.common.orm.mappers.PkColumn;
+import com.asentinel.common.orm.mappers.Table;
+
+@Table("WarmUpParent")
+public class WarmUpParent {
+	@PkColumn("id")
+	int id;
+	
+	@Child
+	List<WarmUpChild> children;
+	
+	public int getId() {
+		return id;
+	}
+	
+	public void setId(int id) {
+		this.id = id;
+	}
+}
@@ -0,0 +1,190 @@
+package com.asentinel.common.util;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.springframework.util.StreamUtils;
+
+public class ClassValueCacheTestCase {
+
+	static final int CLIENT_COUNT = 50;
+
+	ExecutorService pool = Executors.newCachedThreadPool();
+	CyclicBarrier barrier = new CyclicBarrier(CLIENT_COUNT + 1);
+
+	ClassValueCache<String> cache = new ClassValueCache<>();
+
+	AtomicInteger callCount = new AtomicInteger();
+
+	private void await() {
+		try {
+			barrier.await();
+		} catch (InterruptedException | BrokenBarrierException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private String compute(Class<?> clazz) {
+		callCount.incrementAndGet();
+		return clazz.getName();
+	}
+
+	@Test
+	public void testCalculatedOnce() {
+		for (int t = 0; t < CLIENT_COUNT; t++) {
+			pool.execute(() -> {
+				await();
+				cache.get(Integer.class, () -> compute(Integer.class));
+				await();
+			});
+		}
+		await();
+		await();
+
+		assertEquals(1, callCount.get());
+		assertEquals(1, cache.getSize());
+		assertEquals(Integer.class.getName(), cache.get(Integer.class, () -> compute(Integer.class)));
+	}
+
+	@Test
+	public void testRemove() {
+		cache.get(Integer.class, () -> compute(Integer.class));
+		cache.get(Long.class, () -> compute(Long.class));
+		assertEquals(2, cache.getSize());
+
+		cache.remove(Integer.class);
+		assertEquals(1, cache.getSize());
+		cache.get(Integer.class, () -> compute(Integer.class));
+		cache.get(Long.class, () -> compute(Long.class));
+		assertEquals(3, callCount.get());
+	}
+
+	@Test
+	public void testClear() {
+		cache.get(Integer.class, () -> compute(Integer.class));
+		cache.clear();
+		assertEquals(0, cache.getSize());
+		cache.get(Integer.class, () -> compute(Integer.class));
+		assertEquals(2, callCount.get());
+	}
+
+	@Test
+	public void testStatsAndValues() {
+		ClassValueCache<String> cache = new ClassValueCache<>(true);
+		cache.get(Integer.class, () -> compute(Integer.class));
+		cache.get(Integer.class, () -> compute(Integer.class));
+		cache.get(Long.class, () -> compute(Long.class));
+		ConcurrentCache.Stats stats = cache.getStats();
+		assertEquals(1, stats.getHitCount());
+		assertEquals(2, stats.getMissCount());
+		assertEquals(2, stats.getSize());
+		assertEquals(2, cache.getValues().size());
+		assertTrue(cache.getValues().contains(Long.class.getName()));
+
+		cache.remove(Long.class);
+		assertEquals(List.of(Integer.class.getName()), cache.getValues());
+	}
+
+	@Test
+	public void testNoStatsByDefault() {
+		cache.get(Integer.class, () -> compute(Integer.class));
+		cache.get(Integer.class, () -> compute(Integer.class));
+		assertEquals(0, cache.getStats().getHitCount());
+		assertEquals(0, cache.getStats().getMissCount());
+		assertEquals(1, cache.getStats().getSize());
+	}
+
+	@Test
+	public void testRemoveByClassLoader() throws Exception {
+		ClassLoader parent = new ChildFirstClassLoader(getClass().getClassLoader());
+		ClassLoader child = new ChildFirstClassLoader(parent);
+		Class<?> fromParent = parent.loadClass(Loaded.class.getName());
+		Class<?> fromChild = child.loadClass(Loaded.class.getName());
+		assertNotSame(Loaded.class, fromParent);
+		assertNotSame(fromParent, fromChild);
+
+		cache.get(Loaded.class, () -> compute(Loaded.class));
+		cache.get(fromParent, () -> compute(fromParent));
+		cache.get(fromChild, () -> compute(fromChild));
+		assertEquals(3, cache.getSize());
+
+		cache.remove(parent);
+		assertEquals(1, cache.getSize());
+		cache.get(Loaded.class, () -> compute(Loaded.class));
+		assertEquals(3, callCount.get());
+	}
+
+	@Test
+	public void testFailureIsNotCached() {
+		try {
+			cache.get(Integer.class, () -> {
+				throw new IllegalStateException("test");
+			});
+			fail("Exception expected.");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+		assertEquals(0, cache.getSize());
+		assertEquals(Integer.class.getName(), cache.get(Integer.class, () -> compute(Integer.class)));
+	}
+
+	@Test
+	public void testRemoveDuringCalculation() {
+		String value = cache.get(Integer.class, () -> {
+			String v = compute(Integer.class) + callCount.get();
+			if (callCount.get() == 1) {
+				// invalidated while calculating, the first value is stale
+				cache.remove(Integer.class);
+			}
+			return v;
+		});
+		assertEquals(Integer.class.getName() + 2, value);
+		assertEquals(2, callCount.get());
+		assertEquals(1, cache.getSize());
+		assertEquals(value, cache.get(Integer.class, () -> compute(Integer.class)));
+		assertEquals(2, callCount.get());
+	}
+
+	public static class Loaded {
+
+	}
+
+	/**
+	 * Defines its own copy of the {@link Loaded} class.
+	 */
+	private static class ChildFirstClassLoader extends ClassLoader {
+
+		ChildFirstClassLoader(ClassLoader parent) {
+			super(parent);
+		}
+
+		@Override
+		protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+			if (!Loaded.class.getName().equals(name)) {
+				return super.loadClass(name, resolve);
+			}
+			synchronized (getClassLoadingLock(name)) {
+				Class<?> clazz = findLoadedClass(name);
+				if (clazz != null) {
+					return clazz;
+				}
+				try (InputStream in = Loaded.class.getResourceAsStream(Loaded.class.getName()
+						.substring(Loaded.class.getPackage().getName().length() + 1) + ".class")) {
+					byte[] bytes = StreamUtils.copyToByteArray(in);
+					return defineClass(name, bytes, 0, bytes.length);
+				} catch (IOException e) {
+					throw new ClassNotFoundException(name, e);
+				}
+			}
+		}
+	}
+}
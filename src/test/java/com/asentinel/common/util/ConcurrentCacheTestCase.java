@@ -1,7 +1,10 @@
 package com.asentinel.common.util;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
+import java.time.Duration;
 import java.util.concurrent.BrokenBarrierException;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CyclicBarrier;
@@ -47,6 +50,122 @@ public class ConcurrentCacheTestCase {
     	assertEquals(1, cache.getSize());
     }
     
+    @Test
+    public void testStats() {
+    	ConcurrentCache<Integer, String> cache = new ConcurrentCache<>(ConcurrentCache.UNBOUNDED, null, true);
+    	cache.get(1, c);
+    	cache.get(1, c);
+    	cache.get(2, c);
+    	ConcurrentCache.Stats stats = cache.getStats();
+    	assertEquals(1, stats.getHitCount());
+    	assertEquals(2, stats.getMissCount());
+    	assertEquals(2, stats.getSize());
+    	assertEquals(1.0 / 3, stats.getHitRate(), 0.0001);
+    }
+    
+    @Test
+    public void testStatsPlus() {
+    	ConcurrentCache<Integer, String> cache1 = new ConcurrentCache<>(ConcurrentCache.UNBOUNDED, null, true);
+    	ConcurrentCache<Integer, String> cache2 = new ConcurrentCache<>(ConcurrentCache.UNBOUNDED, null, true);
+    	cache1.get(1, c);
+    	cache1.get(1, c);
+    	cache2.get(1, c);
+    	ConcurrentCache.Stats stats = ConcurrentCache.Stats.EMPTY.plus(cache1.getStats()).plus(cache2.getStats());
+    	assertEquals(1, stats.getHitCount());
+    	assertEquals(2, stats.getMissCount());
+    	assertEquals(2, stats.getSize());
+    }
+    
+    @Test
+    public void testNoStatsByDefault() {
+    	cache.get(1, c);
+    	cache.get(1, c);
+    	ConcurrentCache.Stats stats = cache.getStats();
+    	assertEquals(0, stats.getHitCount());
+    	assertEquals(0, stats.getMissCount());
+    	assertEquals(1, stats.getSize());
+    }
+    
+    @Test
+    public void testEvictionKeepsRecentlyUsed() {
+    	ConcurrentCache<Integer, String> bounded = new ConcurrentCache<>(32);
+    	for (int i = 0; i < 32; i++) {
+    		bounded.get(i, () -> "v");
+    	}
+    	// the even keys become the most recently used
+    	for (int i = 0; i < 32; i += 2) {
+    		bounded.get(i, () -> "x");
+    	}
+    	bounded.get(32, () -> "v");
+    	
+    	// 1 over the limit plus a batch of 32 / 16
+    	assertEquals(3, bounded.getStats().getEvictionCount());
+    	assertEquals(30, bounded.getSize());
+    	for (int i = 0; i < 32; i += 2) {
+    		assertEquals("v", bounded.get(i, () -> "x"));
+    	}
+    	for (int i = 1; i < 6; i += 2) {
+    		assertEquals("x", bounded.get(i, () -> "x"));
+    	}
+    }
+    
+    @Test
+    public void testRemove() {
+    	cache.get(1, c);
+    	cache.remove(1);
+    	cache.get(1, c);
+    	assertEquals(2, c.callCount.get());
+    	cache.clear();
+    	assertEquals(0, cache.getSize());
+    }
+    
+    @Test
+    public void testConditionalRemove() {
+    	cache.get(1, () -> "old");
+    	cache.remove(1);
+    	String current = new String("current");
+    	cache.get(1, () -> current);
+    	// the entry that calculated "old" was replaced
+    	assertFalse(cache.remove(1, "old"));
+    	assertFalse(cache.remove(1, new String("current")));
+    	assertEquals(1, cache.getSize());
+    	assertTrue(cache.remove(1, current));
+    	assertEquals(0, cache.getSize());
+    }
+    
+    @Test
+    public void testLruEviction() {
+    	ConcurrentCache<Integer, String> bounded = new ConcurrentCache<>(3);
+    	bounded.get(1, () -> "1");
+    	bounded.get(2, () -> "2");
+    	bounded.get(3, () -> "3");
+    	// 1 becomes the most recently used
+    	bounded.get(1, () -> "x");
+    	bounded.get(4, () -> "4");
+    	
+    	assertEquals(3, bounded.getSize());
+    	assertEquals(1, bounded.getStats().getEvictionCount());
+    	assertEquals("1", bounded.get(1, () -> "x"));
+    	assertEquals("3", bounded.get(3, () -> "x"));
+    	assertEquals("4", bounded.get(4, () -> "x"));
+    	// 2 was evicted
+    	assertEquals("x", bounded.get(2, () -> "x"));
+    }
+    
+    @Test
+    public void testExpiration() throws InterruptedException {
+    	ConcurrentCache<Integer, String> expiring = new ConcurrentCache<>(ConcurrentCache.UNBOUNDED, Duration.ofMillis(20));
+    	assertEquals("1", expiring.get(1, () -> "1"));
+    	assertEquals("1", expiring.get(1, () -> "x"));
+    	Thread.sleep(40);
+    	assertEquals("x", expiring.get(1, () -> "x"));
+    	assertEquals(1, expiring.getStats().getExpirationCount());
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMaximumSize() {
+    	new ConcurrentCache<>(0);
+    }
     
     static class TestCallable implements Callable<String> {
     	final int key;